@@ -9,5 +9,29 @@ package top.meethigher.proxy;
 public interface LoadBalancer<T> {
     T next();
 
+    /**
+     * 按键选择节点，相同的键尽量选中相同的节点。不区分键的策略等同于{@link #next()}
+     *
+     * @param key 会话保持的键，如客户端IP。为null时等同于{@link #next()}
+     * @return 节点
+     */
+    default T next(String key) {
+        return next();
+    }
+
+    /**
+     * 通过{@link #next(String)}选中的节点使用结束时调用。只有自行统计节点负载的策略需要实现
+     *
+     * @param node 节点
+     */
+    default void release(T node) {
+    }
+
+    /**
+     * 节点列表发生变化后调用。需要预先计算的策略在此重建，不在选择节点时重建
+     */
+    default void refresh() {
+    }
+
     String name();
 }
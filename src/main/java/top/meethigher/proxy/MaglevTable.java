@@ -0,0 +1,133 @@
+package top.meethigher.proxy;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maglev一致性哈希查找表
+ * <p>
+ * 每个节点按自身标识计算出一个槽位排列，各节点按权重轮流认领排列中下一个空闲的槽位，直到填满整张表。
+ * 查找时对键取哈希后直接定位槽位，耗时O(1)且不分配对象；节点增删只会改变少量槽位的归属，大部分键仍映射到原来的节点。
+ * <p>
+ * 查找表创建后只读，节点变化时重新创建整张表并原子替换，重建不发生在请求处理中。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/28 20:15
+ */
+public final class MaglevTable {
+
+    /**
+     * 槽位数量，需为质数且远大于节点数量
+     */
+    public static final int DEFAULT_SIZE = 65537;
+
+    private static final long OFFSET_SEED = 0x9E3779B97F4A7C15L;
+
+    private static final long SKIP_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * 槽位对应的节点下标，没有节点时为空数组
+     */
+    private final int[] slots;
+
+    private final int nodeCount;
+
+    private MaglevTable(int[] slots, int nodeCount) {
+        this.slots = slots;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * 创建查找表
+     *
+     * @param nodeKeys 节点标识，决定节点的槽位排列，相同标识的节点在重建后认领相同的槽位
+     * @param weights  节点权重，需大于0
+     * @param size     槽位数量，需为质数
+     * @return 查找表
+     */
+    public static MaglevTable build(List<String> nodeKeys, int[] weights, int size) {
+        int n = nodeKeys.size();
+        if (n == 0) {
+            return new MaglevTable(new int[0], 0);
+        }
+        long[] offset = new long[n];
+        long[] skip = new long[n];
+        long[] next = new long[n];
+        long[] credit = new long[n];
+        int maxWeight = 1;
+        for (int i = 0; i < n; i++) {
+            offset[i] = Long.remainderUnsigned(hash(nodeKeys.get(i), OFFSET_SEED), size);
+            skip[i] = Long.remainderUnsigned(hash(nodeKeys.get(i), SKIP_SEED), size - 1) + 1;
+            maxWeight = Math.max(maxWeight, weights[i]);
+        }
+        int[] slots = new int[size];
+        Arrays.fill(slots, -1);
+        int filled = 0;
+        while (true) {
+            for (int i = 0; i < n; i++) {
+                // 按权重累积认领次数，权重最大的节点每轮都认领一个槽位
+                credit[i] += weights[i];
+                if (credit[i] < maxWeight) {
+                    continue;
+                }
+                credit[i] -= maxWeight;
+                int slot = (int) ((offset[i] + next[i] * skip[i]) % size);
+                while (slots[slot] >= 0) {
+                    next[i]++;
+                    slot = (int) ((offset[i] + next[i] * skip[i]) % size);
+                }
+                slots[slot] = i;
+                next[i]++;
+                if (++filled == size) {
+                    return new MaglevTable(slots, n);
+                }
+            }
+        }
+    }
+
+    /**
+     * 查找键对应的节点。probe大于0时依次返回后续槽位的节点，用于跳过不可用或已满载的节点
+     *
+     * @param hash  键的哈希
+     * @param probe 探测次数，从0开始
+     * @return 节点下标
+     */
+    public int get(long hash, int probe) {
+        int size = slots.length;
+        int slot = (int) Long.remainderUnsigned(hash, size) + probe % size;
+        return slots[slot >= size ? slot - size : slot];
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * 计算字符串的64位哈希，逐字符计算，不分配对象
+     *
+     * @param key 键
+     * @return 哈希
+     */
+    public static long hash(CharSequence key) {
+        return hash(key, 0);
+    }
+
+    private static long hash(CharSequence key, long seed) {
+        // FNV-1a，再经过murmur3的fmix64打散
+        long h = 0xCBF29CE484222325L ^ seed;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
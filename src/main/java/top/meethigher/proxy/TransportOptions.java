@@ -0,0 +1,150 @@
+package top.meethigher.proxy;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetServerOptions;
+import io.vertx.core.net.TCPSSLOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 传输层配置，作为所有代理共用的开关
+ * <p>
+ * 启用后优先使用Netty原生传输(Linux下为epoll，macOS下为kqueue)，classpath中缺少原生库或当前平台不支持时，Vert.x自动回退为JDK NIO。
+ * 原生传输需要自行引入netty-transport-native-epoll等依赖，并与Vert.x使用的Netty版本保持一致。
+ * <p>
+ * 以下套接字选项只在原生传输下生效，NIO下会被忽略
+ * <ul>
+ *     <li>TCP_QUICKACK: 立即确认而非延迟确认，降低请求响应式流量的延迟</li>
+ *     <li>TCP_FASTOPEN: 在SYN中携带首个数据包，减少新建连接的一次往返</li>
+ *     <li>SO_REUSEPORT: 多个实例监听同一端口，由内核分配连接。其他进程也能因此绑定同一端口并分走连接，需显式开启，默认关闭</li>
+ *     <li>TCP_CORK: 合并小包后再发送，适合大块数据的转发，会增加小响应的延迟，默认关闭</li>
+ * </ul>
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/22 20:05
+ */
+public class TransportOptions {
+
+    private static final Logger log = LoggerFactory.getLogger(TransportOptions.class);
+
+    private boolean nativeTransport = true;
+
+    private boolean tcpQuickAck = true;
+
+    private boolean tcpFastOpen = true;
+
+    private boolean reusePort = false;
+
+    private boolean tcpCork = false;
+
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    public TransportOptions setNativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+        return this;
+    }
+
+    public boolean isTcpQuickAck() {
+        return tcpQuickAck;
+    }
+
+    public TransportOptions setTcpQuickAck(boolean tcpQuickAck) {
+        this.tcpQuickAck = tcpQuickAck;
+        return this;
+    }
+
+    public boolean isTcpFastOpen() {
+        return tcpFastOpen;
+    }
+
+    public TransportOptions setTcpFastOpen(boolean tcpFastOpen) {
+        this.tcpFastOpen = tcpFastOpen;
+        return this;
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    public TransportOptions setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    public boolean isTcpCork() {
+        return tcpCork;
+    }
+
+    public TransportOptions setTcpCork(boolean tcpCork) {
+        this.tcpCork = tcpCork;
+        return this;
+    }
+
+    /**
+     * 创建Vertx，并输出实际使用的传输层
+     *
+     * @param options Vertx配置
+     * @return Vertx
+     */
+    public Vertx createVertx(VertxOptions options) {
+        Vertx vertx = Vertx.vertx(apply(options));
+        if (nativeTransport && !vertx.isNativeTransportEnabled()) {
+            log.warn("native transport is unavailable, fall back to NIO", vertx.unavailableNativeTransportCause());
+        } else {
+            log.info("{} transport enabled", vertx.isNativeTransportEnabled() ? "native" : "NIO");
+        }
+        return vertx;
+    }
+
+    public Vertx createVertx() {
+        return createVertx(new VertxOptions());
+    }
+
+    public VertxOptions apply(VertxOptions options) {
+        return options.setPreferNativeTransport(nativeTransport);
+    }
+
+    /**
+     * 将套接字选项应用到服务端或客户端配置上
+     *
+     * @param options 服务端或客户端配置
+     * @param <T>     配置类型
+     * @return 配置本身
+     */
+    public <T extends TCPSSLOptions> T apply(T options) {
+        options.setTcpQuickAck(tcpQuickAck)
+                .setTcpFastOpen(tcpFastOpen)
+                .setTcpCork(tcpCork);
+        // SO_REUSEPORT只对监听端口有意义
+        if (options instanceof NetServerOptions) {
+            options.setReusePort(reusePort);
+        }
+        return options;
+    }
+
+    public HttpServer createHttpServer(Vertx vertx) {
+        return vertx.createHttpServer(apply(new HttpServerOptions()));
+    }
+
+    public HttpClient createHttpClient(Vertx vertx) {
+        return vertx.createHttpClient(apply(new HttpClientOptions()));
+    }
+
+    public NetServer createNetServer(Vertx vertx) {
+        return vertx.createNetServer(apply(new NetServerOptions()));
+    }
+
+    public NetClient createNetClient(Vertx vertx) {
+        return vertx.createNetClient(apply(new NetClientOptions()));
+    }
+}
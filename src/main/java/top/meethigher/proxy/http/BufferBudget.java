@@ -0,0 +1,80 @@
+package top.meethigher.proxy.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 代理全局的缓冲内存预算，由所有启用缓冲的请求共享
+ * <p>
+ * 单个请求的缓冲先在自身的上限内向预算申请内存，申请失败时改为写入临时文件，
+ * 因此大量慢客户端同时下载时，缓冲占用的总内存不会超过预算。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/31 10:40
+ */
+public class BufferBudget {
+
+    private final long maxBytes;
+
+    private final AtomicLong used = new AtomicLong();
+
+    private final LongAdder spills = new LongAdder();
+
+    public BufferBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 申请内存，超出预算时失败
+     *
+     * @param bytes 字节数
+     * @return true表示申请成功
+     */
+    public boolean tryReserve(long bytes) {
+        while (true) {
+            long current = used.get();
+            if (current + bytes > maxBytes) {
+                return false;
+            }
+            if (used.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 强制占用内存，用于已经到达、无法拒绝的数据。调用方随后需暂停数据源
+     *
+     * @param bytes 字节数
+     */
+    public void reserve(long bytes) {
+        used.addAndGet(bytes);
+    }
+
+    public void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    public boolean isExhausted() {
+        return used.get() >= maxBytes;
+    }
+
+    void recordSpill() {
+        spills.increment();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * 写入过临时文件的请求数
+     */
+    public long getSpills() {
+        return spills.sum();
+    }
+}
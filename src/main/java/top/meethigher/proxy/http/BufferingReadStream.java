@@ -0,0 +1,343 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.ArrayDeque;
+
+/**
+ * 在数据源与下游之间加一层有界缓冲，数据源不再受下游的背压
+ * <p>
+ * 数据源以最快速度读取，数据先放入内存，单个流的内存超过上限或全局预算不足时改为追加到临时文件，下游按自身的速度从内存与文件中依次读取。
+ * 用于响应时，上游的响应体全部收完后连接即可归还连接池，不必等待慢客户端下载完毕；用于请求时，上游只会收到已完整到达的请求。
+ * <p>
+ * 临时文件在全部读完后从头复用，因此文件大小不超过上限；文件也写满时暂停数据源，退化为普通的背压。
+ * 所有回调都在创建时的EventLoop上执行，无需同步。使用结束后需调用{@link #close()}释放内存与临时文件。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/31 10:40
+ */
+public class BufferingReadStream implements ReadStream<Buffer> {
+
+    /**
+     * 从临时文件单次读取的字节数
+     */
+    private static final int READ_SIZE = 64 * 1024;
+
+    private final FileSystem fileSystem;
+
+    private final ReadStream<Buffer> source;
+
+    private final BufferBudget budget;
+
+    private final long maxMemoryBytes;
+
+    private final long maxFileBytes;
+
+    private final String tempDir;
+
+    /**
+     * 数据源已全部接收，或缓冲已满需要开始向下游输出
+     */
+    private final Promise<Void> ready = Promise.promise();
+
+    private final ArrayDeque<Buffer> memory = new ArrayDeque<>();
+
+    /**
+     * 内存中的字节数，均已计入全局预算
+     */
+    private long memoryBytes;
+
+    private long receivedBytes;
+
+    /**
+     * 正在写入临时文件。此时新数据都追加到文件，保证顺序
+     */
+    private boolean spilling;
+
+    private Future<AsyncFile> file;
+
+    /**
+     * 文件写入按顺序串行执行
+     */
+    private Future<Void> lastWrite;
+
+    /**
+     * 已提交写入的文件位置
+     */
+    private long written;
+
+    /**
+     * 已写入完成、可以读取的文件位置
+     */
+    private long flushed;
+
+    private long readPosition;
+
+    private boolean reading;
+
+    private boolean sourcePaused;
+
+    private boolean sourceEnded;
+
+    private boolean draining;
+
+    private boolean ended;
+
+    private boolean closed;
+
+    private long demand = Long.MAX_VALUE;
+
+    private Handler<Buffer> handler;
+
+    private Handler<Void> endHandler;
+
+    private Handler<Throwable> exceptionHandler;
+
+    /**
+     * 创建后立即开始读取数据源
+     *
+     * @param vertx          Vertx
+     * @param source         数据源
+     * @param budget         全局内存预算
+     * @param maxMemoryBytes 单个流的内存上限
+     * @param maxFileBytes   单个流的临时文件上限，0表示不写入文件
+     * @param tempDir        临时文件目录，为null时使用系统临时目录
+     */
+    public BufferingReadStream(Vertx vertx, ReadStream<Buffer> source, BufferBudget budget,
+                               long maxMemoryBytes, long maxFileBytes, String tempDir) {
+        this.fileSystem = vertx.fileSystem();
+        this.source = source;
+        this.budget = budget;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxFileBytes = maxFileBytes;
+        this.tempDir = tempDir;
+        source.handler(this::receive);
+        source.exceptionHandler(this::fail);
+        source.endHandler(v -> {
+            sourceEnded = true;
+            ready.tryComplete();
+            drain();
+        });
+        source.resume();
+    }
+
+    private void receive(Buffer chunk) {
+        if (closed) {
+            // 下游已放弃，继续读完数据源以便释放连接
+            return;
+        }
+        int length = chunk.length();
+        receivedBytes += length;
+        if (spilling) {
+            spill(chunk);
+        } else if (memoryBytes + length <= maxMemoryBytes && budget.tryReserve(length)) {
+            memory.add(chunk);
+            memoryBytes += length;
+        } else if (maxFileBytes > 0) {
+            spilling = true;
+            spill(chunk);
+        } else {
+            // 不允许写入文件，超出部分通过暂停数据源限制
+            budget.reserve(length);
+            memory.add(chunk);
+            memoryBytes += length;
+        }
+        if (!sourcePaused && full()) {
+            sourcePaused = true;
+            source.pause();
+            ready.tryComplete();
+        }
+        drain();
+    }
+
+    private boolean full() {
+        if (spilling) {
+            return written >= maxFileBytes;
+        }
+        return maxFileBytes <= 0 && (memoryBytes >= maxMemoryBytes || budget.isExhausted());
+    }
+
+    private void spill(Buffer chunk) {
+        if (file == null) {
+            budget.recordSpill();
+            file = (tempDir == null ? fileSystem.createTempFile("proxy-", ".buf") : fileSystem.createTempFile(tempDir, "proxy-", ".buf", (String) null))
+                    .compose(path -> fileSystem.open(path, new OpenOptions().setRead(true).setWrite(true).setDeleteOnClose(true)));
+            lastWrite = file.mapEmpty();
+        }
+        long position = written;
+        written += chunk.length();
+        lastWrite = lastWrite
+                .compose(v -> file.result().write(chunk, position))
+                .onSuccess(v -> {
+                    flushed = position + chunk.length();
+                    drain();
+                })
+                .onFailure(this::fail);
+    }
+
+    private void drain() {
+        if (draining) {
+            return;
+        }
+        draining = true;
+        try {
+            while (!closed && handler != null && demand > 0) {
+                Buffer chunk = memory.poll();
+                if (chunk != null) {
+                    memoryBytes -= chunk.length();
+                    budget.release(chunk.length());
+                    if (demand != Long.MAX_VALUE) {
+                        demand--;
+                    }
+                    handler.handle(chunk);
+                    continue;
+                }
+                if (!reading && readPosition < flushed) {
+                    readFile();
+                }
+                break;
+            }
+            if (closed) {
+                return;
+            }
+            if (sourcePaused && !full()) {
+                sourcePaused = false;
+                source.resume();
+            }
+            // 下游开始读取后才通知结束
+            if (sourceEnded && !ended && handler != null && memory.isEmpty() && !reading && readPosition == written) {
+                ended = true;
+                close();
+                if (endHandler != null) {
+                    endHandler.handle(null);
+                }
+            }
+        } finally {
+            draining = false;
+        }
+    }
+
+    private void readFile() {
+        reading = true;
+        int length = (int) Math.min(READ_SIZE, flushed - readPosition);
+        file.result().read(Buffer.buffer(length), 0, readPosition, length).onComplete(ar -> {
+            reading = false;
+            if (ar.failed()) {
+                fail(ar.cause());
+                return;
+            }
+            if (closed) {
+                return;
+            }
+            Buffer chunk = ar.result();
+            readPosition += chunk.length();
+            if (readPosition == written) {
+                // 文件已全部读完，从头复用，新数据重新优先放入内存
+                readPosition = written = flushed = 0;
+                spilling = false;
+            }
+            // 读取期间下游可能已暂停，先放回内存队列的队首
+            budget.reserve(chunk.length());
+            memory.addFirst(chunk);
+            memoryBytes += chunk.length();
+            drain();
+        });
+    }
+
+    private void fail(Throwable cause) {
+        if (closed) {
+            return;
+        }
+        close();
+        ready.tryFail(cause);
+        if (exceptionHandler != null) {
+            exceptionHandler.handle(cause);
+        }
+    }
+
+    /**
+     * 数据源已全部接收，或缓冲已满。用于请求时，在此之后再向上游发起请求
+     *
+     * @return 数据源失败时为失败的Future
+     */
+    public Future<Void> ready() {
+        return ready.future();
+    }
+
+    /**
+     * 数据源已全部接收
+     */
+    public boolean isComplete() {
+        return sourceEnded;
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * 释放内存预算并删除临时文件。未读完的数据源会继续读取并丢弃
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        budget.release(memoryBytes);
+        memoryBytes = 0;
+        memory.clear();
+        if (sourcePaused) {
+            sourcePaused = false;
+            source.resume();
+        }
+        if (file != null) {
+            lastWrite.eventually(v -> file.succeeded() ? file.result().close() : Future.succeededFuture());
+        }
+    }
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        drain();
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+        demand = 0;
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+        return fetch(Long.MAX_VALUE);
+    }
+
+    @Override
+    public ReadStream<Buffer> fetch(long amount) {
+        demand = Long.MAX_VALUE - demand > amount ? demand + amount : Long.MAX_VALUE;
+        drain();
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        drain();
+        return this;
+    }
+}
@@ -0,0 +1,171 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Context;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 挂在leader请求上的follower，将leader的响应写给自己的客户端
+ * <p>
+ * leader与follower可能位于不同的EventLoop，所有对follower响应的操作都切换回follower自己的Context执行。
+ * follower写出跟不上leader时不会反压leader，积压超过上限后脱离共享：若响应支持Range则从已写出的位置向上游续传，否则中断连接。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/09 17:05
+ */
+class CoalescedFollower implements RequestCoalescer.Subscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescedFollower.class);
+
+    private final ReverseHttpProxy proxy;
+
+    private final RoutingContext ctx;
+
+    private final HttpClient httpClient;
+
+    private final String proxyUrl;
+
+    private final long maxLag;
+
+    private final Context context;
+
+    /**
+     * 已交给follower但尚未写出到socket的字节数
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    private volatile boolean detached;
+
+    private int statusCode;
+
+    private MultiMap headers;
+
+    /**
+     * 已写出的响应体字节数，仅在follower的Context内读写
+     */
+    private long written;
+
+    CoalescedFollower(ReverseHttpProxy proxy, RoutingContext ctx, HttpClient httpClient, String proxyUrl, long maxLag) {
+        this.proxy = proxy;
+        this.ctx = ctx;
+        this.httpClient = httpClient;
+        this.proxyUrl = proxyUrl;
+        this.maxLag = maxLag;
+        this.context = Vertx.currentContext();
+        // follower的客户端提前断开时，不再接收leader的数据
+        ctx.addEndHandler(ar -> detached = true);
+    }
+
+    @Override
+    public void onHeaders(int statusCode, MultiMap headers) {
+        context.runOnContext(v -> {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            HttpServerResponse response = ctx.response();
+            proxy.copyResponseHeaders(ctx, ctx.request(), response, headers);
+            if (!response.headers().contains("Content-Length")) {
+                response.setChunked(true);
+            }
+            proxy.setContextData(ctx, ReverseHttpProxy.INTERNAL_CLIENT_REMOTE_ADDR, "coalesced");
+            proxy.setStatusCode(ctx, response, statusCode);
+        });
+    }
+
+    @Override
+    public boolean onChunk(Buffer chunk) {
+        if (detached) {
+            return false;
+        }
+        int length = chunk.length();
+        if (pending.addAndGet(length) > maxLag) {
+            detached = true;
+            context.runOnContext(v -> resume());
+            return false;
+        }
+        context.runOnContext(v -> {
+            HttpServerResponse response = ctx.response();
+            if (response.ended() || response.closed()) {
+                pending.addAndGet(-length);
+                return;
+            }
+            written += length;
+            response.write(chunk).onComplete(ar -> pending.addAndGet(-length));
+        });
+        return true;
+    }
+
+    @Override
+    public void onEnd(boolean succeeded) {
+        if (detached) {
+            return;
+        }
+        context.runOnContext(v -> {
+            HttpServerResponse response = ctx.response();
+            if (response.ended() || response.closed()) {
+                return;
+            }
+            if (succeeded) {
+                response.end();
+            } else {
+                response.reset();
+            }
+            proxy.doLog(ctx);
+        });
+    }
+
+    @Override
+    public void onAbort() {
+        // 与普通请求一样经过流量镜像等转发前的处理
+        context.runOnContext(v -> proxy.forwardRequest(ctx, proxy.getCompiledRoute(ctx), httpClient, proxyUrl));
+    }
+
+    /**
+     * 脱离leader后从已写出的位置续传。只有响应码为200、声明支持字节范围且带有校验器时才能保证续传内容与已写出的内容属于同一版本
+     */
+    private void resume() {
+        HttpServerResponse response = ctx.response();
+        if (response.ended() || response.closed()) {
+            return;
+        }
+        String validator = headers.get("ETag");
+        if (validator == null || validator.startsWith("W/")) {
+            validator = headers.get("Last-Modified");
+        }
+        if (statusCode != 200 || validator == null || !"bytes".equalsIgnoreCase(headers.get("Accept-Ranges"))) {
+            log.warn("coalesced follower fell behind on {} and the response is not resumable, reset", proxyUrl);
+            response.reset();
+            return;
+        }
+        String ifRange = validator;
+        RequestOptions requestOptions = new RequestOptions()
+                .setAbsoluteURI(proxyUrl)
+                .setMethod(HttpMethod.GET);
+        proxy.requestUpstream(httpClient, requestOptions)
+                .compose(clientReq -> {
+                    proxy.copyRequestHeaders(ctx, ctx.request(), clientReq);
+                    clientReq.putHeader("Range", "bytes=" + written + "-");
+                    clientReq.putHeader("If-Range", ifRange);
+                    return clientReq.send();
+                })
+                .onComplete(ar -> {
+                    HttpClientResponse clientResp = ar.succeeded() ? ar.result() : null;
+                    if (clientResp == null || clientResp.statusCode() != 206) {
+                        log.warn("coalesced follower failed to resume {}", proxyUrl, ar.cause());
+                        response.reset();
+                        return;
+                    }
+                    clientResp.pipeTo(response).onComplete(ar1 -> proxy.doLog(ctx));
+                });
+    }
+}
@@ -0,0 +1,440 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.net.SocketAddress;
+import top.meethigher.proxy.LoadBalancer;
+import top.meethigher.proxy.http.cache.HttpResponseCache;
+import top.meethigher.proxy.http.compress.CompressedVariantCache;
+import top.meethigher.proxy.http.compress.ResponseCompressor;
+import top.meethigher.proxy.http.log.AccessLogFormat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 由{@link ProxyRoute}编译而来的不可变路由计划
+ * <p>
+ * 在{@code addRoute}时一次性完成布尔配置的解析、目标地址的规范化、匹配前缀与跨域响应头的预计算，
+ * 请求处理时直接读取字段，避免每个请求都将路由元数据复制到{@code RoutingContext}并反复解析字符串。
+ * <p>
+ * 本类的字段在编译后不再改变，但引用的对象携带运行期状态：{@link HttpUpstream}维护健康状态与进行中请求数，
+ * 其连接池与并发限制在代理绑定路由时设置一次，均以volatile或原子变量发布给各事件循环线程；
+ * 依赖Vertx、只能在绑定时创建的后台资源由{@link RouteRuntime}持有。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/02 21:10
+ */
+public final class CompiledRoute {
+
+    private final String name;
+
+    private final String sourceUrl;
+
+    private final String targetUrl;
+
+    /**
+     * 上游节点。未配置upstreams时，由targetUrl构成唯一节点
+     */
+    private final List<HttpUpstream> upstreams;
+
+    private final LoadBalancer<HttpUpstream> loadBalancer;
+
+    /**
+     * 一致性哈希配置，其他负载均衡策略时为null
+     */
+    private final ProxyRoute.ConsistentHash consistentHash;
+
+    /**
+     * sourceUrl是否为多级匹配，即以*结尾
+     */
+    private final boolean multiLevel;
+
+    /**
+     * 多级匹配时需要从请求路径中删除的前缀，不以/结尾
+     */
+    private final String stripPrefix;
+
+    /**
+     * 重写Location时追加在hostPort后面的路径前缀
+     */
+    private final String locationPrefix;
+
+    private final boolean forwardIp;
+
+    private final boolean preserveCookies;
+
+    private final boolean preserveHost;
+
+    private final boolean followRedirects;
+
+    private final boolean httpKeepAlive;
+
+    private final boolean logEnable;
+
+    private final String logFormat;
+
+    /**
+     * 预编译的日志格式
+     */
+    private final AccessLogFormat accessLogFormat;
+
+    private final boolean corsControl;
+
+    private final boolean allowCors;
+
+    /**
+     * 允许跨域时固定追加的响应头，不包含随请求变化的Access-Control-Allow-Origin
+     */
+    private final MultiMap corsHeaders;
+
+    /**
+     * 响应缓存，未启用时为null
+     */
+    private final HttpResponseCache cache;
+
+    /**
+     * 请求合并，未启用时为null
+     */
+    private final RequestCoalescer coalescer;
+
+    /**
+     * 响应压缩，未启用时为null
+     */
+    private final ResponseCompressor compressor;
+
+    /**
+     * 限流，未启用时为null
+     */
+    private final RateLimiter rateLimiter;
+
+    /**
+     * 过载时的优先级，未启用并发限制时为null
+     */
+    private final ProxyRoute.Priority priority;
+
+    /**
+     * 重试与对冲，未启用时为null
+     */
+    private final RetryPolicy retryPolicy;
+
+    /**
+     * 上游请求的超时，未启用时为null
+     */
+    private final ProxyRoute.Timeout timeout;
+
+    /**
+     * 协议升级，未启用时为null
+     */
+    private final UpgradeTunnel upgradeTunnel;
+
+    /**
+     * 流量镜像配置，未启用时为null
+     */
+    private final ProxyRoute.Mirror mirror;
+
+    /**
+     * 请求体与响应体的缓冲，未启用时为null
+     */
+    private final ProxyRoute.Buffering buffering;
+
+    /**
+     * 主动健康检查配置，未启用时为null
+     */
+    private final ProxyRoute.HealthCheck healthCheck;
+
+    /**
+     * 运行期的后台资源，由代理在绑定路由时创建
+     */
+    private final RouteRuntime runtime = new RouteRuntime();
+
+    private CompiledRoute(ProxyRoute proxyRoute) {
+        this.name = proxyRoute.getName();
+        this.sourceUrl = proxyRoute.getSourceUrl();
+        this.targetUrl = proxyRoute.getTargetUrl();
+        this.upstreams = compileUpstreams(proxyRoute);
+        this.consistentHash = proxyRoute.getLoadBalance() == ProxyRoute.LoadBalance.CONSISTENT_HASH && proxyRoute.getConsistentHash() != null
+                ? proxyRoute.getConsistentHash() : null;
+        this.loadBalancer = createLoadBalancer(proxyRoute.getLoadBalance(), consistentHash, upstreams);
+        this.multiLevel = sourceUrl.endsWith("*");
+        this.stripPrefix = trimTrailingSlash(multiLevel ? sourceUrl.substring(0, sourceUrl.length() - 1) : sourceUrl);
+        this.locationPrefix = sourceUrl.replace("/*", "");
+        this.forwardIp = proxyRoute.isForwardIp();
+        this.preserveCookies = proxyRoute.isPreserveCookies();
+        this.preserveHost = proxyRoute.isPreserveHost();
+        this.followRedirects = proxyRoute.isFollowRedirects();
+        this.httpKeepAlive = proxyRoute.isHttpKeepAlive();
+        ProxyRoute.Log log = proxyRoute.getLog();
+        this.logEnable = log != null && log.isEnable();
+        String format = log == null ? null : log.getLogFormat();
+        this.logFormat = format == null || format.isEmpty() ? ReverseHttpProxy.LOG_FORMAT_DEFAULT : format;
+        this.accessLogFormat = AccessLogFormat.compile(logFormat);
+        ProxyRoute.CorsControl cors = proxyRoute.getCorsControl();
+        this.corsControl = cors != null && cors.isEnable();
+        this.allowCors = corsControl && cors.isAllowCors();
+        this.corsHeaders = MultiMap.caseInsensitiveMultiMap()
+                .add("Access-Control-Allow-Methods", "*")
+                .add("Access-Control-Allow-Headers", "*")
+                .add("Access-Control-Allow-Credentials", "true")
+                .add("Access-Control-Expose-Headers", "*");
+        ProxyRoute.Cache cacheConfig = proxyRoute.getCache();
+        this.cache = cacheConfig == null || !cacheConfig.isEnable() ? null :
+                new HttpResponseCache(cacheConfig.getMaxBytes(), cacheConfig.getMaxEntryBytes(), cacheConfig.getHeuristicMaxAge() * 1000);
+        ProxyRoute.Coalescing coalescing = proxyRoute.getCoalescing();
+        this.coalescer = coalescing == null || !coalescing.isEnable() ? null :
+                new RequestCoalescer(coalescing.getMaxFollowerLag());
+        ProxyRoute.Compression compression = proxyRoute.getCompression();
+        this.compressor = compression == null || !compression.isEnable() ? null :
+                new ResponseCompressor(compression.getLevel(), compression.getMinLength(), compression.getMimeTypes(),
+                        // 压缩变体只针对响应缓存中的条目
+                        compression.isVariantCache() && cache != null ? new CompressedVariantCache(compression.getVariantCacheMaxBytes()) : null);
+        ProxyRoute.RateLimit rateLimit = proxyRoute.getRateLimit();
+        this.rateLimiter = rateLimit == null || !rateLimit.isEnable() ? null :
+                new RateLimiter(rateLimit.getKey(), rateLimit.getHeader(), rateLimit.getRate(), rateLimit.getBurst(), rateLimit.getMaxKeys());
+        ProxyRoute.ConcurrencyLimit concurrencyLimit = proxyRoute.getConcurrencyLimit();
+        this.priority = concurrencyLimit == null || !concurrencyLimit.isEnable() ? null : concurrencyLimit.getPriority();
+        ProxyRoute.Retry retry = proxyRoute.getRetry();
+        this.retryPolicy = retry == null || !retry.isEnable() ? null : new RetryPolicy(retry);
+        ProxyRoute.Timeout timeoutConfig = proxyRoute.getTimeout();
+        this.timeout = timeoutConfig == null || !timeoutConfig.isEnable() ? null : timeoutConfig;
+        ProxyRoute.Upgrade upgrade = proxyRoute.getUpgrade();
+        this.upgradeTunnel = upgrade == null || !upgrade.isEnable() ? null : new UpgradeTunnel(upgrade);
+        ProxyRoute.Mirror mirrorConfig = proxyRoute.getMirror();
+        this.mirror = mirrorConfig == null || !mirrorConfig.isEnable() || mirrorConfig.getTargetUrl() == null ? null : mirrorConfig;
+        ProxyRoute.Buffering bufferingConfig = proxyRoute.getBuffering();
+        this.buffering = bufferingConfig == null || !bufferingConfig.isEnable() ? null : bufferingConfig;
+        ProxyRoute.HealthCheck healthCheckConfig = proxyRoute.getHealthCheck();
+        this.healthCheck = healthCheckConfig == null || !healthCheckConfig.isEnable() ? null : healthCheckConfig;
+    }
+
+    public static CompiledRoute compile(ProxyRoute proxyRoute) {
+        return new CompiledRoute(proxyRoute);
+    }
+
+    private static List<HttpUpstream> compileUpstreams(ProxyRoute proxyRoute) {
+        List<HttpUpstream> list = new ArrayList<>();
+        if (proxyRoute.getUpstreams() == null || proxyRoute.getUpstreams().isEmpty()) {
+            list.add(new HttpUpstream(proxyRoute.getTargetUrl(), 1));
+        } else {
+            for (ProxyRoute.Upstream upstream : proxyRoute.getUpstreams()) {
+                list.add(new HttpUpstream(upstream.getTargetUrl(), upstream.getWeight()));
+            }
+        }
+        AtomicInteger routeInFlight = new AtomicInteger(0);
+        for (HttpUpstream upstream : list) {
+            upstream.setOutlierDetection(proxyRoute.getOutlierDetection());
+            upstream.setRouteInFlight(routeInFlight);
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    private static LoadBalancer<HttpUpstream> createLoadBalancer(ProxyRoute.LoadBalance loadBalance, ProxyRoute.ConsistentHash consistentHash,
+                                                                 List<HttpUpstream> upstreams) {
+        if (loadBalance == null) {
+            return HttpRoundRobinLoadBalancer.create(upstreams);
+        }
+        switch (loadBalance) {
+            case CONSISTENT_HASH:
+                return HttpConsistentHashLoadBalancer.create(upstreams, consistentHash == null ? 0 : consistentHash.getBoundedLoadFactor());
+            case WEIGHTED_ROUND_ROBIN:
+                return HttpWeightedRoundRobinLoadBalancer.create(upstreams);
+            case LEAST_REQUESTS:
+                return HttpLeastRequestsLoadBalancer.create(upstreams);
+            case POWER_OF_TWO_CHOICES:
+                return HttpPowerOfTwoChoicesLoadBalancer.create(upstreams);
+            case ROUND_ROBIN:
+            default:
+                return HttpRoundRobinLoadBalancer.create(upstreams);
+        }
+    }
+
+    private static String trimTrailingSlash(String s) {
+        return s.endsWith("/") ? s.substring(0, s.length() - 1) : s;
+    }
+
+    /**
+     * 写入允许跨域的响应头
+     *
+     * @param headers 响应头
+     * @param origin  请求头origin
+     */
+    public void applyCorsHeaders(MultiMap headers, String origin) {
+        headers.set("Access-Control-Allow-Origin", origin == null || origin.isEmpty() ? "*" : origin);
+        headers.setAll(corsHeaders);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public String getTargetUrl() {
+        return targetUrl;
+    }
+
+    public List<HttpUpstream> getUpstreams() {
+        return upstreams;
+    }
+
+    public LoadBalancer<HttpUpstream> getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    /**
+     * 提取一致性哈希的键。按Cookie或请求头哈希但请求未携带时，退化为按客户端IP
+     *
+     * @param request 请求
+     * @return 键，未使用一致性哈希时为null
+     */
+    public String balanceKey(HttpServerRequest request) {
+        if (consistentHash == null) {
+            return null;
+        }
+        String value = null;
+        if (consistentHash.getKey() == ProxyRoute.HashKey.HEADER) {
+            value = request.getHeader(consistentHash.getName());
+        } else if (consistentHash.getKey() == ProxyRoute.HashKey.COOKIE) {
+            value = cookieValue(request.getHeader("Cookie"), consistentHash.getName());
+        }
+        if (value != null) {
+            return value;
+        }
+        SocketAddress remoteAddress = request.remoteAddress();
+        return remoteAddress == null ? null : remoteAddress.hostAddress();
+    }
+
+    /**
+     * 从Cookie请求头中查找指定名称的值，不解析其余的Cookie
+     *
+     * @param header Cookie请求头
+     * @param name   名称
+     * @return 值，不存在时为null
+     */
+    static String cookieValue(String header, String name) {
+        if (header == null || name == null) {
+            return null;
+        }
+        int from = 0;
+        while (from < header.length()) {
+            int end = header.indexOf(';', from);
+            if (end < 0) {
+                end = header.length();
+            }
+            int start = from;
+            while (start < end && header.charAt(start) == ' ') {
+                start++;
+            }
+            int eq = start + name.length();
+            if (eq < end && header.charAt(eq) == '=' && header.regionMatches(start, name, 0, name.length())) {
+                return header.substring(eq + 1, end).trim();
+            }
+            from = end + 1;
+        }
+        return null;
+    }
+
+    public boolean isMultiLevel() {
+        return multiLevel;
+    }
+
+    public String getStripPrefix() {
+        return stripPrefix;
+    }
+
+    public String getLocationPrefix() {
+        return locationPrefix;
+    }
+
+    public boolean isForwardIp() {
+        return forwardIp;
+    }
+
+    public boolean isPreserveCookies() {
+        return preserveCookies;
+    }
+
+    public boolean isPreserveHost() {
+        return preserveHost;
+    }
+
+    public boolean isFollowRedirects() {
+        return followRedirects;
+    }
+
+    public boolean isHttpKeepAlive() {
+        return httpKeepAlive;
+    }
+
+    public boolean isLogEnable() {
+        return logEnable;
+    }
+
+    public String getLogFormat() {
+        return logFormat;
+    }
+
+    public AccessLogFormat getAccessLogFormat() {
+        return accessLogFormat;
+    }
+
+    public boolean isCorsControl() {
+        return corsControl;
+    }
+
+    public boolean isAllowCors() {
+        return allowCors;
+    }
+
+    public HttpResponseCache getCache() {
+        return cache;
+    }
+
+    public RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    public ResponseCompressor getCompressor() {
+        return compressor;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public ProxyRoute.Priority getPriority() {
+        return priority;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public ProxyRoute.Timeout getTimeout() {
+        return timeout;
+    }
+
+    public UpgradeTunnel getUpgradeTunnel() {
+        return upgradeTunnel;
+    }
+
+    public ProxyRoute.Mirror getMirror() {
+        return mirror;
+    }
+
+    public ProxyRoute.Buffering getBuffering() {
+        return buffering;
+    }
+
+    public ProxyRoute.HealthCheck getHealthCheck() {
+        return healthCheck;
+    }
+
+    public RouteRuntime getRuntime() {
+        return runtime;
+    }
+}
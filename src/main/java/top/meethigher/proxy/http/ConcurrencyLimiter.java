@@ -0,0 +1,301 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上游源站的自适应并发限制
+ * <p>
+ * 并发上限按梯度算法根据观测到的RTT调整：长期RTT近似上游无排队时的延迟，本次RTT明显高于长期RTT时说明上游开始排队，
+ * 按两者的比值收缩上限；否则在当前上限的基础上追加sqrt(limit)的余量试探更高的并发。上游5xx或连接失败时按比例退避。
+ * <p>
+ * 超出上限的请求进入有界的等待队列，按优先级出队；等待超时或队列已满时立即拒绝。队列满时，高优先级的请求会挤掉最低优先级的等待者，
+ * 因此过载时先被丢弃的是低优先级流量。放行判断只有一次CAS，上限的更新在同步块内完成，不在放行路径上。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/18 21:05
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * 新上限在估算值中所占的权重
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * 本次RTT不超过长期RTT的该倍数时，视为上游没有排队
+     */
+    private static final double RTT_TOLERANCE = 1.5;
+
+    /**
+     * 上游失败时上限的退避比例
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * 长期RTT按指数移动平均计算的样本窗口
+     */
+    private static final int LONG_WINDOW = 600;
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int maxQueueSize;
+
+    /**
+     * 排队的最长时间，单位毫秒
+     */
+    private final long queueTimeout;
+
+    /**
+     * 当前生效的并发上限，放行路径上只读取该字段
+     */
+    private volatile int limit;
+
+    /**
+     * 上限的估算值与长期RTT，只在同步块内读写
+     */
+    private double estimatedLimit;
+
+    private long longRtt;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+
+    /**
+     * 仍在等待的请求数
+     */
+    private final AtomicInteger queued = new AtomicInteger(0);
+
+    /**
+     * 按优先级划分的等待队列，下标越小优先级越高
+     */
+    private final ConcurrentLinkedQueue<Waiter>[] queues;
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name         名称，一般为上游源站
+     * @param initialLimit 初始并发上限
+     * @param minLimit     并发上限的下限
+     * @param maxLimit     并发上限的上限
+     * @param maxQueueSize 等待队列长度
+     * @param queueTimeout 排队的最长时间，单位毫秒
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueueSize, long queueTimeout) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("limit must satisfy 0 < minLimit <= maxLimit");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueueSize = maxQueueSize;
+        this.queueTimeout = queueTimeout;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        ProxyRoute.Priority[] priorities = ProxyRoute.Priority.values();
+        this.queues = new ConcurrentLinkedQueue[priorities.length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * 申请一个并发名额。名额充足时同步回调，否则排队等待，在申请时所在的上下文中回调
+     *
+     * @param context  当前上下文
+     * @param priority 优先级
+     * @param handler  true表示获得名额，使用完毕后必须调用{@link #release()}；false表示被拒绝
+     */
+    public void acquire(Context context, ProxyRoute.Priority priority, Handler<Boolean> handler) {
+        // 有请求在排队时不插队
+        if (queued.get() == 0 && tryIncrement()) {
+            handler.handle(true);
+            return;
+        }
+        int index = priority == null ? ProxyRoute.Priority.NORMAL.ordinal() : priority.ordinal();
+        if (maxQueueSize <= 0 || queueTimeout <= 0 || (queued.get() >= maxQueueSize && !shedLowerThan(index))) {
+            rejected.increment();
+            handler.handle(false);
+            return;
+        }
+        Waiter waiter = new Waiter(context, handler);
+        queued.incrementAndGet();
+        queues[index].offer(waiter);
+        waiter.timerId = context.owner().setTimer(queueTimeout, id -> {
+            if (waiter.complete()) {
+                queues[index].remove(waiter);
+                queued.decrementAndGet();
+                rejected.increment();
+                handler.handle(false);
+            }
+        });
+        // 入队期间可能恰好有名额释放
+        drain();
+    }
+
+    /**
+     * 名额充足时立即获得一个名额，不排队。用于对冲等可有可无的请求，上游已经饱和时直接放弃
+     *
+     * @return true表示获得名额，使用完毕后必须调用{@link #release()}
+     */
+    public boolean tryAcquire() {
+        return queued.get() == 0 && tryIncrement();
+    }
+
+    /**
+     * 归还名额，与获得名额成对出现
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * 记录一次上游请求的RTT并调整并发上限
+     *
+     * @param rttNanos 从发起请求到收到响应头的耗时，单位纳秒
+     * @param dropped  true表示上游失败，即连接失败或响应5xx
+     */
+    public void sample(long rttNanos, boolean dropped) {
+        synchronized (this) {
+            double estimated = estimatedLimit;
+            if (dropped) {
+                estimated = estimated * BACKOFF_RATIO;
+            } else if (rttNanos > 0) {
+                longRtt = longRtt == 0 ? rttNanos : longRtt + (rttNanos - longRtt) / LONG_WINDOW;
+                // 长期RTT远高于本次RTT，说明之前的排队已经消退，加速回落
+                if (longRtt > rttNanos * 2) {
+                    longRtt = longRtt * 95 / 100;
+                }
+                // 并发量不足以压满上限时，RTT无法反映上游的容量
+                if (inFlight.get() < estimated / 2) {
+                    return;
+                }
+                double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / rttNanos));
+                double newLimit = estimated * gradient + Math.sqrt(estimated);
+                estimated = estimated * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            }
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimated));
+            limit = (int) estimatedLimit;
+        }
+        drain();
+    }
+
+    private boolean tryIncrement() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 有空闲名额时，按优先级唤醒等待者
+     */
+    private void drain() {
+        while (queued.get() > 0 && tryIncrement()) {
+            Waiter waiter = poll(0, queues.length);
+            if (waiter == null) {
+                // 等待者已计数但尚未入队，由入队的线程再次唤醒
+                inFlight.decrementAndGet();
+                return;
+            }
+            queued.decrementAndGet();
+            waiter.context.owner().cancelTimer(waiter.timerId);
+            waiter.context.runOnContext(v -> waiter.handler.handle(true));
+        }
+    }
+
+    /**
+     * 挤掉一个优先级低于指定优先级的等待者
+     *
+     * @param index 新请求的优先级
+     * @return true表示已腾出位置
+     */
+    private boolean shedLowerThan(int index) {
+        Waiter waiter = poll(index + 1, queues.length);
+        if (waiter == null) {
+            return false;
+        }
+        queued.decrementAndGet();
+        rejected.increment();
+        waiter.context.owner().cancelTimer(waiter.timerId);
+        waiter.context.runOnContext(v -> waiter.handler.handle(false));
+        return true;
+    }
+
+    /**
+     * 按优先级从高到低取出一个仍在等待的请求。shedding时从最低优先级开始
+     */
+    private Waiter poll(int from, int to) {
+        boolean shedding = from > 0;
+        for (int i = 0; i < to - from; i++) {
+            ConcurrentLinkedQueue<Waiter> queue = queues[shedding ? to - 1 - i : from + i];
+            Waiter waiter;
+            while ((waiter = queue.poll()) != null) {
+                if (waiter.complete()) {
+                    return waiter;
+                }
+            }
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimiter{name=" + name + ", limit=" + getLimit() + ", inFlight=" + getInFlight()
+                + ", queued=" + getQueued() + ", rejected=" + getRejected() + "}";
+    }
+
+    private static final class Waiter {
+        private final Context context;
+        private final Handler<Boolean> handler;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private volatile long timerId = -1;
+
+        private Waiter(Context context, Handler<Boolean> handler) {
+            this.context = context;
+            this.handler = handler;
+        }
+
+        /**
+         * 唤醒、拒绝与超时三者只有一个能够成功
+         */
+        private boolean complete() {
+            return done.compareAndSet(false, true);
+        }
+    }
+}
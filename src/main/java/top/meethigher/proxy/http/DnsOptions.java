@@ -0,0 +1,141 @@
+package top.meethigher.proxy.http;
+
+import top.meethigher.proxy.NetAddress;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上游DNS缓存配置，参考{@link DnsResolver}
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/27 21:10
+ */
+public class DnsOptions {
+
+    /**
+     * DNS服务器，为空时使用系统配置(/etc/resolv.conf)
+     */
+    private final List<NetAddress> servers = new ArrayList<>();
+
+    /**
+     * 单次查询超时，单位毫秒
+     */
+    private long queryTimeout = 2000;
+
+    /**
+     * 记录TTL的下限，单位秒
+     */
+    private long minTtl = 1;
+
+    /**
+     * 记录TTL的上限，单位秒
+     */
+    private long maxTtl = 300;
+
+    /**
+     * 经过TTL的该比例后在后台刷新，使仍在使用的记录在过期之前就已更新
+     */
+    private double refreshFactor = 0.8;
+
+    /**
+     * 记录过期后仍可使用的时长，单位秒。DNS服务器不可用时继续使用过期记录，超出该时长后解析失败
+     */
+    private long staleTtl = 3600;
+
+    /**
+     * 是否同时查询AAAA记录
+     */
+    private boolean ipv6 = true;
+
+    /**
+     * 连接失败的地址暂停使用的时长，单位毫秒
+     */
+    private long failedAddressTimeout = 30000;
+
+    /**
+     * 单次请求最多尝试连接的地址数量
+     */
+    private int maxConnectAttempts = 3;
+
+    public List<NetAddress> getServers() {
+        return servers;
+    }
+
+    public DnsOptions addServer(String host, int port) {
+        this.servers.add(new NetAddress(host, port));
+        return this;
+    }
+
+    public long getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    public DnsOptions setQueryTimeout(long queryTimeout) {
+        this.queryTimeout = queryTimeout;
+        return this;
+    }
+
+    public long getMinTtl() {
+        return minTtl;
+    }
+
+    public DnsOptions setMinTtl(long minTtl) {
+        this.minTtl = minTtl;
+        return this;
+    }
+
+    public long getMaxTtl() {
+        return maxTtl;
+    }
+
+    public DnsOptions setMaxTtl(long maxTtl) {
+        this.maxTtl = maxTtl;
+        return this;
+    }
+
+    public double getRefreshFactor() {
+        return refreshFactor;
+    }
+
+    public DnsOptions setRefreshFactor(double refreshFactor) {
+        this.refreshFactor = refreshFactor;
+        return this;
+    }
+
+    public long getStaleTtl() {
+        return staleTtl;
+    }
+
+    public DnsOptions setStaleTtl(long staleTtl) {
+        this.staleTtl = staleTtl;
+        return this;
+    }
+
+    public boolean isIpv6() {
+        return ipv6;
+    }
+
+    public DnsOptions setIpv6(boolean ipv6) {
+        this.ipv6 = ipv6;
+        return this;
+    }
+
+    public long getFailedAddressTimeout() {
+        return failedAddressTimeout;
+    }
+
+    public DnsOptions setFailedAddressTimeout(long failedAddressTimeout) {
+        this.failedAddressTimeout = failedAddressTimeout;
+        return this;
+    }
+
+    public int getMaxConnectAttempts() {
+        return maxConnectAttempts;
+    }
+
+    public DnsOptions setMaxConnectAttempts(int maxConnectAttempts) {
+        this.maxConnectAttempts = maxConnectAttempts;
+        return this;
+    }
+}
@@ -0,0 +1,352 @@
+package top.meethigher.proxy.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DnsRawRecord;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.resolver.HostsFileEntriesResolver;
+import io.netty.resolver.ResolvedAddressTypes;
+import io.netty.resolver.dns.DnsNameResolver;
+import io.netty.resolver.dns.DnsNameResolverBuilder;
+import io.netty.resolver.dns.DnsServerAddressStreamProvider;
+import io.netty.resolver.dns.DnsServerAddressStreamProviders;
+import io.netty.resolver.dns.NoopAuthoritativeDnsServerCache;
+import io.netty.resolver.dns.NoopDnsCache;
+import io.netty.resolver.dns.NoopDnsCnameCache;
+import io.netty.resolver.dns.SequentialDnsServerAddressStreamProvider;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FutureListener;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.meethigher.proxy.NetAddress;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上游主机名的DNS缓存
+ * <p>
+ * 记录按DNS响应中的TTL缓存(限制在{@link DnsOptions#getMinTtl()}与{@link DnsOptions#getMaxTtl()}之间)，
+ * 仍在使用的记录在经过TTL的{@link DnsOptions#getRefreshFactor()}后于后台刷新，请求不会等待解析。
+ * 同一主机名同时只有一个查询，并发的未命中请求共享该次查询结果。
+ * DNS服务器不可用时继续使用过期记录，直到超出{@link DnsOptions#getStaleTtl()}。
+ * <p>
+ * 每次解析在A/AAAA记录返回的所有地址间轮询，连接失败的地址通过{@link #markFailed(String, InetAddress)}
+ * 暂停使用一段时间，所有地址均失败时仍按轮询返回，避免因误判而无地址可用。
+ * <p>
+ * 查询在独立的单线程EventLoop中执行，结果回到发起解析的Vertx上下文中处理。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/27 21:10
+ */
+public class DnsResolver implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DnsResolver.class);
+
+    private final DnsOptions options;
+
+    private final EventLoopGroup group;
+
+    private final DnsNameResolver resolver;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+
+    private volatile boolean closed;
+
+    public DnsResolver(DnsOptions options) {
+        this.options = options;
+        this.group = new NioEventLoopGroup(1, new DefaultThreadFactory("dns-resolver", true));
+        DnsServerAddressStreamProvider serverProvider;
+        if (options.getServers().isEmpty()) {
+            serverProvider = DnsServerAddressStreamProviders.platformDefault();
+        } else {
+            List<InetSocketAddress> servers = new ArrayList<>();
+            for (NetAddress server : options.getServers()) {
+                servers.add(new InetSocketAddress(server.getHost(), server.getPort()));
+            }
+            serverProvider = new SequentialDnsServerAddressStreamProvider(servers);
+        }
+        // 缓存由本类负责，关闭Netty自带的缓存
+        this.resolver = new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .nameServerProvider(serverProvider)
+                .queryTimeoutMillis(options.getQueryTimeout())
+                .resolveCache(NoopDnsCache.INSTANCE)
+                .cnameCache(NoopDnsCnameCache.INSTANCE)
+                .authoritativeDnsServerCache(NoopAuthoritativeDnsServerCache.INSTANCE)
+                .build();
+    }
+
+    /**
+     * 解析主机名，按轮询返回其中一个可用地址。缓存命中时返回已完成的Future
+     *
+     * @param host 主机名
+     * @return 地址
+     */
+    public Future<InetAddress> resolve(String host) {
+        Entry entry = entries.computeIfAbsent(host, Entry::new);
+        entry.used = true;
+        long now = System.nanoTime();
+        if (entry.addresses != null && now - entry.expiresAt < 0) {
+            return Future.succeededFuture(entry.next(now));
+        }
+        Context context = Vertx.currentContext();
+        Promise<InetAddress> promise = Promise.promise();
+        refresh(entry).whenComplete((v, e) -> {
+            if (context == null) {
+                complete(promise, entry, e);
+            } else {
+                context.runOnContext(x -> complete(promise, entry, e));
+            }
+        });
+        return promise.future();
+    }
+
+    private void complete(Promise<InetAddress> promise, Entry entry, Throwable cause) {
+        long now = System.nanoTime();
+        if (entry.addresses == null || now - entry.expiresAt >= TimeUnit.SECONDS.toNanos(options.getStaleTtl())) {
+            promise.fail(cause == null ? new UnknownHostException(entry.host) : cause);
+            return;
+        }
+        if (cause != null) {
+            staleHits.increment();
+            log.debug("resolve {} failed, using stale addresses {}", entry.host, Arrays.toString(entry.addresses), cause);
+        }
+        promise.complete(entry.next(now));
+    }
+
+    /**
+     * 记录连接失败的地址，该地址在{@link DnsOptions#getFailedAddressTimeout()}内不再被选中
+     *
+     * @param host    主机名
+     * @param address 连接失败的地址
+     */
+    public void markFailed(String host, InetAddress address) {
+        Entry entry = entries.get(host);
+        if (entry != null) {
+            entry.failedUntil.put(address, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getFailedAddressTimeout()));
+            log.warn("address {} of {} failed, skipped for {} ms", address.getHostAddress(), host, options.getFailedAddressTimeout());
+        }
+    }
+
+    /**
+     * 发起查询。同一主机名同时只有一个查询
+     */
+    private CompletableFuture<Void> refresh(Entry entry) {
+        CompletableFuture<Void> future;
+        synchronized (entry) {
+            if (entry.pending != null) {
+                return entry.pending;
+            }
+            future = entry.pending = new CompletableFuture<>();
+        }
+        InetAddress hostsEntry = HostsFileEntriesResolver.DEFAULT.address(entry.host, ResolvedAddressTypes.IPV4_PREFERRED);
+        if (hostsEntry != null) {
+            finish(entry, future, Collections.singletonList(hostsEntry), options.getMaxTtl(), null);
+            return future;
+        }
+        queries.increment();
+        DnsRecordType[] types = options.isIpv6()
+                ? new DnsRecordType[]{DnsRecordType.A, DnsRecordType.AAAA}
+                : new DnsRecordType[]{DnsRecordType.A};
+        List<InetAddress> addresses = new ArrayList<>();
+        long[] ttl = {Long.MAX_VALUE};
+        Throwable[] cause = {null};
+        AtomicInteger remaining = new AtomicInteger(types.length);
+        for (DnsRecordType type : types) {
+            resolver.resolveAll(new DefaultDnsQuestion(entry.host, type)).addListener((FutureListener<List<DnsRecord>>) f -> {
+                // 两个查询的回调都在resolver的EventLoop中执行，无需同步
+                if (f.isSuccess()) {
+                    for (DnsRecord record : f.getNow()) {
+                        try {
+                            InetAddress address = decode(entry.host, record);
+                            if (address != null && !addresses.contains(address)) {
+                                addresses.add(address);
+                                ttl[0] = Math.min(ttl[0], record.timeToLive());
+                            }
+                        } finally {
+                            ReferenceCountUtil.release(record);
+                        }
+                    }
+                } else if (cause[0] == null) {
+                    cause[0] = f.cause();
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    finish(entry, future, addresses, ttl[0], cause[0]);
+                }
+            });
+        }
+        return future;
+    }
+
+    private void finish(Entry entry, CompletableFuture<Void> future, List<InetAddress> addresses, long ttl, Throwable cause) {
+        long refreshDelay;
+        if (addresses.isEmpty()) {
+            failures.increment();
+            // 仍有可用的旧记录时，按最小TTL重试，直到旧记录也不可用
+            refreshDelay = TimeUnit.SECONDS.toMillis(options.getMinTtl());
+        } else {
+            long seconds = Math.max(options.getMinTtl(), Math.min(options.getMaxTtl(), ttl));
+            long now = System.nanoTime();
+            entry.addresses = addresses.toArray(new InetAddress[0]);
+            entry.expiresAt = now + TimeUnit.SECONDS.toNanos(seconds);
+            refreshDelay = (long) (TimeUnit.SECONDS.toMillis(seconds) * options.getRefreshFactor());
+            log.debug("resolved {} to {}, ttl {} s", entry.host, addresses, seconds);
+        }
+        synchronized (entry) {
+            entry.pending = null;
+        }
+        if (addresses.isEmpty()) {
+            future.completeExceptionally(cause == null ? new UnknownHostException("no A/AAAA records for " + entry.host) : cause);
+        } else {
+            future.complete(null);
+        }
+        if (!closed && entry.addresses != null) {
+            group.schedule(() -> backgroundRefresh(entry), Math.max(1, refreshDelay), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 上次刷新之后仍被使用过的记录在过期之前刷新，不再使用的记录不再刷新，等待过期
+     */
+    private void backgroundRefresh(Entry entry) {
+        if (closed || !entry.used) {
+            return;
+        }
+        entry.used = false;
+        refresh(entry);
+    }
+
+    private static InetAddress decode(String host, DnsRecord record) {
+        if (!(record instanceof DnsRawRecord) || (record.type() != DnsRecordType.A && record.type() != DnsRecordType.AAAA)) {
+            return null;
+        }
+        ByteBuf content = ((DnsRawRecord) record).content();
+        int length = content.readableBytes();
+        if (length != 4 && length != 16) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        content.getBytes(content.readerIndex(), bytes);
+        try {
+            return InetAddress.getByAddress(host, bytes);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    public DnsOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return 已缓存的主机名数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return 向DNS服务器发起的查询次数
+     */
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    /**
+     * @return 未得到任何地址的查询次数
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return 查询失败时使用过期记录的次数
+     */
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        resolver.close();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 单个主机名的缓存记录
+     */
+    private static final class Entry {
+
+        private final String host;
+
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        /**
+         * 连接失败的地址及其恢复使用的时间(nanoTime)
+         */
+        private final Map<InetAddress, Long> failedUntil = new ConcurrentHashMap<>();
+
+        /**
+         * 尚未解析成功时为null
+         */
+        private volatile InetAddress[] addresses;
+
+        private volatile long expiresAt;
+
+        /**
+         * 上次刷新之后是否被使用过
+         */
+        private volatile boolean used;
+
+        /**
+         * 进行中的查询，由Entry自身加锁保护
+         */
+        private CompletableFuture<Void> pending;
+
+        private Entry(String host) {
+            this.host = host;
+        }
+
+        /**
+         * 轮询选择一个未被标记为失败的地址，均失败时仍按轮询返回
+         */
+        private InetAddress next(long now) {
+            InetAddress[] current = addresses;
+            int start = cursor.getAndIncrement() & Integer.MAX_VALUE;
+            for (int i = 0; i < current.length; i++) {
+                InetAddress address = current[(start + i) % current.length];
+                Long until = failedUntil.get(address);
+                if (until == null) {
+                    return address;
+                }
+                if (now - until >= 0) {
+                    failedUntil.remove(address);
+                    return address;
+                }
+            }
+            return current[start % current.length];
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package top.meethigher.proxy.http;
+
+import io.netty.util.AsciiString;
+import io.vertx.core.MultiMap;
+
+import java.util.Map;
+
+/**
+ * 单次遍历的请求头/响应头转发工具
+ * <p>
+ * 直接遍历源{@link MultiMap}的键值对并写入目标{@link MultiMap}，保留同名的多值标头(如多个Set-Cookie)。
+ * 逐跳标头与跨域标头的判断基于预先构造的{@link AsciiString}常量进行忽略大小写比较，过程中不会产生小写字符串。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/03 10:24
+ */
+public final class HeaderForwarder {
+
+    /**
+     * 不应该被复制的逐跳标头
+     */
+    static final AsciiString[] HOP_BY_HOP_HEADERS = {
+            AsciiString.cached("connection"),
+            AsciiString.cached("keep-alive"),
+            AsciiString.cached("proxy-authenticate"),
+            AsciiString.cached("proxy-authorization"),
+            AsciiString.cached("te"),
+            AsciiString.cached("trailers"),
+            AsciiString.cached("transfer-encoding"),
+            AsciiString.cached("upgrade")
+    };
+
+    /**
+     * 跨域相关的响应头
+     */
+    static final AsciiString[] CORS_HEADERS = {
+            AsciiString.cached("access-control-allow-origin"),
+            AsciiString.cached("access-control-allow-methods"),
+            AsciiString.cached("access-control-allow-headers"),
+            AsciiString.cached("access-control-allow-credentials"),
+            AsciiString.cached("access-control-expose-headers"),
+            AsciiString.cached("access-control-max-age"),
+            AsciiString.cached("access-control-request-method"),
+            AsciiString.cached("access-control-request-headers")
+    };
+
+    static final AsciiString HOST = AsciiString.cached("host");
+
+    static final AsciiString SET_COOKIE = AsciiString.cached("set-cookie");
+
+    static final AsciiString SET_COOKIE2 = AsciiString.cached("set-cookie2");
+
+    private HeaderForwarder() {
+    }
+
+    private static boolean matchesAny(AsciiString[] candidates, CharSequence name) {
+        for (AsciiString candidate : candidates) {
+            if (candidate.contentEqualsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 忽略大小写判断是否是逐跳标头，不会产生额外的对象分配
+     *
+     * @param name 标头名称
+     * @return 是否是逐跳标头
+     */
+    public static boolean isHopByHopHeader(CharSequence name) {
+        return name != null && matchesAny(HOP_BY_HOP_HEADERS, name);
+    }
+
+    /**
+     * 判断是否是HTTP/2的伪标头，如:authority、:path，不能转发给上游
+     *
+     * @param name 标头名称
+     * @return 是否是伪标头
+     */
+    public static boolean isPseudoHeader(CharSequence name) {
+        return name != null && name.length() > 0 && name.charAt(0) == ':';
+    }
+
+    /**
+     * 忽略大小写判断是否是跨域相关的标头
+     *
+     * @param name 标头名称
+     * @return 是否是跨域标头
+     */
+    public static boolean isCorsHeader(CharSequence name) {
+        return name != null && matchesAny(CORS_HEADERS, name);
+    }
+
+    /**
+     * 复制请求头。复制的过程中忽略逐跳标头、Host以及HTTP/2的伪标头
+     *
+     * @param src 真实请求的请求头
+     * @param dst 代理请求的请求头
+     */
+    public static void copyRequestHeaders(MultiMap src, MultiMap dst) {
+        for (Map.Entry<String, String> header : src) {
+            String name = header.getKey();
+            if (isHopByHopHeader(name) || HOST.contentEqualsIgnoreCase(name) || isPseudoHeader(name)) {
+                continue;
+            }
+            dst.add(name, header.getValue());
+        }
+    }
+
+    /**
+     * 复制响应头。复制的过程中忽略逐跳标头
+     *
+     * @param src             代理响应的响应头
+     * @param dst             真实响应的响应头
+     * @param preserveCookies 是否保留Set-Cookie与Set-Cookie2
+     * @param stripCors       是否删除跨域相关的响应头
+     */
+    public static void copyResponseHeaders(MultiMap src, MultiMap dst, boolean preserveCookies, boolean stripCors) {
+        for (Map.Entry<String, String> header : src) {
+            String name = header.getKey();
+            if (isHopByHopHeader(name)) {
+                continue;
+            }
+            if (!preserveCookies && (SET_COOKIE.contentEqualsIgnoreCase(name) || SET_COOKIE2.contentEqualsIgnoreCase(name))) {
+                continue;
+            }
+            if (stripCors && isCorsHeader(name)) {
+                continue;
+            }
+            dst.add(name, header.getValue());
+        }
+    }
+}
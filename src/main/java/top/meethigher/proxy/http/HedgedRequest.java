@@ -0,0 +1,287 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对冲请求
+ * <p>
+ * 首次请求在对冲延迟内未收到响应头时，向另一个上游再发一次相同的请求，先收到响应头的一方胜出，其余请求被重置。
+ * 所有请求均失败时，按重试策略立即换一个上游重试。对冲与重试都需要从重试预算中取出令牌，
+ * 并且需要立即获得目标源站的并发名额，源站已经饱和时放弃对冲或重试，不会绕过其并发限制。
+ * 每次尝试各自持有上游节点的计数与并发名额，失败或落败时立即归还。
+ * <p>
+ * 只对冲不带请求体的幂等请求，每次尝试各自发出请求头即可，无需缓存请求体。所有回调都在当前请求所在的EventLoop执行，无需同步。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/19 21:30
+ */
+class HedgedRequest {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgedRequest.class);
+
+    private final ReverseHttpProxy proxy;
+
+    private final RoutingContext ctx;
+
+    private final CompiledRoute route;
+
+    private final HttpClient httpClient;
+
+    private final RetryPolicy policy;
+
+    private final List<Attempt> attempts = new ArrayList<>(2);
+
+    private final long start = System.nanoTime();
+
+    private long timerId = -1;
+
+    /**
+     * 尚未结束的尝试次数
+     */
+    private int pending;
+
+    private int retries;
+
+    private boolean done;
+
+    HedgedRequest(ReverseHttpProxy proxy, RoutingContext ctx, CompiledRoute route, HttpClient httpClient, RetryPolicy policy) {
+        this.proxy = proxy;
+        this.ctx = ctx;
+        this.route = route;
+        this.httpClient = httpClient;
+        this.policy = policy;
+    }
+
+    void start(String proxyUrl) {
+        // 请求没有请求体，不会向上游转发请求体
+        ctx.request().resume();
+        // 客户端提前断开时，取消对冲计时并重置所有尝试
+        ctx.addEndHandler(ar -> complete(null));
+        RequestTimeouts timeouts = ctx.get(ReverseHttpProxy.INTERNAL_TIMEOUTS);
+        if (timeouts != null) {
+            timeouts.awaitFirstByte();
+        }
+        // 首次尝试接管发起请求前获得的并发名额，落败或失败时随尝试一并归还
+        launch(proxy.getUpstream(ctx), proxyUrl, ctx.remove(ReverseHttpProxy.INTERNAL_LIMIT_PERMIT));
+        timerId = ctx.vertx().setTimer(policy.getHedgeDelay(), id -> {
+            timerId = -1;
+            hedge();
+        });
+    }
+
+    private void hedge() {
+        if (done || pending == 0 || !(boolean) proxy.getContextData(ctx, ReverseHttpProxy.INTERNAL_SERVER_CONNECTION_OPEN)) {
+            return;
+        }
+        HttpUpstream alternate = proxy.alternateUpstream(route, proxy.getUpstream(ctx));
+        if (alternate == null) {
+            return;
+        }
+        // 对冲恰好发生在源站变慢时，名额不足说明源站已饱和，不再追加请求
+        ConcurrencyLimiter limiter = alternate.getConcurrencyLimiter();
+        if (limiter != null && !limiter.tryAcquire()) {
+            return;
+        }
+        if (!policy.getBudget().tryWithdraw()) {
+            if (limiter != null) {
+                limiter.release();
+            }
+            return;
+        }
+        log.debug("{} {} no response after {} ms, hedging to {}", ctx.request().method().name(),
+                proxy.getContextData(ctx, ReverseHttpProxy.INTERNAL_PROXY_URL), policy.getHedgeDelay(), alternate.getTargetUrl());
+        launch(alternate, proxyUrlOf(alternate), limiter);
+    }
+
+    private String proxyUrlOf(HttpUpstream upstream) {
+        HttpUpstream current = proxy.getUpstream(ctx);
+        ctx.put(ReverseHttpProxy.INTERNAL_UPSTREAM, upstream);
+        try {
+            return proxy.getProxyUrl(ctx, ctx.request(), ctx.response());
+        } finally {
+            ctx.put(ReverseHttpProxy.INTERNAL_UPSTREAM, current);
+        }
+    }
+
+    /**
+     * 发起一次尝试
+     *
+     * @param upstream 上游节点
+     * @param proxyUrl 代理URL
+     * @param limiter  已获得名额的并发限制，未启用时为null
+     */
+    private void launch(HttpUpstream upstream, String proxyUrl, ConcurrencyLimiter limiter) {
+        Attempt attempt = new Attempt(upstream, proxyUrl, limiter);
+        attempts.add(attempt);
+        pending++;
+        // 记录上游节点的进行中请求数，尝试失败或请求结束时释放
+        upstream.acquire();
+        ctx.addEndHandler(ar -> attempt.release());
+        RequestOptions requestOptions = new RequestOptions();
+        requestOptions.setAbsoluteURI(proxyUrl);
+        requestOptions.setMethod(ctx.request().method());
+        requestOptions.setFollowRedirects(route.isFollowRedirects());
+        if (route.getTimeout() != null && route.getTimeout().getConnectTimeout() > 0) {
+            requestOptions.setConnectTimeout(route.getTimeout().getConnectTimeout());
+        }
+        HttpClient client = upstream.getHttpClient() == null ? httpClient : upstream.getHttpClient();
+        proxy.requestUpstream(client, requestOptions).onComplete(ar -> {
+            if (ar.failed()) {
+                failed(attempt, ar.cause());
+                return;
+            }
+            attempt.request = ar.result();
+            if (done) {
+                attempt.request.reset();
+                return;
+            }
+            proxy.prepareUpstreamRequest(ctx, ctx.request(), attempt.request);
+            attempt.request.send().onComplete(ar1 -> {
+                if (ar1.succeeded()) {
+                    succeeded(attempt, ar1.result());
+                } else {
+                    failed(attempt, ar1.cause());
+                }
+            });
+        });
+    }
+
+    private void succeeded(Attempt attempt, HttpClientResponse response) {
+        if (done) {
+            attempt.request.reset();
+            return;
+        }
+        pending--;
+        complete(attempt);
+        // 记录客户端观测到的耗时，对冲胜出时同样从首次请求开始计时，避免对冲延迟越算越短
+        policy.recordLatency((System.nanoTime() - start) / 1_000_000);
+        switchTo(attempt);
+        proxy.trackClientConnection(ctx, attempt.request);
+        proxy.sendRequestHandler(ctx, ctx.request(), ctx.response(), attempt.proxyUrl).handle(Future.succeededFuture(response));
+    }
+
+    private void failed(Attempt attempt, Throwable cause) {
+        if (done) {
+            return;
+        }
+        // 失败的尝试不再占用上游节点与并发名额，重试或对冲的另一方不必与之争用
+        attempt.release();
+        pending--;
+        if (pending > 0) {
+            // 另一次尝试仍在进行，只记录失败
+            attempt.upstream.recordFailure();
+            return;
+        }
+        if (retry(attempt)) {
+            log.warn("{} {} request error, retrying", ctx.request().method().name(), attempt.proxyUrl, cause);
+            return;
+        }
+        complete(null);
+        // 由最后一次失败的尝试决定响应，其上游的失败记录在sendRequestHandler中完成
+        switchTo(attempt);
+        proxy.sendRequestHandler(ctx, ctx.request(), ctx.response(), attempt.proxyUrl).handle(Future.failedFuture(cause));
+    }
+
+    /**
+     * 将决定响应的尝试记为当前请求的上游节点
+     *
+     * @param attempt 尝试
+     */
+    private void switchTo(Attempt attempt) {
+        if (attempt.upstream != proxy.getUpstream(ctx)) {
+            // 并发限制的RTT样本只对应首次请求的源站
+            ctx.remove(ReverseHttpProxy.INTERNAL_LIMIT_START);
+            ctx.put(ReverseHttpProxy.INTERNAL_UPSTREAM, attempt.upstream);
+            proxy.setContextData(ctx, ReverseHttpProxy.INTERNAL_PROXY_URL, attempt.proxyUrl);
+        }
+    }
+
+    private boolean retry(Attempt attempt) {
+        if (ctx.response().ended() || !(boolean) proxy.getContextData(ctx, ReverseHttpProxy.INTERNAL_SERVER_CONNECTION_OPEN)
+                || !policy.canRetry(ctx.request(), retries)) {
+            return false;
+        }
+        HttpUpstream alternate = proxy.alternateUpstream(route, attempt.upstream);
+        HttpUpstream upstream = alternate == null ? attempt.upstream : alternate;
+        // 重试同样受目标源站的并发限制，名额不足时按失败处理
+        ConcurrencyLimiter limiter = upstream.getConcurrencyLimiter();
+        if (limiter != null && !limiter.tryAcquire()) {
+            return false;
+        }
+        if (!policy.getBudget().tryWithdraw()) {
+            if (limiter != null) {
+                limiter.release();
+            }
+            return false;
+        }
+        retries++;
+        attempt.upstream.recordFailure();
+        if (timerId != -1) {
+            ctx.vertx().cancelTimer(timerId);
+            timerId = -1;
+        }
+        launch(upstream, proxyUrlOf(upstream), limiter);
+        return true;
+    }
+
+    /**
+     * 结束对冲，取消计时并重置胜出者以外的请求
+     *
+     * @param winner 胜出的尝试，没有胜出者时为null
+     */
+    private void complete(Attempt winner) {
+        if (done) {
+            return;
+        }
+        done = true;
+        if (timerId != -1) {
+            ctx.vertx().cancelTimer(timerId);
+            timerId = -1;
+        }
+        for (Attempt attempt : attempts) {
+            if (attempt != winner) {
+                if (attempt.request != null) {
+                    attempt.request.reset();
+                }
+                attempt.release();
+            }
+        }
+    }
+
+    private static final class Attempt {
+        private final HttpUpstream upstream;
+        private final String proxyUrl;
+        private final ConcurrencyLimiter limiter;
+        private HttpClientRequest request;
+        private boolean released;
+
+        private Attempt(HttpUpstream upstream, String proxyUrl, ConcurrencyLimiter limiter) {
+            this.upstream = upstream;
+            this.proxyUrl = proxyUrl;
+            this.limiter = limiter;
+        }
+
+        /**
+         * 归还上游节点的计数与并发名额，只会执行一次
+         */
+        private void release() {
+            if (!released) {
+                released = true;
+                upstream.release();
+                if (limiter != null) {
+                    limiter.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.net.KeyCertOptions;
+import io.vertx.core.net.PemKeyCertOptions;
+
+/**
+ * 代理服务端的HTTP/2配置
+ * <p>
+ * 配置证书后启用TLS，并通过ALPN与客户端协商h2或http/1.1；未配置证书时，明文连接可通过h2c Upgrade或prior-knowledge直接使用HTTP/2。
+ * JDK8需要8u252及以上版本才内置ALPN。
+ * <p>
+ * 每个流都有独立的流控窗口，代理以pipe转发请求体与响应体，流控窗口耗尽时暂停读取对端，窗口更新后恢复，
+ * 单个慢流不会阻塞同一连接上的其他流。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/24 19:40
+ */
+public class Http2Options {
+
+    /**
+     * 是否允许明文HTTP/2，包括h2c Upgrade与prior-knowledge
+     */
+    private boolean h2c = true;
+
+    /**
+     * TLS证书，为null时不启用TLS
+     */
+    private KeyCertOptions keyCertOptions;
+
+    /**
+     * 单个连接上允许客户端同时打开的流的数量
+     */
+    private long maxConcurrentStreams = 100;
+
+    /**
+     * 单个流的初始接收窗口，单位字节
+     */
+    private int initialWindowSize = Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE;
+
+    /**
+     * 整个连接的接收窗口，单位字节，-1表示使用协议默认值
+     */
+    private int connectionWindowSize = -1;
+
+    public boolean isH2c() {
+        return h2c;
+    }
+
+    public Http2Options setH2c(boolean h2c) {
+        this.h2c = h2c;
+        return this;
+    }
+
+    public KeyCertOptions getKeyCertOptions() {
+        return keyCertOptions;
+    }
+
+    public Http2Options setKeyCertOptions(KeyCertOptions keyCertOptions) {
+        this.keyCertOptions = keyCertOptions;
+        return this;
+    }
+
+    /**
+     * 使用PEM格式的证书与私钥启用TLS
+     *
+     * @param certPath 证书路径
+     * @param keyPath  私钥路径
+     * @return 实例本身
+     */
+    public Http2Options setPemKeyCert(String certPath, String keyPath) {
+        return setKeyCertOptions(new PemKeyCertOptions().setCertPath(certPath).setKeyPath(keyPath));
+    }
+
+    public long getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    public Http2Options setMaxConcurrentStreams(long maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        return this;
+    }
+
+    public int getInitialWindowSize() {
+        return initialWindowSize;
+    }
+
+    public Http2Options setInitialWindowSize(int initialWindowSize) {
+        this.initialWindowSize = initialWindowSize;
+        return this;
+    }
+
+    public int getConnectionWindowSize() {
+        return connectionWindowSize;
+    }
+
+    public Http2Options setConnectionWindowSize(int connectionWindowSize) {
+        this.connectionWindowSize = connectionWindowSize;
+        return this;
+    }
+
+    /**
+     * 将HTTP/2配置应用到服务端配置上
+     *
+     * @param options 服务端配置
+     * @return 配置本身
+     */
+    public HttpServerOptions apply(HttpServerOptions options) {
+        options.setHttp2ClearTextEnabled(h2c)
+                .setInitialSettings(new Http2Settings()
+                        .setMaxConcurrentStreams(maxConcurrentStreams)
+                        .setInitialWindowSize(initialWindowSize));
+        if (connectionWindowSize > 0) {
+            options.setHttp2ConnectionWindowSize(connectionWindowSize);
+        }
+        if (keyCertOptions != null) {
+            // ALPN默认按h2、http/1.1的顺序协商
+            options.setSsl(true)
+                    .setUseAlpn(true)
+                    .setKeyCertOptions(keyCertOptions);
+        }
+        return options;
+    }
+
+    public HttpServer createHttpServer(Vertx vertx) {
+        return vertx.createHttpServer(apply(new HttpServerOptions()));
+    }
+}
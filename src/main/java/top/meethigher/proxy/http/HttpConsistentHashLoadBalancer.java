@@ -0,0 +1,103 @@
+package top.meethigher.proxy.http;
+
+import top.meethigher.proxy.LoadBalancer;
+import top.meethigher.proxy.MaglevTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 一致性哈希策略实现，用于会话保持
+ * <p>
+ * 基于{@link MaglevTable}按键(客户端IP、Cookie或请求头)选择节点，查找耗时O(1)且不分配对象。节点列表随路由编译确定，
+ * 查找表在创建时构建，路由变化时随新的编译后路由重建。
+ * <p>
+ * 有界负载：节点的进行中请求数超过按权重折算的平均值的(1+boundedLoadFactor)倍时，沿查找表探测下一个节点，
+ * 避免热点键压垮单个节点。不可用的节点同样被跳过，其余键的映射不受影响。全部节点不可用或满载时按第一个可用节点或原始节点处理。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/28 20:15
+ */
+public class HttpConsistentHashLoadBalancer implements LoadBalancer<HttpUpstream> {
+
+    private final HttpUpstream[] nodes;
+
+    private final MaglevTable table;
+
+    private final double boundedLoadFactor;
+
+    private final long totalWeight;
+
+    private final String name = "HttpConsistentHashLoadBalancer";
+
+    private HttpConsistentHashLoadBalancer(List<HttpUpstream> nodes, double boundedLoadFactor) {
+        this.nodes = nodes.toArray(new HttpUpstream[0]);
+        this.boundedLoadFactor = boundedLoadFactor;
+        List<String> keys = new ArrayList<>();
+        int[] weights = new int[this.nodes.length];
+        long total = 0;
+        for (int i = 0; i < this.nodes.length; i++) {
+            keys.add(this.nodes[i].getTargetUrl());
+            weights[i] = this.nodes[i].getWeight();
+            total += weights[i];
+        }
+        this.totalWeight = total;
+        this.table = MaglevTable.build(keys, weights, MaglevTable.DEFAULT_SIZE);
+    }
+
+    /**
+     * 不带键时随机选择，等同于按权重随机
+     */
+    @Override
+    public HttpUpstream next() {
+        return select(ThreadLocalRandom.current().nextLong());
+    }
+
+    @Override
+    public HttpUpstream next(String key) {
+        return select(key == null ? ThreadLocalRandom.current().nextLong() : MaglevTable.hash(key));
+    }
+
+    private HttpUpstream select(long hash) {
+        if (nodes.length == 0) {
+            return null;
+        }
+        // 探测足够多的槽位，使每个节点大概率都被访问到
+        int probes = Math.min(table.size(), nodes.length * 16);
+        HttpUpstream firstAvailable = null;
+        for (int i = 0; i < probes; i++) {
+            HttpUpstream node = nodes[table.get(hash, i)];
+            if (!node.isAvailable()) {
+                continue;
+            }
+            if (firstAvailable == null) {
+                firstAvailable = node;
+            }
+            if (withinCapacity(node)) {
+                return node;
+            }
+        }
+        return firstAvailable != null ? firstAvailable : nodes[table.get(hash, 0)];
+    }
+
+    /**
+     * 计入本次请求后，节点的负载不超过按权重折算的平均负载的(1+boundedLoadFactor)倍
+     */
+    private boolean withinCapacity(HttpUpstream node) {
+        if (boundedLoadFactor <= 0 || nodes.length == 1) {
+            return true;
+        }
+        double capacity = Math.ceil((1 + boundedLoadFactor) * (node.getRouteInFlight() + 1) * node.getWeight() / totalWeight);
+        return node.getInFlight() + 1 <= capacity;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    public static HttpConsistentHashLoadBalancer create(List<HttpUpstream> nodes, double boundedLoadFactor) {
+        return new HttpConsistentHashLoadBalancer(nodes, boundedLoadFactor);
+    }
+}
@@ -0,0 +1,139 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * HTTP上游节点的主动健康检查
+ * <p>
+ * 按固定间隔向路由的每个上游节点发送GET探测请求，响应码落在预期范围内视为成功，连接失败、超时或响应码不符视为失败。
+ * 探测结果写入{@link HttpUpstream}，负载均衡在下一次选择节点时即可感知。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/14 21:30
+ */
+public class HttpHealthChecker {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpHealthChecker.class);
+
+    private final Vertx vertx;
+
+    private final HttpClient httpClient;
+
+    private final List<HttpUpstream> upstreams;
+
+    private final ProxyRoute.HealthCheck config;
+
+    private final int expectedFrom;
+
+    private final int expectedTo;
+
+    private volatile long periodicId = -1;
+
+    private volatile boolean stopped;
+
+    /**
+     * @param vertx      Vertx实例
+     * @param httpClient 上游节点未绑定独立连接池时使用的HTTP客户端
+     * @param upstreams  上游节点
+     * @param config     健康检查配置
+     */
+    public HttpHealthChecker(Vertx vertx, HttpClient httpClient, List<HttpUpstream> upstreams, ProxyRoute.HealthCheck config) {
+        this.vertx = vertx;
+        this.httpClient = httpClient;
+        this.upstreams = upstreams;
+        this.config = config;
+        int[] range = parseExpectedStatus(config.getExpectedStatus());
+        this.expectedFrom = range[0];
+        this.expectedTo = range[1];
+    }
+
+    /**
+     * 解析预期响应码，支持单个状态码(200)与闭区间(200-399)
+     *
+     * @param expectedStatus 预期响应码
+     * @return 区间的起止
+     */
+    static int[] parseExpectedStatus(String expectedStatus) {
+        String s = expectedStatus == null ? "" : expectedStatus.trim();
+        if (s.isEmpty()) {
+            return new int[]{200, 399};
+        }
+        int dash = s.indexOf('-');
+        if (dash < 0) {
+            int status = Integer.parseInt(s);
+            return new int[]{status, status};
+        }
+        return new int[]{Integer.parseInt(s.substring(0, dash).trim()), Integer.parseInt(s.substring(dash + 1).trim())};
+    }
+
+    public void start() {
+        // 探测与结果处理都固定在同一个上下文中执行，节点的探测计数无需同步
+        Context context = vertx.getOrCreateContext();
+        context.runOnContext(v -> {
+            if (stopped || periodicId >= 0) {
+                return;
+            }
+            // 启动时立即探测一次，不必等待第一个间隔
+            probeAll();
+            periodicId = vertx.setPeriodic(Math.max(1, config.getInterval()), id -> {
+                if (stopped) {
+                    vertx.cancelTimer(id);
+                    return;
+                }
+                probeAll();
+            });
+        });
+    }
+
+    public void stop() {
+        stopped = true;
+        long id = periodicId;
+        if (id >= 0) {
+            vertx.cancelTimer(id);
+            periodicId = -1;
+        }
+    }
+
+    private void probeAll() {
+        if (stopped) {
+            return;
+        }
+        for (HttpUpstream upstream : upstreams) {
+            probe(upstream);
+        }
+    }
+
+    private void probe(HttpUpstream upstream) {
+        String path = config.getPath() == null || config.getPath().isEmpty() ? "/" : config.getPath();
+        String url = upstream.getTargetBase() + (path.startsWith("/") ? path : "/" + path);
+        RequestOptions options = new RequestOptions()
+                .setMethod(HttpMethod.GET)
+                .setAbsoluteURI(url)
+                .setFollowRedirects(false)
+                .setConnectTimeout(config.getTimeout())
+                .setIdleTimeout(config.getTimeout());
+        HttpClient client = upstream.getHttpClient() == null ? httpClient : upstream.getHttpClient();
+        client.request(options)
+                .compose(req -> req.send())
+                // 读完响应体，使连接可以复用
+                .compose(resp -> resp.body().map(body -> resp.statusCode()))
+                .onComplete(ar -> {
+                    if (stopped) {
+                        return;
+                    }
+                    boolean success = ar.succeeded() && ar.result() >= expectedFrom && ar.result() <= expectedTo;
+                    if (!success) {
+                        log.debug("health check {} failed: {}", url, ar.succeeded() ? ar.result() : ar.cause().getMessage());
+                    }
+                    upstream.recordProbe(success, config.getHealthyThreshold(), config.getUnhealthyThreshold());
+                });
+    }
+}
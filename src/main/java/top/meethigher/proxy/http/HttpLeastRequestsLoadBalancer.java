@@ -0,0 +1,54 @@
+package top.meethigher.proxy.http;
+
+import top.meethigher.proxy.LoadBalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 最少进行中请求策略实现
+ * <p>
+ * 遍历所有节点，选择inFlight/weight最小的节点。遍历起点随机，使负载相同的节点被均匀选中。
+ * 进行中请求数由{@link HttpUpstream}内的原子计数维护，选择过程无锁。
+ * <p>
+ * 不可用的节点不参与选择，慢启动中的节点按当前权重计算负载。全部节点不可用时不再过滤。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/03 15:41
+ */
+public class HttpLeastRequestsLoadBalancer implements LoadBalancer<HttpUpstream> {
+
+    private final List<HttpUpstream> nodes;
+
+    private final String name = "HttpLeastRequestsLoadBalancer";
+
+    private HttpLeastRequestsLoadBalancer(List<HttpUpstream> nodes) {
+        this.nodes = nodes;
+    }
+
+    @Override
+    public HttpUpstream next() {
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+        int size = nodes.size();
+        int start = size == 1 ? 0 : ThreadLocalRandom.current().nextInt(size);
+        HttpUpstream best = null;
+        for (int i = 0; i < size; i++) {
+            HttpUpstream node = nodes.get((start + i) % size);
+            if (node.isAvailable() && (best == null || node.lessLoadedThan(best))) {
+                best = node;
+            }
+        }
+        return best != null ? best : nodes.get(start);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    public static HttpLeastRequestsLoadBalancer create(List<HttpUpstream> nodes) {
+        return new HttpLeastRequestsLoadBalancer(nodes);
+    }
+}
@@ -0,0 +1,79 @@
+package top.meethigher.proxy.http;
+
+import top.meethigher.proxy.LoadBalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 随机二选一(Power of Two Choices)策略实现
+ * <p>
+ * 随机挑选两个不同的节点，选择inFlight/weight较小的一个。相比遍历全部节点，开销与节点数量无关。
+ * <p>
+ * 两个节点中只有一个可用时直接选择可用者；都不可用时重新挑选，多次挑选仍失败则遍历查找可用节点。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/03 15:52
+ */
+public class HttpPowerOfTwoChoicesLoadBalancer implements LoadBalancer<HttpUpstream> {
+
+    /**
+     * 随机挑选到两个不可用节点时的最大重试次数
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final List<HttpUpstream> nodes;
+
+    private final String name = "HttpPowerOfTwoChoicesLoadBalancer";
+
+    private HttpPowerOfTwoChoicesLoadBalancer(List<HttpUpstream> nodes) {
+        this.nodes = nodes;
+    }
+
+    @Override
+    public HttpUpstream next() {
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+        int size = nodes.size();
+        if (size == 1) {
+            return nodes.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        HttpUpstream a = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int first = random.nextInt(size);
+            // 从剩余的size-1个节点中随机挑选，保证两次选中的节点不同
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            a = nodes.get(first);
+            HttpUpstream b = nodes.get(second);
+            boolean aAvailable = a.isAvailable();
+            boolean bAvailable = b.isAvailable();
+            if (aAvailable && bAvailable) {
+                return b.lessLoadedThan(a) ? b : a;
+            }
+            if (aAvailable || bAvailable) {
+                return aAvailable ? a : b;
+            }
+        }
+        for (HttpUpstream node : nodes) {
+            if (node.isAvailable()) {
+                return node;
+            }
+        }
+        // 全部节点不可用时不再过滤
+        return a;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    public static HttpPowerOfTwoChoicesLoadBalancer create(List<HttpUpstream> nodes) {
+        return new HttpPowerOfTwoChoicesLoadBalancer(nodes);
+    }
+}
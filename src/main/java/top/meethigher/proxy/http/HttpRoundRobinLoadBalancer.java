@@ -0,0 +1,58 @@
+package top.meethigher.proxy.http;
+
+import top.meethigher.proxy.LoadBalancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 轮询策略实现
+ * <p>
+ * 跳过不可用的节点，慢启动中的节点按恢复进度放行。全部节点不可用时不再过滤，仍按顺序轮询
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/03 15:20
+ */
+public class HttpRoundRobinLoadBalancer implements LoadBalancer<HttpUpstream> {
+
+    private final List<HttpUpstream> nodes;
+
+    private final AtomicInteger idx = new AtomicInteger(0);
+
+    private final String name = "HttpRoundRobinLoadBalancer";
+
+    private HttpRoundRobinLoadBalancer(List<HttpUpstream> nodes) {
+        this.nodes = nodes;
+    }
+
+    @Override
+    public HttpUpstream next() {
+        if (nodes == null || nodes.isEmpty()) {
+            return null;
+        }
+        int size = nodes.size();
+        HttpUpstream fallback = null;
+        for (int i = 0; i < size; i++) {
+            HttpUpstream node = nodes.get(idx.getAndUpdate(v -> (v + 1) % size));
+            if (!node.isAvailable()) {
+                continue;
+            }
+            if (node.admit()) {
+                return node;
+            }
+            if (fallback == null) {
+                fallback = node;
+            }
+        }
+        return fallback != null ? fallback : nodes.get(idx.getAndUpdate(v -> (v + 1) % size));
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    public static HttpRoundRobinLoadBalancer create(List<HttpUpstream> nodes) {
+        return new HttpRoundRobinLoadBalancer(nodes);
+    }
+}
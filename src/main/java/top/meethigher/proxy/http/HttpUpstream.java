@@ -0,0 +1,334 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.http.HttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP路由的上游节点
+ * <p>
+ * 除目标地址与权重外，还维护一个无锁的进行中请求计数，供最少请求、二选一等负载均衡策略使用。
+ * <p>
+ * 健康状态同样以volatile字段维护：主动探测摘除、被动驱逐以及恢复后的慢启动。负载均衡选择节点时直接读取，
+ * 状态变化对后续请求立即可见，请求路径上无需加锁。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/03 15:02
+ */
+public class HttpUpstream {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpUpstream.class);
+
+    private final String targetUrl;
+
+    /**
+     * 去掉尾部/后的目标地址
+     */
+    private final String targetBase;
+
+    private final int weight;
+
+    /**
+     * 进行中的请求数
+     */
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+
+    /**
+     * 同一路由所有节点的进行中请求数之和，由路由的各节点共享。为null时只统计自身
+     */
+    private AtomicInteger routeInFlight;
+
+    /**
+     * 该节点专属的连接池。为null时使用代理的共享HttpClient。
+     * 代理绑定路由时设置一次，之后在各事件循环线程中读取
+     */
+    private volatile HttpClient httpClient;
+
+    /**
+     * 该节点源站的自适应并发限制。为null时不限制。
+     * 代理绑定路由时设置一次，之后在各事件循环线程中读取
+     */
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * 被动健康检查配置，为null时不驱逐
+     */
+    private volatile ProxyRoute.OutlierDetection outlierDetection;
+
+    /**
+     * 主动探测结果，false表示已被主动健康检查摘除
+     */
+    private volatile boolean healthy = true;
+
+    /**
+     * 被动驱逐的到期时间，到期后自动恢复
+     */
+    private volatile long ejectedUntil;
+
+    /**
+     * 慢启动的开始时间，0表示未处于慢启动
+     */
+    private volatile long recoveredAt;
+
+    /**
+     * 已驱逐次数，决定下一次驱逐时长
+     */
+    private volatile int ejections;
+
+    /**
+     * 真实请求连续失败的次数
+     */
+    private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+
+    /**
+     * 主动探测连续成功、失败的次数。只在健康检查所在的上下文中修改
+     */
+    private int probeSuccesses;
+
+    private int probeFailures;
+
+    public HttpUpstream(String targetUrl, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be greater than 0");
+        }
+        this.targetUrl = targetUrl;
+        this.targetBase = targetUrl.endsWith("/") ? targetUrl.substring(0, targetUrl.length() - 1) : targetUrl;
+        this.weight = weight;
+    }
+
+    public String getTargetUrl() {
+        return targetUrl;
+    }
+
+    public String getTargetBase() {
+        return targetBase;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public HttpUpstream setHttpClient(HttpClient httpClient) {
+        this.httpClient = httpClient;
+        return this;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    public HttpUpstream setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        return this;
+    }
+
+    public HttpUpstream setOutlierDetection(ProxyRoute.OutlierDetection outlierDetection) {
+        this.outlierDetection = outlierDetection;
+        return this;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    public int getEjections() {
+        return ejections;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getRouteInFlight() {
+        return routeInFlight == null ? inFlight.get() : routeInFlight.get();
+    }
+
+    public HttpUpstream setRouteInFlight(AtomicInteger routeInFlight) {
+        this.routeInFlight = routeInFlight;
+        return this;
+    }
+
+    /**
+     * 请求发往该节点时调用
+     */
+    public void acquire() {
+        inFlight.incrementAndGet();
+        if (routeInFlight != null) {
+            routeInFlight.incrementAndGet();
+        }
+    }
+
+    /**
+     * 请求结束时调用，与{@link #acquire()}成对出现
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        if (routeInFlight != null) {
+            routeInFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 按权重比较两个节点的负载，即比较inFlight/weight，使用乘法避免浮点运算
+     *
+     * @param other 另一个节点
+     * @return true表示当前节点负载更低
+     */
+    public boolean lessLoadedThan(HttpUpstream other) {
+        return (long) getInFlight() * other.scaledWeight() < (long) other.getInFlight() * scaledWeight();
+    }
+
+    /**
+     * 是否可以接收请求，即未被主动健康检查摘除，也不在被动驱逐期内
+     *
+     * @return true表示可用
+     */
+    public boolean isAvailable() {
+        if (!healthy) {
+            return false;
+        }
+        long until = ejectedUntil;
+        return until == 0 || until <= System.currentTimeMillis();
+    }
+
+    /**
+     * 慢启动期间按已恢复时长占比放行请求，用于轮询类策略逐步提升流量
+     *
+     * @return true表示本次可以选中该节点
+     */
+    public boolean admit() {
+        long start = recoveredAt;
+        if (start == 0) {
+            return true;
+        }
+        long window = slowStartWindow();
+        long elapsed = System.currentTimeMillis() - start;
+        if (elapsed >= window) {
+            recoveredAt = 0;
+            return true;
+        }
+        return elapsed > 0 && ThreadLocalRandom.current().nextLong(window) < elapsed;
+    }
+
+    /**
+     * 慢启动期间的权重，按千分之一权重计。慢启动结束后即为weight*1000
+     *
+     * @return 放大后的当前权重，至少为1
+     */
+    private long scaledWeight() {
+        long full = weight * 1000L;
+        long start = recoveredAt;
+        if (start == 0) {
+            return full;
+        }
+        long window = slowStartWindow();
+        long elapsed = System.currentTimeMillis() - start;
+        if (elapsed >= window) {
+            recoveredAt = 0;
+            return full;
+        }
+        return Math.max(1, elapsed <= 0 ? 1 : full * elapsed / window);
+    }
+
+    private long slowStartWindow() {
+        ProxyRoute.OutlierDetection od = outlierDetection;
+        return od == null || od.getSlowStart() <= 0 ? 1 : od.getSlowStart();
+    }
+
+    /**
+     * 记录一次真实请求成功
+     */
+    public void recordSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        // 恢复后稳定运行超过一个驱逐周期，驱逐次数清零
+        int count = ejections;
+        ProxyRoute.OutlierDetection od = outlierDetection;
+        if (count > 0 && od != null && System.currentTimeMillis() - ejectedUntil > Math.max(od.getBaseEjectionTime(), od.getSlowStart())) {
+            ejections = 0;
+        }
+    }
+
+    /**
+     * 记录一次真实请求失败，即连接失败或上游响应5xx。连续失败达到阈值时驱逐该节点
+     */
+    public void recordFailure() {
+        ProxyRoute.OutlierDetection od = outlierDetection;
+        if (od == null || !od.isEnable()) {
+            return;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures < od.getConsecutiveFailures()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // 驱逐前已发出的请求陆续失败时，不重复驱逐；计数清零只能由一个线程完成
+        if (ejectedUntil > now || !consecutiveFailures.compareAndSet(failures, 0)) {
+            return;
+        }
+        int count = ejections + 1;
+        ejections = count;
+        long duration = ejectionTime(od, count);
+        recoveredAt = od.getSlowStart() > 0 ? now + duration : 0;
+        ejectedUntil = now + duration;
+        log.warn("upstream {} ejected for {} ms after {} consecutive failures", targetUrl, duration, failures);
+    }
+
+    /**
+     * 第count次驱逐的时长，按baseEjectionTime指数增长，不超过maxEjectionTime
+     *
+     * @param od    被动健康检查配置
+     * @param count 驱逐次数，从1开始
+     * @return 驱逐时长，单位毫秒
+     */
+    static long ejectionTime(ProxyRoute.OutlierDetection od, int count) {
+        long base = Math.max(1, od.getBaseEjectionTime());
+        // 限制位移量，避免溢出
+        int shift = Math.min(Math.max(0, count - 1), Long.numberOfLeadingZeros(base) - 1);
+        return Math.min(od.getMaxEjectionTime(), base << shift);
+    }
+
+    /**
+     * 记录一次主动探测结果，只能在健康检查所在的上下文中调用
+     *
+     * @param success            探测是否成功
+     * @param healthyThreshold   连续成功多少次恢复
+     * @param unhealthyThreshold 连续失败多少次摘除
+     */
+    public void recordProbe(boolean success, int healthyThreshold, int unhealthyThreshold) {
+        if (success) {
+            probeFailures = 0;
+            if (!healthy && ++probeSuccesses >= healthyThreshold) {
+                probeSuccesses = 0;
+                ProxyRoute.OutlierDetection od = outlierDetection;
+                recoveredAt = od != null && od.getSlowStart() > 0 ? System.currentTimeMillis() : 0;
+                healthy = true;
+                log.info("upstream {} is healthy again", targetUrl);
+            }
+        } else {
+            probeSuccesses = 0;
+            if (healthy && ++probeFailures >= unhealthyThreshold) {
+                probeFailures = 0;
+                healthy = false;
+                log.warn("upstream {} marked unhealthy after {} failed probes", targetUrl, unhealthyThreshold);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return targetUrl + "(weight=" + weight + ")";
+    }
+}
@@ -0,0 +1,103 @@
+package top.meethigher.proxy.http;
+
+import top.meethigher.proxy.LoadBalancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 加权轮询策略实现
+ * <p>
+ * 创建时按平滑加权轮询算法(同nginx)预先生成一轮完整的调度序列，请求时只需原子递增下标，
+ * 因此选择过程无锁，且同一轮内各节点被均匀地穿插选中，而不是连续命中权重大的节点。
+ * <p>
+ * 不可用的节点在序列中直接跳过，慢启动中的节点按恢复进度放行，调度序列本身无需重建。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/03 15:26
+ */
+public class HttpWeightedRoundRobinLoadBalancer implements LoadBalancer<HttpUpstream> {
+
+    private final HttpUpstream[] schedule;
+
+    private final AtomicInteger idx = new AtomicInteger(0);
+
+    private final String name = "HttpWeightedRoundRobinLoadBalancer";
+
+    private HttpWeightedRoundRobinLoadBalancer(List<HttpUpstream> nodes) {
+        this.schedule = buildSchedule(nodes);
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * 生成一轮平滑加权轮询的调度序列，权重会先按最大公约数约分以缩短序列
+     *
+     * @param nodes 节点
+     * @return 调度序列
+     */
+    static HttpUpstream[] buildSchedule(List<HttpUpstream> nodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            return new HttpUpstream[0];
+        }
+        int divisor = 0;
+        for (HttpUpstream node : nodes) {
+            divisor = gcd(node.getWeight(), divisor);
+        }
+        int size = nodes.size();
+        int[] weights = new int[size];
+        int[] current = new int[size];
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            weights[i] = nodes.get(i).getWeight() / divisor;
+            total += weights[i];
+        }
+        HttpUpstream[] schedule = new HttpUpstream[total];
+        for (int n = 0; n < total; n++) {
+            int best = 0;
+            for (int i = 0; i < size; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            schedule[n] = nodes.get(best);
+        }
+        return schedule;
+    }
+
+    @Override
+    public HttpUpstream next() {
+        if (schedule.length == 0) {
+            return null;
+        }
+        int length = schedule.length;
+        HttpUpstream fallback = null;
+        for (int i = 0; i < length; i++) {
+            HttpUpstream node = schedule[idx.getAndUpdate(v -> (v + 1) % length)];
+            if (!node.isAvailable()) {
+                continue;
+            }
+            if (node.admit()) {
+                return node;
+            }
+            if (fallback == null) {
+                fallback = node;
+            }
+        }
+        // 全部节点不可用时不再过滤
+        return fallback != null ? fallback : schedule[idx.getAndUpdate(v -> (v + 1) % length)];
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    public static HttpWeightedRoundRobinLoadBalancer create(List<HttpUpstream> nodes) {
+        return new HttpWeightedRoundRobinLoadBalancer(nodes);
+    }
+}
@@ -1,7 +1,11 @@
 package top.meethigher.proxy.http;
 
+import top.meethigher.proxy.http.compress.ResponseCompressor;
+
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -19,8 +23,28 @@ public class ProxyRoute implements Serializable {
      */
     private String sourceUrl;
 
+    /**
+     * 限定请求的host，不区分大小写与端口。为null表示不限
+     */
+    private String host;
+
     private String targetUrl;
 
+    /**
+     * 多个上游节点。若不为空，则请求按负载均衡策略分发到这些节点，targetUrl不再生效
+     */
+    private List<Upstream> upstreams = new ArrayList<>();
+
+    /**
+     * 上游节点的负载均衡策略
+     */
+    private LoadBalance loadBalance = LoadBalance.ROUND_ROBIN;
+
+    /**
+     * 一致性哈希策略的配置，loadBalance为CONSISTENT_HASH时生效
+     */
+    private ConsistentHash consistentHash = new ConsistentHash();
+
     private boolean forwardIp = false;
 
     private boolean preserveCookies = true;
@@ -35,6 +59,34 @@ public class ProxyRoute implements Serializable {
 
     private CorsControl corsControl = new CorsControl();
 
+    private ConnectionPool connectionPool = new ConnectionPool();
+
+    private Cache cache = new Cache();
+
+    private Coalescing coalescing = new Coalescing();
+
+    private HealthCheck healthCheck = new HealthCheck();
+
+    private OutlierDetection outlierDetection = new OutlierDetection();
+
+    private Compression compression = new Compression();
+
+    private RateLimit rateLimit = new RateLimit();
+
+    private ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+
+    private Retry retry = new Retry();
+
+    private Timeout timeout = new Timeout();
+
+    private Upgrade upgrade = new Upgrade();
+
+    private Mirror mirror = new Mirror();
+
+    private Buffering buffering = new Buffering();
+
+    private StaticFiles staticFiles = new StaticFiles();
+
 
     public String getSourceUrl() {
         return sourceUrl;
@@ -54,6 +106,38 @@ public class ProxyRoute implements Serializable {
         return this;
     }
 
+    public List<Upstream> getUpstreams() {
+        return upstreams;
+    }
+
+    public ProxyRoute setUpstreams(List<Upstream> upstreams) {
+        this.upstreams = upstreams;
+        return this;
+    }
+
+    public ProxyRoute addUpstream(String targetUrl, int weight) {
+        this.upstreams.add(new Upstream().setTargetUrl(targetUrl).setWeight(weight));
+        return this;
+    }
+
+    public LoadBalance getLoadBalance() {
+        return loadBalance;
+    }
+
+    public ProxyRoute setLoadBalance(LoadBalance loadBalance) {
+        this.loadBalance = loadBalance;
+        return this;
+    }
+
+    public ConsistentHash getConsistentHash() {
+        return consistentHash;
+    }
+
+    public ProxyRoute setConsistentHash(ConsistentHash consistentHash) {
+        this.consistentHash = consistentHash;
+        return this;
+    }
+
     public Log getLog() {
         return log;
     }
@@ -81,10 +165,145 @@ public class ProxyRoute implements Serializable {
         return this;
     }
 
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public ProxyRoute setConnectionPool(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+        return this;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public ProxyRoute setCache(Cache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public Coalescing getCoalescing() {
+        return coalescing;
+    }
+
+    public ProxyRoute setCoalescing(Coalescing coalescing) {
+        this.coalescing = coalescing;
+        return this;
+    }
+
+    public HealthCheck getHealthCheck() {
+        return healthCheck;
+    }
+
+    public ProxyRoute setHealthCheck(HealthCheck healthCheck) {
+        this.healthCheck = healthCheck;
+        return this;
+    }
+
+    public OutlierDetection getOutlierDetection() {
+        return outlierDetection;
+    }
+
+    public ProxyRoute setOutlierDetection(OutlierDetection outlierDetection) {
+        this.outlierDetection = outlierDetection;
+        return this;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public ProxyRoute setCompression(Compression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public ProxyRoute setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    public ConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public ProxyRoute setConcurrencyLimit(ConcurrencyLimit concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+        return this;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public ProxyRoute setRetry(Retry retry) {
+        this.retry = retry;
+        return this;
+    }
+
+    public Timeout getTimeout() {
+        return timeout;
+    }
+
+    public ProxyRoute setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public Upgrade getUpgrade() {
+        return upgrade;
+    }
+
+    public ProxyRoute setUpgrade(Upgrade upgrade) {
+        this.upgrade = upgrade;
+        return this;
+    }
+
+    public Mirror getMirror() {
+        return mirror;
+    }
+
+    public ProxyRoute setMirror(Mirror mirror) {
+        this.mirror = mirror;
+        return this;
+    }
+
+    public Buffering getBuffering() {
+        return buffering;
+    }
+
+    public ProxyRoute setBuffering(Buffering buffering) {
+        this.buffering = buffering;
+        return this;
+    }
+
+    public StaticFiles getStaticFiles() {
+        return staticFiles;
+    }
+
+    public ProxyRoute setStaticFiles(StaticFiles staticFiles) {
+        this.staticFiles = staticFiles;
+        return this;
+    }
+
     public String getName() {
         return name;
     }
 
+    public String getHost() {
+        return host;
+    }
+
+    public ProxyRoute setHost(String host) {
+        this.host = host;
+        return this;
+    }
+
     public ProxyRoute setName(String name) {
         this.name = name;
         return this;
@@ -130,7 +349,13 @@ public class ProxyRoute implements Serializable {
         Map<String, String> map = new LinkedHashMap<>();
         map.put("name", getName());
         map.put("sourceUrl", getSourceUrl());
+        map.put("host", getHost());
         map.put("targetUrl", getTargetUrl());
+        map.put("upstreams", String.valueOf(getUpstreams()));
+        map.put("loadBalance", String.valueOf(getLoadBalance()));
+        map.put("consistentHash.key", String.valueOf(getConsistentHash().getKey()));
+        map.put("consistentHash.name", String.valueOf(getConsistentHash().getName()));
+        map.put("consistentHash.boundedLoadFactor", String.valueOf(getConsistentHash().getBoundedLoadFactor()));
         map.put("forwardIp", String.valueOf(isForwardIp()));
         map.put("preserveHost", String.valueOf(isPreserveHost()));
         map.put("preserveCookies", String.valueOf(isPreserveCookies()));
@@ -140,10 +365,198 @@ public class ProxyRoute implements Serializable {
         map.put("log.logFormat", String.valueOf(getLog().getLogFormat()));
         map.put("corsControl.enable", String.valueOf(getCorsControl().isEnable()));
         map.put("corsControl.allowCors", String.valueOf(getCorsControl().isAllowCors()));
+        map.put("connectionPool.enable", String.valueOf(getConnectionPool().isEnable()));
+        map.put("connectionPool.maxConnections", String.valueOf(getConnectionPool().getMaxConnections()));
+        map.put("connectionPool.maxWaitQueueSize", String.valueOf(getConnectionPool().getMaxWaitQueueSize()));
+        map.put("connectionPool.keepAliveTimeout", String.valueOf(getConnectionPool().getKeepAliveTimeout()));
+        map.put("connectionPool.idleEvictionPeriod", String.valueOf(getConnectionPool().getIdleEvictionPeriod()));
+        map.put("connectionPool.http2", String.valueOf(getConnectionPool().isHttp2()));
+        map.put("connectionPool.http2MaxConnections", String.valueOf(getConnectionPool().getHttp2MaxConnections()));
+        map.put("connectionPool.http2MultiplexingLimit", String.valueOf(getConnectionPool().getHttp2MultiplexingLimit()));
+        map.put("connectionPool.prewarmConnections", String.valueOf(getConnectionPool().getPrewarmConnections()));
+        map.put("cache.enable", String.valueOf(getCache().isEnable()));
+        map.put("cache.maxBytes", String.valueOf(getCache().getMaxBytes()));
+        map.put("cache.maxEntryBytes", String.valueOf(getCache().getMaxEntryBytes()));
+        map.put("cache.heuristicMaxAge", String.valueOf(getCache().getHeuristicMaxAge()));
+        map.put("coalescing.enable", String.valueOf(getCoalescing().isEnable()));
+        map.put("coalescing.maxFollowerLag", String.valueOf(getCoalescing().getMaxFollowerLag()));
+        map.put("healthCheck.enable", String.valueOf(getHealthCheck().isEnable()));
+        map.put("healthCheck.path", String.valueOf(getHealthCheck().getPath()));
+        map.put("healthCheck.expectedStatus", String.valueOf(getHealthCheck().getExpectedStatus()));
+        map.put("healthCheck.interval", String.valueOf(getHealthCheck().getInterval()));
+        map.put("healthCheck.timeout", String.valueOf(getHealthCheck().getTimeout()));
+        map.put("healthCheck.healthyThreshold", String.valueOf(getHealthCheck().getHealthyThreshold()));
+        map.put("healthCheck.unhealthyThreshold", String.valueOf(getHealthCheck().getUnhealthyThreshold()));
+        map.put("outlierDetection.enable", String.valueOf(getOutlierDetection().isEnable()));
+        map.put("outlierDetection.consecutiveFailures", String.valueOf(getOutlierDetection().getConsecutiveFailures()));
+        map.put("outlierDetection.baseEjectionTime", String.valueOf(getOutlierDetection().getBaseEjectionTime()));
+        map.put("outlierDetection.maxEjectionTime", String.valueOf(getOutlierDetection().getMaxEjectionTime()));
+        map.put("outlierDetection.slowStart", String.valueOf(getOutlierDetection().getSlowStart()));
+        map.put("compression.enable", String.valueOf(getCompression().isEnable()));
+        map.put("compression.level", String.valueOf(getCompression().getLevel()));
+        map.put("compression.minLength", String.valueOf(getCompression().getMinLength()));
+        map.put("compression.mimeTypes", String.valueOf(getCompression().getMimeTypes()));
+        map.put("compression.variantCache", String.valueOf(getCompression().isVariantCache()));
+        map.put("compression.variantCacheMaxBytes", String.valueOf(getCompression().getVariantCacheMaxBytes()));
+        map.put("rateLimit.enable", String.valueOf(getRateLimit().isEnable()));
+        map.put("rateLimit.key", String.valueOf(getRateLimit().getKey()));
+        map.put("rateLimit.header", String.valueOf(getRateLimit().getHeader()));
+        map.put("rateLimit.rate", String.valueOf(getRateLimit().getRate()));
+        map.put("rateLimit.burst", String.valueOf(getRateLimit().getBurst()));
+        map.put("rateLimit.maxKeys", String.valueOf(getRateLimit().getMaxKeys()));
+        map.put("concurrencyLimit.enable", String.valueOf(getConcurrencyLimit().isEnable()));
+        map.put("concurrencyLimit.initialLimit", String.valueOf(getConcurrencyLimit().getInitialLimit()));
+        map.put("concurrencyLimit.minLimit", String.valueOf(getConcurrencyLimit().getMinLimit()));
+        map.put("concurrencyLimit.maxLimit", String.valueOf(getConcurrencyLimit().getMaxLimit()));
+        map.put("concurrencyLimit.maxQueueSize", String.valueOf(getConcurrencyLimit().getMaxQueueSize()));
+        map.put("concurrencyLimit.queueTimeout", String.valueOf(getConcurrencyLimit().getQueueTimeout()));
+        map.put("concurrencyLimit.priority", String.valueOf(getConcurrencyLimit().getPriority()));
+        map.put("retry.enable", String.valueOf(getRetry().isEnable()));
+        map.put("retry.retryOnConnectFailure", String.valueOf(getRetry().isRetryOnConnectFailure()));
+        map.put("retry.maxRetries", String.valueOf(getRetry().getMaxRetries()));
+        map.put("retry.hedge", String.valueOf(getRetry().isHedge()));
+        map.put("retry.hedgePercentile", String.valueOf(getRetry().getHedgePercentile()));
+        map.put("retry.hedgeMinDelay", String.valueOf(getRetry().getHedgeMinDelay()));
+        map.put("retry.hedgeMaxDelay", String.valueOf(getRetry().getHedgeMaxDelay()));
+        map.put("retry.budgetRatio", String.valueOf(getRetry().getBudgetRatio()));
+        map.put("retry.budgetMaxTokens", String.valueOf(getRetry().getBudgetMaxTokens()));
+        map.put("timeout.enable", String.valueOf(getTimeout().isEnable()));
+        map.put("timeout.connectTimeout", String.valueOf(getTimeout().getConnectTimeout()));
+        map.put("timeout.firstByteTimeout", String.valueOf(getTimeout().getFirstByteTimeout()));
+        map.put("timeout.idleTimeout", String.valueOf(getTimeout().getIdleTimeout()));
+        map.put("timeout.totalTimeout", String.valueOf(getTimeout().getTotalTimeout()));
+        map.put("upgrade.enable", String.valueOf(getUpgrade().isEnable()));
+        map.put("upgrade.protocols", String.valueOf(getUpgrade().getProtocols()));
+        map.put("upgrade.idleTimeout", String.valueOf(getUpgrade().getIdleTimeout()));
+        map.put("mirror.enable", String.valueOf(getMirror().isEnable()));
+        map.put("mirror.targetUrl", String.valueOf(getMirror().getTargetUrl()));
+        map.put("mirror.percentage", String.valueOf(getMirror().getPercentage()));
+        map.put("mirror.maxConcurrency", String.valueOf(getMirror().getMaxConcurrency()));
+        map.put("mirror.maxConnections", String.valueOf(getMirror().getMaxConnections()));
+        map.put("mirror.maxPendingBytes", String.valueOf(getMirror().getMaxPendingBytes()));
+        map.put("mirror.timeout", String.valueOf(getMirror().getTimeout()));
+        map.put("buffering.enable", String.valueOf(getBuffering().isEnable()));
+        map.put("buffering.request", String.valueOf(getBuffering().isRequest()));
+        map.put("buffering.response", String.valueOf(getBuffering().isResponse()));
+        map.put("buffering.maxMemoryBytes", String.valueOf(getBuffering().getMaxMemoryBytes()));
+        map.put("buffering.maxFileBytes", String.valueOf(getBuffering().getMaxFileBytes()));
+        map.put("buffering.tempDir", String.valueOf(getBuffering().getTempDir()));
+        map.put("staticFiles.enable", String.valueOf(getStaticFiles().isEnable()));
+        map.put("staticFiles.indexPage", String.valueOf(getStaticFiles().getIndexPage()));
+        map.put("staticFiles.cacheMaxBytes", String.valueOf(getStaticFiles().getCacheMaxBytes()));
+        map.put("staticFiles.cacheMaxEntryBytes", String.valueOf(getStaticFiles().getCacheMaxEntryBytes()));
+        map.put("staticFiles.gzip", String.valueOf(getStaticFiles().isGzip()));
+        map.put("staticFiles.watch", String.valueOf(getStaticFiles().isWatch()));
         return map;
     }
 
 
+    /**
+     * 负载均衡策略
+     */
+    public enum LoadBalance {
+        /**
+         * 轮询
+         */
+        ROUND_ROBIN,
+        /**
+         * 平滑加权轮询
+         */
+        WEIGHTED_ROUND_ROBIN,
+        /**
+         * 最少进行中请求
+         */
+        LEAST_REQUESTS,
+        /**
+         * 随机二选一
+         */
+        POWER_OF_TWO_CHOICES,
+        /**
+         * 一致性哈希，用于会话保持
+         */
+        CONSISTENT_HASH
+    }
+
+    /**
+     * 一致性哈希的键
+     */
+    public enum HashKey {
+        /**
+         * 按客户端IP
+         */
+        CLIENT_IP,
+        /**
+         * 按Cookie的值，请求未携带该Cookie时按客户端IP
+         */
+        COOKIE,
+        /**
+         * 按请求头的值，请求未携带该请求头时按客户端IP
+         */
+        HEADER
+    }
+
+    /**
+     * 限流键
+     */
+    public enum RateLimitKey {
+        /**
+         * 整个路由共用一个令牌桶
+         */
+        ROUTE,
+        /**
+         * 按客户端IP
+         */
+        CLIENT_IP,
+        /**
+         * 按请求头的值，请求未携带该请求头时按客户端IP
+         */
+        HEADER
+    }
+
+    /**
+     * 过载时的优先级，低优先级的请求先被丢弃
+     */
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    /**
+     * 上游节点
+     */
+    public static class Upstream implements Serializable {
+        private String targetUrl;
+
+        /**
+         * 权重，需大于0
+         */
+        private int weight = 1;
+
+        public String getTargetUrl() {
+            return targetUrl;
+        }
+
+        public Upstream setTargetUrl(String targetUrl) {
+            this.targetUrl = targetUrl;
+            return this;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public Upstream setWeight(int weight) {
+            this.weight = weight;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return targetUrl + "(weight=" + weight + ")";
+        }
+    }
+
     /**
      * 跨域控制
      *
@@ -183,6 +596,1213 @@ public class ProxyRoute implements Serializable {
         }
     }
 
+    /**
+     * 上游连接池。启用后，每个上游源站(scheme://host:port)使用独立的HttpClient连接池，
+     * 避免某个慢源站占满共享连接池而影响其他源站。同一源站被多个路由引用时，以最先添加的路由配置为准。
+     */
+    public static class ConnectionPool implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * HTTP/1.x每个源站的最大连接数
+         */
+        private int maxConnections = 64;
+
+        /**
+         * 获取连接的最大等待队列长度，-1表示不限制
+         */
+        private int maxWaitQueueSize = -1;
+
+        /**
+         * 空闲长连接的保活时间，单位秒
+         */
+        private int keepAliveTimeout = 60;
+
+        /**
+         * 清理过期空闲连接的周期，单位毫秒
+         */
+        private int idleEvictionPeriod = 1000;
+
+        /**
+         * 是否使用HTTP/2与源站通信。http源站使用h2c prior-knowledge，https源站使用ALPN协商
+         */
+        private boolean http2 = false;
+
+        /**
+         * HTTP/2每个源站的最大连接数
+         */
+        private int http2MaxConnections = 1;
+
+        /**
+         * HTTP/2单连接的最大并发流数量，-1表示使用服务端的限制
+         */
+        private int http2MultiplexingLimit = -1;
+
+        /**
+         * 启动时预先建立的连接数
+         */
+        private int prewarmConnections = 0;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public ConnectionPool setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public ConnectionPool setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public int getMaxWaitQueueSize() {
+            return maxWaitQueueSize;
+        }
+
+        public ConnectionPool setMaxWaitQueueSize(int maxWaitQueueSize) {
+            this.maxWaitQueueSize = maxWaitQueueSize;
+            return this;
+        }
+
+        public int getKeepAliveTimeout() {
+            return keepAliveTimeout;
+        }
+
+        public ConnectionPool setKeepAliveTimeout(int keepAliveTimeout) {
+            this.keepAliveTimeout = keepAliveTimeout;
+            return this;
+        }
+
+        public int getIdleEvictionPeriod() {
+            return idleEvictionPeriod;
+        }
+
+        public ConnectionPool setIdleEvictionPeriod(int idleEvictionPeriod) {
+            this.idleEvictionPeriod = idleEvictionPeriod;
+            return this;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public ConnectionPool setHttp2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        public int getHttp2MaxConnections() {
+            return http2MaxConnections;
+        }
+
+        public ConnectionPool setHttp2MaxConnections(int http2MaxConnections) {
+            this.http2MaxConnections = http2MaxConnections;
+            return this;
+        }
+
+        public int getHttp2MultiplexingLimit() {
+            return http2MultiplexingLimit;
+        }
+
+        public ConnectionPool setHttp2MultiplexingLimit(int http2MultiplexingLimit) {
+            this.http2MultiplexingLimit = http2MultiplexingLimit;
+            return this;
+        }
+
+        public int getPrewarmConnections() {
+            return prewarmConnections;
+        }
+
+        public ConnectionPool setPrewarmConnections(int prewarmConnections) {
+            this.prewarmConnections = prewarmConnections;
+            return this;
+        }
+    }
+
+    /**
+     * 响应缓存。遵循RFC 7234共享缓存语义，只缓存GET请求且响应显式或启发式可缓存的内容，命中时不经过上游服务
+     */
+    public static class Cache implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 缓存总容量，单位字节
+         */
+        private long maxBytes = 64 * 1024 * 1024;
+
+        /**
+         * 单个响应的最大字节数，超出则不缓存
+         */
+        private int maxEntryBytes = 1024 * 1024;
+
+        /**
+         * 仅有Last-Modified时，启发式新鲜度的上限，单位秒
+         */
+        private long heuristicMaxAge = 300;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public Cache setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public Cache setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        public int getMaxEntryBytes() {
+            return maxEntryBytes;
+        }
+
+        public Cache setMaxEntryBytes(int maxEntryBytes) {
+            this.maxEntryBytes = maxEntryBytes;
+            return this;
+        }
+
+        public long getHeuristicMaxAge() {
+            return heuristicMaxAge;
+        }
+
+        public Cache setHeuristicMaxAge(long heuristicMaxAge) {
+            this.heuristicMaxAge = heuristicMaxAge;
+            return this;
+        }
+    }
+
+    /**
+     * 请求合并。并发的相同GET请求只向上游发起一次，其余请求共享该次响应
+     */
+    public static class Coalescing implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 单个跟随请求允许积压的最大字节数，超出则脱离共享，单位字节
+         */
+        private long maxFollowerLag = 1024 * 1024;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public Coalescing setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public long getMaxFollowerLag() {
+            return maxFollowerLag;
+        }
+
+        public Coalescing setMaxFollowerLag(long maxFollowerLag) {
+            this.maxFollowerLag = maxFollowerLag;
+            return this;
+        }
+    }
+
+    /**
+     * 主动健康检查。定时向每个上游节点发送探测请求，连续失败达到阈值后摘除，连续成功达到阈值后恢复
+     */
+    public static class HealthCheck implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 探测请求路径
+         */
+        private String path = "/";
+
+        /**
+         * 视为健康的响应状态码，可以是单个状态码，如200，也可以是闭区间，如200-399
+         */
+        private String expectedStatus = "200-399";
+
+        /**
+         * 探测间隔，单位毫秒
+         */
+        private long interval = 5000;
+
+        /**
+         * 探测超时，单位毫秒
+         */
+        private long timeout = 2000;
+
+        /**
+         * 摘除后连续探测成功多少次恢复
+         */
+        private int healthyThreshold = 2;
+
+        /**
+         * 连续探测失败多少次摘除
+         */
+        private int unhealthyThreshold = 3;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public HealthCheck setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public HealthCheck setPath(String path) {
+            this.path = path;
+            return this;
+        }
+
+        public String getExpectedStatus() {
+            return expectedStatus;
+        }
+
+        public HealthCheck setExpectedStatus(String expectedStatus) {
+            this.expectedStatus = expectedStatus;
+            return this;
+        }
+
+        public long getInterval() {
+            return interval;
+        }
+
+        public HealthCheck setInterval(long interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public HealthCheck setTimeout(long timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public int getHealthyThreshold() {
+            return healthyThreshold;
+        }
+
+        public HealthCheck setHealthyThreshold(int healthyThreshold) {
+            this.healthyThreshold = healthyThreshold;
+            return this;
+        }
+
+        public int getUnhealthyThreshold() {
+            return unhealthyThreshold;
+        }
+
+        public HealthCheck setUnhealthyThreshold(int unhealthyThreshold) {
+            this.unhealthyThreshold = unhealthyThreshold;
+            return this;
+        }
+    }
+
+    /**
+     * 被动健康检查(异常节点驱逐)。根据真实请求的结果，连续出现5xx或连接失败的节点会被驱逐一段时间，
+     * 驱逐时长随驱逐次数指数增长
+     */
+    public static class OutlierDetection implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 连续失败多少次驱逐
+         */
+        private int consecutiveFailures = 5;
+
+        /**
+         * 首次驱逐时长，单位毫秒。第n次驱逐时长为baseEjectionTime*2^(n-1)
+         */
+        private long baseEjectionTime = 30000;
+
+        /**
+         * 驱逐时长上限，单位毫秒
+         */
+        private long maxEjectionTime = 300000;
+
+        /**
+         * 节点恢复(驱逐到期或主动探测恢复)后，权重从零线性增长到配置权重所需的时间，单位毫秒。0表示不预热
+         */
+        private long slowStart = 30000;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public OutlierDetection setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public OutlierDetection setConsecutiveFailures(int consecutiveFailures) {
+            this.consecutiveFailures = consecutiveFailures;
+            return this;
+        }
+
+        public long getBaseEjectionTime() {
+            return baseEjectionTime;
+        }
+
+        public OutlierDetection setBaseEjectionTime(long baseEjectionTime) {
+            this.baseEjectionTime = baseEjectionTime;
+            return this;
+        }
+
+        public long getMaxEjectionTime() {
+            return maxEjectionTime;
+        }
+
+        public OutlierDetection setMaxEjectionTime(long maxEjectionTime) {
+            this.maxEjectionTime = maxEjectionTime;
+            return this;
+        }
+
+        public long getSlowStart() {
+            return slowStart;
+        }
+
+        public OutlierDetection setSlowStart(long slowStart) {
+            this.slowStart = slowStart;
+            return this;
+        }
+    }
+
+    /**
+     * 响应压缩。按Accept-Encoding协商，对上游返回的未压缩文本类响应进行流式gzip压缩
+     */
+    public static class Compression implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 压缩级别，1~9。级别越高压缩率越高，CPU开销也越大
+         */
+        private int level = 6;
+
+        /**
+         * 已知Content-Length小于该值的响应不压缩，单位字节
+         */
+        private long minLength = 1024;
+
+        /**
+         * 可压缩的Content-Type，逗号分隔。以+开头表示按后缀匹配，以/*结尾表示按主类型匹配
+         */
+        private String mimeTypes = ResponseCompressor.DEFAULT_MIME_TYPES;
+
+        /**
+         * 是否缓存响应缓存条目的压缩结果。需同时启用响应缓存
+         */
+        private boolean variantCache = false;
+
+        /**
+         * 压缩变体缓存的总容量，单位字节
+         */
+        private long variantCacheMaxBytes = 16 * 1024 * 1024;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public Compression setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public Compression setLevel(int level) {
+            this.level = level;
+            return this;
+        }
+
+        public long getMinLength() {
+            return minLength;
+        }
+
+        public Compression setMinLength(long minLength) {
+            this.minLength = minLength;
+            return this;
+        }
+
+        public String getMimeTypes() {
+            return mimeTypes;
+        }
+
+        public Compression setMimeTypes(String mimeTypes) {
+            this.mimeTypes = mimeTypes;
+            return this;
+        }
+
+        public boolean isVariantCache() {
+            return variantCache;
+        }
+
+        public Compression setVariantCache(boolean variantCache) {
+            this.variantCache = variantCache;
+            return this;
+        }
+
+        public long getVariantCacheMaxBytes() {
+            return variantCacheMaxBytes;
+        }
+
+        public Compression setVariantCacheMaxBytes(long variantCacheMaxBytes) {
+            this.variantCacheMaxBytes = variantCacheMaxBytes;
+            return this;
+        }
+    }
+
+    /**
+     * 一致性哈希负载均衡。相同键的请求发往同一节点，节点增删时只有少量键改变归属
+     */
+    public static class ConsistentHash implements Serializable {
+
+        private HashKey key = HashKey.CLIENT_IP;
+
+        /**
+         * 按Cookie或请求头哈希时的名称
+         */
+        private String name;
+
+        /**
+         * 有界负载系数。节点的进行中请求数超过平均值的(1+boundedLoadFactor)倍时改选其他节点，0表示不限制
+         */
+        private double boundedLoadFactor = 0.25;
+
+        public HashKey getKey() {
+            return key;
+        }
+
+        public ConsistentHash setKey(HashKey key) {
+            this.key = key;
+            return this;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ConsistentHash setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public double getBoundedLoadFactor() {
+            return boundedLoadFactor;
+        }
+
+        public ConsistentHash setBoundedLoadFactor(double boundedLoadFactor) {
+            this.boundedLoadFactor = boundedLoadFactor;
+            return this;
+        }
+    }
+
+    /**
+     * 令牌桶限流。超出限制的请求直接响应429，不会请求上游
+     */
+    public static class RateLimit implements Serializable {
+        private boolean enable = false;
+
+        private RateLimitKey key = RateLimitKey.CLIENT_IP;
+
+        /**
+         * 按请求头限流时的请求头名称
+         */
+        private String header;
+
+        /**
+         * 每秒放行的请求数，即令牌的补充速率
+         */
+        private double rate = 100;
+
+        /**
+         * 突发容量，即令牌桶的大小
+         */
+        private int burst = 200;
+
+        /**
+         * 按客户端IP或请求头限流时，最多保留的令牌桶数量
+         */
+        private int maxKeys = 100000;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public RateLimit setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public RateLimitKey getKey() {
+            return key;
+        }
+
+        public RateLimit setKey(RateLimitKey key) {
+            this.key = key;
+            return this;
+        }
+
+        public String getHeader() {
+            return header;
+        }
+
+        public RateLimit setHeader(String header) {
+            this.header = header;
+            return this;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public RateLimit setRate(double rate) {
+            this.rate = rate;
+            return this;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public RateLimit setBurst(int burst) {
+            this.burst = burst;
+            return this;
+        }
+
+        public int getMaxKeys() {
+            return maxKeys;
+        }
+
+        public RateLimit setMaxKeys(int maxKeys) {
+            this.maxKeys = maxKeys;
+            return this;
+        }
+    }
+
+    /**
+     * 上游源站的自适应并发限制。上限根据RTT自动调整，超出上限的请求短暂排队，排队超时后响应503
+     * <p>
+     * 并发限制按源站共享，同一源站以最先添加的路由的配置为准；priority则按路由生效，决定过载时哪些流量先被丢弃
+     */
+    public static class ConcurrencyLimit implements Serializable {
+        private boolean enable = false;
+
+        private int initialLimit = 20;
+
+        private int minLimit = 4;
+
+        private int maxLimit = 1000;
+
+        /**
+         * 等待队列长度，0表示不排队
+         */
+        private int maxQueueSize = 100;
+
+        /**
+         * 排队的最长时间，单位毫秒
+         */
+        private long queueTimeout = 100;
+
+        private Priority priority = Priority.NORMAL;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public ConcurrencyLimit setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public ConcurrencyLimit setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public ConcurrencyLimit setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public ConcurrencyLimit setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        public int getMaxQueueSize() {
+            return maxQueueSize;
+        }
+
+        public ConcurrencyLimit setMaxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        public long getQueueTimeout() {
+            return queueTimeout;
+        }
+
+        public ConcurrencyLimit setQueueTimeout(long queueTimeout) {
+            this.queueTimeout = queueTimeout;
+            return this;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public ConcurrencyLimit setPriority(Priority priority) {
+            this.priority = priority;
+            return this;
+        }
+    }
+
+    /**
+     * 重试与对冲请求。只有幂等请求才会重试，只有不带请求体的幂等请求才会对冲
+     * <p>
+     * 连接上游失败时换一个上游重试；开启对冲后，若首次请求在对冲延迟内未收到响应头，则向另一个上游再发一次请求，先响应者胜出，另一个被取消。
+     * 重试与对冲共用一个令牌桶形式的重试预算，额外发出的请求不超过原始请求的budgetRatio倍，避免上游故障时请求量被重试放大
+     */
+    public static class Retry implements Serializable {
+        private boolean enable = false;
+
+        private boolean retryOnConnectFailure = true;
+
+        private int maxRetries = 1;
+
+        private boolean hedge = false;
+
+        /**
+         * 对冲延迟取近期响应耗时的该分位数
+         */
+        private double hedgePercentile = 95;
+
+        /**
+         * 对冲延迟的下限，单位毫秒
+         */
+        private long hedgeMinDelay = 5;
+
+        /**
+         * 对冲延迟的上限，单位毫秒。样本不足时使用该值
+         */
+        private long hedgeMaxDelay = 1000;
+
+        /**
+         * 重试请求与原始请求数量之比的上限
+         */
+        private double budgetRatio = 0.1;
+
+        /**
+         * 允许突发的重试次数
+         */
+        private int budgetMaxTokens = 10;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public Retry setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public boolean isRetryOnConnectFailure() {
+            return retryOnConnectFailure;
+        }
+
+        public Retry setRetryOnConnectFailure(boolean retryOnConnectFailure) {
+            this.retryOnConnectFailure = retryOnConnectFailure;
+            return this;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public Retry setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public boolean isHedge() {
+            return hedge;
+        }
+
+        public Retry setHedge(boolean hedge) {
+            this.hedge = hedge;
+            return this;
+        }
+
+        public double getHedgePercentile() {
+            return hedgePercentile;
+        }
+
+        public Retry setHedgePercentile(double hedgePercentile) {
+            this.hedgePercentile = hedgePercentile;
+            return this;
+        }
+
+        public long getHedgeMinDelay() {
+            return hedgeMinDelay;
+        }
+
+        public Retry setHedgeMinDelay(long hedgeMinDelay) {
+            this.hedgeMinDelay = hedgeMinDelay;
+            return this;
+        }
+
+        public long getHedgeMaxDelay() {
+            return hedgeMaxDelay;
+        }
+
+        public Retry setHedgeMaxDelay(long hedgeMaxDelay) {
+            this.hedgeMaxDelay = hedgeMaxDelay;
+            return this;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public Retry setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+            return this;
+        }
+
+        public int getBudgetMaxTokens() {
+            return budgetMaxTokens;
+        }
+
+        public Retry setBudgetMaxTokens(int budgetMaxTokens) {
+            this.budgetMaxTokens = budgetMaxTokens;
+            return this;
+        }
+    }
+
+    /**
+     * 上游请求的超时，单位毫秒，0表示不限制。请求尚未响应时超时响应504，已开始输出响应体时超时则重置连接
+     */
+    public static class Timeout implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 建立连接或从连接池获取连接的超时
+         */
+        private long connectTimeout = 5000;
+
+        /**
+         * 请求发出后等待响应头的超时
+         */
+        private long firstByteTimeout = 30000;
+
+        /**
+         * 响应体两次数据之间的最长间隔
+         */
+        private long idleTimeout = 60000;
+
+        /**
+         * 请求的总耗时，包含排队、连接、等待响应与输出响应体。默认不限制，避免中断大文件下载
+         */
+        private long totalTimeout = 0;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public Timeout setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public long getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public Timeout setConnectTimeout(long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public long getFirstByteTimeout() {
+            return firstByteTimeout;
+        }
+
+        public Timeout setFirstByteTimeout(long firstByteTimeout) {
+            this.firstByteTimeout = firstByteTimeout;
+            return this;
+        }
+
+        public long getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public Timeout setIdleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public long getTotalTimeout() {
+            return totalTimeout;
+        }
+
+        public Timeout setTotalTimeout(long totalTimeout) {
+            this.totalTimeout = totalTimeout;
+            return this;
+        }
+    }
+
+    /**
+     * HTTP/1.1协议升级(如WebSocket)。上游响应101后，上下游的两条连接直接作为原始字节流双向转发，不再解析帧
+     */
+    public static class Upgrade implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 允许升级的协议，多个以逗号分隔，忽略大小写，*表示不限制
+         */
+        private String protocols = "websocket";
+
+        /**
+         * 升级后两个方向都没有数据的最长时间，单位毫秒，0表示不限制
+         */
+        private long idleTimeout = 600000;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public Upgrade setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public String getProtocols() {
+            return protocols;
+        }
+
+        public Upgrade setProtocols(String protocols) {
+            this.protocols = protocols;
+            return this;
+        }
+
+        public long getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public Upgrade setIdleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+    }
+
+    /**
+     * 流量镜像。按比例将请求复制一份发往影子上游，影子响应直接丢弃，影子上游的快慢与成败不影响原始请求
+     */
+    public static class Mirror implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 影子上游地址，请求路径的处理与targetUrl相同
+         */
+        private String targetUrl;
+
+        /**
+         * 镜像的请求比例，0~100
+         */
+        private double percentage = 100;
+
+        /**
+         * 同时进行的影子请求上限，超出时不再镜像
+         */
+        private int maxConcurrency = 64;
+
+        /**
+         * 影子上游独立连接池的最大连接数
+         */
+        private int maxConnections = 16;
+
+        /**
+         * 影子连接建立前最多暂存的请求体字节数，超出时放弃本次镜像
+         */
+        private int maxPendingBytes = 64 * 1024;
+
+        /**
+         * 影子请求建立连接与两次数据之间的超时，单位毫秒
+         */
+        private long timeout = 5000;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public Mirror setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public String getTargetUrl() {
+            return targetUrl;
+        }
+
+        public Mirror setTargetUrl(String targetUrl) {
+            this.targetUrl = targetUrl;
+            return this;
+        }
+
+        public double getPercentage() {
+            return percentage;
+        }
+
+        public Mirror setPercentage(double percentage) {
+            this.percentage = percentage;
+            return this;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public Mirror setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public Mirror setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public int getMaxPendingBytes() {
+            return maxPendingBytes;
+        }
+
+        public Mirror setMaxPendingBytes(int maxPendingBytes) {
+            this.maxPendingBytes = maxPendingBytes;
+            return this;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public Mirror setTimeout(long timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+    }
+
+    /**
+     * 请求体与响应体的缓冲，用于保护上游免受慢客户端影响
+     * <p>
+     * 缓冲响应时，上游的响应体以最快速度收完，连接随即归还连接池，再由代理按客户端的速度输出；
+     * 缓冲请求时，请求体完整到达后才向上游发起请求。内存先受单个请求的上限与代理的全局预算限制，超出后写入临时文件，文件也写满时退化为普通的背压
+     */
+    public static class Buffering implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 缓冲请求体
+         */
+        private boolean request = false;
+
+        /**
+         * 缓冲响应体
+         */
+        private boolean response = true;
+
+        /**
+         * 单个请求体或响应体在内存中缓冲的上限
+         */
+        private long maxMemoryBytes = 1024 * 1024;
+
+        /**
+         * 单个请求体或响应体写入临时文件的上限，0表示不写入文件
+         */
+        private long maxFileBytes = 64 * 1024 * 1024;
+
+        /**
+         * 临时文件目录，为null时使用系统临时目录
+         */
+        private String tempDir;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public Buffering setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public boolean isRequest() {
+            return request;
+        }
+
+        public Buffering setRequest(boolean request) {
+            this.request = request;
+            return this;
+        }
+
+        public boolean isResponse() {
+            return response;
+        }
+
+        public Buffering setResponse(boolean response) {
+            this.response = response;
+            return this;
+        }
+
+        public long getMaxMemoryBytes() {
+            return maxMemoryBytes;
+        }
+
+        public Buffering setMaxMemoryBytes(long maxMemoryBytes) {
+            this.maxMemoryBytes = maxMemoryBytes;
+            return this;
+        }
+
+        public long getMaxFileBytes() {
+            return maxFileBytes;
+        }
+
+        public Buffering setMaxFileBytes(long maxFileBytes) {
+            this.maxFileBytes = maxFileBytes;
+            return this;
+        }
+
+        public String getTempDir() {
+            return tempDir;
+        }
+
+        public Buffering setTempDir(String tempDir) {
+            this.tempDir = tempDir;
+            return this;
+        }
+    }
+
+    /**
+     * static:路由的静态资源服务。未启用时使用Vert.x的StaticHandler
+     */
+    public static class StaticFiles implements Serializable {
+        private boolean enable = false;
+
+        /**
+         * 请求目录时返回的文件
+         */
+        private String indexPage = "index.html";
+
+        /**
+         * 文件缓存的总容量，单位字节，0表示不缓存
+         */
+        private long cacheMaxBytes = 64 * 1024 * 1024;
+
+        /**
+         * 不超过该大小的文件以内存映射的方式缓存，更大的文件通过sendfile发送，单位字节
+         */
+        private int cacheMaxEntryBytes = 1024 * 1024;
+
+        /**
+         * 是否为缓存中可压缩的文件预先生成gzip变体
+         */
+        private boolean gzip = true;
+
+        /**
+         * 是否监听目录变化并使缓存失效。关闭后缓存不会失效，只适合发布后不再变化的目录
+         */
+        private boolean watch = true;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public StaticFiles setEnable(boolean enable) {
+            this.enable = enable;
+            return this;
+        }
+
+        public String getIndexPage() {
+            return indexPage;
+        }
+
+        public StaticFiles setIndexPage(String indexPage) {
+            this.indexPage = indexPage;
+            return this;
+        }
+
+        public long getCacheMaxBytes() {
+            return cacheMaxBytes;
+        }
+
+        public StaticFiles setCacheMaxBytes(long cacheMaxBytes) {
+            this.cacheMaxBytes = cacheMaxBytes;
+            return this;
+        }
+
+        public int getCacheMaxEntryBytes() {
+            return cacheMaxEntryBytes;
+        }
+
+        public StaticFiles setCacheMaxEntryBytes(int cacheMaxEntryBytes) {
+            this.cacheMaxEntryBytes = cacheMaxEntryBytes;
+            return this;
+        }
+
+        public boolean isGzip() {
+            return gzip;
+        }
+
+        public StaticFiles setGzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        public boolean isWatch() {
+            return watch;
+        }
+
+        public StaticFiles setWatch(boolean watch) {
+            this.watch = watch;
+            return this;
+        }
+    }
+
     public static class Log {
         private boolean enable = true;
         /**
@@ -0,0 +1,229 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.net.SocketAddress;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁的令牌桶限流
+ * <p>
+ * 令牌桶以GCRA(通用信元速率算法)的形式实现：每个桶只保存一个"理论到达时间"(TAT)，
+ * 放行一个请求即将TAT向后推移一个发放间隔，TAT超出当前时间一个突发容量时拒绝。
+ * 与按时间补充令牌的写法等价，但状态只有一个long，判断与更新通过一次CAS完成，无需加锁。
+ * <p>
+ * 桶按限流键存放在{@link ConcurrentHashMap}中，读取无锁。桶的数量不超过maxKeys，表满时清理闲置的桶，
+ * 闲置的桶令牌已经补满，删除后再次创建与原来等价；表仍然满时，新的键按哈希共用少量溢出桶，从而限制内存占用。
+ * <p>
+ * 清理是增量的：每个清理周期最多执行一次，每次从上次停下的位置继续，最多检查{@link #SWEEP_BATCH}个桶，
+ * 请求路径上的开销与表的大小无关，客户端无法通过大量新的键迫使每个请求都扫描整张表。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/17 20:12
+ */
+public class RateLimiter {
+
+    /**
+     * 单次清理最多检查的桶数量
+     */
+    static final int SWEEP_BATCH = 4096;
+
+    /**
+     * 溢出桶的数量
+     */
+    static final int OVERFLOW_STRIPES = 16;
+
+    /**
+     * 两次清理的最小间隔，单位纳秒
+     */
+    private static final long MIN_SWEEP_INTERVAL = 100_000_000L;
+
+    private final ProxyRoute.RateLimitKey keyType;
+
+    private final String header;
+
+    /**
+     * 发放一个令牌的间隔，单位纳秒
+     */
+    private final long interval;
+
+    /**
+     * 突发容量对应的时长，单位纳秒
+     */
+    private final long tolerance;
+
+    private final int maxKeys;
+
+    /**
+     * 按路由限流时使用的唯一桶
+     */
+    private final AtomicLong routeBucket;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets;
+
+    /**
+     * 表满后新的键按哈希共用的桶
+     */
+    private final AtomicLong[] overflowBuckets;
+
+    private final AtomicBoolean sweeping = new AtomicBoolean(false);
+
+    /**
+     * 两次清理的间隔。桶闲置一个突发容量的时长后令牌才会补满，更频繁的清理没有收益
+     */
+    private final long sweepInterval;
+
+    /**
+     * 下一次允许清理的时间
+     */
+    private final AtomicLong nextSweep;
+
+    /**
+     * 增量清理的游标，只在持有sweeping时访问
+     */
+    private Iterator<Map.Entry<String, AtomicLong>> cursor;
+
+    /**
+     * @param keyType 限流键
+     * @param header  按请求头限流时的请求头名称
+     * @param rate    每秒放行的请求数
+     * @param burst   突发容量，即桶的大小
+     * @param maxKeys 最多保留的桶数量
+     */
+    public RateLimiter(ProxyRoute.RateLimitKey keyType, String header, double rate, int burst, int maxKeys) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate must be greater than 0");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be greater than 0");
+        }
+        if (keyType == ProxyRoute.RateLimitKey.HEADER && (header == null || header.isEmpty())) {
+            throw new IllegalArgumentException("header is required when rate limiting by header");
+        }
+        this.keyType = keyType == null ? ProxyRoute.RateLimitKey.ROUTE : keyType;
+        this.header = header;
+        this.interval = Math.max(1, (long) (1_000_000_000L / rate));
+        this.tolerance = interval * burst;
+        this.maxKeys = Math.max(1, maxKeys);
+        long now = System.nanoTime();
+        this.routeBucket = new AtomicLong(now);
+        this.overflowBuckets = new AtomicLong[OVERFLOW_STRIPES];
+        for (int i = 0; i < OVERFLOW_STRIPES; i++) {
+            overflowBuckets[i] = new AtomicLong(now);
+        }
+        this.sweepInterval = Math.max(MIN_SWEEP_INTERVAL, tolerance);
+        this.nextSweep = new AtomicLong(now);
+        this.buckets = this.keyType == ProxyRoute.RateLimitKey.ROUTE ? null : new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 为请求申请一个令牌
+     *
+     * @param request 请求
+     * @return 0表示放行，否则为距离可以放行还需等待的纳秒数
+     */
+    public long tryAcquire(HttpServerRequest request) {
+        if (keyType == ProxyRoute.RateLimitKey.ROUTE) {
+            return acquire(routeBucket, System.nanoTime());
+        }
+        return tryAcquire(key(request), System.nanoTime());
+    }
+
+    /**
+     * 提取请求的限流键。按请求头限流但请求未携带该请求头时，退化为按客户端IP限流
+     *
+     * @param request 请求
+     * @return 限流键
+     */
+    protected String key(HttpServerRequest request) {
+        if (keyType == ProxyRoute.RateLimitKey.HEADER) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                return value;
+            }
+        }
+        SocketAddress remoteAddress = request.remoteAddress();
+        return remoteAddress == null ? "" : remoteAddress.hostAddress();
+    }
+
+    long tryAcquire(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = bucketFor(key, now);
+        }
+        return acquire(bucket, now);
+    }
+
+    private AtomicLong bucketFor(String key, long now) {
+        if (buckets.size() >= maxKeys) {
+            sweep(now);
+            if (buckets.size() >= maxKeys) {
+                return overflowBuckets[(key.hashCode() & 0x7fffffff) % OVERFLOW_STRIPES];
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    /**
+     * 增量删除令牌已补满的桶。每个清理周期最多一次，同一时刻只有一个线程清理，其余线程直接返回
+     *
+     * @param now 当前时间
+     */
+    void sweep(long now) {
+        long next = nextSweep.get();
+        if (now - next < 0 || !nextSweep.compareAndSet(next, now + sweepInterval)) {
+            return;
+        }
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (int i = 0; i < SWEEP_BATCH; i++) {
+                if (cursor == null || !cursor.hasNext()) {
+                    // 一轮结束，从头开始下一轮
+                    cursor = buckets.entrySet().iterator();
+                    if (!cursor.hasNext()) {
+                        return;
+                    }
+                }
+                // TAT早于当前时间，说明桶已补满。与正在申请令牌的线程并发时，最多多放行一个请求
+                if (cursor.next().getValue().get() <= now) {
+                    cursor.remove();
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private long acquire(AtomicLong bucket, long now) {
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + interval;
+            long wait = next - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public ProxyRoute.RateLimitKey getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * 当前保留的桶数量，不含按路由限流时的唯一桶与溢出桶
+     *
+     * @return 桶数量
+     */
+    public int size() {
+        return buckets == null ? 0 : buckets.size();
+    }
+}
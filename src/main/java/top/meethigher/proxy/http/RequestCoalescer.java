@@ -0,0 +1,293 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import top.meethigher.proxy.http.cache.CachePolicy;
+import top.meethigher.proxy.http.cache.HttpResponseCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 并发相同GET请求的合并(single-flight)
+ * <p>
+ * 同一时刻相同键的请求中，第一个请求作为leader正常请求上游，其余请求作为follower挂在leader的飞行记录上，
+ * 共享leader收到的响应头与逐段到达的响应体，因此上游只会看到一次请求。
+ * <p>
+ * follower只能在leader收到响应头之前加入；收到响应头后飞行记录即从表中移除，之后到达的请求会成为新的leader。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/09 16:12
+ */
+public class RequestCoalescer {
+
+    /**
+     * 已纳入合并键的请求头，小写。响应的Vary只包含这些请求头时才能共享
+     */
+    private static final Set<String> VARY_IN_KEY = new HashSet<>(Arrays.asList("accept-encoding", "cookie"));
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * 单个follower允许积压的最大字节数，超出则脱离leader
+     */
+    private final long maxFollowerLag;
+
+    public RequestCoalescer(long maxFollowerLag) {
+        this.maxFollowerLag = maxFollowerLag;
+    }
+
+    public long getMaxFollowerLag() {
+        return maxFollowerLag;
+    }
+
+    /**
+     * 生成合并键。携带Authorization的请求、非GET请求不参与合并。
+     * 由于Vary要等响应到达后才知道，这里保守地将Accept-Encoding与Cookie纳入键中，Vary含有其他请求头的响应由{@link #isShareable(MultiMap)}拒绝共享
+     *
+     * @param request 请求
+     * @return 合并键，不可合并时返回null
+     */
+    public static String key(HttpServerRequest request) {
+        if (!HttpMethod.GET.equals(request.method())) {
+            return null;
+        }
+        MultiMap headers = request.headers();
+        if (headers.contains("Authorization") || headers.contains("Range")) {
+            return null;
+        }
+        String primaryKey = HttpResponseCache.primaryKey(request.method().name(), request.host(), request.uri());
+        String acceptEncoding = headers.get("Accept-Encoding");
+        String cookie = headers.get("Cookie");
+        if (acceptEncoding == null && cookie == null) {
+            return primaryKey;
+        }
+        return primaryKey + "\n" + (acceptEncoding == null ? "" : acceptEncoding) + "\n" + (cookie == null ? "" : cookie);
+    }
+
+    /**
+     * 判断上游响应是否可以共享给follower。
+     * follower只保证与leader的合并键相同，因此Vary中只允许出现已纳入{@link #key(HttpServerRequest)}的请求头，
+     * 按其他请求头(如Accept-Language)区分的响应不能共享
+     *
+     * @param headers 上游响应头
+     * @return 是否可共享
+     */
+    public static boolean isShareable(MultiMap headers) {
+        if (headers.contains("Set-Cookie")) {
+            return false;
+        }
+        for (String vary : headers.getAll("Vary")) {
+            for (String name : vary.split(",")) {
+                name = name.trim();
+                if (!name.isEmpty() && !VARY_IN_KEY.contains(name.toLowerCase())) {
+                    return false;
+                }
+            }
+        }
+        String cc = CachePolicy.cacheControl(headers);
+        return cc == null || !(CachePolicy.hasDirective(cc, "private") || CachePolicy.hasDirective(cc, "no-store"));
+    }
+
+    /**
+     * 尝试成为leader
+     *
+     * @param key 合并键
+     * @return 成为leader时返回新的飞行记录；已存在leader时返回null
+     */
+    public Flight lead(String key) {
+        Flight flight = new Flight(key);
+        return flights.putIfAbsent(key, flight) == null ? flight : null;
+    }
+
+    /**
+     * 尝试作为follower加入已存在的飞行记录
+     *
+     * @param key        合并键
+     * @param subscriber follower
+     * @return 是否加入成功
+     */
+    public boolean follow(String key, Subscriber subscriber) {
+        Flight flight = flights.get(key);
+        return flight != null && flight.attach(subscriber);
+    }
+
+    public int inFlightSize() {
+        return flights.size();
+    }
+
+    /**
+     * follower接收leader响应的回调。回调在leader所在线程触发，实现方需自行切换到follower所在的Context
+     */
+    public interface Subscriber {
+
+        /**
+         * 收到响应头
+         *
+         * @param statusCode 响应码
+         * @param headers    上游响应头，只读
+         */
+        void onHeaders(int statusCode, MultiMap headers);
+
+        /**
+         * 收到一段响应体
+         *
+         * @param chunk 响应体片段，只读
+         * @return false表示follower积压过多，已脱离leader
+         */
+        boolean onChunk(Buffer chunk);
+
+        /**
+         * 响应结束
+         *
+         * @param succeeded 上游响应是否完整
+         */
+        void onEnd(boolean succeeded);
+
+        /**
+         * leader在收到响应头之前失败，或响应不可共享，follower需要独立请求上游
+         */
+        void onAbort();
+    }
+
+    /**
+     * leader的一次飞行记录
+     */
+    public class Flight {
+        private final String key;
+
+        /**
+         * 加入只发生在收到响应头之前，之后只有脱离与清空。分发时遍历的是写时复制的快照，与并发的修改互不影响
+         */
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+        /**
+         * 是否还允许follower加入
+         */
+        private boolean accepting = true;
+
+        /**
+         * 是否已向follower分发响应头
+         */
+        private boolean streaming = false;
+
+        private boolean finished = false;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        private synchronized boolean attach(Subscriber subscriber) {
+            if (!accepting) {
+                return false;
+            }
+            subscribers.add(subscriber);
+            return true;
+        }
+
+        private synchronized List<Subscriber> close() {
+            accepting = false;
+            flights.remove(key, this);
+            return new ArrayList<>(subscribers);
+        }
+
+        /**
+         * leader收到上游响应头时调用
+         *
+         * @param statusCode 响应码
+         * @param headers    上游响应头
+         */
+        public void headers(int statusCode, MultiMap headers) {
+            List<Subscriber> list = close();
+            if (!isShareable(headers)) {
+                abort();
+                return;
+            }
+            synchronized (this) {
+                streaming = true;
+            }
+            for (Subscriber subscriber : list) {
+                subscriber.onHeaders(statusCode, headers);
+            }
+        }
+
+        /**
+         * leader每收到一段响应体时调用
+         *
+         * @param chunk 响应体片段
+         */
+        public void chunk(Buffer chunk) {
+            synchronized (this) {
+                if (!streaming || finished) {
+                    return;
+                }
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.onChunk(chunk)) {
+                    // 积压过多的follower脱离leader，由其自行恢复
+                    subscribers.remove(subscriber);
+                }
+            }
+        }
+
+        /**
+         * leader请求结束时调用，可重复调用。若尚未分发响应头，则通知follower独立请求
+         *
+         * @param succeeded 上游响应是否完整
+         */
+        public void finish(boolean succeeded) {
+            List<Subscriber> list;
+            boolean wasStreaming;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                wasStreaming = streaming;
+            }
+            if (!wasStreaming) {
+                abort();
+                return;
+            }
+            synchronized (this) {
+                list = new ArrayList<>(subscribers);
+                subscribers.clear();
+            }
+            for (Subscriber subscriber : list) {
+                subscriber.onEnd(succeeded);
+            }
+        }
+
+        /**
+         * leader请求结束时调用。若尚未分发响应头，则通知follower独立请求；已进入流输出时由{@link #finish(boolean)}负责结束
+         */
+        public void cancel() {
+            synchronized (this) {
+                if (finished || streaming) {
+                    return;
+                }
+            }
+            abort();
+        }
+
+        private void abort() {
+            List<Subscriber> list;
+            synchronized (this) {
+                finished = true;
+                list = close();
+                subscribers.clear();
+            }
+            for (Subscriber subscriber : list) {
+                subscriber.onAbort();
+            }
+        }
+    }
+}
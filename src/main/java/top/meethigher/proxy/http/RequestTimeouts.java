@@ -0,0 +1,202 @@
+package top.meethigher.proxy.http;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个代理请求的首字节、空闲与总耗时超时
+ * <p>
+ * 所有请求共用一个时间轮，每个请求同一时刻只在时间轮上挂一个最近的截止时间，不会为每个请求创建Vert.x定时器。
+ * 空闲超时不在每次收到数据时重新挂载，只更新最后活动时间；到期时若期间有过活动，则按新的截止时间重新挂载。
+ * <p>
+ * 时间轮线程只负责将检查切换回请求所在的Context，状态的读写都在该Context内完成，无需同步。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/20 20:35
+ */
+public class RequestTimeouts implements TimerTask {
+
+    /**
+     * 超时类型
+     */
+    public enum Kind {
+        /**
+         * 请求发出后迟迟未收到响应头
+         */
+        FIRST_BYTE,
+        /**
+         * 响应体两次数据之间的间隔过长
+         */
+        IDLE,
+        /**
+         * 请求总耗时过长
+         */
+        TOTAL,
+    }
+
+    private static final int WAITING = 0;
+
+    private static final int AWAITING_HEADERS = 1;
+
+    private static final int STREAMING = 2;
+
+    private static final int DONE = 3;
+
+    private static final class WheelHolder {
+        /**
+         * 10ms一格，超时精度足够，且时间轮线程几乎没有开销
+         */
+        private static final HashedWheelTimer WHEEL = new HashedWheelTimer(r -> {
+            Thread thread = new Thread(r, "proxy-timeout-wheel");
+            thread.setDaemon(true);
+            return thread;
+        }, 10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    private final Context context;
+
+    private final long firstByteTimeout;
+
+    private final long idleTimeout;
+
+    /**
+     * 总耗时的截止时间，单位纳秒，0表示不限制
+     */
+    private final long totalDeadline;
+
+    private final Handler<Kind> expireHandler;
+
+    private int phase = WAITING;
+
+    private long phaseStart;
+
+    /**
+     * 升级后的连接会在两个方向各自的线程上记录活动，因此需要对检查线程可见
+     */
+    private volatile long lastActivity;
+
+    private Timeout timeout;
+
+    /**
+     * 时间轮上已挂载的截止时间
+     */
+    private long scheduledAt = Long.MAX_VALUE;
+
+    /**
+     * @param context       请求所在的Context
+     * @param config        超时配置
+     * @param expireHandler 超时回调，在请求所在的Context执行，最多执行一次
+     */
+    public RequestTimeouts(Context context, ProxyRoute.Timeout config, Handler<Kind> expireHandler) {
+        this.context = context;
+        this.firstByteTimeout = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getFirstByteTimeout()));
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getIdleTimeout()));
+        this.totalDeadline = config.getTotalTimeout() > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getTotalTimeout()) : 0;
+        this.expireHandler = expireHandler;
+        schedule();
+    }
+
+    /**
+     * 请求已发出，开始等待响应头
+     */
+    public void awaitFirstByte() {
+        transition(AWAITING_HEADERS);
+    }
+
+    /**
+     * 已收到响应头，开始输出响应体
+     */
+    public void streaming() {
+        transition(STREAMING);
+    }
+
+    /**
+     * 收到响应体数据
+     */
+    public void activity() {
+        lastActivity = System.nanoTime();
+    }
+
+    /**
+     * 请求已结束，取消超时
+     */
+    public void cancel() {
+        phase = DONE;
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+    }
+
+    public boolean isIdleTracked() {
+        return idleTimeout > 0;
+    }
+
+    private void transition(int next) {
+        if (phase == DONE) {
+            return;
+        }
+        phase = next;
+        phaseStart = lastActivity = System.nanoTime();
+        schedule();
+    }
+
+    private long nextDeadline() {
+        long deadline = totalDeadline == 0 ? Long.MAX_VALUE : totalDeadline;
+        if (phase == AWAITING_HEADERS && firstByteTimeout > 0) {
+            deadline = Math.min(deadline, phaseStart + firstByteTimeout);
+        } else if (phase == STREAMING && idleTimeout > 0) {
+            deadline = Math.min(deadline, lastActivity + idleTimeout);
+        }
+        return deadline;
+    }
+
+    /**
+     * 新的截止时间早于已挂载的截止时间时重新挂载，否则等待已挂载的到期后再判断
+     */
+    private void schedule() {
+        long deadline = nextDeadline();
+        if (deadline == Long.MAX_VALUE || (timeout != null && deadline >= scheduledAt)) {
+            return;
+        }
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        scheduledAt = deadline;
+        timeout = WheelHolder.WHEEL.newTimeout(this, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void run(Timeout expired) {
+        context.runOnContext(v -> check(expired));
+    }
+
+    private void check(Timeout expired) {
+        // 已被取消或重新挂载
+        if (phase == DONE || expired != timeout) {
+            return;
+        }
+        timeout = null;
+        scheduledAt = Long.MAX_VALUE;
+        long now = System.nanoTime();
+        Kind kind = null;
+        if (totalDeadline != 0 && now - totalDeadline >= 0) {
+            kind = Kind.TOTAL;
+        } else if (phase == AWAITING_HEADERS && firstByteTimeout > 0 && now - phaseStart >= firstByteTimeout) {
+            kind = Kind.FIRST_BYTE;
+        } else if (phase == STREAMING && idleTimeout > 0 && now - lastActivity >= idleTimeout) {
+            kind = Kind.IDLE;
+        }
+        if (kind == null) {
+            schedule();
+            return;
+        }
+        phase = DONE;
+        expireHandler.handle(kind);
+    }
+}
@@ -0,0 +1,86 @@
+package top.meethigher.proxy.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 重试预算
+ * <p>
+ * 以令牌桶限制重试与对冲请求的总量：每个原始请求存入ratio个令牌，每次重试或对冲取出1个令牌，令牌不足时放弃重试。
+ * 因此上游整体故障时，额外发出的请求最多为原始请求的ratio倍，不会因重试放大故障。桶的容量允许短时间内的突发重试。
+ * <p>
+ * 令牌以千分之一为单位存放在一个{@link AtomicLong}中，存取均为无锁操作。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/19 20:40
+ */
+public class RetryBudget {
+
+    private static final long UNIT = 1000;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    private final AtomicLong tokens;
+
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * @param ratio     每个原始请求存入的令牌数，即重试请求与原始请求数量之比的上限
+     * @param maxTokens 桶的容量，即允许突发的重试次数
+     */
+    public RetryBudget(double ratio, int maxTokens) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("ratio must not be negative");
+        }
+        this.deposit = (long) (ratio * UNIT);
+        this.capacity = Math.max(0, maxTokens) * UNIT;
+        this.tokens = new AtomicLong(capacity);
+    }
+
+    /**
+     * 每个原始请求调用一次
+     */
+    public void deposit() {
+        if (deposit == 0) {
+            return;
+        }
+        long current = tokens.get();
+        // 桶已满时无需写入，避免所有EventLoop争用同一个缓存行
+        while (current < capacity && !tokens.compareAndSet(current, Math.min(capacity, current + deposit))) {
+            current = tokens.get();
+        }
+    }
+
+    /**
+     * 尝试取出一个令牌
+     *
+     * @return true表示允许重试
+     */
+    public boolean tryWithdraw() {
+        while (true) {
+            long current = tokens.get();
+            if (current < UNIT) {
+                exhausted.increment();
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    public double getTokens() {
+        return (double) tokens.get() / UNIT;
+    }
+
+    /**
+     * 因预算不足而放弃的重试次数
+     *
+     * @return 次数
+     */
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+}
@@ -0,0 +1,159 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 由{@link ProxyRoute.Retry}编译而来的路由级重试与对冲策略
+ * <p>
+ * 对冲延迟取该路由近期响应耗时(收到响应头为止)的指定分位数，并限制在[hedgeMinDelay, hedgeMaxDelay]之间。
+ * 耗时按毫秒落入固定的计数桶，超出hedgeMaxDelay的计入最后一个桶，记录只需一次原子自增；
+ * 分位数每隔一定数量的样本重新计算一次，样本总数超出窗口时各桶减半，使分位数跟随近期的延迟变化。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/19 20:58
+ */
+public class RetryPolicy {
+
+    /**
+     * 每隔多少个样本重新计算一次分位数
+     */
+    private static final int RECOMPUTE_INTERVAL = 128;
+
+    /**
+     * 样本数达到该值后各桶减半
+     */
+    private static final long DECAY_THRESHOLD = 10000;
+
+    /**
+     * 样本数不足时不使用分位数，直接使用hedgeMaxDelay
+     */
+    private static final long MIN_SAMPLES = 100;
+
+    private final boolean retryEnable;
+
+    private final int maxRetries;
+
+    private final boolean hedge;
+
+    private final double hedgePercentile;
+
+    private final long hedgeMinDelay;
+
+    private final long hedgeMaxDelay;
+
+    private final RetryBudget budget;
+
+    private final AtomicLongArray histogram;
+
+    private final AtomicInteger samples = new AtomicInteger();
+
+    private volatile long hedgeDelay;
+
+    public RetryPolicy(ProxyRoute.Retry config) {
+        this.retryEnable = config.isRetryOnConnectFailure();
+        this.maxRetries = Math.max(0, config.getMaxRetries());
+        this.hedge = config.isHedge();
+        this.hedgePercentile = Math.max(0, Math.min(100, config.getHedgePercentile()));
+        this.hedgeMinDelay = Math.max(1, config.getHedgeMinDelay());
+        this.hedgeMaxDelay = Math.max(hedgeMinDelay, config.getHedgeMaxDelay());
+        this.budget = new RetryBudget(config.getBudgetRatio(), config.getBudgetMaxTokens());
+        this.histogram = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, hedgeMaxDelay + 1));
+        this.hedgeDelay = hedgeMaxDelay;
+    }
+
+    /**
+     * 是否为幂等方法，只有幂等请求才会重试或对冲
+     *
+     * @param method 请求方法
+     * @return true表示幂等
+     */
+    public static boolean isIdempotent(HttpMethod method) {
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) || HttpMethod.OPTIONS.equals(method)
+                || HttpMethod.PUT.equals(method) || HttpMethod.DELETE.equals(method) || HttpMethod.TRACE.equals(method);
+    }
+
+    /**
+     * 连接失败后是否可以重试。重试时请求体尚未发出，无需缓存请求体
+     *
+     * @param request 请求
+     * @param retries 已重试次数
+     * @return true表示可以重试
+     */
+    public boolean canRetry(HttpServerRequest request, int retries) {
+        return retryEnable && retries < maxRetries && isIdempotent(request.method());
+    }
+
+    /**
+     * 是否可以对冲。对冲的两次请求需要各自发出请求体，因此只对冲不带请求体的幂等请求
+     *
+     * @param request 请求
+     * @return true表示可以对冲
+     */
+    public boolean canHedge(HttpServerRequest request) {
+        if (!hedge || !isIdempotent(request.method()) || request.headers().contains("Transfer-Encoding")) {
+            return false;
+        }
+        String contentLength = request.getHeader("Content-Length");
+        return contentLength == null || "0".equals(contentLength.trim());
+    }
+
+    /**
+     * 记录一次响应耗时
+     *
+     * @param millis 从发起请求到收到响应头的毫秒数
+     */
+    public void recordLatency(long millis) {
+        int index = (int) Math.max(0, Math.min(histogram.length() - 1, millis));
+        histogram.incrementAndGet(index);
+        if (samples.incrementAndGet() % RECOMPUTE_INTERVAL == 0) {
+            recompute();
+        }
+    }
+
+    private void recompute() {
+        long total = 0;
+        for (int i = 0; i < histogram.length(); i++) {
+            total += histogram.get(i);
+        }
+        if (total < MIN_SAMPLES) {
+            return;
+        }
+        long rank = (long) Math.ceil(total * hedgePercentile / 100);
+        long seen = 0;
+        int index = histogram.length() - 1;
+        for (int i = 0; i < histogram.length(); i++) {
+            seen += histogram.get(i);
+            if (seen >= rank) {
+                index = i;
+                break;
+            }
+        }
+        hedgeDelay = Math.max(hedgeMinDelay, Math.min(hedgeMaxDelay, index));
+        if (total >= DECAY_THRESHOLD) {
+            for (int i = 0; i < histogram.length(); i++) {
+                histogram.getAndUpdate(i, v -> v / 2);
+            }
+        }
+    }
+
+    /**
+     * 当前的对冲延迟
+     *
+     * @return 毫秒数
+     */
+    public long getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    public boolean isHedge() {
+        return hedge;
+    }
+}
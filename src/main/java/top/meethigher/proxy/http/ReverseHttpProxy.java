@@ -1,10 +1,18 @@
 package top.meethigher.proxy.http;
 
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.util.NetUtil;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.*;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.streams.ReadStream;
 import io.vertx.ext.web.Route;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
@@ -12,11 +20,24 @@ import io.vertx.ext.web.handler.FileSystemAccess;
 import io.vertx.ext.web.handler.StaticHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-
+import top.meethigher.proxy.TransportOptions;
+import top.meethigher.proxy.http.cache.CachePolicy;
+import top.meethigher.proxy.http.cache.CachedResponse;
+import top.meethigher.proxy.http.cache.HttpResponseCache;
+import top.meethigher.proxy.http.compress.CompressingReadStream;
+import top.meethigher.proxy.http.compress.GzipEncoder;
+import top.meethigher.proxy.http.compress.ResponseCompressor;
+import top.meethigher.proxy.http.file.StaticFileHandler;
+import top.meethigher.proxy.http.log.AccessLogFormat;
+import top.meethigher.proxy.http.log.AccessLogWriter;
+
+import java.net.InetAddress;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
-
-import static top.meethigher.proxy.http.UrlParser.fastReplace;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 基于Vertx实现的HTTP反向代理
@@ -178,6 +199,86 @@ public class ReverseHttpProxy {
      */
     protected static final String INTERNAL_STATUS_CODE = "INTERNAL_STATUS_CODE";
 
+    /**
+     * 当前请求命中的编译后路由
+     */
+    protected static final String INTERNAL_ROUTE = "INTERNAL_ROUTE";
+
+    /**
+     * 当前请求经负载均衡选中的上游节点
+     */
+    protected static final String INTERNAL_UPSTREAM = "INTERNAL_UPSTREAM";
+
+    /**
+     * 响应缓存键
+     */
+    protected static final String INTERNAL_CACHE_KEY = "INTERNAL_CACHE_KEY";
+
+    /**
+     * 已过期但携带校验器的缓存条目，用于向上游发起条件请求
+     */
+    protected static final String INTERNAL_CACHE_STALE = "INTERNAL_CACHE_STALE";
+
+    /**
+     * 是否由代理向上游追加了条件请求头
+     */
+    protected static final String INTERNAL_CACHE_REVALIDATING = "INTERNAL_CACHE_REVALIDATING";
+
+    /**
+     * 作为leader发起的合并请求
+     */
+    protected static final String INTERNAL_FLIGHT = "INTERNAL_FLIGHT";
+
+    /**
+     * 获得并发名额后向上游发起请求的纳秒时间戳，用于采集RTT
+     */
+    protected static final String INTERNAL_LIMIT_START = "INTERNAL_LIMIT_START";
+
+    /**
+     * 连接上游失败后已重试的次数
+     */
+    protected static final String INTERNAL_RETRIES = "INTERNAL_RETRIES";
+
+    /**
+     * 当前尝试持有许可的并发限制，重试前或请求结束时归还
+     */
+    protected static final String INTERNAL_LIMIT_PERMIT = "INTERNAL_LIMIT_PERMIT";
+
+    /**
+     * 当前尝试计入了进行中请求数的上游节点，重试前或请求结束时释放
+     */
+    protected static final String INTERNAL_UPSTREAM_SLOT = "INTERNAL_UPSTREAM_SLOT";
+
+    /**
+     * 上游请求的超时
+     */
+    protected static final String INTERNAL_TIMEOUTS = "INTERNAL_TIMEOUTS";
+
+    /**
+     * 已超时的类型
+     */
+    protected static final String INTERNAL_TIMED_OUT = "INTERNAL_TIMED_OUT";
+
+    /**
+     * 发往上游的请求，超时时用于重置上游连接
+     */
+    protected static final String INTERNAL_CLIENT_REQUEST = "INTERNAL_CLIENT_REQUEST";
+
+    /**
+     * 流量镜像的影子请求，请求体在发往上游时复制给它
+     */
+    protected static final String INTERNAL_MIRROR = "INTERNAL_MIRROR";
+
+    /**
+     * 缓冲后的请求体
+     */
+    protected static final String INTERNAL_REQUEST_BUFFER = "INTERNAL_REQUEST_BUFFER";
+
+    /**
+     * 处理本次请求的路由Handler所使用的HTTP客户端。集群模式下每个实例的客户端不同
+     */
+    protected static final String INTERNAL_HTTP_CLIENT = "INTERNAL_HTTP_CLIENT";
+
     /**
      * 静态资源前缀
      */
@@ -195,6 +296,51 @@ public class ReverseHttpProxy {
     protected final Router router;
     protected final String name;
 
+    /**
+     * 通过Router/HttpServer/HttpClient创建时为null，此时无法为路由创建独立的上游连接池
+     */
+    protected final Vertx vertx;
+
+    /**
+     * 按上游源站划分的连接池
+     */
+    protected final UpstreamClientPool upstreamClientPool;
+
+    /**
+     * 按上游源站划分的自适应并发限制
+     */
+    protected final Map<String, ConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * 异步访问日志。为null时通过slf4j同步输出
+     */
+    protected AccessLogWriter accessLogWriter;
+
+    /**
+     * 上游DNS缓存。为null时由HttpClient自行解析上游主机名
+     */
+    protected DnsResolver dnsResolver;
+
+    /**
+     * 请求体与响应体缓冲共享的全局内存预算
+     */
+    protected volatile BufferBudget bufferBudget = new BufferBudget(256L * 1024 * 1024);
+
+    /**
+     * 基数树路由表，启用后替代Vertx Router的线性匹配。整表不可变，增删路由时原子替换
+     */
+    protected final AtomicReference<RouteTable<RouteBinding>> routeTable = new AtomicReference<>(RouteTable.empty());
+
+    /**
+     * 是否启用基数树路由表
+     */
+    protected boolean routeTableEnabled = false;
+
+    /**
+     * 路由配置文件监听
+     */
+    protected RouteFileWatcher routeFileWatcher;
+
 
     /**
      * 不应该被复制的逐跳标头
@@ -219,18 +365,76 @@ public class ReverseHttpProxy {
 
 
     protected ReverseHttpProxy(HttpServer httpServer, HttpClient httpClient, Router router, String name) {
+        this(null, httpServer, httpClient, router, name);
+    }
+
+    protected ReverseHttpProxy(Vertx vertx, HttpServer httpServer, HttpClient httpClient, Router router, String name) {
+        this.vertx = vertx;
         this.httpServer = httpServer;
         this.httpClient = httpClient;
         this.router = router;
         this.name = name;
+        this.upstreamClientPool = vertx == null ? null : new UpstreamClientPool(vertx);
     }
 
     public static ReverseHttpProxy create(Vertx vertx, String name) {
-        return new ReverseHttpProxy(vertx.createHttpServer(), vertx.createHttpClient(), Router.router(vertx), name);
+        return new ReverseHttpProxy(vertx, vertx.createHttpServer(), vertx.createHttpClient(), Router.router(vertx), name);
     }
 
     public static ReverseHttpProxy create(Vertx vertx) {
-        return new ReverseHttpProxy(vertx.createHttpServer(), vertx.createHttpClient(), Router.router(vertx), generateName());
+        return new ReverseHttpProxy(vertx, vertx.createHttpServer(), vertx.createHttpClient(), Router.router(vertx), generateName());
+    }
+
+    /**
+     * 按传输层配置创建代理，服务端、客户端以及按源站划分的连接池均使用该配置
+     *
+     * @param vertx     Vertx，需要通过{@link TransportOptions#createVertx()}创建才会启用原生传输
+     * @param name      名称
+     * @param transport 传输层配置
+     * @return 代理
+     */
+    public static ReverseHttpProxy create(Vertx vertx, String name, TransportOptions transport) {
+        return create(vertx, name, transport, null);
+    }
+
+    /**
+     * 按HTTP/2配置创建代理，服务端支持h2(TLS+ALPN)与h2c
+     *
+     * @param vertx Vertx
+     * @param name  名称
+     * @param http2 HTTP/2配置
+     * @return 代理
+     */
+    public static ReverseHttpProxy create(Vertx vertx, String name, Http2Options http2) {
+        return create(vertx, name, null, http2);
+    }
+
+    /**
+     * 按传输层与HTTP/2配置创建代理
+     *
+     * @param vertx     Vertx
+     * @param name      名称
+     * @param transport 传输层配置，可为null
+     * @param http2     HTTP/2配置，可为null
+     * @return 代理
+     */
+    public static ReverseHttpProxy create(Vertx vertx, String name, TransportOptions transport, Http2Options http2) {
+        HttpServerOptions serverOptions = new HttpServerOptions();
+        HttpClientOptions clientOptions = new HttpClientOptions();
+        if (transport != null) {
+            transport.apply(serverOptions);
+            transport.apply(clientOptions);
+        }
+        if (http2 != null) {
+            http2.apply(serverOptions);
+        }
+        ReverseHttpProxy proxy = new ReverseHttpProxy(vertx, vertx.createHttpServer(serverOptions), vertx.createHttpClient(clientOptions), Router.router(vertx), name);
+        proxy.upstreamClientPool.setTransport(transport);
+        return proxy;
+    }
+
+    public static ReverseHttpProxy create(Vertx vertx, Router router, HttpServer httpServer, HttpClient httpClient, String name) {
+        return new ReverseHttpProxy(vertx, httpServer, httpClient, router, name);
     }
 
     public static ReverseHttpProxy create(Router router, HttpServer httpServer, HttpClient httpClient, String name) {
@@ -302,30 +506,68 @@ public class ReverseHttpProxy {
         return resp;
     }
 
+    /**
+     * 获取当前请求命中的编译后路由
+     *
+     * @param ctx 路由上下文
+     * @return 编译后路由
+     */
+    protected CompiledRoute getCompiledRoute(RoutingContext ctx) {
+        return ctx.get(INTERNAL_ROUTE);
+    }
+
+    /**
+     * 获取当前请求经负载均衡选中的上游节点
+     *
+     * @param ctx 路由上下文
+     * @return 上游节点
+     */
+    protected HttpUpstream getUpstream(RoutingContext ctx) {
+        return ctx.get(INTERNAL_UPSTREAM);
+    }
+
     protected void doLog(RoutingContext ctx) {
-        if (getContextData(ctx, P_LOG) != null && Boolean.parseBoolean(getContextData(ctx, P_LOG).toString())) {
-            String logFormat = getContextData(ctx, P_LOG_FORMAT).toString();
-            if (logFormat == null || logFormat.isEmpty()) {
-                logFormat = LOG_FORMAT_DEFAULT;
-            }
-            String logInfo = logFormat
-                    .replace("{name}", getContextData(ctx, P_NAME).toString())
-                    .replace("{method}", getContextData(ctx, INTERNAL_METHOD).toString())
-                    .replace("{userAgent}", getContextData(ctx, INTERNAL_USER_AGENT).toString())
-                    .replace("{sourceUri}", getContextData(ctx, INTERNAL_SOURCE_URI).toString())
-                    .replace("{proxyUrl}", getContextData(ctx, INTERNAL_PROXY_URL).toString())
-                    .replace("{statusCode}", getContextData(ctx, INTERNAL_STATUS_CODE).toString())
-                    .replace("{serverHttpVersion}", getContextData(ctx, INTERNAL_SERVER_HTTP_VERSION).toString())
-                    .replace("{clientHttpVersion}", getContextData(ctx, INTERNAL_CLIENT_HTTP_VERSION).toString())
-                    .replace("{serverRemoteAddr}", getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR).toString())
-                    .replace("{serverLocalAddr}", getContextData(ctx, INTERNAL_SERVER_LOCAL_ADDR).toString())
-                    .replace("{clientLocalAddr}", getContextData(ctx, INTERNAL_CLIENT_LOCAL_ADDR).toString())
-                    .replace("{clientRemoteAddr}", getContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR).toString())
-                    .replace("{consumedMills}", String.valueOf(System.currentTimeMillis() - (Long) getContextData(ctx, INTERNAL_SEND_TIMESTAMP)));
-            log.info(logInfo);
+        CompiledRoute route = getCompiledRoute(ctx);
+        if (route == null || !route.isLogEnable()) {
+            return;
         }
+        long now = System.currentTimeMillis();
+        Long sendTimestamp = ctx.get(INTERNAL_SEND_TIMESTAMP);
+        long consumed = sendTimestamp == null ? 0 : now - sendTimestamp;
+        AccessLogWriter writer = accessLogWriter;
+        if (writer == null) {
+            Object[] values = new Object[AccessLogFormat.Field.VALUE_COUNT];
+            fillLogValues(ctx, route, values);
+            log.info(route.getAccessLogFormat().format(values, consumed));
+            return;
+        }
+        // EventLoop上只记录字段引用，格式化与写文件由写线程完成
+        long seq = writer.claim();
+        if (seq < 0) {
+            return;
+        }
+        AccessLogWriter.Record record = writer.record(seq)
+                .format(route.getAccessLogFormat())
+                .timestamp(now)
+                .consumed(consumed);
+        fillLogValues(ctx, route, record.values());
+        writer.publish(seq);
     }
 
+    private void fillLogValues(RoutingContext ctx, CompiledRoute route, Object[] values) {
+        values[AccessLogFormat.Field.NAME.ordinal()] = route.getName() == null ? "" : route.getName();
+        values[AccessLogFormat.Field.METHOD.ordinal()] = ctx.get(INTERNAL_METHOD);
+        values[AccessLogFormat.Field.SERVER_HTTP_VERSION.ordinal()] = ctx.get(INTERNAL_SERVER_HTTP_VERSION);
+        values[AccessLogFormat.Field.CLIENT_HTTP_VERSION.ordinal()] = ctx.get(INTERNAL_CLIENT_HTTP_VERSION);
+        values[AccessLogFormat.Field.USER_AGENT.ordinal()] = ctx.get(INTERNAL_USER_AGENT);
+        values[AccessLogFormat.Field.SERVER_REMOTE_ADDR.ordinal()] = ctx.get(INTERNAL_SERVER_REMOTE_ADDR);
+        values[AccessLogFormat.Field.SERVER_LOCAL_ADDR.ordinal()] = ctx.get(INTERNAL_SERVER_LOCAL_ADDR);
+        values[AccessLogFormat.Field.CLIENT_LOCAL_ADDR.ordinal()] = ctx.get(INTERNAL_CLIENT_LOCAL_ADDR);
+        values[AccessLogFormat.Field.CLIENT_REMOTE_ADDR.ordinal()] = ctx.get(INTERNAL_CLIENT_REMOTE_ADDR);
+        values[AccessLogFormat.Field.SOURCE_URI.ordinal()] = ctx.get(INTERNAL_SOURCE_URI);
+        values[AccessLogFormat.Field.PROXY_URL.ordinal()] = ctx.get(INTERNAL_PROXY_URL);
+        values[AccessLogFormat.Field.STATUS_CODE.ordinal()] = ctx.get(INTERNAL_STATUS_CODE);
+    }
 
     public ReverseHttpProxy port(int port) {
         this.sourcePort = port;
@@ -337,6 +579,57 @@ public class ReverseHttpProxy {
         return this;
     }
 
+    /**
+     * 启用基数树路由表。启用后新增的路由由路由表按最长匹配分发，不再逐条注册到Vertx Router；
+     * 静态资源路由、带路径参数或正则的路由仍注册到Vertx Router，并在路由表未命中时参与匹配
+     *
+     * @return 实例本身
+     */
+    public ReverseHttpProxy enableRouteTable() {
+        if (!routeTableEnabled) {
+            routeTableEnabled = true;
+            router.route().order(Integer.MIN_VALUE).setName(name + "-route-table").handler(this::dispatch);
+        }
+        return this;
+    }
+
+    /**
+     * 使用异步访问日志替代slf4j同步输出，代理停止时一并关闭
+     *
+     * @param accessLogWriter 异步访问日志
+     * @return 实例本身
+     */
+    public ReverseHttpProxy accessLog(AccessLogWriter accessLogWriter) {
+        this.accessLogWriter = accessLogWriter;
+        return this;
+    }
+
+    /**
+     * 使用DNS缓存解析上游主机名，连接失败时换该主机名的下一个地址重新连接，代理停止时一并关闭
+     *
+     * @param dnsResolver DNS缓存
+     * @return 实例本身
+     */
+    public ReverseHttpProxy dns(DnsResolver dnsResolver) {
+        this.dnsResolver = dnsResolver;
+        return this;
+    }
+
+    /**
+     * 设置所有路由的请求体与响应体缓冲共用的内存上限，超出后缓冲写入临时文件
+     *
+     * @param maxBytes 字节数
+     * @return 实例本身
+     */
+    public ReverseHttpProxy bufferMemory(long maxBytes) {
+        this.bufferBudget = new BufferBudget(maxBytes);
+        return this;
+    }
+
+    public BufferBudget getBufferBudget() {
+        return bufferBudget;
+    }
+
     public void start() {
         httpServer.requestHandler(router)
                 .exceptionHandler(e -> log.error("{} socket errors happening before the HTTP connection", name, e))
@@ -349,6 +642,36 @@ public class ReverseHttpProxy {
         httpServer.close()
                 .onSuccess(v -> log.info("{} closed", name))
                 .onFailure(e -> log.error("{} close failed", name, e));
+        if (upstreamClientPool != null) {
+            upstreamClientPool.close();
+        }
+        if (routeFileWatcher != null) {
+            routeFileWatcher.stop();
+        }
+        if (accessLogWriter != null) {
+            accessLogWriter.close();
+        }
+        if (dnsResolver != null) {
+            dnsResolver.close();
+        }
+        for (RouteTable.Entry<RouteBinding> entry : routeTable.get().getEntries()) {
+            stopBackgroundTasks(entry.getValue().route);
+        }
+        for (Route route : getRoutes()) {
+            Object compiledRoute = route.getMetadata(INTERNAL_ROUTE);
+            if (compiledRoute instanceof CompiledRoute) {
+                stopBackgroundTasks((CompiledRoute) compiledRoute);
+            }
+        }
+    }
+
+    /**
+     * 停止路由的主动健康检查与静态资源目录监听，关闭流量镜像的连接池
+     *
+     * @param compiledRoute 编译后路由
+     */
+    private void stopBackgroundTasks(CompiledRoute compiledRoute) {
+        compiledRoute.getRuntime().close();
     }
 
     public ReverseHttpProxy addRoute(ProxyRoute proxyRoute) {
@@ -372,17 +695,42 @@ public class ReverseHttpProxy {
             Integer order,
             boolean printLog
     ) {
+        String targetUrl = proxyRoute.getTargetUrl();
+        boolean isStatic = targetUrl != null && targetUrl.startsWith(STATIC);
+        if (routeTableEnabled && !isStatic && RouteTable.isSupported(proxyRoute.getSourceUrl())) {
+            RouteTable.Entry<RouteBinding> entry = bind(proxyRoute, order);
+            routeTable.updateAndGet(table -> table.add(entry));
+            if (printLog) {
+                jsonLog(proxyRoute);
+            }
+            return this;
+        }
         Route route = router.route(proxyRoute.getSourceUrl()).setName(proxyRoute.getName());
         if (order != null) {
             route.order(order);
         }
+        if (proxyRoute.getHost() != null) {
+            route.virtualHost(proxyRoute.getHost());
+        }
         Map<String, String> map = proxyRoute.toMap();
         for (String key : map.keySet()) {
             setRouteMetadata(route, key, map.get(key));
         }
-        String targetUrl = proxyRoute.getTargetUrl();
-        if (targetUrl.startsWith(STATIC)) {
+        CompiledRoute compiledRoute = CompiledRoute.compile(proxyRoute);
+        route.putMetadata(INTERNAL_ROUTE, compiledRoute);
+        if (isStatic) {
             String staticPath = targetUrl.replace(STATIC, "");
+            ProxyRoute.StaticFiles staticFiles = proxyRoute.getStaticFiles();
+            if (staticFiles != null && staticFiles.isEnable()) {
+                StaticFileHandler staticFileHandler = new StaticFileHandler(staticPath,
+                        compiledRoute.isMultiLevel() ? compiledRoute.getStripPrefix() : null, staticFiles);
+                compiledRoute.getRuntime().setStaticFileHandler(staticFileHandler);
+                route.handler(staticFileHandler);
+                if (printLog) {
+                    jsonLog(proxyRoute);
+                }
+                return this;
+            }
             // https://github.com/vert-x3/vertx-web/issues/204
             StaticHandler staticHandler = StaticHandler.create(FileSystemAccess.ROOT, staticPath)
                     .setDirectoryListing(false)
@@ -390,7 +738,11 @@ public class ReverseHttpProxy {
                     .setIndexPage("index.html");
             route.handler(staticHandler);
         } else {
-            route.handler(routingContextHandler(httpClient));
+            bindUpstreamPools(proxyRoute, compiledRoute);
+            bindConcurrencyLimiters(proxyRoute, compiledRoute);
+            startHealthCheck(compiledRoute);
+            startMirror(compiledRoute);
+            route.handler(routingContextHandler(httpClient, compiledRoute));
         }
         if (printLog) {
             jsonLog(proxyRoute);
@@ -398,143 +750,390 @@ public class ReverseHttpProxy {
         return this;
     }
 
-    protected void jsonLog(ProxyRoute proxyRoute) {
-        Map<String, Object> map = new LinkedHashMap<>(proxyRoute.toMap());
-        log.info("add Route\n{}", new JsonObject(map).encodePrettily());
+    /**
+     * 原子地替换路由表中的全部路由，替换前已进入处理流程的请求仍使用旧路由完成。需先启用路由表
+     * <p>
+     * 新旧路由按配置比对，配置未变化的路由直接复用原有的编译结果，保留其缓存与负载均衡状态；只有新增或变化的路由才会重新编译。
+     *
+     * @param proxyRoutes 新的全部路由
+     * @return 实例本身
+     */
+    public synchronized ReverseHttpProxy replaceRoutes(List<ProxyRoute> proxyRoutes) {
+        if (!routeTableEnabled) {
+            throw new IllegalStateException(name + " route table is not enabled");
+        }
+        for (ProxyRoute proxyRoute : proxyRoutes) {
+            String targetUrl = proxyRoute.getTargetUrl();
+            if (targetUrl != null && targetUrl.startsWith(STATIC)) {
+                throw new IllegalArgumentException("static route " + proxyRoute.getName() + " is not supported by the route table");
+            }
+            if (!RouteTable.isSupported(proxyRoute.getSourceUrl())) {
+                throw new IllegalArgumentException("route " + proxyRoute.getName() + " " + proxyRoute.getSourceUrl() + " is not supported by the route table");
+            }
+        }
+        long start = System.nanoTime();
+        while (true) {
+            RouteTable<RouteBinding> current = routeTable.get();
+            Map<Map<String, String>, Deque<RouteTable.Entry<RouteBinding>>> reusable = new HashMap<>();
+            for (RouteTable.Entry<RouteBinding> entry : current.getEntries()) {
+                reusable.computeIfAbsent(entry.getValue().fingerprint, k -> new ArrayDeque<>()).add(entry);
+            }
+            List<RouteTable.Entry<RouteBinding>> entries = new ArrayList<>(proxyRoutes.size());
+            List<RouteTable.Entry<RouteBinding>> bound = new ArrayList<>();
+            for (ProxyRoute proxyRoute : proxyRoutes) {
+                Deque<RouteTable.Entry<RouteBinding>> candidates = reusable.get(proxyRoute.toMap());
+                RouteTable.Entry<RouteBinding> entry = candidates == null ? null : candidates.poll();
+                if (entry == null) {
+                    entry = bind(proxyRoute, null);
+                    bound.add(entry);
+                }
+                entries.add(entry);
+            }
+            // 期间有其他线程增删了路由时，基于最新的路由表重新比对
+            if (!routeTable.compareAndSet(current, RouteTable.of(entries))) {
+                for (RouteTable.Entry<RouteBinding> entry : bound) {
+                    release(entry.getValue().route);
+                }
+                continue;
+            }
+            int reused = entries.size() - bound.size();
+            int removed = 0;
+            for (Deque<RouteTable.Entry<RouteBinding>> candidates : reusable.values()) {
+                for (RouteTable.Entry<RouteBinding> entry : candidates) {
+                    release(entry.getValue().route);
+                    removed++;
+                }
+            }
+            log.info("{} replaced routes in {} ms, {} unchanged, {} added or changed, {} removed",
+                    name, (System.nanoTime() - start) / 1_000_000, reused, entries.size() - reused, removed);
+            return this;
+        }
     }
 
+    /**
+     * 从路由配置文件加载全部路由，并原子地替换路由表。文件的读取、解析与编译均不占用EventLoop
+     *
+     * @param file 路由配置文件，格式参考{@link RouteConfig}
+     * @return 加载结果
+     */
+    public Future<Void> loadRoutes(String file) {
+        if (vertx == null) {
+            throw new IllegalStateException(name + " was not created with a Vertx instance");
+        }
+        enableRouteTable();
+        return vertx.fileSystem().readFile(file)
+                .compose(buffer -> vertx.executeBlocking((Callable<Void>) () -> {
+                    replaceRoutes(RouteConfig.parse(buffer.toString()));
+                    return null;
+                }, false));
+    }
 
-    public ReverseHttpProxy removeRoute(String name) {
-        for (Route route : getRoutes()) {
-            if (name.equals(route.getName())) {
-                route.remove();
-                log.info("remove Route {}--{}", name, route.getMetadata(P_SOURCE_URL));
-                //break;//允许名称重复的一并删除
-            }
+    /**
+     * 加载路由配置文件，并监听文件变化，变化稳定后自动重新加载
+     *
+     * @param file           路由配置文件
+     * @param debounceMillis 文件最后一次变化后等待的毫秒数，用于合并连续的编辑
+     * @return 实例本身
+     */
+    public ReverseHttpProxy watchRoutes(String file, long debounceMillis) {
+        if (vertx == null) {
+            throw new IllegalStateException(name + " was not created with a Vertx instance");
         }
+        if (routeFileWatcher != null) {
+            routeFileWatcher.stop();
+        }
+        routeFileWatcher = new RouteFileWatcher(vertx, this, file, debounceMillis);
+        routeFileWatcher.start();
         return this;
     }
 
-    public List<Route> getRoutes() {
-        return router.getRoutes();
+    /**
+     * 获取当前路由表
+     *
+     * @return 路由表
+     */
+    public RouteTable<RouteBinding> getRouteTable() {
+        return routeTable.get();
     }
 
-
     /**
-     * 将标头转为小写后，判断是否是逐跳标头
-     * 时间复杂度为 O(1)
+     * 编译路由并绑定处理器，生成路由表条目
      *
-     * @param headerName 标头名称
-     * @return 是否是逐跳标头
+     * @param proxyRoute 路由信息
+     * @param order      order越小，优先级越高
+     * @return 路由表条目
      */
-    protected boolean isHopByHopHeader(String headerName) {
-        return headerName != null && HOP_BY_HOP_HEADERS_SET.contains(headerName.toLowerCase());
+    protected RouteTable.Entry<RouteBinding> bind(ProxyRoute proxyRoute, Integer order) {
+        CompiledRoute compiledRoute = CompiledRoute.compile(proxyRoute);
+        bindUpstreamPools(proxyRoute, compiledRoute);
+        bindConcurrencyLimiters(proxyRoute, compiledRoute);
+        startHealthCheck(compiledRoute);
+        startMirror(compiledRoute);
+        RouteBinding binding = new RouteBinding(compiledRoute, routingContextHandler(httpClient, compiledRoute), proxyRoute.toMap());
+        return new RouteTable.Entry<>(proxyRoute.getName(), proxyRoute.getHost(), proxyRoute.getSourceUrl(),
+                order == null ? 0 : order, binding);
     }
 
-
     /**
-     * 复制请求头。复制的过程中忽略逐跳标头
+     * 路由表分发。未命中时交由Vertx Router中的其他路由处理
      *
-     * @param ctx      路由上下文
-     * @param realReq  真实请求
-     * @param proxyReq 代理请求
+     * @param ctx 路由上下文
      */
-    protected void copyRequestHeaders(RoutingContext ctx, HttpServerRequest realReq, HttpClientRequest proxyReq) {
-        proxyReq.headers().clear();
-        for (String headerName : realReq.headers().names()) {
-            // 若是逐跳标头，则跳过
-            if (isHopByHopHeader(headerName)) {
-                continue;
-            }
-            // 针对Host请求头进行忽略
-            if ("host".equalsIgnoreCase(headerName)) {
-                continue;
-            }
-            proxyReq.putHeader(headerName, realReq.headers().get(headerName));
-        }
-
-        // 传递真实客户端信息
-        if (getContextData(ctx, P_FORWARD_IP) != null && Boolean.parseBoolean(getContextData(ctx, P_FORWARD_IP).toString())) {
-            String firstForward = realReq.getHeader("X-Forwarded-For");
-            String secondForward = realReq.remoteAddress() == null ? null : realReq.remoteAddress().hostAddress();
-            String forward = firstForward == null ? secondForward : firstForward + ", " + secondForward;
-            proxyReq.putHeader("X-Forwarded-For", forward);
-            proxyReq.putHeader("X-Forwarded-Proto", realReq.scheme());
-        }
-        // 传递代理主机Host
-        if (getContextData(ctx, P_PRESERVE_HOST) != null && Boolean.parseBoolean(getContextData(ctx, P_PRESERVE_HOST).toString())) {
-            proxyReq.putHeader("Host", realReq.headers().get("Host"));
-        }
-        // 控制实际代理请求的长连接
-        if (getContextData(ctx, P_HTTP_KEEPALIVE) != null && Boolean.parseBoolean(getContextData(ctx, P_HTTP_KEEPALIVE).toString())) {
-            proxyReq.putHeader("Connection", "keep-alive");
-        } else {
-            proxyReq.putHeader("Connection", "close");
+    protected void dispatch(RoutingContext ctx) {
+        RouteTable.Entry<RouteBinding> entry = routeTable.get().match(ctx.request().host(), ctx.normalizedPath());
+        if (entry == null) {
+            ctx.next();
+            return;
         }
+        entry.getValue().handler.handle(ctx);
     }
 
     /**
-     * 复制响应头。复制的过程中忽略逐跳标头
+     * 释放路由占用的资源
      *
-     * @param ctx       路由上下文
-     * @param realReq   真实请求
-     * @param realResp  真实响应
-     * @param proxyResp 代理响应
+     * @param compiledRoute 编译后路由
      */
-    protected void copyResponseHeaders(RoutingContext ctx, HttpServerRequest realReq, HttpServerResponse realResp, HttpClientResponse proxyResp) {
-        realResp.headers().clear();
-
-        Map<String, String> needSetHeaderMap = new LinkedHashMap<>();
-        for (String headerName : proxyResp.headers().names()) {
-            // 若是逐跳标头，则跳过
-            if (isHopByHopHeader(headerName)) {
-                continue;
-            }
-            // 保留Cookie
-            if ("Set-Cookie".equalsIgnoreCase(headerName) || "Set-Cookie2".equalsIgnoreCase(headerName)) {
-                if (getContextData(ctx, P_PRESERVE_COOKIES) != null && Boolean.parseBoolean(getContextData(ctx, P_PRESERVE_COOKIES).toString())) {
-                    needSetHeaderMap.put(headerName, proxyResp.headers().get(headerName));
-                }
-            }
-            // 重写重定向Location
-            else if ("Location".equalsIgnoreCase(headerName)) {
-                String value = rewriteLocation(ctx, realReq.absoluteURI(), proxyResp.headers().get(headerName));
-                needSetHeaderMap.put(headerName, value);
-            } else {
-                needSetHeaderMap.put(headerName, proxyResp.headers().get(headerName));
-            }
+    protected void release(CompiledRoute compiledRoute) {
+        // 释放缓存占用的堆外内存
+        if (compiledRoute.getCache() != null) {
+            compiledRoute.getCache().clear();
         }
-        // 跨域由代理掌控
-        if (getContextData(ctx, P_CORS_CONTROL) != null && Boolean.parseBoolean(getContextData(ctx, P_CORS_CONTROL).toString())) {
-            // 允许跨域
-            if (getContextData(ctx, P_ALLOW_CORS) != null && Boolean.parseBoolean(getContextData(ctx, P_ALLOW_CORS).toString())) {
-                String header = realReq.getHeader("origin");
-                if (header == null || header.isEmpty()) {
-                    needSetHeaderMap.put("Access-Control-Allow-Origin", "*");
-                } else {
-                    needSetHeaderMap.put("Access-Control-Allow-Origin", header);
-                }
-                needSetHeaderMap.put("Access-Control-Allow-Methods", "*");
-                needSetHeaderMap.put("Access-Control-Allow-Headers", "*");
-                needSetHeaderMap.put("Access-Control-Allow-Credentials", "true");
-                needSetHeaderMap.put("Access-Control-Expose-Headers", "*");
-            }
-            // 不允许跨域
-            else {
-                Iterator<String> iterator = needSetHeaderMap.keySet().iterator();
-                while (iterator.hasNext()) {
-                    String next = iterator.next().toLowerCase(Locale.ROOT);
-                    if (allowCORSHeaders.contains(next)) {
-                        iterator.remove();
-                    }
+        if (compiledRoute.getCompressor() != null && compiledRoute.getCompressor().getVariantCache() != null) {
+            compiledRoute.getCompressor().getVariantCache().clear();
+        }
+        // 归还上游连接池的引用，最后一个引用释放后连接池延迟关闭
+        if (upstreamClientPool != null) {
+            for (HttpUpstream upstream : compiledRoute.getUpstreams()) {
+                if (upstream.getHttpClient() != null) {
+                    upstreamClientPool.release(upstream.getHttpClient());
                 }
             }
         }
-
-
-        for (String key : needSetHeaderMap.keySet()) {
-            realResp.headers().set(key, needSetHeaderMap.get(key));
-        }
+        stopBackgroundTasks(compiledRoute);
+    }
+
+    /**
+     * 若路由启用了主动健康检查，则开始定时探测其上游节点
+     *
+     * @param compiledRoute 编译后路由
+     */
+    protected void startHealthCheck(CompiledRoute compiledRoute) {
+        if (compiledRoute.getHealthCheck() == null) {
+            return;
+        }
+        if (vertx == null) {
+            log.warn("{} was not created with a Vertx instance, health check of route {} is disabled", name, compiledRoute.getName());
+            return;
+        }
+        HttpHealthChecker checker = new HttpHealthChecker(vertx, httpClient, compiledRoute.getUpstreams(), compiledRoute.getHealthCheck());
+        compiledRoute.getRuntime().setHealthChecker(checker);
+        checker.start();
+    }
+
+    /**
+     * 若路由启用了流量镜像，则为影子上游创建独立的连接池
+     *
+     * @param compiledRoute 编译后路由
+     */
+    protected void startMirror(CompiledRoute compiledRoute) {
+        if (compiledRoute.getMirror() == null) {
+            return;
+        }
+        if (vertx == null) {
+            log.warn("{} was not created with a Vertx instance, mirror of route {} is disabled", name, compiledRoute.getName());
+            return;
+        }
+        compiledRoute.getRuntime().setTrafficMirror(new TrafficMirror(vertx, compiledRoute.getMirror(),
+                upstreamClientPool == null ? null : upstreamClientPool.transport));
+    }
+
+    /**
+     * 若路由启用了独立连接池，则为每个上游节点绑定其源站对应的HttpClient
+     *
+     * @param proxyRoute    路由信息
+     * @param compiledRoute 编译后路由
+     */
+    protected void bindUpstreamPools(ProxyRoute proxyRoute, CompiledRoute compiledRoute) {
+        ProxyRoute.ConnectionPool pool = proxyRoute.getConnectionPool();
+        if (pool == null || !pool.isEnable()) {
+            return;
+        }
+        if (upstreamClientPool == null) {
+            log.warn("{} was not created with a Vertx instance, route {} falls back to the shared HttpClient", name, proxyRoute.getName());
+            return;
+        }
+        for (HttpUpstream upstream : compiledRoute.getUpstreams()) {
+            upstream.setHttpClient(upstreamClientPool.getOrCreate(upstream.getTargetUrl(), pool));
+        }
+    }
+
+    /**
+     * 若路由启用了并发限制，则为每个上游节点绑定其源站对应的并发限制
+     *
+     * @param proxyRoute    路由信息
+     * @param compiledRoute 编译后路由
+     */
+    protected void bindConcurrencyLimiters(ProxyRoute proxyRoute, CompiledRoute compiledRoute) {
+        ProxyRoute.ConcurrencyLimit config = proxyRoute.getConcurrencyLimit();
+        if (config == null || !config.isEnable()) {
+            return;
+        }
+        for (HttpUpstream upstream : compiledRoute.getUpstreams()) {
+            String origin = UrlParser.parseUrl(upstream.getTargetUrl()).getFormatHostPort();
+            upstream.setConcurrencyLimiter(concurrencyLimiters.computeIfAbsent(origin, k -> new ConcurrencyLimiter(k,
+                    config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(), config.getMaxQueueSize(), config.getQueueTimeout())));
+        }
+    }
+
+    /**
+     * 获取上游源站的并发限制，可用于查看当前上限、排队与拒绝数量
+     *
+     * @param targetUrl 上游地址
+     * @return 并发限制。不存在时返回null
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter(String targetUrl) {
+        return concurrencyLimiters.get(UrlParser.parseUrl(targetUrl).getFormatHostPort());
+    }
+
+    protected void jsonLog(ProxyRoute proxyRoute) {
+        Map<String, Object> map = new LinkedHashMap<>(proxyRoute.toMap());
+        log.info("add Route\n{}", new JsonObject(map).encodePrettily());
+    }
+
+
+    public ReverseHttpProxy removeRoute(String name) {
+        if (routeTableEnabled) {
+            RouteTable<RouteBinding> old = routeTable.getAndUpdate(table -> table.remove(name));
+            for (RouteTable.Entry<RouteBinding> entry : old.getEntries()) {
+                if (name.equals(entry.getName())) {
+                    release(entry.getValue().route);
+                    log.info("remove Route {}--{}", name, entry.getPattern());
+                }
+            }
+        }
+        for (Route route : getRoutes()) {
+            if (name.equals(route.getName())) {
+                route.remove();
+                Object compiledRoute = route.getMetadata(INTERNAL_ROUTE);
+                if (compiledRoute instanceof CompiledRoute) {
+                    release((CompiledRoute) compiledRoute);
+                }
+                log.info("remove Route {}--{}", name, route.getMetadata(P_SOURCE_URL));
+                //break;//允许名称重复的一并删除
+            }
+        }
+        return this;
+    }
+
+    public List<Route> getRoutes() {
+        return router.getRoutes();
+    }
+
+    /**
+     * 获取路由的响应缓存，可用于查看命中、未命中与淘汰次数
+     *
+     * @param name 路由名称
+     * @return 响应缓存。路由不存在或未启用缓存时返回null
+     */
+    public HttpResponseCache getResponseCache(String name) {
+        for (RouteTable.Entry<RouteBinding> entry : routeTable.get().getEntries()) {
+            if (name.equals(entry.getName())) {
+                return entry.getValue().route.getCache();
+            }
+        }
+        for (Route route : getRoutes()) {
+            if (name.equals(route.getName()) && route.getMetadata(INTERNAL_ROUTE) instanceof CompiledRoute) {
+                return ((CompiledRoute) route.getMetadata(INTERNAL_ROUTE)).getCache();
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * 忽略大小写判断是否是逐跳标头，不会产生额外的对象分配
+     *
+     * @param headerName 标头名称
+     * @return 是否是逐跳标头
+     */
+    protected boolean isHopByHopHeader(String headerName) {
+        return HeaderForwarder.isHopByHopHeader(headerName);
+    }
+
+
+    /**
+     * 复制请求头。复制的过程中忽略逐跳标头
+     *
+     * @param ctx      路由上下文
+     * @param realReq  真实请求
+     * @param proxyReq 代理请求
+     */
+    protected void copyRequestHeaders(RoutingContext ctx, HttpServerRequest realReq, HttpClientRequest proxyReq) {
+        CompiledRoute route = getCompiledRoute(ctx);
+        proxyReq.headers().clear();
+        // 单次遍历复制，忽略逐跳标头与Host，并保留同名的多值标头
+        HeaderForwarder.copyRequestHeaders(realReq.headers(), proxyReq.headers());
+
+        // 传递真实客户端信息
+        if (route.isForwardIp()) {
+            String firstForward = realReq.getHeader("X-Forwarded-For");
+            String secondForward = realReq.remoteAddress() == null ? null : realReq.remoteAddress().hostAddress();
+            String forward = firstForward == null ? secondForward : firstForward + ", " + secondForward;
+            proxyReq.putHeader("X-Forwarded-For", forward);
+            proxyReq.putHeader("X-Forwarded-Proto", realReq.scheme());
+        }
+        // 传递代理主机Host
+        if (route.isPreserveHost()) {
+            // HTTP/2请求没有Host，使用:authority
+            String host = realReq.headers().get("Host");
+            proxyReq.putHeader("Host", host == null ? realReq.host() : host);
+        }
+        // 控制实际代理请求的长连接。HTTP/2禁止携带Connection等连接级标头，连接复用由多路复用保证
+        if (proxyReq.version() == HttpVersion.HTTP_2) {
+            return;
+        }
+        if (route.isHttpKeepAlive()) {
+            proxyReq.putHeader("Connection", "keep-alive");
+        } else {
+            proxyReq.putHeader("Connection", "close");
+        }
+    }
+
+    /**
+     * 复制响应头。复制的过程中忽略逐跳标头
+     *
+     * @param ctx       路由上下文
+     * @param realReq   真实请求
+     * @param realResp  真实响应
+     * @param proxyResp 代理响应
+     */
+    protected void copyResponseHeaders(RoutingContext ctx, HttpServerRequest realReq, HttpServerResponse realResp, HttpClientResponse proxyResp) {
+        copyResponseHeaders(ctx, realReq, realResp, proxyResp.headers());
+    }
+
+    /**
+     * 复制响应头。复制的过程中忽略逐跳标头
+     *
+     * @param ctx      路由上下文
+     * @param realReq  真实请求
+     * @param realResp 真实响应
+     * @param headers  上游响应头，或缓存中的响应头
+     */
+    protected void copyResponseHeaders(RoutingContext ctx, HttpServerRequest realReq, HttpServerResponse realResp, MultiMap headers) {
+        CompiledRoute route = getCompiledRoute(ctx);
+        realResp.headers().clear();
+        // 单次遍历直接写入响应头，忽略逐跳标头，并保留多个Set-Cookie
+        HeaderForwarder.copyResponseHeaders(headers, realResp.headers(),
+                route.isPreserveCookies(), route.isCorsControl() && !route.isAllowCors());
+        // 重写重定向Location
+        String location = realResp.headers().get("Location");
+        if (location != null) {
+            realResp.headers().set("Location", rewriteLocation(ctx, realReq.absoluteURI(), location));
+        }
+        // 跨域由代理掌控，且允许跨域
+        if (route.isAllowCors()) {
+            route.applyCorsHeaders(realResp.headers(), realReq.getHeader("origin"));
+        }
     }
 
     /**
@@ -547,11 +1146,16 @@ public class ReverseHttpProxy {
      */
     protected String rewriteLocation(RoutingContext ctx, String url, String location) {
         // 若重定向的地址，在反向代理的范围内，则进行重写
-        String targetUrl = getContextData(ctx, P_TARGET_URL).toString();
-        if (location != null && location.startsWith(targetUrl)) {
-            UrlParser.ParsedUrl parsedUrl = UrlParser.parseUrl(url);
-            String locationUri = location.replace(targetUrl, "");
-            return parsedUrl.getFormatHostPort() + (getContextData(ctx, P_SOURCE_URL).toString().replace("/*", "")) + locationUri;
+        CompiledRoute route = getCompiledRoute(ctx);
+        String targetUrl = getUpstream(ctx).getTargetUrl();
+        if (location != null && url != null && location.startsWith(targetUrl)) {
+            String locationPrefix = route.getLocationPrefix();
+            // 协议与主机端口最长为url本身，加上默认端口
+            StringBuilder sb = new StringBuilder(url.length() + 6 + locationPrefix.length() + location.length() - targetUrl.length());
+            return UrlParser.appendHostPort(sb, url)
+                    .append(locationPrefix)
+                    .append(location, targetUrl.length(), location.length())
+                    .toString();
         }
         return location;
     }
@@ -568,12 +1172,47 @@ public class ReverseHttpProxy {
      */
     protected Handler<AsyncResult<HttpClientResponse>> sendRequestHandler(RoutingContext ctx, HttpServerRequest serverReq, HttpServerResponse serverResp, String proxyUrl) {
         return ar -> {
+            // 已超时的请求已经响应或重置，只需释放上游连接
+            if (timedOut(ctx)) {
+                if (ar.succeeded()) {
+                    ar.result().request().reset();
+                }
+                return;
+            }
             if (ar.succeeded()) {
                 HttpClientResponse clientResp = ar.result();
                 // 暂停流读取
                 clientResp.pause();
+                RequestTimeouts timeouts = ctx.get(INTERNAL_TIMEOUTS);
+                if (timeouts != null) {
+                    timeouts.streaming();
+                }
+                // 被动健康检查，连续5xx的节点会被驱逐
+                recordUpstreamResult(ctx, clientResp.statusCode() >= 500);
+                CompiledRoute route = getCompiledRoute(ctx);
+                HttpResponseCache cache = route.getCache();
+                CachedResponse stale = ctx.remove(INTERNAL_CACHE_STALE);
+                // 代理发起的条件请求命中，使用上游的304刷新缓存后，直接响应缓存内容
+                if (stale != null && clientResp.statusCode() == 304 && ctx.get(INTERNAL_CACHE_REVALIDATING) != null) {
+                    stale.refresh(clientResp.headers(), cache.getHeuristicMax());
+                    cache.recordHit();
+                    clientResp.resume();
+                    serveFromCache(ctx, stale).onComplete(v -> stale.release());
+                    return;
+                }
+                if (stale != null) {
+                    stale.release();
+                }
+                // 将响应头分发给合并在本请求上的follower
+                RequestCoalescer.Flight flight = ctx.get(INTERNAL_FLIGHT);
+                if (flight != null) {
+                    flight.headers(clientResp.statusCode(), clientResp.headers());
+                }
                 // 复制响应头。复制的过程中忽略逐跳标头
                 copyResponseHeaders(ctx, serverReq, serverResp, clientResp);
+                // 协商响应压缩，需要压缩时改写响应头
+                ResponseCompressor compressor = route.getCompressor();
+                boolean compress = compressor != null && compressor.negotiate(serverReq.method(), serverReq.headers(), clientResp.statusCode(), serverResp.headers());
                 if (!serverResp.headers().contains("Content-Length")) {
                     serverResp.setChunked(true);
                 }
@@ -581,11 +1220,58 @@ public class ReverseHttpProxy {
                 setStatusCode(ctx, serverResp, clientResp.statusCode());
 
                 if ((boolean) getContextData(ctx, INTERNAL_CLIENT_CONNECTION_OPEN) && (boolean) getContextData(ctx, INTERNAL_SERVER_CONNECTION_OPEN)) {
+                    // 若响应可缓存，则在流输出的同时采集响应体
+                    String cacheKey = ctx.get(INTERNAL_CACHE_KEY);
+                    HttpResponseCache.Capture capture = cacheKey == null ? null :
+                            cache.capture(cacheKey, serverReq.headers(), clientResp.statusCode(), clientResp.headers());
+                    ReadStream<Buffer> body = capture == null && flight == null ? clientResp : new TeeReadStream<>(clientResp, chunk -> {
+                        if (capture != null) {
+                            capture.append(chunk);
+                        }
+                        if (flight != null) {
+                            flight.chunk(chunk);
+                        }
+                    });
+                    // 空闲超时只记录最后活动时间，不会逐块重新挂载定时器
+                    if (timeouts != null && timeouts.isIdleTracked()) {
+                        body = new TeeReadStream<>(body, chunk -> timeouts.activity());
+                    }
+                    // 缓存与合并采集的是未压缩的原始响应体，压缩只作用于写给当前客户端的数据
+                    GzipEncoder encoder = compress ? compressor.newEncoder() : null;
+                    if (encoder != null) {
+                        body = new CompressingReadStream(body, encoder);
+                    }
+                    // 缓冲响应体，上游连接不再受慢客户端的背压，收完即归还连接池。缓冲压缩后的数据以减少占用
+                    ProxyRoute.Buffering buffering = route.getBuffering();
+                    BufferingReadStream buffered = buffering == null || !buffering.isResponse() ? null :
+                            new BufferingReadStream(ctx.vertx(), body, bufferBudget,
+                                    buffering.getMaxMemoryBytes(), buffering.getMaxFileBytes(), buffering.getTempDir());
+                    if (buffered != null) {
+                        body = buffered;
+                    }
                     // 流输出
-                    clientResp.pipeTo(serverResp).onComplete(ar1 -> {
+                    body.pipeTo(serverResp).onComplete(ar1 -> {
+                        if (buffered != null) {
+                            buffered.close();
+                        }
+                        if (encoder != null) {
+                            encoder.close();
+                        }
+                        if (flight != null) {
+                            flight.finish(ar1.succeeded());
+                        }
                         if (ar1.succeeded()) {
+                            if (capture != null) {
+                                capture.complete();
+                            }
                             doLog(ctx);
                         } else {
+                            if (capture != null) {
+                                capture.discard();
+                            }
+                            if (timedOut(ctx)) {
+                                return;
+                            }
                             badGateway(ctx, serverResp);
                             log.error("pipeTo failed. {} <-- {} <-- {} <-- {}",
                                     getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR),
@@ -595,9 +1281,12 @@ public class ReverseHttpProxy {
                                     ar1.cause());
                         }
                     });
+                } else if (flight != null) {
+                    flight.finish(false);
                 }
 
             } else {
+                recordUpstreamResult(ctx, true);
                 badGateway(ctx, serverResp);
                 log.error("{} {} send request error", serverReq.method().name(), proxyUrl, ar.cause());
             }
@@ -615,44 +1304,303 @@ public class ReverseHttpProxy {
      */
     protected Handler<AsyncResult<HttpClientRequest>> connectHandler(RoutingContext ctx, HttpServerRequest serverReq, HttpServerResponse serverResp, String proxyUrl) {
         return ar -> {
+            if (timedOut(ctx)) {
+                if (ar.succeeded()) {
+                    ar.result().reset();
+                }
+                return;
+            }
             if (ar.succeeded()) {
                 HttpClientRequest clientReq = ar.result();
-                setContextData(ctx, INTERNAL_CLIENT_HTTP_VERSION, clientReq.version().alpnName());
-                // 记录连接状态
-                setContextData(ctx, INTERNAL_CLIENT_CONNECTION_OPEN, true);
-
-                // 注册客户端与代理服务之间连接的断开监听事件。可监听主动关闭和被动关闭
-                HttpConnection connection = clientReq.connection();
-                setContextData(ctx, INTERNAL_CLIENT_LOCAL_ADDR, connection.localAddress().toString());
-                setContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR, connection.remoteAddress().toString());
-                log.debug("target {} -- {} connected", getContextData(ctx, INTERNAL_CLIENT_LOCAL_ADDR), getContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR));
-
-                // 由于内部都是使用pipe来进行数据传输，所以exceptionHandler肯定是都重新注册过了，参考{@code io.vertx.core.streams.impl.PipeImpl.PipeImpl }
-                // 但如果还没进入pipe前，连接出现异常，那么就会触发此处的exceptionHandler。https://github.com/meethigher/tcp-reverse-proxy/issues/18
-                connection.exceptionHandler(e ->
-                                log.error("target {} -- {} exception occurred", getContextData(ctx, INTERNAL_CLIENT_LOCAL_ADDR), getContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR), e))
-                        .closeHandler(v -> {
-                            setContextData(ctx, INTERNAL_CLIENT_CONNECTION_OPEN, false);
-                            log.debug("target {} -- {} closed", getContextData(ctx, INTERNAL_CLIENT_LOCAL_ADDR), getContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR));
-                        });
-
-
-                // 复制请求头。复制的过程中忽略逐跳标头
-                copyRequestHeaders(ctx, serverReq, clientReq);
+                trackClientConnection(ctx, clientReq);
+                prepareUpstreamRequest(ctx, serverReq, clientReq);
+                RequestTimeouts timeouts = ctx.get(INTERNAL_TIMEOUTS);
+                if (timeouts != null) {
+                    timeouts.awaitFirstByte();
+                }
 
                 if ((boolean) getContextData(ctx, INTERNAL_CLIENT_CONNECTION_OPEN) && (boolean) getContextData(ctx, INTERNAL_SERVER_CONNECTION_OPEN)) {
                     // bug: https://github.com/meethigher/tcp-reverse-proxy/issues/13
                     // 解决办法: 不管是否有请求体，都直接send pipeto。
-                    clientReq.send(serverReq).onComplete(sendRequestHandler(ctx, serverReq, serverResp, proxyUrl));
+                    clientReq.send(requestBody(ctx, serverReq)).onComplete(sendRequestHandler(ctx, serverReq, serverResp, proxyUrl));
                 }
             } else {
-                badGateway(ctx, serverResp);
+                recordUpstreamResult(ctx, true);
+                // 请求体尚未发出，幂等请求可以换一个上游重试
+                if (retry(ctx)) {
+                    log.warn("{} {} open connection error, retrying on {}", serverReq.method().name(), proxyUrl, getContextData(ctx, INTERNAL_PROXY_URL), ar.cause());
+                    return;
+                }
+                if (ar.cause() instanceof TimeoutException || ar.cause() instanceof ConnectTimeoutException) {
+                    gatewayTimeout(ctx, serverResp);
+                } else {
+                    badGateway(ctx, serverResp);
+                }
                 log.error("{} {} open connection error", serverReq.method().name(), proxyUrl, ar.cause());
             }
 
         };
     }
 
+    /**
+     * 记录代理服务与上游之间的连接信息，并注册连接的断开监听事件
+     *
+     * @param ctx       路由上下文
+     * @param clientReq 客户端请求
+     */
+    protected void trackClientConnection(RoutingContext ctx, HttpClientRequest clientReq) {
+        ctx.put(INTERNAL_CLIENT_REQUEST, clientReq);
+        setContextData(ctx, INTERNAL_CLIENT_HTTP_VERSION, clientReq.version().alpnName());
+        // 记录连接状态
+        setContextData(ctx, INTERNAL_CLIENT_CONNECTION_OPEN, true);
+
+        // 注册客户端与代理服务之间连接的断开监听事件。可监听主动关闭和被动关闭
+        HttpConnection connection = clientReq.connection();
+        setContextData(ctx, INTERNAL_CLIENT_LOCAL_ADDR, connection.localAddress().toString());
+        setContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR, connection.remoteAddress().toString());
+        log.debug("target {} -- {} connected", getContextData(ctx, INTERNAL_CLIENT_LOCAL_ADDR), getContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR));
+
+        // 由于内部都是使用pipe来进行数据传输，所以exceptionHandler肯定是都重新注册过了，参考{@code io.vertx.core.streams.impl.PipeImpl.PipeImpl }
+        // 但如果还没进入pipe前，连接出现异常，那么就会触发此处的exceptionHandler。https://github.com/meethigher/tcp-reverse-proxy/issues/18
+        connection.exceptionHandler(e ->
+                log.error("target {} -- {} exception occurred", getContextData(ctx, INTERNAL_CLIENT_LOCAL_ADDR), getContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR), e));
+        // HTTP/2连接由多个请求复用，不能被单个请求的closeHandler覆盖，流的中断会体现在请求或pipe的失败上
+        if (clientReq.version() != HttpVersion.HTTP_2) {
+            connection.closeHandler(v -> {
+                setContextData(ctx, INTERNAL_CLIENT_CONNECTION_OPEN, false);
+                log.debug("target {} -- {} closed", getContextData(ctx, INTERNAL_CLIENT_LOCAL_ADDR), getContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR));
+            });
+        }
+    }
+
+    /**
+     * 复制请求头，并在需要时追加缓存重新验证的条件请求头
+     *
+     * @param ctx       路由上下文
+     * @param serverReq 服务端请求
+     * @param clientReq 客户端请求
+     */
+    protected void prepareUpstreamRequest(RoutingContext ctx, HttpServerRequest serverReq, HttpClientRequest clientReq) {
+        // 复制请求头。复制的过程中忽略逐跳标头
+        copyRequestHeaders(ctx, serverReq, clientReq);
+        // 已完整缓冲的chunked请求体改为以Content-Length发送
+        BufferingReadStream buffered = ctx.get(INTERNAL_REQUEST_BUFFER);
+        if (buffered != null && buffered.isComplete() && !clientReq.headers().contains("Content-Length")) {
+            clientReq.putHeader("Content-Length", String.valueOf(buffered.getReceivedBytes()));
+        }
+        // 缓存已过期但带有校验器，且客户端未自行发起条件请求时，由代理向上游发起条件请求
+        CachedResponse stale = ctx.get(INTERNAL_CACHE_STALE);
+        if (stale != null && !serverReq.headers().contains("If-None-Match") && !serverReq.headers().contains("If-Modified-Since")) {
+            if (stale.getEtag() != null) {
+                clientReq.putHeader("If-None-Match", stale.getEtag());
+            }
+            if (stale.getLastModified() != null) {
+                clientReq.putHeader("If-Modified-Since", stale.getLastModified());
+            }
+            ctx.put(INTERNAL_CACHE_REVALIDATING, true);
+        }
+    }
+
+    /**
+     * 连接上游失败后，按路由的重试策略换一个上游重新发起请求。只有幂等请求且重试预算充足时才会重试
+     *
+     * @param ctx 路由上下文
+     * @return true表示已发起重试
+     */
+    protected boolean retry(RoutingContext ctx) {
+        CompiledRoute route = getCompiledRoute(ctx);
+        RetryPolicy policy = route.getRetryPolicy();
+        if (policy == null || ctx.response().ended() || !(boolean) getContextData(ctx, INTERNAL_SERVER_CONNECTION_OPEN)) {
+            return false;
+        }
+        Integer retries = ctx.get(INTERNAL_RETRIES);
+        int count = retries == null ? 0 : retries;
+        if (!policy.canRetry(ctx.request(), count) || !policy.getBudget().tryWithdraw()) {
+            return false;
+        }
+        ctx.put(INTERNAL_RETRIES, count + 1);
+        HttpUpstream alternate = alternateUpstream(route, getUpstream(ctx));
+        if (alternate != null) {
+            ctx.put(INTERNAL_UPSTREAM, alternate);
+        }
+        String proxyUrl = getProxyUrl(ctx, ctx.request(), ctx.response());
+        setContextData(ctx, INTERNAL_PROXY_URL, proxyUrl);
+        // 失败的尝试已结束，先归还其并发许可与上游节点的计数，重试重新申请
+        releaseAttempt(ctx);
+        // 使用首次请求所在实例的客户端，与当前EventLoop保持一致
+        sendProxyRequest(ctx, route, ctx.get(INTERNAL_HTTP_CLIENT), proxyUrl);
+        return true;
+    }
+
+    /**
+     * 按负载均衡策略选择一个不同于当前节点的上游节点
+     *
+     * @param route   编译后路由
+     * @param current 当前节点
+     * @return 其他节点，只有一个可用节点时返回null
+     */
+    protected HttpUpstream alternateUpstream(CompiledRoute route, HttpUpstream current) {
+        for (int i = 0; i < route.getUpstreams().size(); i++) {
+            HttpUpstream upstream = route.getLoadBalancer().next();
+            if (upstream != current) {
+                return upstream;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 查找响应缓存。新鲜的缓存直接响应；过期但带有校验器的缓存暂存于上下文，用于向上游发起条件请求
+     *
+     * @param ctx   路由上下文
+     * @param cache 响应缓存
+     * @return true表示已由缓存响应
+     */
+    protected boolean lookupCache(RoutingContext ctx, HttpResponseCache cache) {
+        HttpServerRequest request = ctx.request();
+        String cacheKey = HttpResponseCache.primaryKey(request.method().name(), request.host(), request.uri());
+        ctx.put(INTERNAL_CACHE_KEY, cacheKey);
+        if (!CachePolicy.canServeFromCache(request.headers())) {
+            cache.recordMiss();
+            return false;
+        }
+        CachedResponse cached = cache.lookup(cacheKey, request.headers());
+        if (cached == null) {
+            cache.recordMiss();
+            return false;
+        }
+        if (cached.isFresh(System.currentTimeMillis())) {
+            cache.recordHit();
+            serveFromCache(ctx, cached).onComplete(v -> cached.release());
+            return true;
+        }
+        cache.recordMiss();
+        if (cached.hasValidators()) {
+            ctx.put(INTERNAL_CACHE_STALE, cached);
+            // 请求异常结束时，兜底释放暂存的缓存条目
+            ctx.addEndHandler(ar -> {
+                CachedResponse stale = ctx.remove(INTERNAL_CACHE_STALE);
+                if (stale != null) {
+                    stale.release();
+                }
+            });
+        } else {
+            cached.release();
+        }
+        return false;
+    }
+
+    /**
+     * 使用缓存内容响应。客户端的条件请求命中时响应304
+     *
+     * @param ctx    路由上下文
+     * @param cached 缓存条目，调用方负责在返回的Future完成后释放
+     * @return 响应写出结果
+     */
+    protected Future<Void> serveFromCache(RoutingContext ctx, CachedResponse cached) {
+        HttpServerRequest request = ctx.request();
+        HttpServerResponse response = ctx.response();
+        copyResponseHeaders(ctx, request, response, cached.getHeaders());
+        response.putHeader("Age", String.valueOf(cached.age(System.currentTimeMillis()) / 1000));
+        setContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR, "cache");
+        ResponseCompressor compressor = getCompiledRoute(ctx).getCompressor();
+        boolean compress = compressor != null && compressor.negotiate(request.method(), request.headers(), cached.getStatusCode(), response.headers());
+        Future<Void> future;
+        if (CachePolicy.notModified(request.headers(), cached.getEtag(), cached.getLastModified())) {
+            future = setStatusCode(ctx, response, 304).end();
+        } else {
+            // 启用压缩变体缓存时，同一缓存条目只压缩一次
+            future = setStatusCode(ctx, response, cached.getStatusCode()).end(compress ? compressor.compress(cached) : cached.body());
+        }
+        doLog(ctx);
+        return future;
+    }
+
+    /**
+     * 限流判断，超出限制时响应429，并通过Retry-After告知客户端需要等待的秒数
+     *
+     * @param ctx         路由上下文
+     * @param rateLimiter 限流
+     * @return true表示请求已被拒绝
+     */
+    protected boolean rateLimited(RoutingContext ctx, RateLimiter rateLimiter) {
+        long wait = rateLimiter.tryAcquire(ctx.request());
+        if (wait == 0) {
+            return false;
+        }
+        long retryAfter = Math.max(1, (wait + 999_999_999L) / 1_000_000_000L);
+        HttpServerResponse response = ctx.response();
+        response.putHeader("Retry-After", String.valueOf(retryAfter));
+        setContextData(ctx, INTERNAL_CLIENT_REMOTE_ADDR, "rate-limit");
+        setStatusCode(ctx, response, 429).end("Too Many Requests");
+        doLog(ctx);
+        return true;
+    }
+
+    /**
+     * 记录上游请求的结果，用于被动健康检查与自适应并发限制
+     *
+     * @param ctx     路由上下文
+     * @param failure true表示连接失败或上游响应5xx
+     */
+    protected void recordUpstreamResult(RoutingContext ctx, boolean failure) {
+        HttpUpstream upstream = getUpstream(ctx);
+        if (failure) {
+            upstream.recordFailure();
+        } else {
+            upstream.recordSuccess();
+        }
+        Long start = ctx.remove(INTERNAL_LIMIT_START);
+        if (start != null && upstream.getConcurrencyLimiter() != null) {
+            upstream.getConcurrencyLimiter().sample(System.nanoTime() - start, failure);
+        }
+    }
+
+    /**
+     * 上游请求超时。尚未响应时响应504，已开始输出响应体时重置客户端连接；两种情况都会重置上游请求，释放上游连接
+     *
+     * @param ctx  路由上下文
+     * @param kind 超时类型
+     */
+    protected void upstreamTimeout(RoutingContext ctx, RequestTimeouts.Kind kind) {
+        ctx.put(INTERNAL_TIMED_OUT, kind);
+        HttpServerResponse serverResp = ctx.response();
+        HttpClientRequest clientReq = ctx.get(INTERNAL_CLIENT_REQUEST);
+        log.warn("{} {} {} timeout", ctx.request().method().name(), getContextData(ctx, INTERNAL_PROXY_URL), kind);
+        // 已收到上游响应时，响应头已按上游改写，无法再响应504
+        if (serverResp.headWritten() || ctx.get(INTERNAL_STATUS_CODE) != null) {
+            serverResp.reset();
+            doLog(ctx);
+        } else {
+            // 已向上游发出请求却未收到响应，计为上游失败
+            if (clientReq != null) {
+                recordUpstreamResult(ctx, true);
+            }
+            gatewayTimeout(ctx, serverResp);
+        }
+        if (clientReq != null) {
+            clientReq.reset();
+        }
+    }
+
+    protected boolean timedOut(RoutingContext ctx) {
+        return ctx.get(INTERNAL_TIMED_OUT) != null;
+    }
+
+    protected void gatewayTimeout(RoutingContext ctx, HttpServerResponse serverResp) {
+        if (!serverResp.ended()) {
+            setStatusCode(ctx, serverResp, 504).end("Gateway Timeout");
+        }
+        doLog(ctx);
+    }
+
+    protected void serviceUnavailable(RoutingContext ctx, HttpServerResponse serverResp) {
+        if (!serverResp.ended()) {
+            setStatusCode(ctx, serverResp, 503).end("Service Unavailable");
+        }
+        doLog(ctx);
+    }
+
     protected void badGateway(RoutingContext ctx, HttpServerResponse serverResp) {
         if (!serverResp.ended()) {
             setStatusCode(ctx, serverResp, 502).end("Bad Gateway");
@@ -665,9 +1613,10 @@ public class ReverseHttpProxy {
      * 路由处理Handler
      *
      * @param httpClient HTTP客户端
+     * @param route      编译后路由
      * @return 路由处理Handler
      */
-    protected Handler<RoutingContext> routingContextHandler(HttpClient httpClient) {
+    protected Handler<RoutingContext> routingContextHandler(HttpClient httpClient, CompiledRoute route) {
         return ctx -> {
             // 暂停流读取
             ctx.request().pause();
@@ -677,23 +1626,33 @@ public class ReverseHttpProxy {
             log.debug("source {} -- {} connected", getContextData(ctx, INTERNAL_SERVER_LOCAL_ADDR), getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR));
             // 由于内部都是使用pipe来进行数据传输，所以exceptionHandler肯定是都重新注册过了，参考{@code io.vertx.core.streams.impl.PipeImpl.PipeImpl }
             // 但如果还没进入pipe前，连接出现异常，那么就会触发此处的exceptionHandler。https://github.com/meethigher/tcp-reverse-proxy/issues/18
-            connection.exceptionHandler(e -> log.error("source {} -- {} exception occurred", getContextData(ctx, INTERNAL_SERVER_LOCAL_ADDR), getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR), e))
-                    .closeHandler(v -> {
+            connection.exceptionHandler(e -> log.error("source {} -- {} exception occurred", getContextData(ctx, INTERNAL_SERVER_LOCAL_ADDR), getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR), e));
+            if (ctx.request().version() == HttpVersion.HTTP_2) {
+                // HTTP/2的多个流共用一条连接，连接级的closeHandler会被后到的流覆盖，改为按流监听。流被重置或连接断开时结束回调为失败
+                ctx.addEndHandler(ar -> {
+                    if (ar.failed()) {
                         setContextData(ctx, INTERNAL_SERVER_CONNECTION_OPEN, false);
-                        log.debug("source {} -- {} closed", getContextData(ctx, INTERNAL_SERVER_LOCAL_ADDR), getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR));
-                    });
+                        log.debug("source {} -- {} stream closed", getContextData(ctx, INTERNAL_SERVER_LOCAL_ADDR), getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR));
+                    }
+                });
+            } else {
+                connection.closeHandler(v -> {
+                    setContextData(ctx, INTERNAL_SERVER_CONNECTION_OPEN, false);
+                    log.debug("source {} -- {} closed", getContextData(ctx, INTERNAL_SERVER_LOCAL_ADDR), getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR));
+                });
+            }
             // 记录请求开始时间
             setContextData(ctx, INTERNAL_SEND_TIMESTAMP, System.currentTimeMillis());
             // 记录连接状态
             setContextData(ctx, INTERNAL_SERVER_CONNECTION_OPEN, true);
 
             // vertx的uri()是包含query参数的。而path()才是我们常说的不带有query的uri
-            // route不是线程安全的。route里的metadata应以路由为单元存储，而不是以请求为单元存储。一个路由会有很多请求。
-            // 若想要以请求为单元存储数据，应该使用routingContext.put
-            // 将路由原数据，复制到请求上下文
-            for (String key : ctx.currentRoute().metadata().keySet()) {
-                setContextData(ctx, key, ctx.currentRoute().getMetadata(key));
-            }
+            // 路由配置已在addRoute时编译为不可变对象，请求上下文只需持有其引用，无需逐项复制路由元数据
+            ctx.put(INTERNAL_ROUTE, route);
+            ctx.put(INTERNAL_HTTP_CLIENT, httpClient);
+            // 按负载均衡策略选择上游节点，一致性哈希策略按会话保持的键选择
+            HttpUpstream upstream = route.getLoadBalancer().next(route.balanceKey(ctx.request()));
+            ctx.put(INTERNAL_UPSTREAM, upstream);
 
             // 获取代理地址
             String proxyUrl = getProxyUrl(ctx, ctx.request(), ctx.response());
@@ -703,93 +1662,418 @@ public class ReverseHttpProxy {
             setContextData(ctx, INTERNAL_USER_AGENT, ctx.request().getHeader("User-Agent"));
             setContextData(ctx, INTERNAL_SOURCE_URI, ctx.request().uri());
 
-
-            // 构建请求参数
-            RequestOptions requestOptions = new RequestOptions();
-            requestOptions.setAbsoluteURI(proxyUrl);
-            requestOptions.setMethod(ctx.request().method());
-            requestOptions.setFollowRedirects(getContextData(ctx, P_FOLLOW_REDIRECTS) != null && Boolean.parseBoolean(getContextData(ctx, P_FOLLOW_REDIRECTS).toString()));
-
+            // 超出限流的请求直接拒绝，不会占用上游连接
+            if (route.getRateLimiter() != null && rateLimited(ctx, route.getRateLimiter())) {
+                return;
+            }
 
             // 如果跨域由代理服务接管，那么针对跨域使用的OPTIONS预检请求，就由代理服务接管，而不经过实际的后端服务
-            if (HttpMethod.OPTIONS.name().equalsIgnoreCase(ctx.request().method().name()) &&
-                    getContextData(ctx, P_CORS_CONTROL) != null && Boolean.parseBoolean(getContextData(ctx, P_CORS_CONTROL).toString()) &&
-                    getContextData(ctx, P_ALLOW_CORS) != null && Boolean.parseBoolean(getContextData(ctx, P_ALLOW_CORS).toString())
-            ) {
-                String header = ctx.request().getHeader("origin");
-                if (header == null || header.isEmpty()) {
-                    ctx.response().putHeader("Access-Control-Allow-Origin", "*");
-                } else {
-                    ctx.response().putHeader("Access-Control-Allow-Origin", header);
-                }
-                ctx.response().putHeader("Access-Control-Allow-Methods", "*");
-                ctx.response().putHeader("Access-Control-Allow-Headers", "*");
-                ctx.response().putHeader("Access-Control-Allow-Credentials", "true");
-                ctx.response().putHeader("Access-Control-Expose-Headers", "*");
+            if (route.isAllowCors() && HttpMethod.OPTIONS.equals(ctx.request().method())) {
+                route.applyCorsHeaders(ctx.response().headers(), ctx.request().getHeader("origin"));
                 setStatusCode(ctx, ctx.response(), 200).end();
                 doLog(ctx);
                 return;
             }
 
-            // 请求
-            if ((boolean) getContextData(ctx, INTERNAL_SERVER_CONNECTION_OPEN)) {
-                httpClient.request(requestOptions).onComplete(connectHandler(ctx, ctx.request(), ctx.response(), proxyUrl));
+            // 协议升级的请求不经过缓存、合并与并发限制，握手成功后直接双向转发
+            if (route.getUpgradeTunnel() != null && route.getUpgradeTunnel().accepts(ctx.request())) {
+                upgrade(ctx, route, httpClient, proxyUrl);
+                return;
+            }
+
+            // 查找响应缓存，命中且新鲜时不经过上游服务
+            if (route.getCache() != null && HttpMethod.GET.equals(ctx.request().method()) && lookupCache(ctx, route.getCache())) {
+                return;
+            }
+
+            // 合并并发的相同请求，已有相同请求在途时挂在其上等待共享响应
+            if (route.getCoalescer() != null && coalesce(ctx, route.getCoalescer(), httpClient, proxyUrl)) {
+                return;
+            }
+
+            // 缓冲请求体，慢速上传完整到达后再发往上游
+            ProxyRoute.Buffering buffering = route.getBuffering();
+            if (buffering != null && buffering.isRequest() && hasRequestBody(ctx.request())) {
+                bufferRequest(ctx, buffering).onSuccess(v -> forwardRequest(ctx, route, httpClient, proxyUrl));
+                return;
             }
+
+            forwardRequest(ctx, route, httpClient, proxyUrl);
         };
     }
 
     /**
-     * 获取代理后的完整proxyUrl，不区分代理目标路径是否以/结尾。
-     * 处理逻辑为删除掉匹配的路径，并将剩下的内容追加到代理目标路径后面。
+     * 镜像并向上游发起请求
      *
      * @param ctx        路由上下文
-     * @param serverReq  服务端请求
-     * @param serverResp 服务端响应
-     * @return 代理后的完整URL
+     * @param route      编译后路由
+     * @param httpClient 路由未启用独立连接池时使用的HTTP客户端
+     * @param proxyUrl   代理URL
      */
-    protected String getProxyUrl(RoutingContext ctx, HttpServerRequest serverReq, HttpServerResponse serverResp) {
-        String targetUrl = getContextData(ctx, P_TARGET_URL).toString();
-        // 不区分targetUrl是否以/结尾，均以targetUrl不带/来处理
-        if (targetUrl.endsWith("/")) {
-            targetUrl = targetUrl.substring(0, targetUrl.length() - 1);
+    protected void forwardRequest(RoutingContext ctx, CompiledRoute route, HttpClient httpClient, String proxyUrl) {
+        // 流量镜像只针对实际发往上游的请求
+        TrafficMirror trafficMirror = route.getRuntime().getTrafficMirror();
+        if (trafficMirror != null) {
+            mirror(ctx, route, trafficMirror);
         }
+        sendProxyRequest(ctx, route, httpClient, proxyUrl);
+    }
 
+    /**
+     * 开始缓冲请求体。请求体已全部到达或缓冲已满时完成，客户端中途断开时失败
+     *
+     * @param ctx       路由上下文
+     * @param buffering 缓冲配置
+     * @return 可以向上游发起请求时完成
+     */
+    protected Future<Void> bufferRequest(RoutingContext ctx, ProxyRoute.Buffering buffering) {
+        BufferingReadStream buffered = new BufferingReadStream(ctx.vertx(), ctx.request(), bufferBudget,
+                buffering.getMaxMemoryBytes(), buffering.getMaxFileBytes(), buffering.getTempDir());
+        ctx.put(INTERNAL_REQUEST_BUFFER, buffered);
+        ctx.addEndHandler(ar -> buffered.close());
+        return buffered.ready().onFailure(e -> {
+            log.debug("{} {} request body aborted: {}", ctx.request().method().name(), getContextData(ctx, INTERNAL_SOURCE_URI), e.getMessage());
+            ctx.response().reset();
+        });
+    }
 
-        // 在vertx中，uri表示hostPort后面带有参数的地址。而这里的uri表示不带有参数的地址。
-        final String uri = serverReq.path();
+    /**
+     * 请求是否带有请求体
+     *
+     * @param serverReq 服务端请求
+     * @return true表示带有请求体
+     */
+    protected boolean hasRequestBody(HttpServerRequest serverReq) {
+        String contentLength = serverReq.getHeader("Content-Length");
+        return serverReq.headers().contains("Transfer-Encoding") || (contentLength != null
+                ? !"0".equals(contentLength.trim())
+                // HTTP/2的请求体可以不声明长度
+                : serverReq.version() == HttpVersion.HTTP_2 && serverReq.method() != HttpMethod.GET && serverReq.method() != HttpMethod.HEAD);
+    }
 
-        //final String params = serverReq.uri().replace(uri, "");
-        final String params = fastReplace(serverReq.uri(), uri, "");
+    /**
+     * 按比例为请求创建影子请求。没有请求体的请求立即发出影子请求，有请求体的在原始请求的请求体流经代理时复制
+     *
+     * @param ctx    路由上下文
+     * @param route  编译后路由
+     * @param mirror 流量镜像
+     */
+    protected void mirror(RoutingContext ctx, CompiledRoute route, TrafficMirror mirror) {
+        HttpServerRequest serverReq = ctx.request();
+        String url = mirror.proxyUrl(route.isMultiLevel() ? route.getStripPrefix() : null, serverReq.path(), serverReq.uri());
+        TrafficMirror.Shadow shadow = mirror.start(serverReq, url, req -> copyRequestHeaders(ctx, serverReq, req));
+        if (shadow == null) {
+            return;
+        }
+        if (!hasRequestBody(serverReq)) {
+            shadow.end();
+            return;
+        }
+        ctx.put(INTERNAL_MIRROR, shadow);
+        // 请求体没有完整流经代理(如连接上游失败、客户端断开)时，影子请求也随之放弃
+        ctx.addEndHandler(ar -> shadow.abortIfIncomplete());
+    }
 
+    /**
+     * 发往上游的请求体。启用了请求缓冲时从缓冲中读取；启用了流量镜像时，每段数据同时复制给影子请求，流控仍完全由原始请求的pipe决定
+     *
+     * @param ctx       路由上下文
+     * @param serverReq 服务端请求
+     * @return 请求体
+     */
+    protected ReadStream<Buffer> requestBody(RoutingContext ctx, HttpServerRequest serverReq) {
+        BufferingReadStream buffered = ctx.get(INTERNAL_REQUEST_BUFFER);
+        ReadStream<Buffer> body = buffered == null ? serverReq : buffered;
+        TrafficMirror.Shadow shadow = ctx.get(INTERNAL_MIRROR);
+        return shadow == null ? body : new TeeReadStream<>(body, shadow::write, v -> shadow.end());
+    }
+
+    /**
+     * 向上游发起请求
+     *
+     * @param ctx        路由上下文
+     * @param route      编译后路由
+     * @param httpClient 路由未启用独立连接池时使用的HTTP客户端
+     * @param proxyUrl   代理URL
+     */
+    protected void sendProxyRequest(RoutingContext ctx, CompiledRoute route, HttpClient httpClient, String proxyUrl) {
+        if (!(boolean) getContextData(ctx, INTERNAL_SERVER_CONNECTION_OPEN)) {
+            return;
+        }
+        // 每个原始请求为重试预算存入令牌，重试请求不存入
+        if (route.getRetryPolicy() != null && ctx.get(INTERNAL_RETRIES) == null) {
+            route.getRetryPolicy().getBudget().deposit();
+        }
+        // 总耗时从首次请求上游开始计算，包含并发限制的排队时间
+        if (route.getTimeout() != null && ctx.get(INTERNAL_TIMEOUTS) == null) {
+            RequestTimeouts timeouts = new RequestTimeouts(ctx.vertx().getOrCreateContext(), route.getTimeout(), kind -> upstreamTimeout(ctx, kind));
+            ctx.put(INTERNAL_TIMEOUTS, timeouts);
+            ctx.addEndHandler(ar -> timeouts.cancel());
+        }
+        ConcurrencyLimiter limiter = getUpstream(ctx).getConcurrencyLimiter();
+        if (limiter == null) {
+            doSendProxyRequest(ctx, route, httpClient, proxyUrl);
+            return;
+        }
+        // 超出源站并发上限的请求短暂排队，排队超时或被更高优先级的请求挤掉时响应503
+        limiter.acquire(ctx.vertx().getOrCreateContext(), route.getPriority(), granted -> {
+            if (!granted) {
+                serviceUnavailable(ctx, ctx.response());
+                return;
+            }
+            // 排队期间客户端已断开
+            if (!(boolean) getContextData(ctx, INTERNAL_SERVER_CONNECTION_OPEN) || ctx.response().ended()) {
+                limiter.release();
+                return;
+            }
+            ctx.put(INTERNAL_LIMIT_PERMIT, limiter);
+            ctx.addEndHandler(ar -> releasePermit(ctx));
+            ctx.put(INTERNAL_LIMIT_START, System.nanoTime());
+            doSendProxyRequest(ctx, route, httpClient, proxyUrl);
+        });
+    }
 
-        // 若不是多级匹配，则直接代理到目标地址。注意要带上请求参数
-        if (!getContextData(ctx, P_SOURCE_URL).toString().endsWith("*")) {
-            return targetUrl + params;
+    /**
+     * 构建请求参数并向上游发起请求
+     *
+     * @param ctx        路由上下文
+     * @param route      编译后路由
+     * @param httpClient 路由未启用独立连接池时使用的HTTP客户端
+     * @param proxyUrl   代理URL
+     */
+    protected void doSendProxyRequest(RoutingContext ctx, CompiledRoute route, HttpClient httpClient, String proxyUrl) {
+        // 不带请求体的幂等请求可以对冲，重试请求不再对冲
+        RetryPolicy policy = route.getRetryPolicy();
+        if (policy != null && ctx.get(INTERNAL_RETRIES) == null && policy.canHedge(ctx.request())) {
+            new HedgedRequest(this, ctx, route, httpClient, policy).start(proxyUrl);
+            return;
+        }
+        // 构建请求参数
+        RequestOptions requestOptions = new RequestOptions();
+        requestOptions.setAbsoluteURI(proxyUrl);
+        requestOptions.setMethod(ctx.request().method());
+        requestOptions.setFollowRedirects(route.isFollowRedirects());
+        if (route.getTimeout() != null && route.getTimeout().getConnectTimeout() > 0) {
+            requestOptions.setConnectTimeout(route.getTimeout().getConnectTimeout());
         }
+        // 记录上游节点的进行中请求数，请求结束(正常响应或连接断开)时释放
+        HttpUpstream upstream = getUpstream(ctx);
+        upstream.acquire();
+        ctx.put(INTERNAL_UPSTREAM_SLOT, upstream);
+        ctx.addEndHandler(ar -> releaseUpstreamSlot(ctx));
+        HttpClient client = upstream.getHttpClient() == null ? httpClient : upstream.getHttpClient();
+        requestUpstream(client, requestOptions).onComplete(connectHandler(ctx, ctx.request(), ctx.response(), proxyUrl));
+    }
+
+    /**
+     * 归还当前尝试占用的并发许可与上游节点的进行中计数。每项只会释放一次，重试前与请求结束时均可调用
+     *
+     * @param ctx 路由上下文
+     */
+    protected void releaseAttempt(RoutingContext ctx) {
+        releasePermit(ctx);
+        releaseUpstreamSlot(ctx);
+    }
 
-        String matchedUri = ctx.currentRoute().getPath();
-        if (matchedUri.endsWith("/")) {
-            matchedUri = matchedUri.substring(0, matchedUri.length() - 1);
+    protected void releasePermit(RoutingContext ctx) {
+        ConcurrencyLimiter limiter = ctx.remove(INTERNAL_LIMIT_PERMIT);
+        if (limiter != null) {
+            limiter.release();
         }
+    }
 
-        //String suffixUri = uri.replace(matchedUri, "");
-        String suffixUri = fastReplace(uri, matchedUri, "");
+    protected void releaseUpstreamSlot(RoutingContext ctx) {
+        HttpUpstream upstream = ctx.remove(INTERNAL_UPSTREAM_SLOT);
+        if (upstream != null) {
+            upstream.release();
+        }
+    }
 
-        // 代理路径尾部与用户初始请求保持一致
-        if (uri.endsWith("/") && !suffixUri.endsWith("/")) {
-            suffixUri = suffixUri + "/";
+    /**
+     * 与上游建立连接。设置了DNS缓存时，由缓存解析上游主机名并在其所有地址间轮询；
+     * 请求尚未发出，因此连接失败的地址会被暂时跳过，并换下一个地址重新连接，最多尝试{@link DnsOptions#getMaxConnectAttempts()}个地址
+     *
+     * @param client  HTTP客户端
+     * @param options 请求参数
+     * @return 已建立连接的客户端请求
+     */
+    protected Future<HttpClientRequest> requestUpstream(HttpClient client, RequestOptions options) {
+        String host = options.getHost();
+        if (dnsResolver == null || host == null || NetUtil.isValidIpV4Address(host) || NetUtil.isValidIpV6Address(host)) {
+            return client.request(options);
         }
-        if (!uri.endsWith("/") && suffixUri.endsWith("/")) {
-            suffixUri = suffixUri.substring(0, suffixUri.length() - 1);
+        return requestResolved(dnsResolver, client, options, host, new ArrayList<>(), null);
+    }
+
+    private Future<HttpClientRequest> requestResolved(DnsResolver resolver, HttpClient client, RequestOptions options,
+                                                      String host, List<InetAddress> tried, Throwable lastError) {
+        return resolver.resolve(host).compose(address -> {
+            // 轮询回到已尝试过的地址，说明没有其他可用地址
+            if (tried.contains(address)) {
+                return Future.failedFuture(lastError);
+            }
+            tried.add(address);
+            Integer port = options.getPort();
+            if (port == null || port <= 0) {
+                port = Boolean.TRUE.equals(options.isSsl()) ? 443 : 80;
+            }
+            // 只替换连接的地址，Host请求头与TLS的SNI仍使用主机名
+            options.setServer(SocketAddress.inetSocketAddress(port, address.getHostAddress()));
+            return client.request(options).recover(e -> {
+                resolver.markFailed(host, address);
+                if (tried.size() >= resolver.getOptions().getMaxConnectAttempts()) {
+                    return Future.failedFuture(e);
+                }
+                log.warn("connect {}({}) failed, trying next address", host, address.getHostAddress(), e);
+                return requestResolved(resolver, client, options, host, tried, e);
+            });
+        });
+    }
+
+    /**
+     * 转发协议升级请求。上游响应101时，将上下游的连接交给{@link UpgradeTunnel}双向转发；上游拒绝升级时按普通响应转发
+     *
+     * @param ctx        路由上下文
+     * @param route      编译后路由
+     * @param httpClient 路由未启用独立连接池时使用的HTTP客户端，上游需支持HTTP/1.1
+     * @param proxyUrl   代理URL
+     */
+    protected void upgrade(RoutingContext ctx, CompiledRoute route, HttpClient httpClient, String proxyUrl) {
+        HttpServerRequest serverReq = ctx.request();
+        HttpServerResponse serverResp = ctx.response();
+        RequestOptions requestOptions = new RequestOptions();
+        requestOptions.setAbsoluteURI(proxyUrl);
+        requestOptions.setMethod(serverReq.method());
+        if (route.getTimeout() != null && route.getTimeout().getConnectTimeout() > 0) {
+            requestOptions.setConnectTimeout(route.getTimeout().getConnectTimeout());
         }
+        // 升级后的会话同样计入上游节点的进行中请求数，会话结束时释放
+        HttpUpstream upstream = getUpstream(ctx);
+        upstream.acquire();
+        HttpClient client = upstream.getHttpClient() == null ? httpClient : upstream.getHttpClient();
+        requestUpstream(client, requestOptions).onComplete(ar -> {
+            if (ar.failed()) {
+                upstream.release();
+                recordUpstreamResult(ctx, true);
+                if (ar.cause() instanceof TimeoutException || ar.cause() instanceof ConnectTimeoutException) {
+                    gatewayTimeout(ctx, serverResp);
+                } else {
+                    badGateway(ctx, serverResp);
+                }
+                log.error("{} {} open connection error", serverReq.method().name(), proxyUrl, ar.cause());
+                return;
+            }
+            HttpClientRequest clientReq = ar.result();
+            trackClientConnection(ctx, clientReq);
+            copyRequestHeaders(ctx, serverReq, clientReq);
+            // Connection与Upgrade是逐跳标头，升级请求需要显式传递给上游
+            clientReq.putHeader("Connection", "Upgrade");
+            clientReq.putHeader("Upgrade", serverReq.getHeader("Upgrade"));
+            clientReq.connect().onComplete(ar1 -> {
+                if (ar1.failed() || ar1.result().statusCode() != 101) {
+                    // 上游拒绝升级，按普通请求处理
+                    ctx.addEndHandler(v -> upstream.release());
+                    serverReq.resume();
+                    sendRequestHandler(ctx, serverReq, serverResp, proxyUrl).handle(ar1);
+                    return;
+                }
+                HttpClientResponse clientResp = ar1.result();
+                recordUpstreamResult(ctx, false);
+                // 101响应中的Upgrade、Connection以及Sec-WebSocket-Accept等标头都属于握手，原样返回给客户端
+                serverResp.headers().clear().addAll(clientResp.headers());
+                setStatusCode(ctx, serverResp, 101);
+                NetSocket upstreamSocket = clientResp.netSocket();
+                serverReq.toNetSocket().onComplete(ar2 -> {
+                    if (ar2.failed()) {
+                        upstream.release();
+                        upstreamSocket.close();
+                        log.error("{} {} upgrade error", serverReq.method().name(), proxyUrl, ar2.cause());
+                        doLog(ctx);
+                        return;
+                    }
+                    log.debug("source {} -- {} upgraded to {}", getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR), getContextData(ctx, INTERNAL_SERVER_LOCAL_ADDR), serverReq.getHeader("Upgrade"));
+                    route.getUpgradeTunnel().join(ctx.vertx().getOrCreateContext(), ar2.result(), upstreamSocket).onComplete(ar3 -> {
+                        upstream.release();
+                        UpgradeTunnel.Session session = ar3.result();
+                        log.debug("source {} -- {} upgrade closed{}, {} bytes up, {} bytes down",
+                                getContextData(ctx, INTERNAL_SERVER_REMOTE_ADDR), getContextData(ctx, INTERNAL_SERVER_LOCAL_ADDR),
+                                session.isIdle() ? " by idle timeout" : "", session.getUpstreamBytes(), session.getDownstreamBytes());
+                        doLog(ctx);
+                    });
+                });
+            });
+        });
+    }
 
-        // 因为targetUrl后面不带/，因此后缀需要以/开头
-        if (!suffixUri.isEmpty() && !suffixUri.startsWith("/")) {
-            suffixUri = "/" + suffixUri;
+    /**
+     * 尝试合并请求。没有相同请求在途时当前请求成为leader，正常请求上游；否则作为follower共享leader的响应
+     *
+     * @param ctx        路由上下文
+     * @param coalescer  请求合并
+     * @param httpClient 路由未启用独立连接池时使用的HTTP客户端
+     * @param proxyUrl   代理URL
+     * @return true表示已作为follower挂在leader上，无需再请求上游
+     */
+    protected boolean coalesce(RoutingContext ctx, RequestCoalescer coalescer, HttpClient httpClient, String proxyUrl) {
+        String key = RequestCoalescer.key(ctx.request());
+        if (key == null) {
+            return false;
+        }
+        RequestCoalescer.Flight flight = coalescer.lead(key);
+        if (flight != null) {
+            ctx.put(INTERNAL_FLIGHT, flight);
+            // 未进入流输出就结束时(连接失败、缓存重新验证命中等)，通知follower各自请求上游
+            ctx.addEndHandler(ar -> flight.cancel());
+            return false;
         }
+        HttpUpstream upstream = getUpstream(ctx);
+        HttpClient client = upstream.getHttpClient() == null ? httpClient : upstream.getHttpClient();
+        // leader恰好在此期间收到响应头时加入失败，作为普通请求处理
+        return coalescer.follow(key, new CoalescedFollower(this, ctx, client, proxyUrl, coalescer.getMaxFollowerLag()));
+    }
 
-        return targetUrl + suffixUri + params;
+    /**
+     * 获取代理后的完整proxyUrl，不区分代理目标路径是否以/结尾。
+     * 处理逻辑为删除掉匹配的路径，并将剩下的内容追加到代理目标路径后面。
+     *
+     * @param ctx        路由上下文
+     * @param serverReq  服务端请求
+     * @param serverResp 服务端响应
+     * @return 代理后的完整URL
+     */
+    protected String getProxyUrl(RoutingContext ctx, HttpServerRequest serverReq, HttpServerResponse serverResp) {
+        CompiledRoute route = getCompiledRoute(ctx);
+        // 不区分targetUrl是否以/结尾，均以targetUrl不带/来处理。targetBase与stripPrefix在编译路由时已算好
+        // 在vertx中，uri表示hostPort后面带有参数的地址。而path表示不带有参数的地址。
+        return UrlParser.proxyUrl(getUpstream(ctx).getTargetBase(),
+                route.isMultiLevel() ? route.getStripPrefix() : null,
+                serverReq.path(), serverReq.uri());
     }
 
+    /**
+     * 路由表中的路由，持有编译后路由及其处理器
+     */
+    public static final class RouteBinding {
+        private final CompiledRoute route;
+        private final Handler<RoutingContext> handler;
+
+        /**
+         * 路由的原始配置，用于重新加载时判断路由是否变化
+         */
+        private final Map<String, String> fingerprint;
+
+        public RouteBinding(CompiledRoute route, Handler<RoutingContext> handler, Map<String, String> fingerprint) {
+            this.route = route;
+            this.handler = handler;
+            this.fingerprint = fingerprint;
+        }
+
+        public CompiledRoute getRoute() {
+            return route;
+        }
 
+        public Handler<RoutingContext> getHandler() {
+            return handler;
+        }
+    }
 }
@@ -0,0 +1,309 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.meethigher.proxy.TransportOptions;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多实例部署的HTTP反向代理，将请求的接收与处理分散到多个EventLoop
+ * <p>
+ * 路由只编译一次，保存在{@link ReverseHttpProxy}的不可变路由表中，所有实例共享同一份路由表，因此响应缓存、限流、并发限制与健康检查在实例之间共享，
+ * 路由的替换对所有实例原子生效。每个实例以Verticle的形式部署，拥有自己的HttpServer、Router与HttpClient，
+ * 均绑定在该Verticle的EventLoop上，请求从接收到转发都不会跨线程。
+ * <p>
+ * 各实例监听同一端口，由Vert.x的服务端共享将新连接轮流分配给各实例；启用reusePort时由内核按SO_REUSEPORT分配，需要原生传输支持。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/21 20:10
+ */
+public class ReverseHttpProxyCluster {
+
+    private static final Logger log = LoggerFactory.getLogger(ReverseHttpProxyCluster.class);
+
+    private final Vertx vertx;
+
+    private final String name;
+
+    /**
+     * 持有共享的路由表，自身不监听端口
+     */
+    private final ReverseHttpProxy proxy;
+
+    private int instances = Runtime.getRuntime().availableProcessors();
+
+    private String host = "0.0.0.0";
+
+    private int port = 998;
+
+    private boolean reusePort = false;
+
+    private HttpClientOptions clientOptions = new HttpClientOptions();
+
+    private PoolOptions poolOptions = new PoolOptions();
+
+    /**
+     * 传输层配置，为null时使用默认的套接字选项
+     */
+    private TransportOptions transport;
+
+    /**
+     * 服务端的HTTP/2配置，为null时使用默认的服务端配置
+     */
+    private Http2Options http2;
+
+    private volatile String deploymentId;
+
+    protected ReverseHttpProxyCluster(Vertx vertx, String name) {
+        this.vertx = vertx;
+        this.name = name;
+        this.proxy = ReverseHttpProxy.create(vertx, name).enableRouteTable();
+    }
+
+    public static ReverseHttpProxyCluster create(Vertx vertx, String name) {
+        return new ReverseHttpProxyCluster(vertx, name);
+    }
+
+    public static ReverseHttpProxyCluster create(Vertx vertx) {
+        return new ReverseHttpProxyCluster(vertx, ReverseHttpProxy.generateName());
+    }
+
+    public ReverseHttpProxyCluster instances(int instances) {
+        if (instances <= 0) {
+            throw new IllegalArgumentException("instances must be greater than 0");
+        }
+        this.instances = instances;
+        return this;
+    }
+
+    public ReverseHttpProxyCluster port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public ReverseHttpProxyCluster host(String host) {
+        this.host = host;
+        return this;
+    }
+
+    /**
+     * 使用SO_REUSEPORT由内核分配连接，需要启用原生传输
+     *
+     * @param reusePort true表示启用
+     * @return 实例本身
+     */
+    public ReverseHttpProxyCluster reusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    /**
+     * 每个实例各自创建的HttpClient的配置，连接池大小按实例计算
+     *
+     * @param clientOptions 客户端配置
+     * @param poolOptions   连接池配置
+     * @return 实例本身
+     */
+    public ReverseHttpProxyCluster httpClientOptions(HttpClientOptions clientOptions, PoolOptions poolOptions) {
+        this.clientOptions = clientOptions;
+        this.poolOptions = poolOptions;
+        return this;
+    }
+
+    /**
+     * 各实例的服务端与客户端使用的传输层配置。Vertx需要通过{@link TransportOptions#createVertx()}创建才会启用原生传输
+     *
+     * @param transport 传输层配置
+     * @return 实例本身
+     */
+    public ReverseHttpProxyCluster transport(TransportOptions transport) {
+        this.transport = transport;
+        proxy.upstreamClientPool.setTransport(transport);
+        return this;
+    }
+
+    /**
+     * 各实例服务端的HTTP/2配置
+     *
+     * @param http2 HTTP/2配置
+     * @return 实例本身
+     */
+    public ReverseHttpProxyCluster http2(Http2Options http2) {
+        this.http2 = http2;
+        return this;
+    }
+
+    /**
+     * 所有实例共用的上游DNS缓存
+     *
+     * @param dnsResolver DNS缓存
+     * @return 实例本身
+     */
+    public ReverseHttpProxyCluster dns(DnsResolver dnsResolver) {
+        proxy.dns(dnsResolver);
+        return this;
+    }
+
+    /**
+     * 所有实例共用的缓冲内存上限
+     *
+     * @param maxBytes 字节数
+     * @return 实例本身
+     */
+    public ReverseHttpProxyCluster bufferMemory(long maxBytes) {
+        proxy.bufferMemory(maxBytes);
+        return this;
+    }
+
+    public ReverseHttpProxyCluster addRoute(ProxyRoute proxyRoute) {
+        return addRoute(proxyRoute, null);
+    }
+
+    /**
+     * 添加路由。只支持可由路由表匹配的路由，不支持静态资源路由
+     *
+     * @param proxyRoute 路由信息
+     * @param order      order越小，优先级越高
+     * @return 实例本身
+     */
+    public ReverseHttpProxyCluster addRoute(ProxyRoute proxyRoute, Integer order) {
+        String targetUrl = proxyRoute.getTargetUrl();
+        if ((targetUrl != null && targetUrl.startsWith(ReverseHttpProxy.STATIC)) || !RouteTable.isSupported(proxyRoute.getSourceUrl())) {
+            throw new IllegalArgumentException("route " + proxyRoute.getName() + " " + proxyRoute.getSourceUrl() + " is not supported by the route table");
+        }
+        proxy.addRoute(proxyRoute, order);
+        return this;
+    }
+
+    public ReverseHttpProxyCluster removeRoute(String name) {
+        proxy.removeRoute(name);
+        return this;
+    }
+
+    public ReverseHttpProxyCluster replaceRoutes(List<ProxyRoute> proxyRoutes) {
+        proxy.replaceRoutes(proxyRoutes);
+        return this;
+    }
+
+    /**
+     * 持有共享路由表的代理，可用于加载或监听路由配置文件、设置访问日志以及查看缓存与并发限制
+     *
+     * @return 代理
+     */
+    public ReverseHttpProxy getProxy() {
+        return proxy;
+    }
+
+    public Future<String> start() {
+        DeploymentOptions options = new DeploymentOptions().setInstances(instances);
+        return vertx.deployVerticle(() -> new Instance(this), options)
+                .onSuccess(id -> {
+                    deploymentId = id;
+                    log.info("{} started {} instances on {}:{}", name, instances, host, port);
+                })
+                .onFailure(e -> log.error("{} start failed", name, e));
+    }
+
+    public Future<Void> stop() {
+        String id = deploymentId;
+        deploymentId = null;
+        Future<Void> future = id == null ? Future.succeededFuture() : vertx.undeploy(id);
+        return future.onComplete(ar -> {
+            proxy.stop();
+            log.info("{} closed", name);
+        });
+    }
+
+    /**
+     * 单个代理实例，所有资源都绑定在部署时分配的EventLoop上
+     */
+    static class Instance extends AbstractVerticle {
+
+        private final ReverseHttpProxyCluster cluster;
+
+        private HttpServer httpServer;
+
+        private HttpClient httpClient;
+
+        /**
+         * 路由处理器按编译后路由缓存，路由表替换后清空。仅在当前EventLoop读写
+         */
+        private final Map<CompiledRoute, Handler<RoutingContext>> handlers = new IdentityHashMap<>();
+
+        private RouteTable<ReverseHttpProxy.RouteBinding> table;
+
+        Instance(ReverseHttpProxyCluster cluster) {
+            this.cluster = cluster;
+        }
+
+        @Override
+        public void start(Promise<Void> startPromise) {
+            ReverseHttpProxy proxy = cluster.proxy;
+            TransportOptions transport = cluster.transport;
+            HttpClientOptions clientOptions = new HttpClientOptions(cluster.clientOptions);
+            HttpServerOptions serverOptions = new HttpServerOptions();
+            if (transport != null) {
+                transport.apply(clientOptions);
+                transport.apply(serverOptions);
+            }
+            // 是否由内核分配连接只取决于集群的配置，覆盖传输层配置中的SO_REUSEPORT
+            serverOptions.setReusePort(cluster.reusePort);
+            if (cluster.http2 != null) {
+                cluster.http2.apply(serverOptions);
+            }
+            httpClient = vertx.createHttpClient(clientOptions, cluster.poolOptions);
+            Router router = Router.router(vertx);
+            router.route().handler(this::dispatch);
+            httpServer = vertx.createHttpServer(serverOptions);
+            httpServer.requestHandler(router)
+                    .exceptionHandler(e -> log.error("{} socket errors happening before the HTTP connection", proxy.name, e))
+                    .listen(cluster.port, cluster.host)
+                    .<Void>mapEmpty()
+                    .onComplete(startPromise);
+        }
+
+        private void dispatch(RoutingContext ctx) {
+            ReverseHttpProxy proxy = cluster.proxy;
+            RouteTable<ReverseHttpProxy.RouteBinding> current = proxy.getRouteTable();
+            if (current != table) {
+                table = current;
+                handlers.clear();
+            }
+            RouteTable.Entry<ReverseHttpProxy.RouteBinding> entry = current.match(ctx.request().host(), ctx.normalizedPath());
+            if (entry == null) {
+                ctx.next();
+                return;
+            }
+            CompiledRoute route = entry.getValue().getRoute();
+            Handler<RoutingContext> handler = handlers.get(route);
+            if (handler == null) {
+                handler = proxy.routingContextHandler(httpClient, route);
+                handlers.put(route, handler);
+            }
+            handler.handle(ctx);
+        }
+
+        @Override
+        public void stop(Promise<Void> stopPromise) {
+            httpServer.close()
+                    .compose(v -> httpClient.close())
+                    .onComplete(stopPromise);
+        }
+    }
+}
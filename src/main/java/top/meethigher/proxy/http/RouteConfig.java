@@ -0,0 +1,246 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 声明式路由配置文件的解析
+ * <p>
+ * 文件内容为JSON，可以是路由数组，也可以是带有routes字段的对象。每个路由的字段与{@link ProxyRoute}一一对应，未配置的字段使用默认值，例如
+ * <pre>{@code
+ * {
+ *   "routes": [
+ *     {"name": "api", "sourceUrl": "/api/*", "targetUrl": "http://10.0.0.1:888", "cache": {"enable": true}},
+ *     {"name": "web", "sourceUrl": "/*", "upstreams": [{"targetUrl": "http://10.0.0.2:888", "weight": 2}]}
+ *   ]
+ * }
+ * }</pre>
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/12 22:15
+ */
+public final class RouteConfig {
+
+    private RouteConfig() {
+    }
+
+    /**
+     * 解析路由配置
+     *
+     * @param content 配置文件内容
+     * @return 路由列表
+     */
+    public static List<ProxyRoute> parse(String content) {
+        String trimmed = content.trim();
+        JsonArray array = trimmed.startsWith("[") ? new JsonArray(trimmed) : new JsonObject(trimmed).getJsonArray("routes", new JsonArray());
+        List<ProxyRoute> routes = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            routes.add(toProxyRoute(array.getJsonObject(i)));
+        }
+        return routes;
+    }
+
+    public static ProxyRoute toProxyRoute(JsonObject json) {
+        String sourceUrl = json.getString("sourceUrl");
+        if (sourceUrl == null) {
+            throw new IllegalArgumentException("sourceUrl is required: " + json.encode());
+        }
+        ProxyRoute route = new ProxyRoute()
+                .setName(json.getString("name", sourceUrl))
+                .setSourceUrl(sourceUrl)
+                .setHost(json.getString("host"))
+                .setTargetUrl(json.getString("targetUrl"))
+                .setForwardIp(json.getBoolean("forwardIp", false))
+                .setPreserveCookies(json.getBoolean("preserveCookies", true))
+                .setPreserveHost(json.getBoolean("preserveHost", false))
+                .setFollowRedirects(json.getBoolean("followRedirects", true))
+                .setHttpKeepAlive(json.getBoolean("httpKeepAlive", true));
+        String loadBalance = json.getString("loadBalance");
+        if (loadBalance != null) {
+            route.setLoadBalance(ProxyRoute.LoadBalance.valueOf(loadBalance));
+        }
+        JsonObject consistentHash = json.getJsonObject("consistentHash");
+        if (consistentHash != null) {
+            ProxyRoute.ConsistentHash defaults = new ProxyRoute.ConsistentHash();
+            route.setConsistentHash(new ProxyRoute.ConsistentHash()
+                    .setKey(ProxyRoute.HashKey.valueOf(consistentHash.getString("key", defaults.getKey().name())))
+                    .setName(consistentHash.getString("name", defaults.getName()))
+                    .setBoundedLoadFactor(consistentHash.getDouble("boundedLoadFactor", defaults.getBoundedLoadFactor())));
+        }
+        JsonArray upstreams = json.getJsonArray("upstreams");
+        if (upstreams != null) {
+            for (int i = 0; i < upstreams.size(); i++) {
+                JsonObject upstream = upstreams.getJsonObject(i);
+                route.addUpstream(upstream.getString("targetUrl"), upstream.getInteger("weight", 1));
+            }
+        }
+        JsonObject log = json.getJsonObject("log");
+        if (log != null) {
+            route.setLog(new ProxyRoute.Log()
+                    .setEnable(log.getBoolean("enable", true))
+                    .setLogFormat(log.getString("logFormat", ReverseHttpProxy.LOG_FORMAT_DEFAULT)));
+        }
+        JsonObject cors = json.getJsonObject("corsControl");
+        if (cors != null) {
+            route.setCorsControl(new ProxyRoute.CorsControl()
+                    .setEnable(cors.getBoolean("enable", false))
+                    .setAllowCors(cors.getBoolean("allowCors", false)));
+        }
+        JsonObject pool = json.getJsonObject("connectionPool");
+        if (pool != null) {
+            ProxyRoute.ConnectionPool defaults = new ProxyRoute.ConnectionPool();
+            route.setConnectionPool(new ProxyRoute.ConnectionPool()
+                    .setEnable(pool.getBoolean("enable", defaults.isEnable()))
+                    .setMaxConnections(pool.getInteger("maxConnections", defaults.getMaxConnections()))
+                    .setMaxWaitQueueSize(pool.getInteger("maxWaitQueueSize", defaults.getMaxWaitQueueSize()))
+                    .setKeepAliveTimeout(pool.getInteger("keepAliveTimeout", defaults.getKeepAliveTimeout()))
+                    .setIdleEvictionPeriod(pool.getInteger("idleEvictionPeriod", defaults.getIdleEvictionPeriod()))
+                    .setHttp2(pool.getBoolean("http2", defaults.isHttp2()))
+                    .setHttp2MaxConnections(pool.getInteger("http2MaxConnections", defaults.getHttp2MaxConnections()))
+                    .setHttp2MultiplexingLimit(pool.getInteger("http2MultiplexingLimit", defaults.getHttp2MultiplexingLimit()))
+                    .setPrewarmConnections(pool.getInteger("prewarmConnections", defaults.getPrewarmConnections())));
+        }
+        JsonObject cache = json.getJsonObject("cache");
+        if (cache != null) {
+            ProxyRoute.Cache defaults = new ProxyRoute.Cache();
+            route.setCache(new ProxyRoute.Cache()
+                    .setEnable(cache.getBoolean("enable", defaults.isEnable()))
+                    .setMaxBytes(cache.getLong("maxBytes", defaults.getMaxBytes()))
+                    .setMaxEntryBytes(cache.getInteger("maxEntryBytes", defaults.getMaxEntryBytes()))
+                    .setHeuristicMaxAge(cache.getLong("heuristicMaxAge", defaults.getHeuristicMaxAge())));
+        }
+        JsonObject coalescing = json.getJsonObject("coalescing");
+        if (coalescing != null) {
+            ProxyRoute.Coalescing defaults = new ProxyRoute.Coalescing();
+            route.setCoalescing(new ProxyRoute.Coalescing()
+                    .setEnable(coalescing.getBoolean("enable", defaults.isEnable()))
+                    .setMaxFollowerLag(coalescing.getLong("maxFollowerLag", defaults.getMaxFollowerLag())));
+        }
+        JsonObject healthCheck = json.getJsonObject("healthCheck");
+        if (healthCheck != null) {
+            ProxyRoute.HealthCheck defaults = new ProxyRoute.HealthCheck();
+            route.setHealthCheck(new ProxyRoute.HealthCheck()
+                    .setEnable(healthCheck.getBoolean("enable", defaults.isEnable()))
+                    .setPath(healthCheck.getString("path", defaults.getPath()))
+                    .setExpectedStatus(String.valueOf(healthCheck.getValue("expectedStatus", defaults.getExpectedStatus())))
+                    .setInterval(healthCheck.getLong("interval", defaults.getInterval()))
+                    .setTimeout(healthCheck.getLong("timeout", defaults.getTimeout()))
+                    .setHealthyThreshold(healthCheck.getInteger("healthyThreshold", defaults.getHealthyThreshold()))
+                    .setUnhealthyThreshold(healthCheck.getInteger("unhealthyThreshold", defaults.getUnhealthyThreshold())));
+        }
+        JsonObject outlier = json.getJsonObject("outlierDetection");
+        if (outlier != null) {
+            ProxyRoute.OutlierDetection defaults = new ProxyRoute.OutlierDetection();
+            route.setOutlierDetection(new ProxyRoute.OutlierDetection()
+                    .setEnable(outlier.getBoolean("enable", defaults.isEnable()))
+                    .setConsecutiveFailures(outlier.getInteger("consecutiveFailures", defaults.getConsecutiveFailures()))
+                    .setBaseEjectionTime(outlier.getLong("baseEjectionTime", defaults.getBaseEjectionTime()))
+                    .setMaxEjectionTime(outlier.getLong("maxEjectionTime", defaults.getMaxEjectionTime()))
+                    .setSlowStart(outlier.getLong("slowStart", defaults.getSlowStart())));
+        }
+        JsonObject compression = json.getJsonObject("compression");
+        if (compression != null) {
+            ProxyRoute.Compression defaults = new ProxyRoute.Compression();
+            route.setCompression(new ProxyRoute.Compression()
+                    .setEnable(compression.getBoolean("enable", defaults.isEnable()))
+                    .setLevel(compression.getInteger("level", defaults.getLevel()))
+                    .setMinLength(compression.getLong("minLength", defaults.getMinLength()))
+                    .setMimeTypes(compression.getString("mimeTypes", defaults.getMimeTypes()))
+                    .setVariantCache(compression.getBoolean("variantCache", defaults.isVariantCache()))
+                    .setVariantCacheMaxBytes(compression.getLong("variantCacheMaxBytes", defaults.getVariantCacheMaxBytes())));
+        }
+        JsonObject rateLimit = json.getJsonObject("rateLimit");
+        if (rateLimit != null) {
+            ProxyRoute.RateLimit defaults = new ProxyRoute.RateLimit();
+            route.setRateLimit(new ProxyRoute.RateLimit()
+                    .setEnable(rateLimit.getBoolean("enable", defaults.isEnable()))
+                    .setKey(ProxyRoute.RateLimitKey.valueOf(rateLimit.getString("key", defaults.getKey().name())))
+                    .setHeader(rateLimit.getString("header", defaults.getHeader()))
+                    .setRate(rateLimit.getDouble("rate", defaults.getRate()))
+                    .setBurst(rateLimit.getInteger("burst", defaults.getBurst()))
+                    .setMaxKeys(rateLimit.getInteger("maxKeys", defaults.getMaxKeys())));
+        }
+        JsonObject concurrencyLimit = json.getJsonObject("concurrencyLimit");
+        if (concurrencyLimit != null) {
+            ProxyRoute.ConcurrencyLimit defaults = new ProxyRoute.ConcurrencyLimit();
+            route.setConcurrencyLimit(new ProxyRoute.ConcurrencyLimit()
+                    .setEnable(concurrencyLimit.getBoolean("enable", defaults.isEnable()))
+                    .setInitialLimit(concurrencyLimit.getInteger("initialLimit", defaults.getInitialLimit()))
+                    .setMinLimit(concurrencyLimit.getInteger("minLimit", defaults.getMinLimit()))
+                    .setMaxLimit(concurrencyLimit.getInteger("maxLimit", defaults.getMaxLimit()))
+                    .setMaxQueueSize(concurrencyLimit.getInteger("maxQueueSize", defaults.getMaxQueueSize()))
+                    .setQueueTimeout(concurrencyLimit.getLong("queueTimeout", defaults.getQueueTimeout()))
+                    .setPriority(ProxyRoute.Priority.valueOf(concurrencyLimit.getString("priority", defaults.getPriority().name()))));
+        }
+        JsonObject retry = json.getJsonObject("retry");
+        if (retry != null) {
+            ProxyRoute.Retry defaults = new ProxyRoute.Retry();
+            route.setRetry(new ProxyRoute.Retry()
+                    .setEnable(retry.getBoolean("enable", defaults.isEnable()))
+                    .setRetryOnConnectFailure(retry.getBoolean("retryOnConnectFailure", defaults.isRetryOnConnectFailure()))
+                    .setMaxRetries(retry.getInteger("maxRetries", defaults.getMaxRetries()))
+                    .setHedge(retry.getBoolean("hedge", defaults.isHedge()))
+                    .setHedgePercentile(retry.getDouble("hedgePercentile", defaults.getHedgePercentile()))
+                    .setHedgeMinDelay(retry.getLong("hedgeMinDelay", defaults.getHedgeMinDelay()))
+                    .setHedgeMaxDelay(retry.getLong("hedgeMaxDelay", defaults.getHedgeMaxDelay()))
+                    .setBudgetRatio(retry.getDouble("budgetRatio", defaults.getBudgetRatio()))
+                    .setBudgetMaxTokens(retry.getInteger("budgetMaxTokens", defaults.getBudgetMaxTokens())));
+        }
+        JsonObject timeout = json.getJsonObject("timeout");
+        if (timeout != null) {
+            ProxyRoute.Timeout defaults = new ProxyRoute.Timeout();
+            route.setTimeout(new ProxyRoute.Timeout()
+                    .setEnable(timeout.getBoolean("enable", defaults.isEnable()))
+                    .setConnectTimeout(timeout.getLong("connectTimeout", defaults.getConnectTimeout()))
+                    .setFirstByteTimeout(timeout.getLong("firstByteTimeout", defaults.getFirstByteTimeout()))
+                    .setIdleTimeout(timeout.getLong("idleTimeout", defaults.getIdleTimeout()))
+                    .setTotalTimeout(timeout.getLong("totalTimeout", defaults.getTotalTimeout())));
+        }
+        JsonObject upgrade = json.getJsonObject("upgrade");
+        if (upgrade != null) {
+            ProxyRoute.Upgrade defaults = new ProxyRoute.Upgrade();
+            route.setUpgrade(new ProxyRoute.Upgrade()
+                    .setEnable(upgrade.getBoolean("enable", defaults.isEnable()))
+                    .setProtocols(upgrade.getString("protocols", defaults.getProtocols()))
+                    .setIdleTimeout(upgrade.getLong("idleTimeout", defaults.getIdleTimeout())));
+        }
+        JsonObject mirror = json.getJsonObject("mirror");
+        if (mirror != null) {
+            ProxyRoute.Mirror defaults = new ProxyRoute.Mirror();
+            route.setMirror(new ProxyRoute.Mirror()
+                    .setEnable(mirror.getBoolean("enable", defaults.isEnable()))
+                    .setTargetUrl(mirror.getString("targetUrl", defaults.getTargetUrl()))
+                    .setPercentage(mirror.getDouble("percentage", defaults.getPercentage()))
+                    .setMaxConcurrency(mirror.getInteger("maxConcurrency", defaults.getMaxConcurrency()))
+                    .setMaxConnections(mirror.getInteger("maxConnections", defaults.getMaxConnections()))
+                    .setMaxPendingBytes(mirror.getInteger("maxPendingBytes", defaults.getMaxPendingBytes()))
+                    .setTimeout(mirror.getLong("timeout", defaults.getTimeout())));
+        }
+        JsonObject buffering = json.getJsonObject("buffering");
+        if (buffering != null) {
+            ProxyRoute.Buffering defaults = new ProxyRoute.Buffering();
+            route.setBuffering(new ProxyRoute.Buffering()
+                    .setEnable(buffering.getBoolean("enable", defaults.isEnable()))
+                    .setRequest(buffering.getBoolean("request", defaults.isRequest()))
+                    .setResponse(buffering.getBoolean("response", defaults.isResponse()))
+                    .setMaxMemoryBytes(buffering.getLong("maxMemoryBytes", defaults.getMaxMemoryBytes()))
+                    .setMaxFileBytes(buffering.getLong("maxFileBytes", defaults.getMaxFileBytes()))
+                    .setTempDir(buffering.getString("tempDir", defaults.getTempDir())));
+        }
+        JsonObject staticFiles = json.getJsonObject("staticFiles");
+        if (staticFiles != null) {
+            ProxyRoute.StaticFiles defaults = new ProxyRoute.StaticFiles();
+            route.setStaticFiles(new ProxyRoute.StaticFiles()
+                    .setEnable(staticFiles.getBoolean("enable", defaults.isEnable()))
+                    .setIndexPage(staticFiles.getString("indexPage", defaults.getIndexPage()))
+                    .setCacheMaxBytes(staticFiles.getLong("cacheMaxBytes", defaults.getCacheMaxBytes()))
+                    .setCacheMaxEntryBytes(staticFiles.getInteger("cacheMaxEntryBytes", defaults.getCacheMaxEntryBytes()))
+                    .setGzip(staticFiles.getBoolean("gzip", defaults.isGzip()))
+                    .setWatch(staticFiles.getBoolean("watch", defaults.isWatch())));
+        }
+        return route;
+    }
+}
@@ -0,0 +1,101 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.file.FileProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 路由配置文件监听
+ * <p>
+ * 定时检查文件的修改时间与大小，发现变化后并不立即加载，而是等待文件在防抖时间内不再变化，
+ * 避免编辑器分多次写入时加载到写了一半的文件。加载失败时保留当前路由表不变。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/12 23:02
+ */
+public class RouteFileWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteFileWatcher.class);
+
+    private final Vertx vertx;
+
+    private final ReverseHttpProxy proxy;
+
+    private final String file;
+
+    private final long debounceMillis;
+
+    private final long pollIntervalMillis;
+
+    private long periodicId = -1;
+
+    private long debounceTimerId = -1;
+
+    /**
+     * 已加载的文件版本
+     */
+    private volatile String loadedStamp;
+
+    /**
+     * 等待防抖结束的文件版本
+     */
+    private volatile String pendingStamp;
+
+    public RouteFileWatcher(Vertx vertx, ReverseHttpProxy proxy, String file, long debounceMillis) {
+        this.vertx = vertx;
+        this.proxy = proxy;
+        this.file = file;
+        this.debounceMillis = Math.max(1, debounceMillis);
+        this.pollIntervalMillis = Math.max(100, Math.min(1000, this.debounceMillis));
+    }
+
+    public void start() {
+        vertx.fileSystem().props(file)
+                .onSuccess(props -> load(stamp(props)))
+                .onFailure(e -> log.error("route file {} is not readable", file, e));
+        periodicId = vertx.setPeriodic(pollIntervalMillis, id -> check());
+    }
+
+    public void stop() {
+        if (periodicId >= 0) {
+            vertx.cancelTimer(periodicId);
+            periodicId = -1;
+        }
+        if (debounceTimerId >= 0) {
+            vertx.cancelTimer(debounceTimerId);
+            debounceTimerId = -1;
+        }
+    }
+
+    private static String stamp(FileProps props) {
+        return props.lastModifiedTime() + ":" + props.size();
+    }
+
+    private void check() {
+        vertx.fileSystem().props(file).onSuccess(props -> {
+            String stamp = stamp(props);
+            if (stamp.equals(loadedStamp) || stamp.equals(pendingStamp)) {
+                return;
+            }
+            // 文件仍在变化，重新开始防抖计时
+            pendingStamp = stamp;
+            if (debounceTimerId >= 0) {
+                vertx.cancelTimer(debounceTimerId);
+            }
+            debounceTimerId = vertx.setTimer(debounceMillis, id -> {
+                debounceTimerId = -1;
+                pendingStamp = null;
+                load(stamp);
+            });
+        });
+    }
+
+    private void load(String stamp) {
+        // 无论成功与否都记录版本，错误的文件只报告一次，等待下一次修改
+        loadedStamp = stamp;
+        proxy.loadRoutes(file)
+                .onSuccess(v -> log.info("route file {} loaded", file))
+                .onFailure(e -> log.error("route file {} load failed, keep the current routes", file, e));
+    }
+}
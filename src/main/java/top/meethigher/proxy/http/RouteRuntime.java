@@ -0,0 +1,74 @@
+package top.meethigher.proxy.http;
+
+import top.meethigher.proxy.http.file.StaticFileHandler;
+
+/**
+ * 路由运行期的后台资源
+ * <p>
+ * 主动健康检查、静态资源处理器与流量镜像依赖Vertx与代理的HttpClient，只能在代理绑定路由时创建，
+ * 因此不放在不可变的{@link CompiledRoute}中，而是由其持有的本对象在绑定时设置一次，路由被删除或代理停止时统一关闭。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/09/01 21:20
+ */
+public final class RouteRuntime {
+
+    /**
+     * 主动健康检查，未启用时为null
+     */
+    private volatile HttpHealthChecker healthChecker;
+
+    /**
+     * 启用静态资源服务的static:路由使用的处理器，其他路由为null
+     */
+    private volatile StaticFileHandler staticFileHandler;
+
+    /**
+     * 流量镜像，未启用时为null
+     */
+    private volatile TrafficMirror trafficMirror;
+
+    public HttpHealthChecker getHealthChecker() {
+        return healthChecker;
+    }
+
+    public RouteRuntime setHealthChecker(HttpHealthChecker healthChecker) {
+        this.healthChecker = healthChecker;
+        return this;
+    }
+
+    public StaticFileHandler getStaticFileHandler() {
+        return staticFileHandler;
+    }
+
+    public RouteRuntime setStaticFileHandler(StaticFileHandler staticFileHandler) {
+        this.staticFileHandler = staticFileHandler;
+        return this;
+    }
+
+    public TrafficMirror getTrafficMirror() {
+        return trafficMirror;
+    }
+
+    public RouteRuntime setTrafficMirror(TrafficMirror trafficMirror) {
+        this.trafficMirror = trafficMirror;
+        return this;
+    }
+
+    /**
+     * 停止主动健康检查与静态资源目录监听，关闭流量镜像的连接池
+     */
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.stop();
+        }
+        // 静态资源的目录监听
+        if (staticFileHandler != null) {
+            staticFileHandler.close();
+        }
+        // 流量镜像的独立连接池
+        if (trafficMirror != null) {
+            trafficMirror.close();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package top.meethigher.proxy.http;
+
+import java.util.*;
+
+/**
+ * 基于基数树(radix trie)的不可变路由表
+ * <p>
+ * 支持精确路径(如/api/user)、按路径段匹配的前缀(如/api/*)以及不限路径段的前缀(如/api*)，查找耗时只与请求路径长度有关，与路由数量无关。
+ * 绑定了host的路由按host分组，每个host一棵树，查找时先查请求host对应的树，未命中再查不限host的树。
+ * <p>
+ * 匹配规则为最长匹配：精确路径优先于前缀，较长的前缀优先于较短的前缀；同一路径以order较小者为准，order相同时先添加者为准。
+ * <p>
+ * 路由表创建后不可修改，增删路由都会生成新的路由表，因此可以通过替换引用的方式原子地切换整张路由表，查找过程无需加锁。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/11 21:40
+ */
+public final class RouteTable<T> {
+
+    private static final RouteTable<?> EMPTY = new RouteTable<>(Collections.emptyList());
+
+    /**
+     * 路由表中的一条路由
+     */
+    public static final class Entry<T> {
+        private final String name;
+        private final String host;
+        private final String pattern;
+        private final int order;
+        private final T value;
+
+        /**
+         * 树中的键，去掉了通配符与末尾的/
+         */
+        private final String key;
+
+        /**
+         * 是否是前缀匹配
+         */
+        private final boolean prefix;
+
+        /**
+         * 前缀匹配时，是否要求在路径段边界结束，即/api/*不匹配/apix
+         */
+        private final boolean segment;
+
+        public Entry(String name, String host, String pattern, int order, T value) {
+            if (!isSupported(pattern)) {
+                throw new IllegalArgumentException("unsupported route pattern " + pattern);
+            }
+            this.name = name;
+            this.host = normalizeHost(host);
+            this.pattern = pattern;
+            this.order = order;
+            this.value = value;
+            if (pattern.endsWith("/*")) {
+                this.key = pattern.substring(0, pattern.length() - 2);
+                this.prefix = true;
+                this.segment = true;
+            } else if (pattern.endsWith("*")) {
+                this.key = pattern.substring(0, pattern.length() - 1);
+                this.prefix = true;
+                this.segment = false;
+            } else {
+                this.key = pattern.length() > 1 && pattern.endsWith("/") ? pattern.substring(0, pattern.length() - 1) : pattern;
+                this.prefix = false;
+                this.segment = false;
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public int getOrder() {
+            return order;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * 树节点。仅在构建路由表时修改，构建完成后只读
+     */
+    private static final class Node<T> {
+        private String label;
+        private char[] keys = new char[0];
+        private Node<T>[] children = newArray(0);
+        private Entry<T> exact;
+        private Entry<T> prefix;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newArray(int size) {
+            return (Node<T>[]) new Node[size];
+        }
+
+        private Node<T> child(char c) {
+            char[] ks = keys;
+            for (int i = 0; i < ks.length; i++) {
+                if (ks[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private void addChild(Node<T> child) {
+            int n = keys.length;
+            keys = Arrays.copyOf(keys, n + 1);
+            children = Arrays.copyOf(children, n + 1);
+            keys[n] = child.label.charAt(0);
+            children[n] = child;
+        }
+
+        private void replaceChild(Node<T> child) {
+            char c = child.label.charAt(0);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    children[i] = child;
+                    return;
+                }
+            }
+        }
+    }
+
+    private final List<Entry<T>> entries;
+
+    private final Node<T> anyHost;
+
+    private final Map<String, Node<T>> hosts;
+
+    private RouteTable(List<Entry<T>> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.hosts = new HashMap<>();
+        this.anyHost = new Node<>("");
+        // 按order稳定排序后依次插入，已存在相同路径时保留先插入者
+        List<Entry<T>> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingInt(Entry::getOrder));
+        for (Entry<T> entry : sorted) {
+            Node<T> root = entry.host == null ? anyHost : hosts.computeIfAbsent(entry.host, h -> new Node<>(""));
+            insert(root, entry);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> RouteTable<T> empty() {
+        return (RouteTable<T>) EMPTY;
+    }
+
+    public static <T> RouteTable<T> of(List<Entry<T>> entries) {
+        return new RouteTable<>(new ArrayList<>(entries));
+    }
+
+    /**
+     * 判断路径是否可以放入路由表。路径参数与正则需要交由Vertx Router处理
+     *
+     * @param pattern 路由路径
+     * @return 是否支持
+     */
+    public static boolean isSupported(String pattern) {
+        if (pattern == null || !pattern.startsWith("/")) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == ':' || c == '(' || c == '[' || c == '{' || c == '?' || c == '\\') {
+                return false;
+            }
+            if (c == '*' && i != pattern.length() - 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成追加了一条路由的新路由表
+     *
+     * @param entry 路由
+     * @return 新路由表
+     */
+    public RouteTable<T> add(Entry<T> entry) {
+        List<Entry<T>> list = new ArrayList<>(entries.size() + 1);
+        list.addAll(entries);
+        list.add(entry);
+        return new RouteTable<>(list);
+    }
+
+    /**
+     * 生成删除了指定名称路由的新路由表，名称重复的一并删除
+     *
+     * @param name 路由名称
+     * @return 新路由表。不存在该名称时返回当前路由表
+     */
+    public RouteTable<T> remove(String name) {
+        List<Entry<T>> list = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries) {
+            if (!Objects.equals(name, entry.name)) {
+                list.add(entry);
+            }
+        }
+        return list.size() == entries.size() ? this : new RouteTable<>(list);
+    }
+
+    public List<Entry<T>> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 查找请求命中的路由
+     *
+     * @param host 请求host，可带端口
+     * @param path 不带query的请求路径
+     * @return 命中的路由，未命中返回null
+     */
+    public Entry<T> match(String host, String path) {
+        if (!hosts.isEmpty() && host != null) {
+            Node<T> root = hosts.get(normalizeHost(host));
+            if (root != null) {
+                Entry<T> entry = match(root, path);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
+        return match(anyHost, path);
+    }
+
+    private static <T> Entry<T> match(Node<T> root, String path) {
+        Entry<T> best = null;
+        Node<T> node = root;
+        int length = path.length();
+        int i = 0;
+        while (true) {
+            Entry<T> prefix = node.prefix;
+            if (prefix != null && (!prefix.segment || i == length || path.charAt(i) == '/')) {
+                best = prefix;
+            }
+            if (node.exact != null && (i == length || (i == length - 1 && path.charAt(i) == '/'))) {
+                return node.exact;
+            }
+            if (i == length) {
+                return best;
+            }
+            Node<T> child = node.child(path.charAt(i));
+            if (child == null || !path.regionMatches(i, child.label, 0, child.label.length())) {
+                return best;
+            }
+            i += child.label.length();
+            node = child;
+        }
+    }
+
+    private static <T> void insert(Node<T> root, Entry<T> entry) {
+        String key = entry.key;
+        Node<T> node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node<T> child = node.child(key.charAt(i));
+            if (child == null) {
+                Node<T> leaf = new Node<>(key.substring(i));
+                node.addChild(leaf);
+                node = leaf;
+                i = key.length();
+                break;
+            }
+            String label = child.label;
+            int common = 0;
+            int max = Math.min(label.length(), key.length() - i);
+            while (common < max && label.charAt(common) == key.charAt(i + common)) {
+                common++;
+            }
+            if (common < label.length()) {
+                // 拆分边：公共部分作为新的中间节点
+                Node<T> middle = new Node<>(label.substring(0, common));
+                child.label = label.substring(common);
+                middle.addChild(child);
+                node.replaceChild(middle);
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        if (entry.prefix) {
+            if (node.prefix == null) {
+                node.prefix = entry;
+            }
+        } else if (node.exact == null) {
+            node.exact = entry;
+        }
+    }
+
+    /**
+     * host忽略大小写与端口
+     *
+     * @param host host
+     * @return 规范化后的host
+     */
+    private static String normalizeHost(String host) {
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        int end = host.length();
+        if (host.charAt(0) == '[') {
+            int close = host.indexOf(']');
+            end = close < 0 ? end : close + 1;
+        } else {
+            int colon = host.lastIndexOf(':');
+            if (colon >= 0) {
+                end = colon;
+            }
+        }
+        return (end == host.length() ? host : host.substring(0, end)).toLowerCase(Locale.ROOT);
+    }
+}
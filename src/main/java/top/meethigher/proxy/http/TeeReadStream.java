@@ -0,0 +1,82 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * 对{@link ReadStream}的透明包装，每段数据在交给下游之前先交给旁路处理器一份
+ * <p>
+ * 暂停、恢复、背压等流控均直接委托给被包装的流，旁路处理器只做同步的复制或计数，不应阻塞。
+ * 可选的结束处理器在流结束、交给下游的结束处理器之前调用。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/06 23:48
+ */
+public class TeeReadStream<T> implements ReadStream<T> {
+
+    private final ReadStream<T> delegate;
+
+    private final Handler<T> tap;
+
+    private final Handler<Void> endTap;
+
+    public TeeReadStream(ReadStream<T> delegate, Handler<T> tap) {
+        this(delegate, tap, null);
+    }
+
+    public TeeReadStream(ReadStream<T> delegate, Handler<T> tap, Handler<Void> endTap) {
+        this.delegate = delegate;
+        this.tap = tap;
+        this.endTap = endTap;
+    }
+
+    @Override
+    public ReadStream<T> exceptionHandler(Handler<Throwable> handler) {
+        delegate.exceptionHandler(handler);
+        return this;
+    }
+
+    @Override
+    public ReadStream<T> handler(Handler<T> handler) {
+        if (handler == null) {
+            delegate.handler(null);
+        } else {
+            delegate.handler(item -> {
+                tap.handle(item);
+                handler.handle(item);
+            });
+        }
+        return this;
+    }
+
+    @Override
+    public ReadStream<T> pause() {
+        delegate.pause();
+        return this;
+    }
+
+    @Override
+    public ReadStream<T> resume() {
+        delegate.resume();
+        return this;
+    }
+
+    @Override
+    public ReadStream<T> fetch(long amount) {
+        delegate.fetch(amount);
+        return this;
+    }
+
+    @Override
+    public ReadStream<T> endHandler(Handler<Void> endHandler) {
+        if (endHandler == null || endTap == null) {
+            delegate.endHandler(endHandler);
+        } else {
+            delegate.endHandler(v -> {
+                endTap.handle(null);
+                endHandler.handle(v);
+            });
+        }
+        return this;
+    }
+}
@@ -0,0 +1,296 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.RequestOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.meethigher.proxy.TransportOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路由的流量镜像
+ * <p>
+ * 按比例为原始请求创建一个影子请求，请求体在流经原始请求的pipe时同步复制给影子请求，不会整体缓冲。
+ * 影子请求只从旁路接收数据，从不暂停原始请求：影子连接建立前暂存的数据超过上限，或影子连接的写队列已满时，直接放弃本次镜像。
+ * 影子上游使用独立的HttpClient与连接池，并限制同时进行的影子请求数，影子上游变慢只会使镜像被跳过，不会给原始请求增加延迟或背压。
+ * 影子响应读完后直接丢弃。
+ * <p>
+ * 影子请求的回调与原始请求运行在同一个EventLoop上，无需同步。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/30 15:20
+ */
+public class TrafficMirror {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficMirror.class);
+
+    private final HttpClient client;
+
+    /**
+     * 影子上游地址，不以/结尾
+     */
+    private final String targetBase;
+
+    private final double percentage;
+
+    private final int maxConcurrency;
+
+    private final int maxPendingBytes;
+
+    private final long timeout;
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final LongAdder mirrored = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    public TrafficMirror(Vertx vertx, ProxyRoute.Mirror config, TransportOptions transport) {
+        String targetUrl = config.getTargetUrl();
+        this.targetBase = targetUrl.endsWith("/") ? targetUrl.substring(0, targetUrl.length() - 1) : targetUrl;
+        this.percentage = config.getPercentage();
+        this.maxConcurrency = config.getMaxConcurrency();
+        this.maxPendingBytes = config.getMaxPendingBytes();
+        this.timeout = config.getTimeout();
+        HttpClientOptions options = new HttpClientOptions().setKeepAlive(true);
+        if (transport != null) {
+            transport.apply(options);
+        }
+        this.client = vertx.createHttpClient(options, new PoolOptions()
+                .setHttp1MaxSize(config.getMaxConnections())
+                .setMaxWaitQueueSize(config.getMaxConcurrency()));
+    }
+
+    /**
+     * 按比例与并发上限决定是否镜像，需要镜像时发起影子请求
+     *
+     * @param request 原始请求
+     * @param url     影子请求的地址
+     * @param prepare 影子请求发出前设置请求头
+     * @return 影子请求，不镜像时为null
+     */
+    public Shadow start(HttpServerRequest request, String url, Handler<HttpClientRequest> prepare) {
+        if (percentage < 100 && ThreadLocalRandom.current().nextDouble() * 100 >= percentage) {
+            return null;
+        }
+        if (active.incrementAndGet() > maxConcurrency) {
+            active.decrementAndGet();
+            skipped.increment();
+            return null;
+        }
+        mirrored.increment();
+        Shadow shadow = new Shadow(url);
+        RequestOptions options = new RequestOptions()
+                .setMethod(request.method())
+                .setAbsoluteURI(url)
+                .setFollowRedirects(false)
+                .setConnectTimeout(timeout)
+                .setIdleTimeout(timeout);
+        client.request(options).onComplete(ar -> {
+            if (ar.succeeded()) {
+                shadow.connected(ar.result(), prepare);
+            } else {
+                shadow.fail(ar.cause());
+            }
+        });
+        return shadow;
+    }
+
+    /**
+     * 影子请求的地址
+     *
+     * @param stripPrefix 多级匹配时需要删除的前缀，否则为null
+     * @param path        请求路径
+     * @param uri         带参数的请求路径
+     * @return 地址
+     */
+    public String proxyUrl(String stripPrefix, String path, String uri) {
+        return UrlParser.proxyUrl(targetBase, stripPrefix, path, uri);
+    }
+
+    public void close() {
+        client.close().onFailure(e -> log.error("mirror pool for {} close failed", targetBase, e));
+    }
+
+    /**
+     * 当前进行中的影子请求数
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    public long getMirrored() {
+        return mirrored.sum();
+    }
+
+    /**
+     * 因达到并发上限而没有镜像的请求数
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * 被放弃或失败的影子请求数
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * 单个影子请求。原始请求的请求体通过{@link #write(Buffer)}与{@link #end()}复制过来
+     */
+    public final class Shadow {
+
+        private final String url;
+
+        private HttpClientRequest request;
+
+        /**
+         * 影子连接建立前收到的请求体
+         */
+        private List<Buffer> pending;
+
+        private int pendingBytes;
+
+        private boolean ended;
+
+        private boolean done;
+
+        private Shadow(String url) {
+            this.url = url;
+        }
+
+        private void connected(HttpClientRequest req, Handler<HttpClientRequest> prepare) {
+            if (done) {
+                req.reset();
+                return;
+            }
+            request = req;
+            req.exceptionHandler(this::fail);
+            prepare.handle(req);
+            if (pending != null) {
+                for (Buffer chunk : pending) {
+                    doWrite(chunk);
+                }
+                pending = null;
+            }
+            if (ended) {
+                send();
+            }
+        }
+
+        /**
+         * 复制一段请求体。影子请求跟不上时放弃镜像，而不是暂停原始请求
+         *
+         * @param chunk 请求体
+         */
+        public void write(Buffer chunk) {
+            if (done || ended) {
+                return;
+            }
+            if (request == null) {
+                pendingBytes += chunk.length();
+                if (pendingBytes > maxPendingBytes) {
+                    fail(null);
+                    return;
+                }
+                if (pending == null) {
+                    pending = new ArrayList<>();
+                }
+                pending.add(chunk);
+                return;
+            }
+            if (request.writeQueueFull()) {
+                fail(null);
+                return;
+            }
+            doWrite(chunk);
+        }
+
+        private void doWrite(Buffer chunk) {
+            // 请求头在第一次写入时发出，原始请求没有Content-Length时以chunked发送
+            if (!request.isChunked() && !request.headers().contains("Content-Length")) {
+                request.setChunked(true);
+            }
+            request.write(chunk);
+        }
+
+        /**
+         * 原始请求的请求体已全部复制
+         */
+        public void end() {
+            if (done || ended) {
+                return;
+            }
+            ended = true;
+            if (request != null) {
+                send();
+            }
+        }
+
+        private void send() {
+            request.end();
+            request.response()
+                    // 读完并丢弃响应体，使连接可以复用
+                    .compose(HttpClientResponse::end)
+                    .onComplete(ar -> {
+                        if (ar.succeeded()) {
+                            finish();
+                        } else {
+                            fail(ar.cause());
+                        }
+                    });
+        }
+
+        /**
+         * 原始请求结束时影子请求的请求体仍未复制完整，放弃本次镜像
+         */
+        public void abortIfIncomplete() {
+            if (!ended) {
+                fail(null);
+            }
+        }
+
+        private void fail(Throwable cause) {
+            if (!finish()) {
+                return;
+            }
+            failed.increment();
+            pending = null;
+            if (cause != null) {
+                log.debug("mirror {} failed: {}", url, cause.getMessage());
+            }
+            if (request != null) {
+                request.reset();
+            }
+        }
+
+        /**
+         * @return true表示本次调用结束了影子请求
+         */
+        private boolean finish() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            active.decrementAndGet();
+            return true;
+        }
+    }
+}
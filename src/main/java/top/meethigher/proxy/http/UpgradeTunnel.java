@@ -0,0 +1,224 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.net.NetSocket;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路由的HTTP/1.1协议升级(如WebSocket)
+ * <p>
+ * 上下游都完成101握手后，将两条连接的{@link NetSocket}直接双向pipe，不解析任何帧，背压由pipe保证。
+ * 每个会话只有两个pipe、两个计数器与时间轮上的一个空闲检查，不会创建Vert.x定时器，建立后的开销基本只有套接字缓冲区。
+ * <p>
+ * 流量与会话数按路由累计，可用于监控。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/23 21:15
+ */
+public class UpgradeTunnel {
+
+    /**
+     * 允许升级的协议，小写，为null表示不限制
+     */
+    private final Set<String> protocols;
+
+    private final ProxyRoute.Timeout idleTimeout;
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final LongAdder total = new LongAdder();
+
+    private final LongAdder upstreamBytes = new LongAdder();
+
+    private final LongAdder downstreamBytes = new LongAdder();
+
+    public UpgradeTunnel(ProxyRoute.Upgrade config) {
+        this.protocols = parseProtocols(config.getProtocols());
+        // 复用请求超时的时间轮，只检查空闲
+        this.idleTimeout = config.getIdleTimeout() <= 0 ? null : new ProxyRoute.Timeout()
+                .setEnable(true)
+                .setFirstByteTimeout(0)
+                .setIdleTimeout(config.getIdleTimeout())
+                .setTotalTimeout(0);
+    }
+
+    private static Set<String> parseProtocols(String protocols) {
+        if (protocols == null || protocols.trim().isEmpty() || "*".equals(protocols.trim())) {
+            return null;
+        }
+        Set<String> set = new HashSet<>();
+        for (String protocol : protocols.split(",")) {
+            if (!protocol.trim().isEmpty()) {
+                set.add(protocol.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return set;
+    }
+
+    /**
+     * 判断是否是允许的升级请求。只有HTTP/1.1支持协议升级，且Connection需要包含upgrade
+     *
+     * @param request 服务端请求
+     * @return true表示需要按协议升级转发
+     */
+    public boolean accepts(HttpServerRequest request) {
+        if (request.version() != HttpVersion.HTTP_1_1) {
+            return false;
+        }
+        String upgrade = request.getHeader("Upgrade");
+        if (upgrade == null || !containsToken(request.getHeader("Connection"), "upgrade")) {
+            return false;
+        }
+        if (protocols == null) {
+            return true;
+        }
+        // Upgrade的取值形如websocket或h2c, foo/1.0，只看第一个协议的名称
+        int end = upgrade.length();
+        for (int i = 0; i < upgrade.length(); i++) {
+            char c = upgrade.charAt(i);
+            if (c == ',' || c == '/') {
+                end = i;
+                break;
+            }
+        }
+        return protocols.contains(upgrade.substring(0, end).trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 忽略大小写判断逗号分隔的标头值是否包含指定的取值
+     */
+    static boolean containsToken(String header, String token) {
+        if (header == null) {
+            return false;
+        }
+        int start = 0;
+        while (start <= header.length()) {
+            int end = header.indexOf(',', start);
+            if (end < 0) {
+                end = header.length();
+            }
+            String candidate = header.substring(start, end).trim();
+            if (candidate.equalsIgnoreCase(token)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * 将已完成101握手的两条连接双向连接
+     *
+     * @param context    空闲检查所在的Context
+     * @param downstream 客户端与代理之间的连接
+     * @param upstream   代理与上游之间的连接
+     * @return 两个方向都结束后完成
+     */
+    public Future<Session> join(Context context, NetSocket downstream, NetSocket upstream) {
+        Session session = new Session();
+        active.incrementAndGet();
+        total.increment();
+        RequestTimeouts timeouts = idleTimeout == null ? null : new RequestTimeouts(context, idleTimeout, kind -> {
+            session.idle = true;
+            downstream.close();
+            upstream.close();
+        });
+        if (timeouts != null) {
+            timeouts.streaming();
+        }
+        Future<Void> up = new TeeReadStream<>(downstream, (Buffer chunk) -> {
+            session.upstreamBytes += chunk.length();
+            upstreamBytes.add(chunk.length());
+            if (timeouts != null) {
+                timeouts.activity();
+            }
+        }).pipeTo(upstream);
+        Future<Void> down = new TeeReadStream<>(upstream, (Buffer chunk) -> {
+            session.downstreamBytes += chunk.length();
+            downstreamBytes.add(chunk.length());
+            if (timeouts != null) {
+                timeouts.activity();
+            }
+        }).pipeTo(downstream);
+        // 任一方向异常时关闭两端，另一个方向随之结束
+        up.onFailure(e -> {
+            downstream.close();
+            upstream.close();
+        });
+        down.onFailure(e -> {
+            downstream.close();
+            upstream.close();
+        });
+        return Future.join(up, down).transform(ar -> {
+            if (timeouts != null) {
+                timeouts.cancel();
+            }
+            active.decrementAndGet();
+            return Future.succeededFuture(session);
+        });
+    }
+
+    /**
+     * 当前已升级的会话数
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * 累计升级的会话数
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * 累计从客户端转发给上游的字节数
+     */
+    public long getUpstreamBytes() {
+        return upstreamBytes.sum();
+    }
+
+    /**
+     * 累计从上游转发给客户端的字节数
+     */
+    public long getDownstreamBytes() {
+        return downstreamBytes.sum();
+    }
+
+    /**
+     * 单个升级会话的流量。每个方向的计数只由该方向的读取端所在线程写入
+     */
+    public static final class Session {
+
+        private volatile long upstreamBytes;
+
+        private volatile long downstreamBytes;
+
+        private volatile boolean idle;
+
+        public long getUpstreamBytes() {
+            return upstreamBytes;
+        }
+
+        public long getDownstreamBytes() {
+            return downstreamBytes;
+        }
+
+        /**
+         * @return true表示因空闲超时被关闭
+         */
+        public boolean isIdle() {
+            return idle;
+        }
+    }
+}
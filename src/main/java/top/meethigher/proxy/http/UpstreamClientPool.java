@@ -0,0 +1,242 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.meethigher.proxy.TransportOptions;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 按上游源站(scheme://host:port)划分的HttpClient连接池
+ * <p>
+ * 每个源站拥有独立的连接数上限、等待队列与空闲连接清理策略，一个源站变慢时只会耗尽自己的连接池。
+ * 连接池按源站与连接池配置共同划分，同一源站的路由配置相同时共享连接池，配置不同时各自使用独立的连接池。
+ * <p>
+ * 连接池按引用计数管理：每个绑定到连接池的上游节点持有一个引用，路由被删除或替换时释放。
+ * 最后一个引用释放后，延迟{@link #setCloseDelay(long)}再关闭，使旧路由上进行中的请求得以完成，
+ * 期间重新加载的路由仍会复用原有的连接池。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/04 21:36
+ */
+public class UpstreamClientPool {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamClientPool.class);
+
+    protected final Vertx vertx;
+
+    /**
+     * 按源站与连接池配置划分的连接池，所有读写都在当前对象的锁内进行
+     */
+    protected final Map<String, Entry> clients = new HashMap<>();
+
+    /**
+     * 最后一个引用释放后，延迟关闭的毫秒数
+     */
+    protected volatile long closeDelay = 30000;
+
+    /**
+     * 传输层配置，为null时使用默认的套接字选项
+     */
+    protected volatile TransportOptions transport;
+
+    public UpstreamClientPool(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    public UpstreamClientPool setTransport(TransportOptions transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    public UpstreamClientPool setCloseDelay(long closeDelay) {
+        this.closeDelay = closeDelay;
+        return this;
+    }
+
+    /**
+     * 获取源站对应的HttpClient并持有一个引用，不存在则按配置创建并预热。使用结束后需调用{@link #release(HttpClient)}
+     *
+     * @param targetUrl 上游地址
+     * @param pool      连接池配置
+     * @return HttpClient
+     */
+    public synchronized HttpClient getOrCreate(String targetUrl, ProxyRoute.ConnectionPool pool) {
+        UrlParser.ParsedUrl parsedUrl = UrlParser.parseUrl(targetUrl);
+        String origin = parsedUrl.getFormatHostPort();
+        String key = origin + " " + fingerprint(pool);
+        Entry entry = clients.get(key);
+        if (entry == null) {
+            for (Entry other : clients.values()) {
+                if (origin.equals(other.origin)) {
+                    log.warn("routes to {} use different connection pool configs, pools are not shared: {} vs {}", origin, other.fingerprint, fingerprint(pool));
+                    break;
+                }
+            }
+            HttpClient client = vertx.createHttpClient(clientOptions(parsedUrl, pool), poolOptions(pool));
+            log.info("create upstream pool for {}, http1 max {}, http2 {}", origin, pool.getMaxConnections(), pool.isHttp2());
+            prewarm(client, parsedUrl, pool.getPrewarmConnections());
+            entry = new Entry(origin, fingerprint(pool), client);
+            clients.put(key, entry);
+        }
+        if (entry.closeTimer >= 0) {
+            vertx.cancelTimer(entry.closeTimer);
+            entry.closeTimer = -1;
+        }
+        entry.refs++;
+        return entry.client;
+    }
+
+    /**
+     * 释放{@link #getOrCreate(String, ProxyRoute.ConnectionPool)}持有的引用，最后一个引用释放后延迟关闭连接池
+     *
+     * @param client HttpClient，不属于当前连接池时忽略
+     */
+    public synchronized void release(HttpClient client) {
+        for (Map.Entry<String, Entry> e : clients.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.client != client) {
+                continue;
+            }
+            if (--entry.refs > 0) {
+                return;
+            }
+            String key = e.getKey();
+            long delay = closeDelay;
+            if (delay <= 0) {
+                clients.remove(key);
+                close(entry);
+            } else {
+                entry.closeTimer = vertx.setTimer(delay, id -> closeIdle(key, entry));
+            }
+            return;
+        }
+    }
+
+    private synchronized void closeIdle(String key, Entry entry) {
+        // 延迟期间被重新引用时，定时器已被取消
+        if (entry.refs == 0 && clients.get(key) == entry) {
+            clients.remove(key);
+            close(entry);
+        }
+    }
+
+    /**
+     * 当前保留的连接池数量，包含等待延迟关闭的连接池
+     */
+    public synchronized int size() {
+        return clients.size();
+    }
+
+    /**
+     * 影响连接池行为的配置，配置相同的路由才会共享连接池
+     */
+    protected String fingerprint(ProxyRoute.ConnectionPool pool) {
+        return "maxConnections=" + pool.getMaxConnections()
+                + ",maxWaitQueueSize=" + pool.getMaxWaitQueueSize()
+                + ",keepAliveTimeout=" + pool.getKeepAliveTimeout()
+                + ",idleEvictionPeriod=" + pool.getIdleEvictionPeriod()
+                + ",http2=" + pool.isHttp2()
+                + ",http2MaxConnections=" + pool.getHttp2MaxConnections()
+                + ",http2MultiplexingLimit=" + pool.getHttp2MultiplexingLimit()
+                + ",prewarmConnections=" + pool.getPrewarmConnections();
+    }
+
+    protected HttpClientOptions clientOptions(UrlParser.ParsedUrl parsedUrl, ProxyRoute.ConnectionPool pool) {
+        HttpClientOptions options = new HttpClientOptions()
+                .setKeepAlive(true)
+                .setKeepAliveTimeout(pool.getKeepAliveTimeout())
+                .setHttp2KeepAliveTimeout(pool.getKeepAliveTimeout());
+        if (transport != null) {
+            transport.apply(options);
+        }
+        if (pool.isHttp2()) {
+            options.setProtocolVersion(HttpVersion.HTTP_2)
+                    .setHttp2MultiplexingLimit(pool.getHttp2MultiplexingLimit());
+            if (parsedUrl.isSsl) {
+                // https源站通过ALPN协商HTTP/2，协商失败时回退为HTTP/1.1
+                options.setSsl(true).setUseAlpn(true);
+            } else {
+                // http源站不经过Upgrade，直接以h2c prior-knowledge的方式发送HTTP/2连接前言
+                options.setHttp2ClearTextUpgrade(false);
+            }
+        }
+        return options;
+    }
+
+    protected PoolOptions poolOptions(ProxyRoute.ConnectionPool pool) {
+        return new PoolOptions()
+                .setHttp1MaxSize(pool.getMaxConnections())
+                .setHttp2MaxSize(pool.getHttp2MaxConnections())
+                .setMaxWaitQueueSize(pool.getMaxWaitQueueSize())
+                .setCleanerPeriod(pool.getIdleEvictionPeriod());
+    }
+
+    /**
+     * 并发发送HEAD请求以提前建立连接，响应结束后连接会归还到连接池
+     *
+     * @param client    HttpClient
+     * @param parsedUrl 上游地址
+     * @param count     预热连接数
+     */
+    protected void prewarm(HttpClient client, UrlParser.ParsedUrl parsedUrl, int count) {
+        for (int i = 0; i < count; i++) {
+            RequestOptions options = new RequestOptions()
+                    .setMethod(HttpMethod.HEAD)
+                    .setHost(parsedUrl.host)
+                    .setPort(parsedUrl.port)
+                    .setSsl(parsedUrl.isSsl)
+                    .setURI("/");
+            client.request(options)
+                    .compose(req -> req.send().compose(HttpClientResponse::end))
+                    .onFailure(e -> log.warn("prewarm {} failed", parsedUrl.getFormatHostPort(), e));
+        }
+    }
+
+    private void close(Entry entry) {
+        if (entry.closeTimer >= 0) {
+            vertx.cancelTimer(entry.closeTimer);
+            entry.closeTimer = -1;
+        }
+        entry.client.close()
+                .onSuccess(v -> log.debug("upstream pool for {} closed", entry.origin))
+                .onFailure(e -> log.error("upstream pool for {} close failed", entry.origin, e));
+    }
+
+    /**
+     * 立即关闭全部连接池
+     */
+    public synchronized void close() {
+        Iterator<Entry> iterator = clients.values().iterator();
+        while (iterator.hasNext()) {
+            close(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 单个连接池及其引用计数
+     */
+    protected static class Entry {
+
+        private final String origin;
+
+        private final String fingerprint;
+
+        private final HttpClient client;
+
+        private int refs;
+
+        private long closeTimer = -1;
+
+        Entry(String origin, String fingerprint, HttpClient client) {
+            this.origin = origin;
+            this.fingerprint = fingerprint;
+            this.client = client;
+        }
+    }
+}
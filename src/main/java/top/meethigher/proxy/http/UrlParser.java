@@ -16,17 +16,115 @@ public class UrlParser {
         if (text == null || search == null || replacement == null || search.isEmpty()) {
             return text;
         }
-        StringBuilder result = new StringBuilder();
-        int start = 0, index;
-        while ((index = text.indexOf(search, start)) >= 0) {
+        int index = text.indexOf(search);
+        // 没有匹配时直接返回原文本，不分配StringBuilder
+        if (index < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length() + Math.max(0, replacement.length() - search.length()));
+        int start = 0;
+        do {
             result.append(text, start, index).append(replacement);
             start = index + search.length();
-        }
-        result.append(text.substring(start));
+        } while ((index = text.indexOf(search, start)) >= 0);
+        result.append(text, start, text.length());
         return result.toString();
     }
 
 
+    /**
+     * 拼接代理后的完整URL：去掉请求路径中匹配的前缀，将剩下的路径与请求参数追加到代理目标路径后面。
+     * <p>
+     * 只计算下标，最终结果一次性写入预先算好容量的StringBuilder，不产生中间字符串。
+     * 代理路径尾部的/与用户初始请求保持一致。
+     *
+     * @param targetBase  不以/结尾的代理目标路径
+     * @param stripPrefix 多级匹配路由需要去掉的路径前缀，精确匹配的路由为null
+     * @param path        不带参数的请求路径
+     * @param uri         带参数的请求路径
+     * @return 代理后的完整URL
+     */
+    public static String proxyUrl(String targetBase, String stripPrefix, String path, String uri) {
+        // 请求参数的起始位置。uri为绝对形式时，path不是uri的前缀
+        int paramsStart;
+        if (uri.startsWith(path)) {
+            paramsStart = path.length();
+        } else {
+            int q = uri.indexOf('?');
+            paramsStart = q < 0 ? uri.length() : q;
+        }
+        int paramsLength = uri.length() - paramsStart;
+        // 若不是多级匹配，则直接代理到目标地址。注意要带上请求参数
+        if (stripPrefix == null) {
+            return new StringBuilder(targetBase.length() + paramsLength)
+                    .append(targetBase)
+                    .append(uri, paramsStart, uri.length())
+                    .toString();
+        }
+        int suffixStart = path.startsWith(stripPrefix) ? stripPrefix.length() : 0;
+        int suffixLength = path.length() - suffixStart;
+        // 因为targetBase后面不带/，因此后缀需要以/开头
+        boolean leadingSlash = suffixLength > 0 && path.charAt(suffixStart) != '/';
+        // 后缀是path的尾部，只有后缀为空时才需要补上path结尾的/
+        boolean trailingSlash = suffixLength == 0 && path.endsWith("/");
+        StringBuilder sb = new StringBuilder(targetBase.length() + suffixLength + paramsLength
+                + (leadingSlash ? 1 : 0) + (trailingSlash ? 1 : 0));
+        sb.append(targetBase);
+        if (leadingSlash) {
+            sb.append('/');
+        }
+        sb.append(path, suffixStart, path.length());
+        if (trailingSlash) {
+            sb.append('/');
+        }
+        return sb.append(uri, paramsStart, uri.length()).toString();
+    }
+
+    /**
+     * 写入URL的协议与主机端口，格式与{@link ParsedUrl#getFormatHostPort()}一致，未指定端口时补充默认端口。
+     * <p>
+     * 只扫描authority部分，不经过{@link URI}解析整个URL
+     *
+     * @param sb  写入的目标
+     * @param url 绝对URL
+     * @return sb
+     */
+    public static StringBuilder appendHostPort(StringBuilder sb, String url) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) {
+            throw new IllegalArgumentException("Invalid URL: " + url);
+        }
+        boolean isSsl = schemeEnd == 5 && url.regionMatches(true, 0, "https", 0, 5);
+        int hostStart = schemeEnd + 3;
+        int end = hostStart;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        // 去掉userinfo
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= hostStart) {
+            hostStart = at + 1;
+        }
+        // IPv6地址中的:不是端口分隔符
+        int colon = url.lastIndexOf(':', end - 1);
+        int hostEnd = colon >= hostStart && colon > url.lastIndexOf(']', end - 1) ? colon : end;
+        if (hostEnd == hostStart) {
+            throw new IllegalArgumentException("Invalid URL: " + url);
+        }
+        sb.append(isSsl ? "https" : "http").append("://").append(url, hostStart, hostEnd).append(':');
+        if (hostEnd + 1 < end) {
+            sb.append(url, hostEnd + 1, end);
+        } else {
+            sb.append(isSsl ? 443 : 80);
+        }
+        return sb;
+    }
+
+
     /**
      * 拼接两个uri。不要求uri以"/"结尾
      * @param uri1 第一个URI字符串
@@ -0,0 +1,275 @@
+package top.meethigher.proxy.http.cache;
+
+import io.vertx.core.MultiMap;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * 共享缓存的RFC 7234语义判断
+ * <p>
+ * 仅实现代理场景需要的子集：可存储性判断、新鲜度计算与条件请求匹配。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/06 22:10
+ */
+public final class CachePolicy {
+
+    /**
+     * 默认可缓存的响应码，参考RFC 7231 6.1
+     */
+    private static final int[] CACHEABLE_STATUS = {200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501};
+
+    /**
+     * 启发式新鲜度取(Date - Last-Modified)的10%，参考RFC 7234 4.2.2
+     */
+    private static final double HEURISTIC_FRACTION = 0.1;
+
+    private CachePolicy() {
+    }
+
+    /**
+     * 解析HTTP日期
+     *
+     * @param value 日期字符串
+     * @return 毫秒时间戳，解析失败返回-1
+     */
+    public static long parseHttpDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 合并同名的多个Cache-Control
+     *
+     * @param headers 标头
+     * @return 合并后的Cache-Control，不存在时返回null
+     */
+    public static String cacheControl(MultiMap headers) {
+        List<String> all = headers.getAll("Cache-Control");
+        if (all.isEmpty()) {
+            return null;
+        }
+        return all.size() == 1 ? all.get(0) : String.join(",", all);
+    }
+
+    /**
+     * 判断Cache-Control中是否存在指定指令
+     *
+     * @param cacheControl Cache-Control
+     * @param directive    小写的指令名称
+     * @return 是否存在
+     */
+    public static boolean hasDirective(String cacheControl, String directive) {
+        return directiveIndex(cacheControl, directive) >= 0;
+    }
+
+    /**
+     * 读取Cache-Control中指定指令的秒数，如max-age=60
+     *
+     * @param cacheControl Cache-Control
+     * @param directive    小写的指令名称
+     * @return 秒数，不存在或格式错误时返回-1
+     */
+    static long directiveSeconds(String cacheControl, String directive) {
+        int index = directiveIndex(cacheControl, directive);
+        if (index < 0) {
+            return -1;
+        }
+        int i = index + directive.length();
+        if (i >= cacheControl.length() || cacheControl.charAt(i) != '=') {
+            return -1;
+        }
+        i++;
+        if (i < cacheControl.length() && cacheControl.charAt(i) == '"') {
+            i++;
+        }
+        long value = 0;
+        int start = i;
+        while (i < cacheControl.length() && Character.isDigit(cacheControl.charAt(i))) {
+            value = value * 10 + (cacheControl.charAt(i) - '0');
+            i++;
+        }
+        return i == start ? -1 : value;
+    }
+
+    private static int directiveIndex(String cacheControl, String directive) {
+        if (cacheControl == null) {
+            return -1;
+        }
+        int from = 0;
+        int length = cacheControl.length();
+        while (from < length) {
+            int index = indexOfIgnoreCase(cacheControl, directive, from);
+            if (index < 0) {
+                return -1;
+            }
+            int end = index + directive.length();
+            boolean startOk = index == 0 || cacheControl.charAt(index - 1) == ',' || cacheControl.charAt(index - 1) == ' ';
+            boolean endOk = end == length || cacheControl.charAt(end) == ',' || cacheControl.charAt(end) == '=' || cacheControl.charAt(end) == ' ';
+            if (startOk && endOk) {
+                return index;
+            }
+            from = index + 1;
+        }
+        return -1;
+    }
+
+    private static int indexOfIgnoreCase(String s, String search, int from) {
+        int max = s.length() - search.length();
+        for (int i = from; i <= max; i++) {
+            if (s.regionMatches(true, i, search, 0, search.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isCacheableStatus(int status) {
+        for (int code : CACHEABLE_STATUS) {
+            if (code == status) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断请求是否可以使用缓存中的响应
+     *
+     * @param requestHeaders 请求头
+     * @return true表示可以读取缓存
+     */
+    public static boolean canServeFromCache(MultiMap requestHeaders) {
+        String cc = cacheControl(requestHeaders);
+        if (cc == null) {
+            return !"no-cache".equalsIgnoreCase(requestHeaders.get("Pragma"));
+        }
+        return !hasDirective(cc, "no-store") && !hasDirective(cc, "no-cache") && directiveSeconds(cc, "max-age") != 0;
+    }
+
+    /**
+     * 计算响应的新鲜度寿命。不可存储时返回-1
+     *
+     * @param requestHeaders  请求头
+     * @param status          响应码
+     * @param responseHeaders 响应头
+     * @param heuristicMax    启发式新鲜度的上限，单位毫秒
+     * @return 新鲜度寿命，单位毫秒
+     */
+    public static long freshnessLifetime(MultiMap requestHeaders, int status, MultiMap responseHeaders, long heuristicMax) {
+        if (!isCacheableStatus(status)) {
+            return -1;
+        }
+        String reqCc = cacheControl(requestHeaders);
+        if (reqCc != null && hasDirective(reqCc, "no-store")) {
+            return -1;
+        }
+        String cc = cacheControl(responseHeaders);
+        if (cc != null && (hasDirective(cc, "no-store") || hasDirective(cc, "private") || hasDirective(cc, "no-cache"))) {
+            return -1;
+        }
+        // 携带Set-Cookie的响应属于特定用户，共享缓存不应存储
+        if (responseHeaders.contains("Set-Cookie")) {
+            return -1;
+        }
+        String vary = responseHeaders.get("Vary");
+        if (vary != null && vary.trim().equals("*")) {
+            return -1;
+        }
+        // 带认证信息的请求，只有响应显式允许共享缓存时才可存储，参考RFC 7234 3.2
+        boolean authorized = requestHeaders.contains("Authorization");
+        if (authorized && (cc == null || !(hasDirective(cc, "public") || hasDirective(cc, "s-maxage") || hasDirective(cc, "must-revalidate")))) {
+            return -1;
+        }
+        long sMaxAge = directiveSeconds(cc, "s-maxage");
+        if (sMaxAge >= 0) {
+            return sMaxAge * 1000;
+        }
+        long maxAge = directiveSeconds(cc, "max-age");
+        if (maxAge >= 0) {
+            return maxAge * 1000;
+        }
+        long date = parseHttpDate(responseHeaders.get("Date"));
+        if (date < 0) {
+            date = System.currentTimeMillis();
+        }
+        String expiresValue = responseHeaders.get("Expires");
+        if (expiresValue != null) {
+            long expires = parseHttpDate(expiresValue);
+            // 无效的Expires表示已过期
+            return expires < 0 ? -1 : Math.max(0, expires - date);
+        }
+        long lastModified = parseHttpDate(responseHeaders.get("Last-Modified"));
+        if (lastModified > 0 && lastModified < date) {
+            return Math.min((long) ((date - lastModified) * HEURISTIC_FRACTION), heuristicMax);
+        }
+        return -1;
+    }
+
+    /**
+     * 计算响应写入缓存时已有的年龄，参考RFC 7234 4.2.3
+     *
+     * @param responseHeaders 响应头
+     * @param now             当前时间
+     * @return 年龄，单位毫秒
+     */
+    public static long initialAge(MultiMap responseHeaders, long now) {
+        long date = parseHttpDate(responseHeaders.get("Date"));
+        long apparentAge = date < 0 ? 0 : Math.max(0, now - date);
+        long ageValue = 0;
+        String age = responseHeaders.get("Age");
+        if (age != null) {
+            try {
+                ageValue = Long.parseLong(age.trim()) * 1000;
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return Math.max(apparentAge, ageValue);
+    }
+
+    /**
+     * 判断条件请求是否命中，命中时应返回304
+     *
+     * @param requestHeaders 请求头
+     * @param etag           缓存的ETag
+     * @param lastModified   缓存的Last-Modified
+     * @return 是否命中
+     */
+    public static boolean notModified(MultiMap requestHeaders, String etag, String lastModified) {
+        String ifNoneMatch = requestHeaders.get("If-None-Match");
+        if (ifNoneMatch != null) {
+            if (etag == null) {
+                return false;
+            }
+            if (ifNoneMatch.trim().equals("*")) {
+                return true;
+            }
+            String opaque = weakStrip(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                if (weakStrip(candidate.trim()).equals(opaque)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = requestHeaders.get("If-Modified-Since");
+        if (ifModifiedSince != null && lastModified != null) {
+            long since = parseHttpDate(ifModifiedSince);
+            long modified = parseHttpDate(lastModified);
+            return since >= 0 && modified >= 0 && modified <= since;
+        }
+        return false;
+    }
+
+    private static String weakStrip(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -0,0 +1,194 @@
+package top.meethigher.proxy.http.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import top.meethigher.proxy.http.HeaderForwarder;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存的响应
+ * <p>
+ * 响应体存放在池化的堆外内存中，并通过引用计数管理生命周期：缓存本身持有一个引用，
+ * 每次读取时额外持有一个引用，直到响应写出完成后释放。因此即使条目在写出过程中被淘汰，内存也不会提前归还。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/06 22:36
+ */
+public class CachedResponse {
+
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    /**
+     * 描述响应体的字段，304没有响应体，这些字段沿用缓存中的值
+     */
+    private static final String[] BODY_HEADERS = {"Content-Length", "Content-Encoding", "Content-Range"};
+
+    /**
+     * 条目的唯一编号。同一缓存键被重新写入后编号不同，可用于关联由响应体派生的数据，例如压缩变体
+     */
+    private final long id = IDS.incrementAndGet();
+
+    private final String key;
+
+    private final String primaryKey;
+
+    private final int statusCode;
+
+    /**
+     * 重新验证后整体替换，不会原地修改，正在写出的响应不受影响
+     */
+    private volatile MultiMap headers;
+
+    private final ByteBuf body;
+
+    private volatile String etag;
+
+    private volatile String lastModified;
+
+    /**
+     * 响应头与响应体的估算字节数，用于容量控制
+     */
+    private final int weight;
+
+    private volatile long responseTime;
+
+    private volatile long initialAge;
+
+    private volatile long freshnessLifetime;
+
+    CachedResponse(String key, String primaryKey, int statusCode, MultiMap headers, ByteBuf body,
+                   long responseTime, long initialAge, long freshnessLifetime) {
+        this.key = key;
+        this.primaryKey = primaryKey;
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+        this.etag = headers.get("ETag");
+        this.lastModified = headers.get("Last-Modified");
+        this.responseTime = responseTime;
+        this.initialAge = initialAge;
+        this.freshnessLifetime = freshnessLifetime;
+        int headerBytes = 0;
+        for (Map.Entry<String, String> header : headers) {
+            headerBytes += header.getKey().length() + header.getValue().length();
+        }
+        this.weight = body.readableBytes() + headerBytes + key.length();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public MultiMap getHeaders() {
+        return headers;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getBodyLength() {
+        return body.readableBytes();
+    }
+
+    /**
+     * 以只读视图的方式包装响应体，不会复制数据
+     *
+     * @return 响应体
+     */
+    public Buffer body() {
+        return Buffer.buffer(body.duplicate());
+    }
+
+    /**
+     * 当前年龄，单位毫秒
+     *
+     * @param now 当前时间
+     * @return 年龄
+     */
+    public long age(long now) {
+        return initialAge + Math.max(0, now - responseTime);
+    }
+
+    public boolean isFresh(long now) {
+        return age(now) < freshnessLifetime;
+    }
+
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * 使用304响应更新缓存的响应头与新鲜度，参考RFC 7234 4.3.4
+     * <p>
+     * 304中除逐跳标头与描述响应体的字段外，所有响应头都替换缓存中的同名响应头，校验器随之更新。
+     * Date与Age只描述本次响应，304未携带时分别以当前时间与不设置代替，避免沿用旧值使条目立即过期
+     *
+     * @param responseHeaders 304响应头
+     * @param heuristicMax    启发式新鲜度的上限，单位毫秒
+     */
+    public void refresh(MultiMap responseHeaders, long heuristicMax) {
+        long now = System.currentTimeMillis();
+        MultiMap updates = MultiMap.caseInsensitiveMultiMap();
+        HeaderForwarder.copyResponseHeaders(responseHeaders, updates, true, false);
+        for (String name : BODY_HEADERS) {
+            updates.remove(name);
+        }
+        MultiMap merged = MultiMap.caseInsensitiveMultiMap().addAll(headers);
+        for (String name : updates.names()) {
+            merged.set(name, updates.getAll(name));
+        }
+        if (!updates.contains("Date")) {
+            merged.set("Date", HTTP_DATE.format(Instant.ofEpochMilli(now)));
+        }
+        if (!updates.contains("Age")) {
+            merged.remove("Age");
+        }
+        long lifetime = CachePolicy.freshnessLifetime(MultiMap.caseInsensitiveMultiMap(), statusCode, merged, heuristicMax);
+        this.etag = merged.get("ETag");
+        this.lastModified = merged.get("Last-Modified");
+        this.headers = merged;
+        this.responseTime = now;
+        this.initialAge = CachePolicy.initialAge(merged, now);
+        this.freshnessLifetime = Math.max(lifetime, 0);
+    }
+
+    /**
+     * 读取前调用，与{@link #release()}成对出现。只能在缓存仍持有该条目时调用
+     */
+    void retain() {
+        body.retain();
+    }
+
+    public void release() {
+        body.release();
+    }
+}
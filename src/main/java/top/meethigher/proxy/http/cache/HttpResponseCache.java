@@ -0,0 +1,386 @@
+package top.meethigher.proxy.http.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import top.meethigher.proxy.http.HeaderForwarder;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于字节容量控制的HTTP响应缓存
+ * <p>
+ * 淘汰策略为分段LRU(SLRU)：新写入的条目进入试用段，再次命中后晋升到保护段，保护段超出容量时将最久未访问的条目降级回试用段。
+ * 淘汰时优先淘汰试用段，因此一次性扫描的大量冷数据不会冲掉反复访问的热点数据。
+ * <p>
+ * 缓存键由Method、规范化的URL以及响应Vary所列出的请求头共同组成。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/06 23:05
+ */
+public class HttpResponseCache {
+
+    /**
+     * 保护段占总容量的比例
+     */
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final long maxBytes;
+
+    private final int maxEntryBytes;
+
+    private final long heuristicMax;
+
+    private final long protectedMaxBytes;
+
+    /**
+     * 试用段与保护段，均为访问顺序的LinkedHashMap，头部为最久未访问
+     */
+    private final LinkedHashMap<String, CachedResponse> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, CachedResponse> protect = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * primaryKey与Vary请求头名称的对应关系
+     */
+    private final Map<String, String[]> varyIndex = new HashMap<>();
+
+    /**
+     * primaryKey下缓存的变体数量，归零时删除varyIndex中的记录，避免索引无限增长
+     */
+    private final Map<String, Integer> variantCounts = new HashMap<>();
+
+    private long probationBytes;
+    private long protectedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public HttpResponseCache(long maxBytes, int maxEntryBytes, long heuristicMax) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.heuristicMax = heuristicMax;
+        this.protectedMaxBytes = (long) (maxBytes * PROTECTED_RATIO);
+    }
+
+    /**
+     * 生成不含Vary的缓存键，host忽略大小写，query参数按字典序排序
+     *
+     * @param method 请求方法
+     * @param host   请求host
+     * @param uri    带query的请求路径
+     * @return 缓存键
+     */
+    public static String primaryKey(String method, String host, String uri) {
+        StringBuilder sb = new StringBuilder(method.length() + (host == null ? 0 : host.length()) + uri.length() + 2);
+        sb.append(method).append(' ');
+        if (host != null) {
+            sb.append(host.toLowerCase(Locale.ROOT));
+        }
+        int q = uri.indexOf('?');
+        if (q < 0 || uri.indexOf('&', q) < 0) {
+            return sb.append(uri).toString();
+        }
+        sb.append(uri, 0, q + 1);
+        String[] params = uri.substring(q + 1).split("&");
+        Arrays.sort(params);
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            sb.append(params[i]);
+        }
+        return sb.toString();
+    }
+
+    private static String variantKey(String primaryKey, String[] vary, MultiMap requestHeaders) {
+        if (vary == null || vary.length == 0) {
+            return primaryKey;
+        }
+        StringBuilder sb = new StringBuilder(primaryKey);
+        for (String name : vary) {
+            sb.append('\n').append(name).append(':');
+            List<String> values = requestHeaders.getAll(name);
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(values.get(i));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String[] parseVary(MultiMap responseHeaders) {
+        List<String> all = responseHeaders.getAll("Vary");
+        if (all.isEmpty()) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        for (String value : all) {
+            for (String name : value.split(",")) {
+                String trimmed = name.trim().toLowerCase(Locale.ROOT);
+                if (!trimmed.isEmpty()) {
+                    names.add(trimmed);
+                }
+            }
+        }
+        Collections.sort(names);
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * 查找缓存。返回的条目已被持有，调用方使用完毕后必须调用{@link CachedResponse#release()}
+     *
+     * @param primaryKey     缓存键
+     * @param requestHeaders 请求头
+     * @return 缓存条目，不存在时返回null
+     */
+    public synchronized CachedResponse lookup(String primaryKey, MultiMap requestHeaders) {
+        String key = variantKey(primaryKey, varyIndex.get(primaryKey), requestHeaders);
+        CachedResponse entry = probation.remove(key);
+        if (entry != null) {
+            // 再次命中，晋升到保护段
+            probationBytes -= entry.getWeight();
+            protect.put(key, entry);
+            protectedBytes += entry.getWeight();
+            demoteProtected();
+        } else {
+            entry = protect.get(key);
+        }
+        if (entry != null) {
+            entry.retain();
+        }
+        return entry;
+    }
+
+    /**
+     * 开始采集上游响应体。返回null表示该响应不可存储或超出单条目上限
+     *
+     * @param primaryKey      缓存键
+     * @param requestHeaders  请求头
+     * @param statusCode      响应码
+     * @param responseHeaders 上游响应头
+     * @return 响应体采集器
+     */
+    public Capture capture(String primaryKey, MultiMap requestHeaders, int statusCode, MultiMap responseHeaders) {
+        long lifetime = CachePolicy.freshnessLifetime(requestHeaders, statusCode, responseHeaders, heuristicMax);
+        if (lifetime <= 0) {
+            return null;
+        }
+        int initialCapacity = 8192;
+        String contentLength = responseHeaders.get("Content-Length");
+        if (contentLength != null) {
+            try {
+                long length = Long.parseLong(contentLength.trim());
+                if (length > maxEntryBytes) {
+                    return null;
+                }
+                initialCapacity = (int) length;
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        String[] vary = parseVary(responseHeaders);
+        return new Capture(primaryKey, vary, variantKey(primaryKey, vary, requestHeaders),
+                statusCode, responseHeaders, lifetime, Math.min(initialCapacity, maxEntryBytes));
+    }
+
+    private synchronized void put(CachedResponse entry, String[] vary) {
+        if (entry.getWeight() > maxBytes) {
+            entry.release();
+            return;
+        }
+        remove(entry.getKey());
+        if (vary == null) {
+            varyIndex.remove(entry.getPrimaryKey());
+        } else {
+            varyIndex.put(entry.getPrimaryKey(), vary);
+        }
+        variantCounts.merge(entry.getPrimaryKey(), 1, Integer::sum);
+        probation.put(entry.getKey(), entry);
+        probationBytes += entry.getWeight();
+        evict();
+    }
+
+    private void remove(String key) {
+        CachedResponse old = probation.remove(key);
+        if (old != null) {
+            probationBytes -= old.getWeight();
+            unlink(old);
+            return;
+        }
+        old = protect.remove(key);
+        if (old != null) {
+            protectedBytes -= old.getWeight();
+            unlink(old);
+        }
+    }
+
+    /**
+     * 条目离开缓存时调用，释放缓存持有的引用
+     *
+     * @param entry 缓存条目
+     */
+    private void unlink(CachedResponse entry) {
+        String primaryKey = entry.getPrimaryKey();
+        if (variantCounts.merge(primaryKey, -1, Integer::sum) <= 0) {
+            variantCounts.remove(primaryKey);
+            varyIndex.remove(primaryKey);
+        }
+        entry.release();
+    }
+
+    private void demoteProtected() {
+        Iterator<Map.Entry<String, CachedResponse>> iterator = protect.entrySet().iterator();
+        while (protectedBytes > protectedMaxBytes && iterator.hasNext()) {
+            CachedResponse entry = iterator.next().getValue();
+            iterator.remove();
+            protectedBytes -= entry.getWeight();
+            probation.put(entry.getKey(), entry);
+            probationBytes += entry.getWeight();
+        }
+    }
+
+    private void evict() {
+        while (probationBytes + protectedBytes > maxBytes) {
+            LinkedHashMap<String, CachedResponse> segment = probation.isEmpty() ? protect : probation;
+            Iterator<Map.Entry<String, CachedResponse>> iterator = segment.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                return;
+            }
+            CachedResponse entry = iterator.next().getValue();
+            iterator.remove();
+            if (segment == probation) {
+                probationBytes -= entry.getWeight();
+            } else {
+                protectedBytes -= entry.getWeight();
+            }
+            unlink(entry);
+            evictions.increment();
+        }
+    }
+
+    public synchronized void clear() {
+        for (CachedResponse entry : probation.values()) {
+            entry.release();
+        }
+        for (CachedResponse entry : protect.values()) {
+            entry.release();
+        }
+        probation.clear();
+        protect.clear();
+        varyIndex.clear();
+        variantCounts.clear();
+        probationBytes = 0;
+        protectedBytes = 0;
+    }
+
+    public long getHeuristicMax() {
+        return heuristicMax;
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long getUsedBytes() {
+        return probationBytes + protectedBytes;
+    }
+
+    public synchronized int size() {
+        return probation.size() + protect.size();
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResponseCache{hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+                + ", size=" + size() + ", usedBytes=" + getUsedBytes() + ", maxBytes=" + maxBytes + "}";
+    }
+
+    /**
+     * 上游响应体采集器。响应体在转发给客户端的同时被复制到池化的堆外内存中，转发成功后写入缓存
+     */
+    public class Capture {
+        private final String primaryKey;
+        private final String[] vary;
+        private final String key;
+        private final int statusCode;
+        private final MultiMap headers;
+        private final long lifetime;
+        private final long initialAge;
+        private ByteBuf body;
+
+        private Capture(String primaryKey, String[] vary, String key, int statusCode, MultiMap responseHeaders,
+                        long lifetime, int initialCapacity) {
+            long now = System.currentTimeMillis();
+            this.primaryKey = primaryKey;
+            this.vary = vary;
+            this.key = key;
+            this.statusCode = statusCode;
+            this.headers = MultiMap.caseInsensitiveMultiMap();
+            // 逐跳标头与长度由写出缓存时重新决定
+            HeaderForwarder.copyResponseHeaders(responseHeaders, headers, true, false);
+            this.headers.remove("Content-Length");
+            this.lifetime = lifetime;
+            this.initialAge = CachePolicy.initialAge(responseHeaders, now);
+            this.body = PooledByteBufAllocator.DEFAULT.directBuffer(initialCapacity, maxEntryBytes);
+        }
+
+        /**
+         * 追加一段响应体，超出单条目上限时放弃采集
+         *
+         * @param chunk 响应体片段
+         */
+        public void append(Buffer chunk) {
+            if (body == null) {
+                return;
+            }
+            if (body.readableBytes() + chunk.length() > maxEntryBytes) {
+                discard();
+                return;
+            }
+            body.writeBytes(chunk.getByteBuf());
+        }
+
+        /**
+         * 上游响应完整转发后调用，写入缓存
+         */
+        public void complete() {
+            if (body == null) {
+                return;
+            }
+            ByteBuf b = body;
+            body = null;
+            put(new CachedResponse(key, primaryKey, statusCode, headers, b,
+                    System.currentTimeMillis(), initialAge, lifetime), vary);
+        }
+
+        /**
+         * 转发失败或超出上限时调用，释放已采集的内存
+         */
+        public void discard() {
+            if (body != null) {
+                body.release();
+                body = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package top.meethigher.proxy.http.compress;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按字节容量控制的压缩变体缓存
+ * <p>
+ * 缓存响应每次被支持gzip的客户端读取时，都需要重新压缩一次。将压缩结果按缓存条目保存下来，
+ * 同一条目的后续读取直接复用，压缩的CPU开销只需付出一次。淘汰策略为LRU。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/16 21:35
+ */
+public class CompressedVariantCache {
+
+    private final long maxBytes;
+
+    /**
+     * 访问顺序的LinkedHashMap，头部为最久未访问
+     */
+    private final LinkedHashMap<String, byte[]> variants = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CompressedVariantCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized byte[] get(String key) {
+        byte[] variant = variants.get(key);
+        if (variant == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return variant;
+    }
+
+    public synchronized void put(String key, byte[] variant) {
+        if (variant.length + key.length() > maxBytes) {
+            return;
+        }
+        byte[] old = variants.put(key, variant);
+        if (old != null) {
+            usedBytes -= old.length + key.length();
+        }
+        usedBytes += variant.length + key.length();
+        Iterator<Map.Entry<String, byte[]>> iterator = variants.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, byte[]> eldest = iterator.next();
+            iterator.remove();
+            usedBytes -= eldest.getValue().length + eldest.getKey().length();
+        }
+    }
+
+    public synchronized void clear() {
+        variants.clear();
+        usedBytes = 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int size() {
+        return variants.size();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedVariantCache{hits=" + getHits() + ", misses=" + getMisses()
+                + ", size=" + size() + ", usedBytes=" + getUsedBytes() + ", maxBytes=" + maxBytes + "}";
+    }
+}
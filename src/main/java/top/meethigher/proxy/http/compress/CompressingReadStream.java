@@ -0,0 +1,84 @@
+package top.meethigher.proxy.http.compress;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * 对响应体{@link ReadStream}的透明包装，每段数据在交给下游之前先经过gzip压缩
+ * <p>
+ * 暂停、恢复、背压等流控均直接委托给被包装的流。压缩没有产生输出的数据段不会向下游传递，
+ * 上游结束时先输出剩余的压缩数据与gzip尾部，再通知下游结束。编码器的释放由调用方在流输出结束后负责。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/16 21:10
+ */
+public class CompressingReadStream implements ReadStream<Buffer> {
+
+    private final ReadStream<Buffer> delegate;
+
+    private final GzipEncoder encoder;
+
+    private Handler<Buffer> handler;
+
+    public CompressingReadStream(ReadStream<Buffer> delegate, GzipEncoder encoder) {
+        this.delegate = delegate;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+        delegate.exceptionHandler(handler);
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        if (handler == null) {
+            delegate.handler(null);
+        } else {
+            delegate.handler(chunk -> {
+                Buffer compressed = encoder.encode(chunk);
+                if (compressed != null) {
+                    handler.handle(compressed);
+                }
+            });
+        }
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+        delegate.pause();
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+        delegate.resume();
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> fetch(long amount) {
+        delegate.fetch(amount);
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+        if (endHandler == null) {
+            delegate.endHandler(null);
+        } else {
+            delegate.endHandler(v -> {
+                Buffer tail = encoder.finish();
+                if (handler != null) {
+                    handler.handle(tail);
+                }
+                endHandler.handle(v);
+            });
+        }
+        return this;
+    }
+}
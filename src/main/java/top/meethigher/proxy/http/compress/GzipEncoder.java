@@ -0,0 +1,130 @@
+package top.meethigher.proxy.http.compress;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 流式gzip编码器
+ * <p>
+ * 每收到一段数据就交给{@link Deflater}压缩，只输出已经产生的压缩数据，无需缓存完整响应体。
+ * gzip头在第一次输出时写入，CRC32与原始长度组成的尾部在{@link #finish()}时写入。
+ * <p>
+ * Deflater持有堆外内存，使用完毕后必须调用{@link #close()}。非线程安全，同一响应的数据应在同一线程中编码。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/16 20:42
+ */
+public class GzipEncoder implements AutoCloseable {
+
+    /**
+     * gzip头: 魔数、deflate算法、无标志位、无修改时间、无额外标志、未知操作系统
+     */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final int TRAILER_LENGTH = 8;
+
+    private final Deflater deflater;
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * 压缩输出的中转区，每个编码器复用同一块
+     */
+    private final byte[] out = new byte[8192];
+
+    private boolean headerWritten;
+
+    private boolean finished;
+
+    public GzipEncoder(int level) {
+        this.deflater = new Deflater(level, true);
+    }
+
+    /**
+     * 压缩一段数据
+     *
+     * @param chunk 原始数据
+     * @return 本次产生的压缩数据，没有输出时返回null
+     */
+    public Buffer encode(Buffer chunk) {
+        if (finished) {
+            throw new IllegalStateException("encoder already finished");
+        }
+        if (chunk.length() == 0) {
+            return null;
+        }
+        byte[] input = chunk.getBytes();
+        crc.update(input, 0, input.length);
+        deflater.setInput(input);
+        Buffer output = null;
+        while (!deflater.needsInput()) {
+            output = drain(output);
+        }
+        return output;
+    }
+
+    /**
+     * 结束压缩，输出剩余的压缩数据与gzip尾部
+     *
+     * @return 剩余的压缩数据
+     */
+    public Buffer finish() {
+        if (finished) {
+            throw new IllegalStateException("encoder already finished");
+        }
+        finished = true;
+        deflater.finish();
+        Buffer output = null;
+        while (!deflater.finished()) {
+            output = drain(output);
+        }
+        if (output == null) {
+            output = headerWritten ? Buffer.buffer(TRAILER_LENGTH) : header(Buffer.buffer(HEADER.length + TRAILER_LENGTH));
+        }
+        long checksum = crc.getValue();
+        // 原始长度按2^32取模
+        int size = (int) deflater.getBytesRead();
+        return output.appendIntLE((int) checksum).appendIntLE(size);
+    }
+
+    /**
+     * 一次性压缩完整的响应体
+     *
+     * @param body  原始数据
+     * @param level 压缩级别
+     * @return 完整的gzip数据
+     */
+    public static Buffer compress(Buffer body, int level) {
+        try (GzipEncoder encoder = new GzipEncoder(level)) {
+            Buffer head = encoder.encode(body);
+            Buffer tail = encoder.finish();
+            return head == null ? tail : head.appendBuffer(tail);
+        }
+    }
+
+    private Buffer drain(Buffer output) {
+        int n = deflater.deflate(out, 0, out.length, Deflater.NO_FLUSH);
+        if (n == 0) {
+            return output;
+        }
+        if (output == null) {
+            output = Buffer.buffer(n + (headerWritten ? 0 : HEADER.length));
+            if (!headerWritten) {
+                header(output);
+            }
+        }
+        return output.appendBytes(out, 0, n);
+    }
+
+    private Buffer header(Buffer output) {
+        headerWritten = true;
+        return output.appendBytes(HEADER);
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+}
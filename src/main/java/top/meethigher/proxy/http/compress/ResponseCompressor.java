@@ -0,0 +1,234 @@
+package top.meethigher.proxy.http.compress;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import top.meethigher.proxy.http.cache.CachedResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 路由级的响应压缩
+ * <p>
+ * 按请求的Accept-Encoding协商是否使用gzip，并根据响应码、Content-Type、Content-Length、Content-Encoding
+ * 以及Cache-Control: no-transform判断响应是否值得压缩。已经压缩过的内容或过小的响应原样转发。
+ * <p>
+ * 可压缩的响应无论是否实际压缩都会追加Vary: Accept-Encoding，避免下游缓存将压缩与未压缩的内容混用。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/16 21:50
+ */
+public class ResponseCompressor {
+
+    /**
+     * 默认可压缩的Content-Type。以+开头表示按后缀匹配，以/*结尾表示按主类型匹配。
+     * 不包含text/event-stream，逐条推送的事件不应被压缩缓冲区延迟
+     */
+    public static final String DEFAULT_MIME_TYPES = "text/html,text/plain,text/css,text/xml,text/javascript,text/csv," +
+            "application/json,application/javascript,application/xml,image/svg+xml,+json,+xml";
+
+    private final int level;
+
+    private final long minLength;
+
+    private final String[] mimeTypes;
+
+    /**
+     * 压缩变体缓存，未启用时为null
+     */
+    private final CompressedVariantCache variantCache;
+
+    public ResponseCompressor(int level, long minLength, String mimeTypes, CompressedVariantCache variantCache) {
+        if (level < 1 || level > 9) {
+            throw new IllegalArgumentException("compression level must be between 1 and 9");
+        }
+        this.level = level;
+        this.minLength = minLength;
+        this.mimeTypes = parseMimeTypes(mimeTypes == null ? DEFAULT_MIME_TYPES : mimeTypes);
+        this.variantCache = variantCache;
+    }
+
+    private static String[] parseMimeTypes(String mimeTypes) {
+        List<String> list = new ArrayList<>();
+        for (String mimeType : mimeTypes.split(",")) {
+            String trimmed = mimeType.trim();
+            if (!trimmed.isEmpty()) {
+                list.add(trimmed);
+            }
+        }
+        return list.toArray(new String[0]);
+    }
+
+    /**
+     * 判断客户端是否接受gzip，支持q值与通配符*
+     *
+     * @param acceptEncoding 请求头Accept-Encoding
+     * @return true表示接受
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String token : acceptEncoding.split(",")) {
+            int semicolon = token.indexOf(';');
+            String coding = (semicolon < 0 ? token : token.substring(0, semicolon)).trim();
+            double q = semicolon < 0 ? 1 : parseQuality(token.substring(semicolon + 1));
+            if ("gzip".equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+                gzip = Math.max(gzip, q);
+            } else if ("*".equals(coding)) {
+                any = q;
+            }
+        }
+        // 显式声明的gzip优先于通配符
+        return gzip >= 0 ? gzip > 0 : any > 0;
+    }
+
+    private static double parseQuality(String params) {
+        for (String param : params.split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.length() > 2 && (trimmed.charAt(0) == 'q' || trimmed.charAt(0) == 'Q') && trimmed.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(trimmed.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 判断响应是否值得压缩，与客户端是否支持无关
+     *
+     * @param method          请求方法
+     * @param statusCode      响应码
+     * @param responseHeaders 响应头
+     * @return true表示可压缩
+     */
+    public boolean isCompressible(HttpMethod method, int statusCode, MultiMap responseHeaders) {
+        if (HttpMethod.HEAD.equals(method) || statusCode < 200 || statusCode == 204 || statusCode == 206 || statusCode == 304) {
+            return false;
+        }
+        String contentEncoding = responseHeaders.get("Content-Encoding");
+        if (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding.trim())) {
+            return false;
+        }
+        if (responseHeaders.contains("Content-Range")) {
+            return false;
+        }
+        String cacheControl = responseHeaders.get("Cache-Control");
+        if (cacheControl != null && cacheControl.toLowerCase().contains("no-transform")) {
+            return false;
+        }
+        String contentLength = responseHeaders.get("Content-Length");
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) < minLength) {
+                    return false;
+                }
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return matchesMimeType(responseHeaders.get("Content-Type"));
+    }
+
+    private boolean matchesMimeType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String type = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim();
+        for (String mimeType : mimeTypes) {
+            if (mimeType.startsWith("+")) {
+                if (type.regionMatches(true, type.length() - mimeType.length(), mimeType, 0, mimeType.length())) {
+                    return true;
+                }
+            } else if (mimeType.endsWith("/*")) {
+                if (type.regionMatches(true, 0, mimeType, 0, mimeType.length() - 1)) {
+                    return true;
+                }
+            } else if (type.equalsIgnoreCase(mimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 协商压缩并改写响应头。需要压缩时删除Content-Length、设置Content-Encoding，并将强ETag降为弱ETag
+     *
+     * @param method          请求方法
+     * @param requestHeaders  请求头
+     * @param statusCode      响应码
+     * @param responseHeaders 即将写出的响应头
+     * @return true表示响应体需要压缩
+     */
+    public boolean negotiate(HttpMethod method, MultiMap requestHeaders, int statusCode, MultiMap responseHeaders) {
+        if (!isCompressible(method, statusCode, responseHeaders)) {
+            return false;
+        }
+        addVary(responseHeaders);
+        if (!acceptsGzip(requestHeaders.get("Accept-Encoding"))) {
+            return false;
+        }
+        responseHeaders.remove("Content-Length");
+        responseHeaders.set("Content-Encoding", "gzip");
+        String etag = responseHeaders.get("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            responseHeaders.set("ETag", "W/" + etag);
+        }
+        return true;
+    }
+
+    private static void addVary(MultiMap responseHeaders) {
+        for (String vary : responseHeaders.getAll("Vary")) {
+            for (String name : vary.split(",")) {
+                String trimmed = name.trim();
+                if ("*".equals(trimmed) || "accept-encoding".equalsIgnoreCase(trimmed)) {
+                    return;
+                }
+            }
+        }
+        responseHeaders.add("Vary", "Accept-Encoding");
+    }
+
+    /**
+     * 创建流式编码器，调用方负责在流输出结束后关闭
+     *
+     * @return 编码器
+     */
+    public GzipEncoder newEncoder() {
+        return new GzipEncoder(level);
+    }
+
+    /**
+     * 压缩缓存中的响应体。启用变体缓存时，同一缓存条目只压缩一次
+     *
+     * @param cached 缓存条目
+     * @return 压缩后的响应体
+     */
+    public Buffer compress(CachedResponse cached) {
+        if (variantCache == null) {
+            return GzipEncoder.compress(cached.body(), level);
+        }
+        String key = cached.getKey() + '#' + cached.getId();
+        byte[] variant = variantCache.get(key);
+        if (variant == null) {
+            variant = GzipEncoder.compress(cached.body(), level).getBytes();
+            variantCache.put(key, variant);
+        }
+        return Buffer.buffer(Unpooled.wrappedBuffer(variant));
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public CompressedVariantCache getVariantCache() {
+        return variantCache;
+    }
+}
@@ -0,0 +1,87 @@
+package top.meethigher.proxy.http.file;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.file.Path;
+
+/**
+ * 静态文件的元数据与缓存内容，加载时一次性算好响应头，之后只读
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/25 20:30
+ */
+public final class StaticFile {
+
+    private final Path path;
+
+    private final long size;
+
+    private final long lastModified;
+
+    private final String etag;
+
+    private final String lastModifiedHeader;
+
+    private final String contentType;
+
+    /**
+     * 内存映射的文件内容，大文件为null，通过sendfile发送
+     */
+    private final Buffer body;
+
+    /**
+     * 预先压缩的gzip变体，不可压缩或压缩后没有变小时为null
+     */
+    private final Buffer gzip;
+
+    public StaticFile(Path path, long size, long lastModified, String etag, String lastModifiedHeader,
+                      String contentType, Buffer body, Buffer gzip) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.etag = etag;
+        this.lastModifiedHeader = lastModifiedHeader;
+        this.contentType = contentType;
+        this.body = body;
+        this.gzip = gzip;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModifiedHeader() {
+        return lastModifiedHeader;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public Buffer getBody() {
+        return body;
+    }
+
+    public Buffer getGzip() {
+        return gzip;
+    }
+
+    /**
+     * 在缓存中占用的字节数，大文件只缓存元数据
+     */
+    public long weight() {
+        return 256 + (body == null ? 0 : body.length()) + (gzip == null ? 0 : gzip.length());
+    }
+}
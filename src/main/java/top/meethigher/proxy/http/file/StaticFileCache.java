@@ -0,0 +1,238 @@
+package top.meethigher.proxy.http.file;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.impl.MimeMapping;
+import top.meethigher.proxy.http.compress.GzipEncoder;
+import top.meethigher.proxy.http.compress.ResponseCompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 静态文件缓存，按请求路径缓存文件的元数据，小文件同时缓存内容
+ * <p>
+ * 小文件以只读内存映射的方式加载，内容留在操作系统的页缓存中，不占用堆内存，发送时也不需要从堆复制到直接内存；
+ * 可压缩的小文件在加载时一并生成gzip变体，存放在堆外。映射与堆外内存在条目淘汰后由GC回收，不会出现发送途中被释放的问题。
+ * 大文件只缓存元数据，内容通过sendfile发送。
+ * <p>
+ * 淘汰策略为LRU，按字节容量控制。文件需要以替换(写入临时文件后重命名)的方式更新，原地截断已映射的文件会导致发送失败。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/25 20:30
+ */
+public class StaticFileCache {
+
+    private static final int GZIP_LEVEL = 6;
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    private final String indexPage;
+
+    private final long maxBytes;
+
+    private final int maxEntryBytes;
+
+    /**
+     * 只用于判断文件是否值得压缩，为null时不生成gzip变体
+     */
+    private final ResponseCompressor compressor;
+
+    /**
+     * 访问顺序的LinkedHashMap，头部为最久未访问
+     */
+    private final LinkedHashMap<String, StaticFile> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    /**
+     * 每次失效加一，加载开始后发生过失效的文件不放入缓存，避免旧内容在失效之后被写回
+     */
+    private volatile long generation;
+
+    private volatile boolean disabled;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public StaticFileCache(String indexPage, long maxBytes, int maxEntryBytes, boolean gzip) {
+        this.indexPage = indexPage;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes <= 0 ? 0 : maxEntryBytes;
+        this.compressor = gzip ? new ResponseCompressor(GZIP_LEVEL, 256, ResponseCompressor.DEFAULT_MIME_TYPES, null) : null;
+    }
+
+    public StaticFile get(String key) {
+        StaticFile file;
+        synchronized (this) {
+            file = entries.get(key);
+        }
+        if (file == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return file;
+    }
+
+    /**
+     * 从磁盘加载文件并放入缓存。会读取文件属性并映射文件，需要在worker线程中执行
+     *
+     * @param key  请求路径
+     * @param path 文件或目录路径
+     * @return 文件，不存在时返回null
+     * @throws IOException 读取失败
+     */
+    public StaticFile load(String key, Path path) throws IOException {
+        long loadedGeneration = generation;
+        if (Files.isDirectory(path)) {
+            path = path.resolve(indexPage);
+        }
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String contentType = contentType(path);
+        Buffer body = null;
+        Buffer gzip = null;
+        if (size <= maxEntryBytes) {
+            body = map(path, size);
+            gzip = compress(contentType, body);
+        }
+        StaticFile file = new StaticFile(path, size, lastModified,
+                "W/\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"",
+                HTTP_DATE.format(Instant.ofEpochMilli(lastModified)),
+                contentType, body, gzip);
+        put(key, file, loadedGeneration);
+        return file;
+    }
+
+    private static Buffer map(Path path, long size) throws IOException {
+        if (size == 0) {
+            return Buffer.buffer(0);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return Buffer.buffer(Unpooled.wrappedBuffer(mapped));
+        }
+    }
+
+    private Buffer compress(String contentType, Buffer body) {
+        if (compressor == null) {
+            return null;
+        }
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+                .add("Content-Type", contentType)
+                .add("Content-Length", String.valueOf(body.length()));
+        if (!compressor.isCompressible(HttpMethod.GET, 200, headers)) {
+            return null;
+        }
+        Buffer compressed = GzipEncoder.compress(body, GZIP_LEVEL);
+        if (compressed.length() >= body.length()) {
+            return null;
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(compressed.length());
+        direct.put(compressed.getBytes()).flip();
+        return Buffer.buffer(Unpooled.wrappedBuffer(direct));
+    }
+
+    static String contentType(Path path) {
+        String type = MimeMapping.getMimeTypeForFilename(path.getFileName().toString());
+        if (type == null) {
+            return "application/octet-stream";
+        }
+        return type.startsWith("text/") || "application/javascript".equals(type) || "application/json".equals(type)
+                ? type + ";charset=UTF-8" : type;
+    }
+
+    private synchronized void put(String key, StaticFile file, long loadedGeneration) {
+        long weight = file.weight();
+        if (disabled || loadedGeneration != generation || weight > maxBytes) {
+            return;
+        }
+        StaticFile old = entries.put(key, file);
+        if (old != null) {
+            bytes -= old.weight();
+        }
+        bytes += weight;
+        Iterator<StaticFile> iterator = entries.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            StaticFile eldest = iterator.next();
+            if (eldest == file) {
+                continue;
+            }
+            iterator.remove();
+            bytes -= eldest.weight();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 文件或目录发生变化，删除其自身以及其下所有文件的缓存
+     *
+     * @param changed 发生变化的路径
+     */
+    public synchronized void invalidate(Path changed) {
+        generation++;
+        Iterator<Map.Entry<String, StaticFile>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            StaticFile file = iterator.next().getValue();
+            if (file.getPath().startsWith(changed)) {
+                iterator.remove();
+                bytes -= file.weight();
+            }
+        }
+    }
+
+    /**
+     * 停止缓存新的文件，已缓存的文件一并清空
+     */
+    public void disable() {
+        disabled = true;
+        clear();
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
@@ -0,0 +1,284 @@
+package top.meethigher.proxy.http.file;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.net.impl.URIDecoder;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.meethigher.proxy.http.ProxyRoute;
+import top.meethigher.proxy.http.compress.ResponseCompressor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * static:路由的静态资源服务
+ * <p>
+ * 缓存命中时不访问文件系统：小文件直接写出内存映射的内容或预先压缩的gzip变体，大文件按缓存的元数据通过sendfile发送，
+ * HTTP/1.x明文连接下由内核直接从页缓存写入套接字。缓存未命中时在worker线程中读取文件属性与映射文件，不会阻塞EventLoop。
+ * <p>
+ * 支持ETag、Last-Modified条件请求与单个区间的Range请求，多区间请求按完整内容响应。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/25 20:30
+ */
+public class StaticFileHandler implements Handler<RoutingContext> {
+
+    private static final Logger log = LoggerFactory.getLogger(StaticFileHandler.class);
+
+    private final Path root;
+
+    /**
+     * 多级匹配路由需要去掉的路径前缀，精确匹配的路由为null
+     */
+    private final String stripPrefix;
+
+    private final StaticFileCache cache;
+
+    /**
+     * 未启用目录监听时为null
+     */
+    private final StaticFileWatcher watcher;
+
+    /**
+     * @param root        静态资源目录
+     * @param stripPrefix 多级匹配路由需要去掉的路径前缀，精确匹配的路由为null
+     * @param config      静态资源配置
+     */
+    public StaticFileHandler(String root, String stripPrefix, ProxyRoute.StaticFiles config) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.stripPrefix = stripPrefix;
+        this.cache = new StaticFileCache(config.getIndexPage(), config.getCacheMaxBytes(), config.getCacheMaxEntryBytes(), config.isGzip());
+        StaticFileWatcher fileWatcher = null;
+        if (config.isWatch() && config.getCacheMaxBytes() > 0) {
+            fileWatcher = new StaticFileWatcher(this.root, cache);
+            try {
+                fileWatcher.start();
+            } catch (IOException e) {
+                // 无法监听时不缓存，保证总是返回最新的文件
+                log.warn("watch {} failed, static file cache is disabled", this.root, e);
+                fileWatcher = null;
+                cache.disable();
+            }
+        }
+        this.watcher = fileWatcher;
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+        HttpMethod method = ctx.request().method();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            ctx.next();
+            return;
+        }
+        String key = relativePath(ctx.normalizedPath());
+        if (key == null) {
+            ctx.next();
+            return;
+        }
+        StaticFile file = cache.get(key);
+        if (file != null) {
+            send(ctx, file);
+            return;
+        }
+        Path path = root.resolve(key.substring(1)).normalize();
+        // 不允许访问目录之外的文件
+        if (!path.startsWith(root)) {
+            ctx.next();
+            return;
+        }
+        ctx.vertx().executeBlocking(() -> cache.load(key, path), false).onComplete(ar -> {
+            if (ar.failed()) {
+                log.error("load static file {} failed", path, ar.cause());
+                ctx.fail(500, ar.cause());
+            } else if (ar.result() == null) {
+                ctx.next();
+            } else {
+                send(ctx, ar.result());
+            }
+        });
+    }
+
+    /**
+     * 去掉路由前缀并解码，得到以/开头的相对路径
+     */
+    private String relativePath(String normalizedPath) {
+        String path = normalizedPath;
+        if (stripPrefix != null) {
+            if (!path.startsWith(stripPrefix)) {
+                return null;
+            }
+            path = path.substring(stripPrefix.length());
+        }
+        path = URIDecoder.decodeURIComponent(path, false);
+        if (path.indexOf('\0') >= 0) {
+            return null;
+        }
+        return path.startsWith("/") ? path : "/" + path;
+    }
+
+    private void send(RoutingContext ctx, StaticFile file) {
+        HttpServerRequest req = ctx.request();
+        HttpServerResponse resp = ctx.response();
+        MultiMap headers = resp.headers();
+        headers.set("ETag", file.getEtag())
+                .set("Last-Modified", file.getLastModifiedHeader())
+                .set("Accept-Ranges", "bytes");
+        if (file.getGzip() != null) {
+            headers.set("Vary", "Accept-Encoding");
+        }
+        if (notModified(req, file)) {
+            resp.setStatusCode(304).end();
+            return;
+        }
+        headers.set("Content-Type", file.getContentType());
+        long start = 0;
+        long end = file.getSize() - 1;
+        boolean partial = false;
+        String range = req.getHeader("Range");
+        if (range != null && ifRangeMatches(req.getHeader("If-Range"), file)) {
+            long[] bounds = parseRange(range, file.getSize());
+            if (bounds != null && bounds.length == 0) {
+                headers.set("Content-Range", "bytes */" + file.getSize());
+                resp.setStatusCode(416).end();
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                partial = true;
+                headers.set("Content-Range", "bytes " + start + "-" + end + "/" + file.getSize());
+                resp.setStatusCode(206);
+            }
+        }
+        Buffer body = file.getBody();
+        if (!partial && file.getGzip() != null && ResponseCompressor.acceptsGzip(req.getHeader("Accept-Encoding"))) {
+            headers.set("Content-Encoding", "gzip");
+            body = file.getGzip();
+            end = body.length() - 1;
+        }
+        long length = end - start + 1;
+        if (HttpMethod.HEAD.equals(req.method())) {
+            headers.set("Content-Length", String.valueOf(length));
+            resp.end();
+        } else if (body != null) {
+            // slice与原内容共享内存，不会复制
+            resp.end(partial ? body.slice((int) start, (int) end + 1) : body);
+        } else {
+            resp.sendFile(file.getPath().toString(), start, length);
+        }
+    }
+
+    /**
+     * If-None-Match优先于If-Modified-Since
+     */
+    static boolean notModified(HttpServerRequest req, StaticFile file) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmed = tag.trim();
+                if ("*".equals(trimmed) || weakEquals(trimmed, file.getEtag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = req.getHeader("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return file.getLastModified() / 1000 <= since / 1000;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean weakEquals(String a, String b) {
+        return strip(a).equals(strip(b));
+    }
+
+    private static String strip(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * If-Range只能使用强校验，本类的ETag均为弱ETag，因此只有日期与Last-Modified完全一致时才按区间响应
+     */
+    static boolean ifRangeMatches(String ifRange, StaticFile file) {
+        return ifRange == null || ifRange.equals(file.getLastModifiedHeader());
+    }
+
+    /**
+     * 解析单个区间的Range
+     *
+     * @param header Range请求头
+     * @param size   文件大小
+     * @return 闭区间的起止位置；格式不支持或为多区间时返回null，表示按完整内容响应；区间无法满足时返回空数组
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        long start;
+        long end;
+        try {
+            if (first.isEmpty()) {
+                // 后缀区间，表示最后n个字节
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = size - 1;
+                if (!last.isEmpty()) {
+                    long lastPos = Long.parseLong(last);
+                    if (lastPos < start) {
+                        return null;
+                    }
+                    end = Math.min(lastPos, size - 1);
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (start < 0 || start >= size) {
+            return new long[0];
+        }
+        return new long[]{start, end};
+    }
+
+    public StaticFileCache getCache() {
+        return cache;
+    }
+
+    public void close() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        cache.clear();
+    }
+}
@@ -0,0 +1,111 @@
+package top.meethigher.proxy.http.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 监听静态资源目录的变化并使缓存失效
+ * <p>
+ * 基于JDK的{@link WatchService}，Linux下由inotify实现，变化由内核推送，无需轮询磁盘。
+ * WatchService只能监听单层目录，因此启动时递归注册所有子目录，新建的子目录在收到事件后补充注册。
+ * 事件过多导致丢失(OVERFLOW)时清空整个缓存。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/25 20:30
+ */
+public class StaticFileWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(StaticFileWatcher.class);
+
+    private final Path root;
+
+    private final StaticFileCache cache;
+
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+
+    private Thread thread;
+
+    private volatile boolean stopped;
+
+    public StaticFileWatcher(Path root, StaticFileCache cache) {
+        this.root = root;
+        this.cache = cache;
+    }
+
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        watchService = root.getFileSystem().newWatchService();
+        registerAll(watchService, root);
+        thread = new Thread(this::run, "static-file-watcher-" + root.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("close watcher of {} failed", root, e);
+            }
+            watchService = null;
+        }
+    }
+
+    private void registerAll(WatchService service, Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(service,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void run() {
+        WatchService service = watchService;
+        while (!stopped) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            Path dir = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                    cache.clear();
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                cache.invalidate(changed);
+                log.debug("static file {} {}", changed, event.kind().name());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        registerAll(service, changed);
+                    } catch (IOException | ClosedWatchServiceException e) {
+                        log.warn("watch directory {} failed", changed, e);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package top.meethigher.proxy.http.log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的访问日志格式
+ * <p>
+ * 路由添加时将日志格式按占位符拆分为字面量与字段交替的序列，格式化时单次顺序拼接，
+ * 不再对整条格式串逐个占位符执行replace。未识别的占位符按字面量原样输出。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/10 10:20
+ */
+public final class AccessLogFormat {
+
+    /**
+     * 日志字段。除耗时外，字段值均以对象引用的方式记录，格式化时才转换为字符串
+     */
+    public enum Field {
+        NAME("name"),
+        METHOD("method"),
+        SERVER_HTTP_VERSION("serverHttpVersion"),
+        CLIENT_HTTP_VERSION("clientHttpVersion"),
+        USER_AGENT("userAgent"),
+        SERVER_REMOTE_ADDR("serverRemoteAddr"),
+        SERVER_LOCAL_ADDR("serverLocalAddr"),
+        CLIENT_LOCAL_ADDR("clientLocalAddr"),
+        CLIENT_REMOTE_ADDR("clientRemoteAddr"),
+        SOURCE_URI("sourceUri"),
+        PROXY_URL("proxyUrl"),
+        STATUS_CODE("statusCode"),
+        CONSUMED_MILLS("consumedMills");
+
+        /**
+         * 以对象引用记录的字段数量，不包含耗时
+         */
+        public static final int VALUE_COUNT = values().length - 1;
+
+        private static final Field[] FIELDS = values();
+
+        private final String placeholder;
+
+        Field(String placeholder) {
+            this.placeholder = placeholder;
+        }
+
+        public String getPlaceholder() {
+            return placeholder;
+        }
+
+        static Field of(String placeholder) {
+            for (Field field : FIELDS) {
+                if (field.placeholder.equals(placeholder)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final String pattern;
+
+    /**
+     * literals[i]之后紧跟fields[i]，最后以literals[fields.length]结尾
+     */
+    private final String[] literals;
+
+    private final Field[] fields;
+
+    private AccessLogFormat(String pattern, String[] literals, Field[] fields) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.fields = fields;
+    }
+
+    public static AccessLogFormat compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            int end = c == '{' ? pattern.indexOf('}', i + 1) : -1;
+            Field field = end < 0 ? null : Field.of(pattern.substring(i + 1, end));
+            if (field == null) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            fields.add(field);
+            i = end + 1;
+        }
+        literals.add(literal.toString());
+        return new AccessLogFormat(pattern, literals.toArray(new String[0]), fields.toArray(new Field[0]));
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * 格式化一条日志
+     *
+     * @param sb       输出
+     * @param values   按{@link Field#ordinal()}存放的字段值
+     * @param consumed 耗时，单位毫秒
+     * @return 输出
+     */
+    public StringBuilder format(StringBuilder sb, Object[] values, long consumed) {
+        for (int i = 0; i < fields.length; i++) {
+            sb.append(literals[i]);
+            Field field = fields[i];
+            if (field == Field.CONSUMED_MILLS) {
+                sb.append(consumed);
+            } else {
+                sb.append(values[field.ordinal()]);
+            }
+        }
+        return sb.append(literals[fields.length]);
+    }
+
+    public String format(Object[] values, long consumed) {
+        return format(new StringBuilder(pattern.length() + 128), values, consumed).toString();
+    }
+}
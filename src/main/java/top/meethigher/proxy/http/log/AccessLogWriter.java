@@ -0,0 +1,477 @@
+package top.meethigher.proxy.http.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步访问日志
+ * <p>
+ * EventLoop只负责将字段引用与耗时写入预分配的环形缓冲区中的记录槽位，不做任何字符串拼接与IO；
+ * 独立的写线程批量取出记录，格式化后写入文件，并按文件大小或时间间隔滚动。
+ * <p>
+ * 缓冲区写满时按{@link OverflowPolicy}处理：丢弃时只累加丢弃计数，阻塞时生产者等待写线程腾出槽位。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/10 11:02
+ */
+public class AccessLogWriter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessLogWriter.class);
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private static final DateTimeFormatter ROLL_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneId.systemDefault());
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 缓冲区写满时的处理策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 丢弃新日志，不影响请求处理
+         */
+        DROP,
+        /**
+         * 生产者等待，保证日志不丢失，但会占用EventLoop的时间
+         */
+        BLOCK
+    }
+
+    /**
+     * 环形缓冲区中的记录槽位，创建后反复复用
+     */
+    public static final class Record {
+        /**
+         * 已发布的序号。写线程只消费序号与期望值一致的槽位
+         */
+        private volatile long sequence;
+
+        private AccessLogFormat format;
+
+        private long timestamp;
+
+        private long consumed;
+
+        private final Object[] values = new Object[AccessLogFormat.Field.VALUE_COUNT];
+
+        private Record(long sequence) {
+            this.sequence = sequence;
+        }
+
+        public Record format(AccessLogFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        public Record timestamp(long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
+        public Record consumed(long consumed) {
+            this.consumed = consumed;
+            return this;
+        }
+
+        /**
+         * 按{@link AccessLogFormat.Field#ordinal()}存放字段值的数组，由生产者直接填充
+         *
+         * @return 字段值
+         */
+        public Object[] values() {
+            return values;
+        }
+    }
+
+    public static class Options {
+        /**
+         * 日志文件路径
+         */
+        private String file = "access.log";
+
+        /**
+         * 环形缓冲区容量，会向上取整为2的幂
+         */
+        private int capacity = 65536;
+
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+        /**
+         * 单个文件的最大字节数，超出则滚动。小于等于0表示不按大小滚动
+         */
+        private long maxFileBytes = 100 * 1024 * 1024;
+
+        /**
+         * 按时间滚动的间隔，单位毫秒。小于等于0表示不按时间滚动
+         */
+        private long rotateIntervalMillis = 0;
+
+        /**
+         * 写线程合并写入的缓冲字节数
+         */
+        private int batchBytes = 64 * 1024;
+
+        /**
+         * 无新日志时，已缓冲内容的最长刷盘间隔，单位毫秒
+         */
+        private long flushIntervalMillis = 1000;
+
+        public String getFile() {
+            return file;
+        }
+
+        public Options setFile(String file) {
+            this.file = file;
+            return this;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public Options setCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public Options setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public long getMaxFileBytes() {
+            return maxFileBytes;
+        }
+
+        public Options setMaxFileBytes(long maxFileBytes) {
+            this.maxFileBytes = maxFileBytes;
+            return this;
+        }
+
+        public long getRotateIntervalMillis() {
+            return rotateIntervalMillis;
+        }
+
+        public Options setRotateIntervalMillis(long rotateIntervalMillis) {
+            this.rotateIntervalMillis = rotateIntervalMillis;
+            return this;
+        }
+
+        public int getBatchBytes() {
+            return batchBytes;
+        }
+
+        public Options setBatchBytes(int batchBytes) {
+            this.batchBytes = batchBytes;
+            return this;
+        }
+
+        public long getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public Options setFlushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+    }
+
+    private final Options options;
+
+    private final Path path;
+
+    private final Record[] ring;
+
+    private final int mask;
+
+    /**
+     * 下一个可认领的序号，多个EventLoop并发竞争
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 写线程下一个要消费的序号，仅由写线程推进
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    /*
+     * 以下字段仅由写线程访问
+     */
+    private final StringBuilder line = new StringBuilder(512);
+    private final ByteBuffer buffer;
+    private FileChannel channel;
+    private long fileBytes;
+    private long nextRotateAt;
+    private long lastFlushAt;
+    private long cachedSecond = -1;
+    private String cachedTime;
+
+    private AccessLogWriter(Options options) {
+        this.options = options;
+        this.path = Paths.get(options.getFile()).toAbsolutePath();
+        int capacity = Integer.highestOneBit(Math.max(2, options.getCapacity() - 1)) << 1;
+        this.ring = new Record[capacity];
+        for (int i = 0; i < capacity; i++) {
+            // 初始序号与槽位下标错开一圈，保证尚未发布的槽位不会被误认为已发布
+            ring[i] = new Record(i - capacity);
+        }
+        this.mask = capacity - 1;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(4096, options.getBatchBytes()));
+        this.thread = new Thread(this::run, "access-log-writer");
+        this.thread.setDaemon(true);
+    }
+
+    public static AccessLogWriter create(Options options) {
+        AccessLogWriter writer = new AccessLogWriter(options);
+        try {
+            writer.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to open access log " + writer.path, e);
+        }
+        writer.thread.start();
+        return writer;
+    }
+
+    public static AccessLogWriter create(String file) {
+        return create(new Options().setFile(file));
+    }
+
+    /**
+     * 认领一个记录槽位
+     *
+     * @return 序号。缓冲区已满且策略为丢弃时返回-1
+     */
+    public long claim() {
+        while (true) {
+            long seq = tail.get();
+            if (seq - head.get() >= ring.length) {
+                if (options.getOverflowPolicy() == OverflowPolicy.DROP || !running) {
+                    dropped.increment();
+                    return -1;
+                }
+                LockSupport.parkNanos(1000);
+                continue;
+            }
+            if (tail.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    /**
+     * 获取已认领序号对应的记录槽位，写入字段后调用{@link #publish(long)}
+     *
+     * @param seq 序号
+     * @return 记录槽位
+     */
+    public Record record(long seq) {
+        return ring[(int) (seq & mask)];
+    }
+
+    public void publish(long seq) {
+        ring[(int) (seq & mask)].sequence = seq;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 停止写线程，写出缓冲区中剩余的日志后关闭文件
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long idleParkNanos = 1_000_000;
+        while (true) {
+            int drained = drain();
+            if (drained == 0) {
+                if (!running && head.get() >= tail.get()) {
+                    break;
+                }
+                long now = System.currentTimeMillis();
+                if (buffer.position() > 0 && now - lastFlushAt >= options.getFlushIntervalMillis()) {
+                    flush();
+                }
+                if (!running) {
+                    // 已认领但迟迟未发布的槽位，在关闭时放弃
+                    if (ring[(int) (head.get() & mask)].sequence != head.get()) {
+                        break;
+                    }
+                    continue;
+                }
+                LockSupport.parkNanos(idleParkNanos);
+            }
+        }
+        flush();
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.error("close access log {} failed", path, e);
+        }
+    }
+
+    /**
+     * 批量消费已发布的记录
+     *
+     * @return 本次消费的条数
+     */
+    private int drain() {
+        int count = 0;
+        long seq = head.get();
+        while (true) {
+            Record record = ring[(int) (seq & mask)];
+            if (record.sequence != seq) {
+                break;
+            }
+            writeRecord(record);
+            record.format = null;
+            Arrays.fill(record.values, null);
+            seq++;
+            count++;
+            // 及时归还槽位，阻塞策略下的生产者不必等整批写完
+            head.lazySet(seq);
+        }
+        if (count > 0) {
+            written.add(count);
+        }
+        return count;
+    }
+
+    private void writeRecord(Record record) {
+        line.setLength(0);
+        long second = record.timestamp / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTime = TIME_FORMATTER.format(Instant.ofEpochSecond(second));
+        }
+        int millis = (int) (record.timestamp % 1000);
+        line.append(cachedTime).append('.')
+                .append((char) ('0' + millis / 100))
+                .append((char) ('0' + millis / 10 % 10))
+                .append((char) ('0' + millis % 10))
+                .append(' ');
+        record.format.format(line, record.values, record.consumed);
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length + LINE_SEPARATOR.length;
+        rotateIfNeeded(record.timestamp, length);
+        if (buffer.remaining() < length) {
+            flush();
+        }
+        if (buffer.remaining() < length) {
+            // 超长的单条日志直接写出
+            writeFully(ByteBuffer.wrap(bytes));
+            writeFully(ByteBuffer.wrap(LINE_SEPARATOR));
+        } else {
+            buffer.put(bytes).put(LINE_SEPARATOR);
+        }
+        fileBytes += length;
+    }
+
+    private void rotateIfNeeded(long now, int incoming) {
+        boolean bySize = options.getMaxFileBytes() > 0 && fileBytes > 0 && fileBytes + incoming > options.getMaxFileBytes();
+        boolean byTime = nextRotateAt > 0 && now >= nextRotateAt;
+        if (!bySize && !byTime) {
+            return;
+        }
+        flush();
+        try {
+            channel.close();
+            Path target = path.resolveSibling(path.getFileName() + "." + ROLL_FORMATTER.format(Instant.ofEpochMilli(now)));
+            for (int i = 1; Files.exists(target); i++) {
+                target = path.resolveSibling(path.getFileName() + "." + ROLL_FORMATTER.format(Instant.ofEpochMilli(now)) + "-" + i);
+            }
+            Files.move(path, target);
+        } catch (IOException e) {
+            log.error("rotate access log {} failed", path, e);
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            log.error("reopen access log {} failed", path, e);
+        }
+    }
+
+    private void open() throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+        long interval = options.getRotateIntervalMillis();
+        nextRotateAt = interval > 0 ? (System.currentTimeMillis() / interval + 1) * interval : 0;
+    }
+
+    private void flush() {
+        lastFlushAt = System.currentTimeMillis();
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer src) {
+        if (channel == null || !channel.isOpen()) {
+            src.position(src.limit());
+            return;
+        }
+        try {
+            while (src.hasRemaining()) {
+                channel.write(src);
+            }
+        } catch (IOException e) {
+            log.error("write access log {} failed", path, e);
+            src.position(src.limit());
+        }
+    }
+}
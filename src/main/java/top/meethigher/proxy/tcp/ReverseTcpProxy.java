@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.meethigher.proxy.LoadBalancer;
 import top.meethigher.proxy.NetAddress;
+import top.meethigher.proxy.TransportOptions;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -56,7 +57,8 @@ public class ReverseTcpProxy {
             // 但如果还没进入pipe前，连接出现异常，那么就会触发此处的exceptionHandler。https://github.com/meethigher/tcp-reverse-proxy/issues/18
             sourceSocket.exceptionHandler(e -> log.error("source {} -- {}  exception occurred", sourceLocal, sourceRemote, e))
                     .closeHandler(v -> log.debug("source {} -- {} closed", sourceLocal, sourceRemote));
-            NetAddress next = lb.next();
+            // 一致性哈希策略按客户端IP保持会话，其他策略忽略该键
+            NetAddress next = lb.next(sourceRemote == null ? null : sourceRemote.hostAddress());
             String targetHost = next.getHost();
             int targetPort = next.getPort();
             log.debug("source {} -- {} connected. lb [{}] next target {}", sourceLocal, sourceRemote,
@@ -65,6 +67,7 @@ public class ReverseTcpProxy {
             );
             netClient.connect(targetPort, targetHost)
                     .onFailure(e -> {
+                        lb.release(next);
                         log.error("source {} -- {} failed to connect to {}:{}", sourceLocal, sourceRemote, targetHost, targetPort, e);
                         // 若连接目标服务失败，需要断开源头服务
                         sourceSocket.close();
@@ -80,7 +83,10 @@ public class ReverseTcpProxy {
                         // 由于内部都是使用pipe来进行数据传输，所以exceptionHandler肯定是都重新注册过了，参考{@code io.vertx.core.streams.impl.PipeImpl.PipeImpl }
                         // 但如果还没进入pipe前，连接出现异常，那么就会触发此处的exceptionHandler。https://github.com/meethigher/tcp-reverse-proxy/issues/18
                         targetSocket.exceptionHandler(e -> log.error("target {} -- {}  exception occurred", targetLocal, targetRemote, e))
-                                .closeHandler(v -> log.debug("target {} -- {} closed", targetLocal, targetRemote));
+                                .closeHandler(v -> {
+                                    lb.release(next);
+                                    log.debug("target {} -- {} closed", targetLocal, targetRemote);
+                                });
 
                         // https://github.com/meethigher/tcp-reverse-proxy/issues/12
                         // 将日志记录详细，便于排查问题
@@ -115,6 +121,28 @@ public class ReverseTcpProxy {
         ).addNode(new NetAddress(targetHost, targetPort));
     }
 
+    /**
+     * 按传输层配置创建代理
+     *
+     * @param vertx      Vertx，需要通过{@link TransportOptions#createVertx()}创建才会启用原生传输
+     * @param targetHost 目标主机
+     * @param targetPort 目标端口
+     * @param name       名称
+     * @param transport  传输层配置
+     * @return 代理
+     */
+    public static ReverseTcpProxy create(Vertx vertx,
+                                         String targetHost, int targetPort, String name, TransportOptions transport) {
+        List<NetAddress> list = new ArrayList<>();
+        return new ReverseTcpProxy(
+                transport.createNetServer(vertx),
+                transport.createNetClient(vertx),
+                TcpRoundRobinLoadBalancer.create(list),
+                list,
+                name
+        ).addNode(new NetAddress(targetHost, targetPort));
+    }
+
     public static ReverseTcpProxy create(Vertx vertx,
                                          String targetHost, int targetPort) {
         List<NetAddress> list = new ArrayList<>();
@@ -169,6 +197,14 @@ public class ReverseTcpProxy {
     public ReverseTcpProxy addNode(NetAddress netAddress) {
         if (!netAddresses.contains(netAddress)) {
             netAddresses.add(netAddress);
+            lb.refresh();
+        }
+        return this;
+    }
+
+    public ReverseTcpProxy removeNode(NetAddress netAddress) {
+        if (netAddresses.remove(netAddress)) {
+            lb.refresh();
         }
         return this;
     }
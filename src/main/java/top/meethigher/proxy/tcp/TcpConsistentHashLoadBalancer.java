@@ -0,0 +1,147 @@
+package top.meethigher.proxy.tcp;
+
+import top.meethigher.proxy.LoadBalancer;
+import top.meethigher.proxy.MaglevTable;
+import top.meethigher.proxy.NetAddress;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一致性哈希策略实现，按客户端IP保持会话
+ * <p>
+ * 基于{@link MaglevTable}选择节点，查找耗时O(1)且不分配对象。节点列表变化后需调用{@link #refresh()}，
+ * 由其重建查找表并原子替换，选择节点时不会重建。
+ * <p>
+ * 有界负载：策略自行统计各节点的连接数，节点连接数超过平均值的(1+boundedLoadFactor)倍时沿查找表探测下一个节点。
+ * 连接结束时需调用{@link #release(NetAddress)}。
+ *
+ * @author <a href="https://meethigher.top">chenchuancheng</a>
+ * @since 2025/08/28 20:15
+ */
+public class TcpConsistentHashLoadBalancer implements LoadBalancer<NetAddress> {
+
+    private final List<NetAddress> nodes;
+
+    private final double boundedLoadFactor;
+
+    private final AtomicInteger total = new AtomicInteger(0);
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private final String name = "TcpConsistentHashLoadBalancer";
+
+    private TcpConsistentHashLoadBalancer(List<NetAddress> nodes, double boundedLoadFactor) {
+        this.nodes = nodes;
+        this.boundedLoadFactor = boundedLoadFactor;
+        refresh();
+    }
+
+    @Override
+    public NetAddress next() {
+        return select(ThreadLocalRandom.current().nextLong());
+    }
+
+    @Override
+    public NetAddress next(String key) {
+        return select(key == null ? ThreadLocalRandom.current().nextLong() : MaglevTable.hash(key));
+    }
+
+    private NetAddress select(long hash) {
+        Snapshot current = snapshot;
+        int n = current.nodes.length;
+        if (n == 0) {
+            return null;
+        }
+        int index = current.table.get(hash, 0);
+        if (boundedLoadFactor > 0 && n > 1) {
+            double capacity = Math.ceil((1 + boundedLoadFactor) * (total.get() + 1) / n);
+            int probes = Math.min(current.table.size(), n * 16);
+            for (int i = 0; i < probes; i++) {
+                int candidate = current.table.get(hash, i);
+                if (current.connections[candidate].get() + 1 <= capacity) {
+                    index = candidate;
+                    break;
+                }
+            }
+        }
+        current.connections[index].incrementAndGet();
+        total.incrementAndGet();
+        return current.nodes[index];
+    }
+
+    @Override
+    public void release(NetAddress node) {
+        AtomicInteger connections = snapshot.index.get(node);
+        if (connections != null) {
+            connections.decrementAndGet();
+        }
+        total.decrementAndGet();
+    }
+
+    /**
+     * 按当前节点列表重建查找表，仍存在的节点保留其连接数
+     */
+    @Override
+    public synchronized void refresh() {
+        Snapshot old = snapshot;
+        Map<NetAddress, AtomicInteger> previous = new HashMap<>(old.index);
+        NetAddress[] array = nodes == null ? new NetAddress[0] : nodes.toArray(new NetAddress[0]);
+        List<String> keys = new ArrayList<>();
+        int[] weights = new int[array.length];
+        AtomicInteger[] connections = new AtomicInteger[array.length];
+        Map<NetAddress, AtomicInteger> index = new IdentityHashMap<>();
+        for (int i = 0; i < array.length; i++) {
+            keys.add(array[i].toString());
+            weights[i] = 1;
+            AtomicInteger count = previous.get(array[i]);
+            connections[i] = count == null ? new AtomicInteger(0) : count;
+            index.put(array[i], connections[i]);
+        }
+        snapshot = new Snapshot(array, MaglevTable.build(keys, weights, MaglevTable.DEFAULT_SIZE), connections, index);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    public static TcpConsistentHashLoadBalancer create(List<NetAddress> nodes) {
+        return new TcpConsistentHashLoadBalancer(nodes, 0.25);
+    }
+
+    /**
+     * @param nodes             节点列表
+     * @param boundedLoadFactor 有界负载系数，0表示不限制
+     * @return 策略
+     */
+    public static TcpConsistentHashLoadBalancer create(List<NetAddress> nodes, double boundedLoadFactor) {
+        return new TcpConsistentHashLoadBalancer(nodes, boundedLoadFactor);
+    }
+
+    /**
+     * 节点列表与查找表的不可变快照。index为身份映射，查找时不计算NetAddress的hashCode
+     */
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(new NetAddress[0],
+                MaglevTable.build(Collections.emptyList(), new int[0], MaglevTable.DEFAULT_SIZE),
+                new AtomicInteger[0], Collections.emptyMap());
+
+        private final NetAddress[] nodes;
+
+        private final MaglevTable table;
+
+        private final AtomicInteger[] connections;
+
+        private final Map<NetAddress, AtomicInteger> index;
+
+        private Snapshot(NetAddress[] nodes, MaglevTable table, AtomicInteger[] connections, Map<NetAddress, AtomicInteger> index) {
+            this.nodes = nodes;
+            this.table = table;
+            this.connections = connections;
+            this.index = index;
+        }
+    }
+}
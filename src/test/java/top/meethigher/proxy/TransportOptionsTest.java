@@ -0,0 +1,76 @@
+package top.meethigher.proxy;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.NetServerOptions;
+import io.vertx.core.net.TCPSSLOptions;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransportOptionsTest {
+
+    @Test
+    public void socketOptions() {
+        TransportOptions transport = new TransportOptions().setTcpCork(true);
+        HttpServerOptions server = transport.apply(new HttpServerOptions());
+        Assert.assertTrue(server.isTcpQuickAck());
+        Assert.assertTrue(server.isTcpFastOpen());
+        Assert.assertTrue(server.isTcpCork());
+        // SO_REUSEPORT需显式开启
+        Assert.assertFalse(server.isReusePort());
+        Assert.assertTrue(transport.setReusePort(true).apply(new HttpServerOptions()).isReusePort());
+        // 客户端不设置SO_REUSEPORT
+        HttpClientOptions client = transport.apply(new HttpClientOptions());
+        Assert.assertTrue(client.isTcpQuickAck());
+        Assert.assertFalse(client.isReusePort());
+    }
+
+    private static void assertApplied(TransportOptions transport, TCPSSLOptions options, boolean server) {
+        Assert.assertEquals(transport.isTcpQuickAck(), options.isTcpQuickAck());
+        Assert.assertEquals(transport.isTcpFastOpen(), options.isTcpFastOpen());
+        Assert.assertEquals(transport.isTcpCork(), options.isTcpCork());
+        Assert.assertEquals(server && transport.isReusePort(), options.isReusePort());
+    }
+
+    @Test
+    public void applyAllOptions() {
+        // 与各配置的默认值相反，确认每个字段都被写入，而不是沿用默认值
+        TransportOptions enabled = new TransportOptions()
+                .setTcpQuickAck(true)
+                .setTcpFastOpen(true)
+                .setTcpCork(true)
+                .setReusePort(true);
+        TransportOptions disabled = new TransportOptions()
+                .setTcpQuickAck(false)
+                .setTcpFastOpen(false)
+                .setTcpCork(false)
+                .setReusePort(false);
+        for (TransportOptions transport : new TransportOptions[]{enabled, disabled}) {
+            boolean value = transport == enabled;
+            assertApplied(transport, transport.apply(new HttpServerOptions()
+                    .setTcpQuickAck(!value).setTcpFastOpen(!value).setTcpCork(!value).setReusePort(!value)), true);
+            assertApplied(transport, transport.apply(new NetServerOptions()
+                    .setTcpQuickAck(!value).setTcpFastOpen(!value).setTcpCork(!value).setReusePort(!value)), true);
+            assertApplied(transport, transport.apply(new HttpClientOptions()
+                    .setTcpQuickAck(!value).setTcpFastOpen(!value).setTcpCork(!value)), false);
+            assertApplied(transport, transport.apply(new NetClientOptions()
+                    .setTcpQuickAck(!value).setTcpFastOpen(!value).setTcpCork(!value)), false);
+        }
+        Assert.assertTrue(enabled.apply(new VertxOptions()).getPreferNativeTransport());
+        Assert.assertFalse(new TransportOptions().setNativeTransport(false).apply(new VertxOptions()).getPreferNativeTransport());
+    }
+
+    @Test
+    public void fallbackToNio() {
+        // 未引入原生库时回退为NIO，仍可正常创建
+        Vertx vertx = new TransportOptions().createVertx();
+        try {
+            Assert.assertTrue(vertx.isNativeTransportEnabled() || vertx.unavailableNativeTransportCause() != null);
+        } finally {
+            vertx.close();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.streams.ReadStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class BufferingReadStreamTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    /**
+     * 由测试手动推送数据的数据源
+     */
+    static class Source implements ReadStream<Buffer> {
+
+        private Handler<Buffer> handler;
+
+        private Handler<Void> endHandler;
+
+        private boolean paused = true;
+
+        void emit(Buffer chunk) {
+            handler.handle(chunk);
+        }
+
+        void end() {
+            endHandler.handle(null);
+        }
+
+        @Override
+        public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+            this.handler = handler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> pause() {
+            paused = true;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            paused = false;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> fetch(long amount) {
+            paused = false;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+            this.endHandler = endHandler;
+            return this;
+        }
+    }
+
+    /**
+     * 在EventLoop上执行，断言失败时使结果失败
+     */
+    private static void run(CompletableFuture<?> result, Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static Buffer chunk(int i) {
+        return Buffer.buffer(String.format("%010d", i));
+    }
+
+    @Test
+    public void memory() throws Exception {
+        BufferBudget budget = new BufferBudget(1024);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        vertx.runOnContext(v -> run(result, () -> {
+            Source source = new Source();
+            BufferingReadStream stream = new BufferingReadStream(vertx, source, budget, 1024, 0, null);
+            for (int i = 0; i < 3; i++) {
+                source.emit(chunk(i));
+            }
+            source.end();
+            // 下游尚未读取，数据源已全部接收
+            Assert.assertTrue(stream.ready().succeeded());
+            Assert.assertTrue(stream.isComplete());
+            Assert.assertEquals(30, budget.getUsed());
+            Buffer received = Buffer.buffer();
+            stream.handler(received::appendBuffer);
+            stream.endHandler(e -> result.complete(received.toString()));
+        }));
+        Assert.assertEquals("000000000000000000010000000002", result.get(2, TimeUnit.SECONDS));
+        Assert.assertEquals(0, budget.getUsed());
+        Assert.assertEquals(0, budget.getSpills());
+    }
+
+    @Test
+    public void spill() throws Exception {
+        BufferBudget budget = new BufferBudget(1024);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            expected.append(chunk(i));
+        }
+        vertx.runOnContext(v -> run(result, () -> {
+            Source source = new Source();
+            BufferingReadStream stream = new BufferingReadStream(vertx, source, budget, 10, 1024 * 1024, null);
+            for (int i = 0; i < 100; i++) {
+                source.emit(chunk(i));
+            }
+            source.end();
+            Assert.assertFalse(source.paused);
+            Assert.assertEquals(10, budget.getUsed());
+            Buffer received = Buffer.buffer();
+            stream.handler(received::appendBuffer);
+            stream.endHandler(e -> result.complete(received.toString()));
+        }));
+        Assert.assertEquals(expected.toString(), result.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, budget.getUsed());
+        Assert.assertEquals(1, budget.getSpills());
+    }
+
+    @Test
+    public void backpressureWhenFileFull() throws Exception {
+        BufferBudget budget = new BufferBudget(1024);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        vertx.runOnContext(v -> run(result, () -> {
+            Source source = new Source();
+            BufferingReadStream stream = new BufferingReadStream(vertx, source, budget, 10, 50, null);
+            // 1段在内存，5段在文件，文件写满后暂停数据源
+            for (int i = 0; i < 6; i++) {
+                source.emit(chunk(i));
+            }
+            Assert.assertTrue(source.paused);
+            Assert.assertTrue(stream.ready().succeeded());
+            Assert.assertFalse(stream.isComplete());
+            Buffer received = Buffer.buffer();
+            stream.handler(received::appendBuffer);
+            stream.endHandler(e -> result.complete(received.toString()));
+            // 文件读完后恢复数据源
+            vertx.setPeriodic(10, id -> {
+                if (!source.paused) {
+                    vertx.cancelTimer(id);
+                    source.emit(chunk(6));
+                    source.end();
+                }
+            });
+        }));
+        Assert.assertEquals("0000000000000000000100000000020000000003000000000400000000050000000006", result.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    public void releaseUpstreamBeforeSlowClient() throws Exception {
+        int size = 16 * 1024 * 1024;
+        Promise<Void> upstreamDone = Promise.promise();
+        vertx.createHttpServer()
+                .requestHandler(req -> req.response().end(Buffer.buffer(new byte[size])).onComplete(upstreamDone))
+                .listen(18900)
+                .toCompletionStage().toCompletableFuture().get();
+        ProxyRoute route = new ProxyRoute()
+                .setName("buffering")
+                .setSourceUrl("/*")
+                .setTargetUrl("http://127.0.0.1:18900")
+                .setBuffering(new ProxyRoute.Buffering().setEnable(true));
+        ReverseHttpProxy proxy = ReverseHttpProxy.create(vertx).port(18901).addRoute(route);
+        proxy.start();
+        Thread.sleep(500);
+
+        HttpClient client = vertx.createHttpClient();
+        HttpClientResponse resp = client.request(HttpMethod.GET, 18901, "127.0.0.1", "/download")
+                .compose(req -> req.send())
+                .toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS);
+        // 客户端暂不读取，上游仍能发完响应体
+        resp.pause();
+        upstreamDone.future().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1, proxy.getBufferBudget().getSpills());
+
+        CompletableFuture<Buffer> body = resp.body().toCompletionStage().toCompletableFuture();
+        resp.resume();
+        Assert.assertEquals(size, body.get(5, TimeUnit.SECONDS).length());
+        Thread.sleep(200);
+        Assert.assertEquals(0, proxy.getBufferBudget().getUsed());
+        proxy.stop();
+    }
+}
@@ -0,0 +1,55 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.MultiMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompiledRouteTest {
+
+    @Test
+    public void compile() {
+        CompiledRoute route = CompiledRoute.compile(new ProxyRoute()
+                .setName("proxy")
+                .setSourceUrl("/api/*")
+                .setTargetUrl("http://127.0.0.1:888/service/")
+                .setForwardIp(true)
+                .setPreserveCookies(false));
+        Assert.assertEquals("http://127.0.0.1:888/service/", route.getTargetUrl());
+        Assert.assertEquals("http://127.0.0.1:888/service", route.getUpstreams().get(0).getTargetBase());
+        Assert.assertTrue(route.isMultiLevel());
+        Assert.assertEquals("/api", route.getStripPrefix());
+        Assert.assertEquals("/api", route.getLocationPrefix());
+        Assert.assertTrue(route.isForwardIp());
+        Assert.assertFalse(route.isPreserveCookies());
+        Assert.assertEquals(ReverseHttpProxy.LOG_FORMAT_DEFAULT, route.getLogFormat());
+
+        CompiledRoute root = CompiledRoute.compile(new ProxyRoute()
+                .setSourceUrl("/*")
+                .setTargetUrl("http://127.0.0.1:888"));
+        Assert.assertEquals("", root.getStripPrefix());
+
+        CompiledRoute exact = CompiledRoute.compile(new ProxyRoute()
+                .setSourceUrl("/specific")
+                .setTargetUrl("http://127.0.0.1:888"));
+        Assert.assertFalse(exact.isMultiLevel());
+    }
+
+    @Test
+    public void applyCorsHeaders() {
+        ProxyRoute proxyRoute = new ProxyRoute()
+                .setSourceUrl("/*")
+                .setTargetUrl("http://127.0.0.1:888");
+        proxyRoute.getCorsControl().setEnable(true).setAllowCors(true);
+        CompiledRoute route = CompiledRoute.compile(proxyRoute);
+        Assert.assertTrue(route.isAllowCors());
+
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        route.applyCorsHeaders(headers, null);
+        Assert.assertEquals("*", headers.get("Access-Control-Allow-Origin"));
+        Assert.assertEquals("true", headers.get("Access-Control-Allow-Credentials"));
+
+        route.applyCorsHeaders(headers, "https://meethigher.top");
+        Assert.assertEquals("https://meethigher.top", headers.get("access-control-allow-origin"));
+        Assert.assertEquals(1, headers.getAll("Access-Control-Allow-Methods").size());
+    }
+}
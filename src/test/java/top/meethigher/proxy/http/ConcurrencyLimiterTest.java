@@ -0,0 +1,122 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimiterTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    private final Context context = vertx.getOrCreateContext();
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void queueAndRelease() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 2, 1, 10, 10, 5000);
+        List<Boolean> results = new CopyOnWriteArrayList<>();
+        limiter.acquire(context, ProxyRoute.Priority.NORMAL, results::add);
+        limiter.acquire(context, ProxyRoute.Priority.NORMAL, results::add);
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(2, limiter.getInFlight());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        limiter.acquire(context, ProxyRoute.Priority.NORMAL, granted -> {
+            results.add(granted);
+            latch.countDown();
+        });
+        Assert.assertEquals(1, limiter.getQueued());
+        // 归还名额后唤醒等待者
+        limiter.release();
+        Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(Boolean.TRUE, results.get(2));
+        Assert.assertEquals(0, limiter.getQueued());
+        Assert.assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void queueTimeout() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 1, 1, 10, 10, 50);
+        limiter.acquire(context, ProxyRoute.Priority.NORMAL, granted -> Assert.assertTrue(granted));
+        CountDownLatch latch = new CountDownLatch(1);
+        limiter.acquire(context, ProxyRoute.Priority.NORMAL, granted -> {
+            Assert.assertFalse(granted);
+            latch.countDown();
+        });
+        Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(0, limiter.getQueued());
+        Assert.assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    public void shedLowPriority() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 1, 1, 10, 1, 5000);
+        limiter.acquire(context, ProxyRoute.Priority.NORMAL, granted -> Assert.assertTrue(granted));
+        CountDownLatch shed = new CountDownLatch(1);
+        limiter.acquire(context, ProxyRoute.Priority.LOW, granted -> {
+            Assert.assertFalse(granted);
+            shed.countDown();
+        });
+        // 队列已满，同优先级的请求直接拒绝
+        List<Boolean> results = new CopyOnWriteArrayList<>();
+        limiter.acquire(context, ProxyRoute.Priority.LOW, results::add);
+        Assert.assertEquals(Boolean.FALSE, results.get(0));
+        // 高优先级的请求挤掉低优先级的等待者
+        CountDownLatch granted = new CountDownLatch(1);
+        limiter.acquire(context, ProxyRoute.Priority.HIGH, ok -> {
+            Assert.assertTrue(ok);
+            granted.countDown();
+        });
+        Assert.assertTrue(shed.await(1, TimeUnit.SECONDS));
+        limiter.release();
+        Assert.assertTrue(granted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void adaptLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 20, 4, 100, 0, 0);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire(context, ProxyRoute.Priority.NORMAL, granted -> Assert.assertTrue(granted));
+        }
+        // RTT稳定时上限逐步增长
+        for (int i = 0; i < 50; i++) {
+            limiter.sample(10_000_000, false);
+        }
+        int grown = limiter.getLimit();
+        Assert.assertTrue(grown > 20);
+        // RTT明显升高说明上游开始排队，上限收缩
+        for (int i = 0; i < 50; i++) {
+            limiter.sample(100_000_000, false);
+        }
+        Assert.assertTrue(limiter.getLimit() < grown);
+        // 上游失败时退避，但不低于下限
+        for (int i = 0; i < 100; i++) {
+            limiter.sample(0, true);
+        }
+        Assert.assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void tryAcquireDoesNotQueue() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 1, 1, 10, 10, 5000);
+        Assert.assertTrue(limiter.tryAcquire());
+        // 名额用尽时立即失败，不进入等待队列
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(0, limiter.getQueued());
+        limiter.release();
+        Assert.assertTrue(limiter.tryAcquire());
+        limiter.release();
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -1,16 +1,203 @@
 package top.meethigher.proxy.http;
 
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.dns.*;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxOptions;
 import io.vertx.core.dns.DnsClient;
 import io.vertx.core.dns.DnsClientOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class DnsResolverTest {
 
+    private static final String HOST = "upstream.test";
+
+    private EventLoopGroup group;
+
+    private Channel stub;
+
+    /**
+     * 桩DNS服务器对HOST返回的A记录，为空时响应SERVFAIL
+     */
+    private final List<String> records = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger stubQueries = new AtomicInteger();
+
+    private volatile long ttl = 60;
+
+    private DnsResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new NioEventLoopGroup(1);
+        stub = new Bootstrap().group(group).channel(NioDatagramChannel.class)
+                .handler(new ChannelInitializer<DatagramChannel>() {
+                    @Override
+                    protected void initChannel(DatagramChannel ch) {
+                        ch.pipeline().addLast(new DatagramDnsQueryDecoder(), new DatagramDnsResponseEncoder(),
+                                new SimpleChannelInboundHandler<DatagramDnsQuery>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, DatagramDnsQuery query) throws Exception {
+                                        answer(ctx, query);
+                                    }
+                                });
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+    }
+
+    private void answer(ChannelHandlerContext ctx, DatagramDnsQuery query) throws Exception {
+        DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+        DatagramDnsResponse response = new DatagramDnsResponse(query.recipient(), query.sender(), query.id());
+        response.setRecursionAvailable(true);
+        response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion(question.name(), question.type()));
+        if (question.type() == DnsRecordType.A) {
+            stubQueries.incrementAndGet();
+            if (records.isEmpty()) {
+                response.setCode(DnsResponseCode.SERVFAIL);
+            }
+            for (String record : records) {
+                response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(question.name(), DnsRecordType.A, ttl,
+                        Unpooled.wrappedBuffer(InetAddress.getByName(record).getAddress())));
+            }
+        }
+        ctx.writeAndFlush(response);
+    }
+
+    private DnsResolver resolver(DnsOptions options) {
+        InetSocketAddress address = (InetSocketAddress) stub.localAddress();
+        resolver = new DnsResolver(options.addServer(address.getHostString(), address.getPort()).setQueryTimeout(500));
+        return resolver;
+    }
+
+    private String resolve(String host) throws Exception {
+        return resolver.resolve(host).toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS).getHostAddress();
+    }
+
+    @After
+    public void tearDown() {
+        if (resolver != null) {
+            resolver.close();
+        }
+        stub.close();
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void roundRobin() throws Exception {
+        records.add("10.0.0.1");
+        records.add("10.0.0.2");
+        resolver(new DnsOptions().setIpv6(false));
+        Set<String> addresses = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            addresses.add(resolve(HOST));
+        }
+        Assert.assertEquals(2, addresses.size());
+        Assert.assertEquals(1, resolver.getQueries());
+        Assert.assertEquals(1, stubQueries.get());
+    }
+
+    @Test
+    public void skipFailedAddress() throws Exception {
+        records.add("10.0.0.1");
+        records.add("10.0.0.2");
+        resolver(new DnsOptions().setIpv6(false));
+        resolve(HOST);
+        resolver.markFailed(HOST, InetAddress.getByName("10.0.0.1"));
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals("10.0.0.2", resolve(HOST));
+        }
+    }
+
+    @Test
+    public void refreshAheadAndServeStale() throws Exception {
+        ttl = 1;
+        records.add("10.0.0.1");
+        resolver(new DnsOptions().setIpv6(false).setRefreshFactor(0.5));
+        Assert.assertEquals("10.0.0.1", resolve(HOST));
+
+        // 仍在使用的记录在过期之前于后台刷新
+        records.set(0, "10.0.0.3");
+        Thread.sleep(700);
+        Assert.assertEquals(2, stubQueries.get());
+        Assert.assertEquals("10.0.0.3", resolve(HOST));
+
+        // DNS服务器不可用时使用过期记录
+        records.clear();
+        Thread.sleep(1500);
+        Assert.assertEquals("10.0.0.3", resolve(HOST));
+        Assert.assertTrue(resolver.getFailures() > 0);
+        Assert.assertTrue(resolver.getStaleHits() > 0);
+    }
+
+    @Test
+    public void unknownHost() throws Exception {
+        resolver(new DnsOptions().setIpv6(false));
+        try {
+            resolve(HOST);
+            Assert.fail();
+        } catch (Exception ignore) {
+        }
+        Assert.assertEquals(1, resolver.getFailures());
+    }
+
+    @Test
+    public void proxyFailover() throws Exception {
+        // 127.0.0.2上没有服务监听，连接失败后换127.0.0.1
+        records.add("127.0.0.2");
+        records.add("127.0.0.1");
+        Vertx vertx = Vertx.vertx();
+        try {
+            vertx.createHttpServer().requestHandler(req -> req.response().end("ok"))
+                    .listen(18896, "127.0.0.1")
+                    .toCompletionStage().toCompletableFuture().get();
+            ReverseHttpProxy proxy = ReverseHttpProxy.create(vertx).port(18895)
+                    .dns(resolver(new DnsOptions().setIpv6(false)))
+                    .addRoute(new ProxyRoute()
+                            .setName("dns")
+                            .setSourceUrl("/*")
+                            .setTargetUrl("http://" + HOST + ":18896"));
+            proxy.start();
+            Thread.sleep(500);
+            HttpClient client = vertx.createHttpClient();
+            for (int i = 0; i < 3; i++) {
+                String body = client.request(HttpMethod.GET, 18895, "127.0.0.1", "/")
+                        .compose(req -> req.send().compose(resp -> resp.body()))
+                        .toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS).toString();
+                Assert.assertEquals("ok", body);
+            }
+            proxy.stop();
+            resolver = null;
+        } finally {
+            vertx.close();
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         String hostname = "reqres.in";
         int iterations = 10;
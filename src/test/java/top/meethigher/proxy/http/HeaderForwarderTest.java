@@ -0,0 +1,57 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.MultiMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HeaderForwarderTest {
+
+    @Test
+    public void isHopByHopHeader() {
+        Assert.assertTrue(HeaderForwarder.isHopByHopHeader("Connection"));
+        Assert.assertTrue(HeaderForwarder.isHopByHopHeader("TRANSFER-ENCODING"));
+        Assert.assertTrue(HeaderForwarder.isHopByHopHeader("te"));
+        Assert.assertFalse(HeaderForwarder.isHopByHopHeader("Content-Type"));
+        Assert.assertFalse(HeaderForwarder.isHopByHopHeader(null));
+    }
+
+    @Test
+    public void copyRequestHeaders() {
+        MultiMap src = MultiMap.caseInsensitiveMultiMap()
+                .add("Host", "meethigher.top")
+                .add(":authority", "meethigher.top")
+                .add("Connection", "keep-alive")
+                .add("Accept", "text/html")
+                .add("X-Custom", "1")
+                .add("X-Custom", "2");
+        MultiMap dst = MultiMap.caseInsensitiveMultiMap();
+        HeaderForwarder.copyRequestHeaders(src, dst);
+        Assert.assertNull(dst.get("Host"));
+        Assert.assertNull(dst.get(":authority"));
+        Assert.assertNull(dst.get("Connection"));
+        Assert.assertEquals("text/html", dst.get("Accept"));
+        Assert.assertEquals(2, dst.getAll("X-Custom").size());
+    }
+
+    @Test
+    public void copyResponseHeaders() {
+        MultiMap src = MultiMap.caseInsensitiveMultiMap()
+                .add("Transfer-Encoding", "chunked")
+                .add("Set-Cookie", "a=1")
+                .add("Set-Cookie", "b=2")
+                .add("Access-Control-Allow-Origin", "*")
+                .add("Content-Type", "application/json");
+
+        MultiMap dst = MultiMap.caseInsensitiveMultiMap();
+        HeaderForwarder.copyResponseHeaders(src, dst, true, false);
+        Assert.assertNull(dst.get("Transfer-Encoding"));
+        Assert.assertEquals(2, dst.getAll("Set-Cookie").size());
+        Assert.assertEquals("*", dst.get("Access-Control-Allow-Origin"));
+
+        dst = MultiMap.caseInsensitiveMultiMap();
+        HeaderForwarder.copyResponseHeaders(src, dst, false, true);
+        Assert.assertTrue(dst.getAll("Set-Cookie").isEmpty());
+        Assert.assertNull(dst.get("Access-Control-Allow-Origin"));
+        Assert.assertEquals("application/json", dst.get("Content-Type"));
+    }
+}
@@ -0,0 +1,63 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class Http2OptionsTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void apply() {
+        HttpServerOptions options = new Http2Options()
+                .setMaxConcurrentStreams(256)
+                .setConnectionWindowSize(1024 * 1024)
+                .apply(new HttpServerOptions());
+        Assert.assertTrue(options.isHttp2ClearTextEnabled());
+        Assert.assertEquals(256, options.getInitialSettings().getMaxConcurrentStreams());
+        Assert.assertEquals(1024 * 1024, options.getHttp2ConnectionWindowSize());
+        Assert.assertFalse(options.isSsl());
+    }
+
+    @Test
+    public void h2cPriorKnowledge() throws Exception {
+        vertx.createHttpServer()
+                .requestHandler(req -> req.response().end(req.version().alpnName()))
+                .listen(18892)
+                .toCompletionStage().toCompletableFuture().get();
+        ReverseHttpProxy proxy = ReverseHttpProxy.create(vertx, "h2c", new Http2Options())
+                .port(18893)
+                .addRoute(new ProxyRoute()
+                        .setName("h2c")
+                        .setSourceUrl("/*")
+                        .setTargetUrl("http://127.0.0.1:18892"));
+        proxy.start();
+        Thread.sleep(500);
+
+        HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+                .setProtocolVersion(HttpVersion.HTTP_2)
+                .setHttp2ClearTextUpgrade(false));
+        // 多个流复用同一条HTTP/2连接，上游仍为HTTP/1.1
+        for (int i = 0; i < 10; i++) {
+            String versions = client.request(HttpMethod.GET, 18893, "127.0.0.1", "/")
+                    .compose(req -> req.send().compose(resp -> resp.body().map(body -> resp.version().alpnName() + " " + body)))
+                    .toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS);
+            Assert.assertEquals("h2 http/1.1", versions);
+        }
+        proxy.stop();
+    }
+}
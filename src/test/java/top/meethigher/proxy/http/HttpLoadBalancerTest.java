@@ -0,0 +1,220 @@
+package top.meethigher.proxy.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+import top.meethigher.proxy.LoadBalancer;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpLoadBalancerTest {
+
+    private List<HttpUpstream> nodes() {
+        List<HttpUpstream> nodes = new ArrayList<>();
+        nodes.add(new HttpUpstream("http://127.0.0.1:888", 5));
+        nodes.add(new HttpUpstream("http://127.0.0.1:889", 1));
+        nodes.add(new HttpUpstream("http://127.0.0.1:890", 1));
+        return nodes;
+    }
+
+    private Map<HttpUpstream, Integer> count(LoadBalancer<HttpUpstream> lb, int total) {
+        Map<HttpUpstream, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < total; i++) {
+            map.merge(lb.next(), 1, Integer::sum);
+        }
+        return map;
+    }
+
+    @Test
+    public void roundRobin() {
+        List<HttpUpstream> nodes = nodes();
+        Map<HttpUpstream, Integer> map = count(HttpRoundRobinLoadBalancer.create(nodes), 300);
+        for (HttpUpstream node : nodes) {
+            Assert.assertEquals(100, map.get(node).intValue());
+        }
+    }
+
+    @Test
+    public void weightedRoundRobin() {
+        List<HttpUpstream> nodes = nodes();
+        HttpUpstream[] schedule = HttpWeightedRoundRobinLoadBalancer.buildSchedule(nodes);
+        // 平滑加权轮询: a a b a c a a
+        Assert.assertEquals(7, schedule.length);
+        Assert.assertNotSame(schedule[1], schedule[2]);
+        Map<HttpUpstream, Integer> map = count(HttpWeightedRoundRobinLoadBalancer.create(nodes), 700);
+        Assert.assertEquals(500, map.get(nodes.get(0)).intValue());
+        Assert.assertEquals(100, map.get(nodes.get(1)).intValue());
+        Assert.assertEquals(100, map.get(nodes.get(2)).intValue());
+    }
+
+    @Test
+    public void leastRequests() {
+        List<HttpUpstream> nodes = nodes();
+        LoadBalancer<HttpUpstream> lb = HttpLeastRequestsLoadBalancer.create(nodes);
+        // 权重5的节点承载5个请求前，都不会比权重1的空闲节点负载更高
+        nodes.get(1).acquire();
+        nodes.get(2).acquire();
+        for (int i = 0; i < 5; i++) {
+            HttpUpstream next = lb.next();
+            Assert.assertSame(nodes.get(0), next);
+            next.acquire();
+        }
+        nodes.get(1).release();
+        Assert.assertSame(nodes.get(1), lb.next());
+    }
+
+    @Test
+    public void powerOfTwoChoices() {
+        List<HttpUpstream> nodes = nodes();
+        nodes.get(0).acquire();
+        nodes.get(0).acquire();
+        nodes.get(0).acquire();
+        nodes.get(0).acquire();
+        nodes.get(0).acquire();
+        nodes.get(0).acquire();
+        LoadBalancer<HttpUpstream> lb = HttpPowerOfTwoChoicesLoadBalancer.create(nodes);
+        Map<HttpUpstream, Integer> map = count(lb, 1000);
+        // 两个候选中包含空闲节点时，一定不会选中高负载节点
+        Assert.assertNull(map.get(nodes.get(0)));
+    }
+
+    private ProxyRoute.OutlierDetection outlier() {
+        return new ProxyRoute.OutlierDetection()
+                .setEnable(true)
+                .setConsecutiveFailures(3)
+                .setBaseEjectionTime(10000)
+                .setMaxEjectionTime(30000)
+                .setSlowStart(0);
+    }
+
+    @Test
+    public void skipEjected() {
+        List<HttpUpstream> nodes = nodes();
+        for (HttpUpstream node : nodes) {
+            node.setOutlierDetection(outlier());
+        }
+        HttpUpstream bad = nodes.get(0);
+        bad.recordFailure();
+        bad.recordFailure();
+        Assert.assertTrue(bad.isAvailable());
+        bad.recordFailure();
+        Assert.assertFalse(bad.isAvailable());
+        List<LoadBalancer<HttpUpstream>> lbs = Arrays.asList(
+                HttpRoundRobinLoadBalancer.create(nodes),
+                HttpWeightedRoundRobinLoadBalancer.create(nodes),
+                HttpLeastRequestsLoadBalancer.create(nodes),
+                HttpPowerOfTwoChoicesLoadBalancer.create(nodes));
+        for (LoadBalancer<HttpUpstream> lb : lbs) {
+            Assert.assertNull(lb.name(), count(lb, 300).get(bad));
+        }
+        // 全部节点不可用时不再过滤
+        for (HttpUpstream node : nodes.subList(1, 3)) {
+            node.recordFailure();
+            node.recordFailure();
+            node.recordFailure();
+        }
+        for (LoadBalancer<HttpUpstream> lb : lbs) {
+            Assert.assertNotNull(lb.name(), lb.next());
+        }
+    }
+
+    @Test
+    public void successResetsFailures() {
+        HttpUpstream node = new HttpUpstream("http://127.0.0.1:888", 1).setOutlierDetection(outlier());
+        node.recordFailure();
+        node.recordFailure();
+        node.recordSuccess();
+        node.recordFailure();
+        node.recordFailure();
+        Assert.assertTrue(node.isAvailable());
+        Assert.assertEquals(0, node.getEjections());
+    }
+
+    @Test
+    public void ejectionTime() {
+        ProxyRoute.OutlierDetection od = outlier();
+        Assert.assertEquals(10000, HttpUpstream.ejectionTime(od, 1));
+        Assert.assertEquals(20000, HttpUpstream.ejectionTime(od, 2));
+        Assert.assertEquals(30000, HttpUpstream.ejectionTime(od, 3));
+        Assert.assertEquals(30000, HttpUpstream.ejectionTime(od, 100));
+    }
+
+    @Test
+    public void activeProbe() {
+        HttpUpstream node = new HttpUpstream("http://127.0.0.1:888", 1);
+        node.recordProbe(false, 2, 2);
+        Assert.assertTrue(node.isAvailable());
+        node.recordProbe(false, 2, 2);
+        Assert.assertFalse(node.isAvailable());
+        node.recordProbe(true, 2, 2);
+        Assert.assertFalse(node.isAvailable());
+        node.recordProbe(true, 2, 2);
+        Assert.assertTrue(node.isAvailable());
+    }
+
+    @Test
+    public void slowStart() {
+        List<HttpUpstream> nodes = new ArrayList<>();
+        nodes.add(new HttpUpstream("http://127.0.0.1:888", 1));
+        nodes.add(new HttpUpstream("http://127.0.0.1:889", 1));
+        HttpUpstream recovering = nodes.get(0).setOutlierDetection(outlier().setSlowStart(3600_000));
+        recovering.recordProbe(false, 1, 1);
+        recovering.recordProbe(true, 1, 1);
+        Assert.assertTrue(recovering.isAvailable());
+        // 刚恢复的节点权重接近0，轮询几乎不会选中
+        Map<HttpUpstream, Integer> map = count(HttpRoundRobinLoadBalancer.create(nodes), 1000);
+        Assert.assertTrue(map.getOrDefault(recovering, 0) < 10);
+        // 最少请求策略中，即使对方有进行中的请求，也优先选择对方
+        nodes.get(1).acquire();
+        Assert.assertSame(nodes.get(1), HttpLeastRequestsLoadBalancer.create(nodes).next());
+    }
+
+    @Test
+    public void expectedStatus() {
+        Assert.assertArrayEquals(new int[]{200, 200}, HttpHealthChecker.parseExpectedStatus("200"));
+        Assert.assertArrayEquals(new int[]{200, 299}, HttpHealthChecker.parseExpectedStatus(" 200 - 299 "));
+        Assert.assertArrayEquals(new int[]{200, 399}, HttpHealthChecker.parseExpectedStatus(null));
+    }
+
+    @Test
+    public void consistentHash() {
+        List<HttpUpstream> nodes = nodes();
+        AtomicInteger routeInFlight = new AtomicInteger();
+        for (HttpUpstream node : nodes) {
+            node.setRouteInFlight(routeInFlight);
+        }
+        HttpConsistentHashLoadBalancer lb = HttpConsistentHashLoadBalancer.create(nodes, 0.25);
+        // 相同的键总是选中相同的节点
+        HttpUpstream sticky = lb.next("10.0.0.8");
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(sticky, lb.next("10.0.0.8"));
+        }
+        // 按权重分布
+        Map<HttpUpstream, Integer> map = new HashMap<>();
+        for (int i = 0; i < 7000; i++) {
+            map.merge(lb.next("client-" + i), 1, Integer::sum);
+        }
+        Assert.assertTrue(map.get(nodes.get(0)) > 4000);
+        // 节点满载时改选其他节点，释放后恢复
+        for (int i = 0; i < 10; i++) {
+            sticky.acquire();
+        }
+        Assert.assertNotSame(sticky, lb.next("10.0.0.8"));
+        for (int i = 0; i < 10; i++) {
+            sticky.release();
+        }
+        Assert.assertSame(sticky, lb.next("10.0.0.8"));
+        // 不可用的节点被跳过
+        sticky.setOutlierDetection(outlier().setConsecutiveFailures(1));
+        sticky.recordFailure();
+        Assert.assertNotSame(sticky, lb.next("10.0.0.8"));
+    }
+
+    @Test
+    public void cookieValue() {
+        Assert.assertEquals("abc", CompiledRoute.cookieValue("theme=dark; sid=abc; lang=zh", "sid"));
+        Assert.assertEquals("abc", CompiledRoute.cookieValue("sid=abc", "sid"));
+        Assert.assertNull(CompiledRoute.cookieValue("xsid=abc; sid2=def", "sid"));
+        Assert.assertNull(CompiledRoute.cookieValue(null, "sid"));
+    }
+}
@@ -0,0 +1,60 @@
+package top.meethigher.proxy.http;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程并发下限流判断的耗时，线程数对应EventLoop数量
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    private RateLimiter limiter;
+
+    private String[] clients;
+
+    @Setup
+    public void setup() {
+        limiter = new RateLimiter(ProxyRoute.RateLimitKey.CLIENT_IP, null, 1_000_000, 1000, 100000);
+        clients = new String[10000];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+    }
+
+    @Benchmark
+    public long perClient(Cursor cursor) {
+        String client = clients[cursor.index++ % clients.length];
+        return limiter.tryAcquire(client, System.nanoTime());
+    }
+
+    @Benchmark
+    public long hotClient() {
+        // 所有线程争用同一个桶
+        return limiter.tryAcquire(clients[0], System.nanoTime());
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
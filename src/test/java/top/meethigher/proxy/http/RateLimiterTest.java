@@ -0,0 +1,69 @@
+package top.meethigher.proxy.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void burstAndRefill() {
+        RateLimiter limiter = new RateLimiter(ProxyRoute.RateLimitKey.CLIENT_IP, null, 10, 5, 100);
+        long now = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(0, limiter.tryAcquire("10.0.0.1", now));
+        }
+        long wait = limiter.tryAcquire("10.0.0.1", now);
+        // 每秒10个令牌，下一个令牌100ms后补充
+        Assert.assertEquals(SECOND / 10, wait);
+        Assert.assertEquals(0, limiter.tryAcquire("10.0.0.1", now + wait));
+        // 不同的键互不影响
+        Assert.assertEquals(0, limiter.tryAcquire("10.0.0.2", now));
+    }
+
+    @Test
+    public void boundedKeys() {
+        RateLimiter limiter = new RateLimiter(ProxyRoute.RateLimitKey.CLIENT_IP, null, 1, 1, 3);
+        long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, limiter.tryAcquire("10.0.0." + i, now));
+        }
+        Assert.assertEquals(3, limiter.size());
+        // 表满且没有闲置的桶时，新的键共用溢出桶
+        Assert.assertEquals(0, limiter.tryAcquire("10.0.1.1", now));
+        Assert.assertTrue(limiter.tryAcquire("10.0.1.1", now) > 0);
+        Assert.assertEquals(3, limiter.size());
+        // 令牌补满的桶被清理后，新的键重新拥有独立的桶
+        Assert.assertEquals(0, limiter.tryAcquire("10.0.1.3", now + 2 * SECOND));
+        Assert.assertEquals(1, limiter.size());
+    }
+
+    @Test
+    public void incrementalSweep() {
+        int maxKeys = RateLimiter.SWEEP_BATCH * 2 + 100;
+        RateLimiter limiter = new RateLimiter(ProxyRoute.RateLimitKey.CLIENT_IP, null, 1, 1, maxKeys);
+        long now = System.nanoTime();
+        for (int i = 0; i < maxKeys; i++) {
+            Assert.assertEquals(0, limiter.tryAcquire("key-" + i, now));
+        }
+        Assert.assertEquals(maxKeys, limiter.size());
+        // 桶闲置后，单次清理最多检查一批，新的键立即拥有独立的桶
+        long later = now + 2 * SECOND;
+        Assert.assertEquals(0, limiter.tryAcquire("new-0", later));
+        Assert.assertEquals(maxKeys - RateLimiter.SWEEP_BATCH + 1, limiter.size());
+        // 同一清理周期内不再清理，后续的新键使用已腾出的位置
+        for (int i = 1; i < 100; i++) {
+            Assert.assertEquals(0, limiter.tryAcquire("new-" + i, later));
+        }
+        Assert.assertEquals(maxKeys - RateLimiter.SWEEP_BATCH + 100, limiter.size());
+        // 新的键各自限流，不共用溢出桶
+        Assert.assertTrue(limiter.tryAcquire("new-1", later) > 0);
+        Assert.assertEquals(0, limiter.tryAcquire("new-2", later + SECOND));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void headerRequired() {
+        new RateLimiter(ProxyRoute.RateLimitKey.HEADER, null, 10, 10, 100);
+    }
+}
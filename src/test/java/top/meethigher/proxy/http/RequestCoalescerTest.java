@@ -0,0 +1,165 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RequestCoalescerTest {
+
+    private static class RecordingSubscriber implements RequestCoalescer.Subscriber {
+        final List<String> events = new ArrayList<>();
+        final long maxBytes;
+        long received;
+
+        RecordingSubscriber(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void onHeaders(int statusCode, MultiMap headers) {
+            events.add("headers:" + statusCode);
+        }
+
+        @Override
+        public boolean onChunk(Buffer chunk) {
+            if (received + chunk.length() > maxBytes) {
+                events.add("detach");
+                return false;
+            }
+            received += chunk.length();
+            events.add("chunk:" + chunk.toString());
+            return true;
+        }
+
+        @Override
+        public void onEnd(boolean succeeded) {
+            events.add("end:" + succeeded);
+        }
+
+        @Override
+        public void onAbort() {
+            events.add("abort");
+        }
+    }
+
+    @Test
+    public void testFollowersShareLeaderResponse() {
+        RequestCoalescer coalescer = new RequestCoalescer(1024);
+        RequestCoalescer.Flight flight = coalescer.lead("GET /a");
+        assertNotNull(flight);
+        assertNull(coalescer.lead("GET /a"));
+
+        RecordingSubscriber follower = new RecordingSubscriber(Long.MAX_VALUE);
+        assertTrue(coalescer.follow("GET /a", follower));
+
+        flight.headers(200, MultiMap.caseInsensitiveMultiMap().add("Content-Type", "text/plain"));
+        // 响应头到达后不再接受新的follower，相同请求会成为新的leader
+        assertFalse(coalescer.follow("GET /a", new RecordingSubscriber(Long.MAX_VALUE)));
+        assertEquals(0, coalescer.inFlightSize());
+
+        flight.chunk(Buffer.buffer("hello"));
+        flight.chunk(Buffer.buffer("world"));
+        flight.finish(true);
+        flight.finish(false);
+        flight.cancel();
+
+        List<String> expected = new ArrayList<>();
+        expected.add("headers:200");
+        expected.add("chunk:hello");
+        expected.add("chunk:world");
+        expected.add("end:true");
+        assertEquals(expected, follower.events);
+    }
+
+    @Test
+    public void testAbortBeforeHeaders() {
+        RequestCoalescer coalescer = new RequestCoalescer(1024);
+        RequestCoalescer.Flight flight = coalescer.lead("GET /b");
+        RecordingSubscriber follower = new RecordingSubscriber(Long.MAX_VALUE);
+        assertTrue(coalescer.follow("GET /b", follower));
+
+        flight.cancel();
+        flight.finish(true);
+        assertEquals(1, follower.events.size());
+        assertEquals("abort", follower.events.get(0));
+        assertEquals(0, coalescer.inFlightSize());
+        assertNotNull(coalescer.lead("GET /b"));
+    }
+
+    @Test
+    public void testUnshareableResponseAborts() {
+        RequestCoalescer coalescer = new RequestCoalescer(1024);
+        RequestCoalescer.Flight flight = coalescer.lead("GET /c");
+        RecordingSubscriber follower = new RecordingSubscriber(Long.MAX_VALUE);
+        coalescer.follow("GET /c", follower);
+
+        flight.headers(200, MultiMap.caseInsensitiveMultiMap().add("Set-Cookie", "sid=1"));
+        flight.chunk(Buffer.buffer("secret"));
+        flight.finish(true);
+        assertEquals(1, follower.events.size());
+        assertEquals("abort", follower.events.get(0));
+    }
+
+    @Test
+    public void testSlowFollowerDetaches() {
+        RequestCoalescer coalescer = new RequestCoalescer(1024);
+        RequestCoalescer.Flight flight = coalescer.lead("GET /d");
+        RecordingSubscriber slow = new RecordingSubscriber(4);
+        RecordingSubscriber fast = new RecordingSubscriber(Long.MAX_VALUE);
+        coalescer.follow("GET /d", slow);
+        coalescer.follow("GET /d", fast);
+
+        flight.headers(200, MultiMap.caseInsensitiveMultiMap());
+        flight.chunk(Buffer.buffer("abc"));
+        flight.chunk(Buffer.buffer("def"));
+        flight.chunk(Buffer.buffer("ghi"));
+        flight.finish(true);
+
+        assertEquals("detach", slow.events.get(slow.events.size() - 1));
+        assertEquals(3, slow.events.size());
+        assertEquals("end:true", fast.events.get(fast.events.size() - 1));
+        assertEquals(9, fast.received);
+    }
+
+    @Test
+    public void testIsShareable() {
+        assertTrue(RequestCoalescer.isShareable(MultiMap.caseInsensitiveMultiMap().add("Cache-Control", "public, max-age=60")));
+        assertFalse(RequestCoalescer.isShareable(MultiMap.caseInsensitiveMultiMap().add("Cache-Control", "private")));
+        assertFalse(RequestCoalescer.isShareable(MultiMap.caseInsensitiveMultiMap().add("Cache-Control", "no-store")));
+        assertFalse(RequestCoalescer.isShareable(MultiMap.caseInsensitiveMultiMap().add("Vary", "*")));
+        assertTrue(RequestCoalescer.isShareable(MultiMap.caseInsensitiveMultiMap().add("Vary", "Accept-Encoding")));
+        assertTrue(RequestCoalescer.isShareable(MultiMap.caseInsensitiveMultiMap().add("Vary", "accept-encoding, Cookie")));
+        assertFalse(RequestCoalescer.isShareable(MultiMap.caseInsensitiveMultiMap().add("Vary", "Accept-Encoding, Accept-Language")));
+        assertFalse(RequestCoalescer.isShareable(MultiMap.caseInsensitiveMultiMap()
+                .add("Vary", "Accept-Encoding")
+                .add("Vary", "User-Agent")));
+    }
+
+    @Test
+    public void testVaryOutsideKeyAborts() {
+        // Accept-Language不在合并键中，语言不同的两个follower会挂在同一个leader上
+        RequestCoalescer coalescer = new RequestCoalescer(1024);
+        RequestCoalescer.Flight flight = coalescer.lead("GET /e");
+        RecordingSubscriber zh = new RecordingSubscriber(Long.MAX_VALUE);
+        RecordingSubscriber en = new RecordingSubscriber(Long.MAX_VALUE);
+        assertTrue(coalescer.follow("GET /e", zh));
+        assertTrue(coalescer.follow("GET /e", en));
+
+        // leader的响应按Accept-Language区分，两个follower都不能共享，需各自独立请求上游
+        flight.headers(200, MultiMap.caseInsensitiveMultiMap()
+                .add("Content-Language", "zh-CN")
+                .add("Vary", "Accept-Language"));
+        flight.chunk(Buffer.buffer("你好"));
+        flight.finish(true);
+        assertEquals(1, zh.events.size());
+        assertEquals("abort", zh.events.get(0));
+        assertEquals(1, en.events.size());
+        assertEquals("abort", en.events.get(0));
+        assertEquals(0, coalescer.inFlightSize());
+    }
+}
@@ -0,0 +1,67 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class RequestTimeoutsTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    private final Context context = vertx.getOrCreateContext();
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void firstByteTimeout() throws Exception {
+        CompletableFuture<RequestTimeouts.Kind> expired = new CompletableFuture<>();
+        ProxyRoute.Timeout config = new ProxyRoute.Timeout().setEnable(true).setFirstByteTimeout(50).setIdleTimeout(0);
+        context.runOnContext(v -> new RequestTimeouts(context, config, expired::complete).awaitFirstByte());
+        Assert.assertEquals(RequestTimeouts.Kind.FIRST_BYTE, expired.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void idleTimeoutFollowsActivity() throws Exception {
+        List<RequestTimeouts.Kind> kinds = new CopyOnWriteArrayList<>();
+        CompletableFuture<Long> expired = new CompletableFuture<>();
+        ProxyRoute.Timeout config = new ProxyRoute.Timeout().setEnable(true).setIdleTimeout(100);
+        long start = System.nanoTime();
+        context.runOnContext(v -> {
+            RequestTimeouts timeouts = new RequestTimeouts(context, config, kind -> {
+                kinds.add(kind);
+                expired.complete(System.nanoTime() - start);
+            });
+            timeouts.streaming();
+            // 持续有数据时不会超时
+            long timerId = vertx.setPeriodic(20, id -> timeouts.activity());
+            vertx.setTimer(300, id -> vertx.cancelTimer(timerId));
+        });
+        long elapsed = expired.get(2, TimeUnit.SECONDS);
+        Assert.assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(380));
+        Assert.assertEquals(1, kinds.size());
+        Assert.assertEquals(RequestTimeouts.Kind.IDLE, kinds.get(0));
+    }
+
+    @Test
+    public void totalTimeoutAndCancel() throws Exception {
+        CompletableFuture<RequestTimeouts.Kind> expired = new CompletableFuture<>();
+        ProxyRoute.Timeout total = new ProxyRoute.Timeout().setEnable(true).setFirstByteTimeout(5000).setTotalTimeout(50);
+        context.runOnContext(v -> new RequestTimeouts(context, total, expired::complete).awaitFirstByte());
+        Assert.assertEquals(RequestTimeouts.Kind.TOTAL, expired.get(1, TimeUnit.SECONDS));
+
+        CompletableFuture<RequestTimeouts.Kind> cancelled = new CompletableFuture<>();
+        context.runOnContext(v -> new RequestTimeouts(context, total, cancelled::complete).cancel());
+        Thread.sleep(200);
+        Assert.assertFalse(cancelled.isDone());
+    }
+}
@@ -0,0 +1,194 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void budgetCapsAmplification() {
+        RetryBudget budget = new RetryBudget(0.1, 10);
+        // 初始允许突发10次
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(budget.tryWithdraw());
+        }
+        Assert.assertFalse(budget.tryWithdraw());
+        // 持续故障时，每100个原始请求最多重试10次
+        int retries = 0;
+        for (int i = 0; i < 1000; i++) {
+            budget.deposit();
+            if (budget.tryWithdraw()) {
+                retries++;
+            }
+        }
+        Assert.assertEquals(100, retries);
+        Assert.assertTrue(budget.getExhausted() > 0);
+    }
+
+    @Test
+    public void budgetIsBounded() {
+        RetryBudget budget = new RetryBudget(0.5, 2);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        Assert.assertEquals(2, budget.getTokens(), 0.001);
+    }
+
+    @Test
+    public void hedgeDelayFollowsPercentile() {
+        RetryPolicy policy = new RetryPolicy(new ProxyRoute.Retry().setEnable(true).setHedge(true)
+                .setHedgePercentile(90).setHedgeMinDelay(5).setHedgeMaxDelay(500));
+        // 样本不足时使用上限
+        Assert.assertEquals(500, policy.getHedgeDelay());
+        for (int i = 0; i < 1280; i++) {
+            policy.recordLatency(i % 10 == 0 ? 200 : 20);
+        }
+        Assert.assertEquals(20, policy.getHedgeDelay());
+    }
+
+    @Test
+    public void hedgeDelayIsClamped() {
+        RetryPolicy policy = new RetryPolicy(new ProxyRoute.Retry().setEnable(true).setHedge(true)
+                .setHedgePercentile(95).setHedgeMinDelay(5).setHedgeMaxDelay(500));
+        for (int i = 0; i < 1280; i++) {
+            policy.recordLatency(1);
+        }
+        Assert.assertEquals(5, policy.getHedgeDelay());
+        for (int i = 0; i < 12800; i++) {
+            policy.recordLatency(60_000);
+        }
+        Assert.assertEquals(500, policy.getHedgeDelay());
+    }
+
+    @Test
+    public void onlyIdempotentMethods() {
+        Assert.assertTrue(RetryPolicy.isIdempotent(HttpMethod.GET));
+        Assert.assertTrue(RetryPolicy.isIdempotent(HttpMethod.PUT));
+        Assert.assertTrue(RetryPolicy.isIdempotent(HttpMethod.DELETE));
+        Assert.assertFalse(RetryPolicy.isIdempotent(HttpMethod.POST));
+        Assert.assertFalse(RetryPolicy.isIdempotent(HttpMethod.PATCH));
+    }
+
+    @Test
+    public void retryReleasesPermit() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            Queue<HttpServerResponse> held = new ConcurrentLinkedQueue<>();
+            vertx.createHttpServer()
+                    .requestHandler(req -> held.add(req.response()))
+                    .listen(18907)
+                    .toCompletionStage().toCompletableFuture().get();
+            // 首个节点没有监听，连接失败后重试到第二个节点
+            ProxyRoute route = new ProxyRoute()
+                    .setName("retry")
+                    .setSourceUrl("/*")
+                    .setTargetUrl("http://127.0.0.1:18907")
+                    .addUpstream("http://127.0.0.1:18906", 1)
+                    .addUpstream("http://127.0.0.1:18907", 1)
+                    .setRetry(new ProxyRoute.Retry().setEnable(true))
+                    .setConcurrencyLimit(new ProxyRoute.ConcurrencyLimit().setEnable(true));
+            ReverseHttpProxy proxy = ReverseHttpProxy.create(vertx).port(18908).addRoute(route);
+            proxy.start();
+            Thread.sleep(500);
+
+            HttpClient client = vertx.createHttpClient();
+            Future<Buffer> body = client.request(HttpMethod.GET, 18908, "127.0.0.1", "/retry")
+                    .compose(req -> req.send())
+                    .compose(HttpClientResponse::body);
+            long deadline = System.currentTimeMillis() + 2000;
+            while (held.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            Assert.assertEquals(1, held.size());
+
+            // 重试进行中，失败的尝试已归还并发许可与上游节点的计数
+            ConcurrencyLimiter failed = proxy.getConcurrencyLimiter("http://127.0.0.1:18906");
+            ConcurrencyLimiter retried = proxy.getConcurrencyLimiter("http://127.0.0.1:18907");
+            List<HttpUpstream> upstreams = ((CompiledRoute) proxy.getRoutes().get(0).getMetadata(ReverseHttpProxy.INTERNAL_ROUTE)).getUpstreams();
+            Assert.assertEquals(0, failed.getInFlight());
+            Assert.assertEquals(0, upstreams.get(0).getInFlight());
+            Assert.assertEquals(1, retried.getInFlight());
+            Assert.assertEquals(1, upstreams.get(1).getInFlight());
+
+            held.poll().end("ok");
+            Assert.assertEquals("ok", body.toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS).toString());
+            Thread.sleep(200);
+            Assert.assertEquals(0, retried.getInFlight());
+            Assert.assertEquals(0, upstreams.get(1).getInFlight());
+            proxy.stop();
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test
+    public void hedgeReleasesLoserPermit() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            // 首个节点从不响应，第二个节点先输出部分响应体
+            vertx.createHttpServer()
+                    .requestHandler(req -> {
+                    })
+                    .listen(18909)
+                    .toCompletionStage().toCompletableFuture().get();
+            Queue<HttpServerResponse> held = new ConcurrentLinkedQueue<>();
+            vertx.createHttpServer()
+                    .requestHandler(req -> {
+                        req.response().setChunked(true).write("a");
+                        held.add(req.response());
+                    })
+                    .listen(18910)
+                    .toCompletionStage().toCompletableFuture().get();
+            ProxyRoute route = new ProxyRoute()
+                    .setName("hedge")
+                    .setSourceUrl("/*")
+                    .setTargetUrl("http://127.0.0.1:18910")
+                    .addUpstream("http://127.0.0.1:18909", 1)
+                    .addUpstream("http://127.0.0.1:18910", 1)
+                    .setRetry(new ProxyRoute.Retry().setEnable(true).setHedge(true).setHedgeMinDelay(5).setHedgeMaxDelay(50))
+                    .setConcurrencyLimit(new ProxyRoute.ConcurrencyLimit().setEnable(true));
+            ReverseHttpProxy proxy = ReverseHttpProxy.create(vertx).port(18911).addRoute(route);
+            proxy.start();
+            Thread.sleep(500);
+
+            HttpClient client = vertx.createHttpClient();
+            // 在收到响应头的回调中开始读取响应体，不会错过已到达的数据
+            Future<Buffer> body = client.request(HttpMethod.GET, 18911, "127.0.0.1", "/hedge")
+                    .compose(req -> req.send())
+                    .map(HttpClientResponse::body)
+                    .toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS);
+            Assert.assertEquals(1, held.size());
+
+            // 对冲胜出后仍在输出响应体，落败的首个源站已归还并发名额与上游节点的计数
+            ConcurrencyLimiter loser = proxy.getConcurrencyLimiter("http://127.0.0.1:18909");
+            ConcurrencyLimiter winner = proxy.getConcurrencyLimiter("http://127.0.0.1:18910");
+            List<HttpUpstream> upstreams = ((CompiledRoute) proxy.getRoutes().get(0).getMetadata(ReverseHttpProxy.INTERNAL_ROUTE)).getUpstreams();
+            Thread.sleep(100);
+            Assert.assertEquals(0, loser.getInFlight());
+            Assert.assertEquals(0, upstreams.get(0).getInFlight());
+            Assert.assertEquals(1, winner.getInFlight());
+            Assert.assertEquals(1, upstreams.get(1).getInFlight());
+
+            held.poll().end("b");
+            Assert.assertEquals("ab", body.toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS).toString());
+            Thread.sleep(200);
+            Assert.assertEquals(0, winner.getInFlight());
+            Assert.assertEquals(0, upstreams.get(1).getInFlight());
+            proxy.stop();
+        } finally {
+            vertx.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同实例数下代理的每秒请求数。上游与压测客户端各自使用独立的Vertx，避免与代理争用EventLoop
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class ReverseHttpProxyClusterBenchmark {
+
+    private static final int UPSTREAM_PORT = 18880;
+
+    private static final int PROXY_PORT = 18881;
+
+    @Param({"1", "2", "4", "8"})
+    public int instances;
+
+    private Vertx upstreamVertx;
+
+    private Vertx proxyVertx;
+
+    private Vertx clientVertx;
+
+    private ReverseHttpProxyCluster cluster;
+
+    private HttpClient client;
+
+    @Setup
+    public void setup() throws Exception {
+        upstreamVertx = Vertx.vertx();
+        upstreamVertx.deployVerticle(() -> new AbstractVerticle() {
+            @Override
+            public void start(Promise<Void> startPromise) {
+                vertx.createHttpServer()
+                        .requestHandler(req -> req.response().end("ok"))
+                        .listen(UPSTREAM_PORT)
+                        .<Void>mapEmpty()
+                        .onComplete(startPromise);
+            }
+        }, new DeploymentOptions().setInstances(8)).toCompletionStage().toCompletableFuture().get();
+
+        proxyVertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(instances));
+        cluster = ReverseHttpProxyCluster.create(proxyVertx, "benchmark")
+                .instances(instances)
+                .port(PROXY_PORT)
+                .httpClientOptions(new HttpClientOptions(), new PoolOptions().setHttp1MaxSize(64))
+                .addRoute(new ProxyRoute()
+                        .setName("benchmark")
+                        .setSourceUrl("/*")
+                        .setTargetUrl("http://127.0.0.1:" + UPSTREAM_PORT)
+                        .setLog(new ProxyRoute.Log().setEnable(false)));
+        cluster.start().toCompletionStage().toCompletableFuture().get();
+
+        clientVertx = Vertx.vertx();
+        client = clientVertx.createHttpClient(new HttpClientOptions(), new PoolOptions().setHttp1MaxSize(64));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        cluster.stop().toCompletionStage().toCompletableFuture().get();
+        clientVertx.close().toCompletionStage().toCompletableFuture().get();
+        proxyVertx.close().toCompletionStage().toCompletableFuture().get();
+        upstreamVertx.close().toCompletionStage().toCompletableFuture().get();
+    }
+
+    @Benchmark
+    public Buffer proxy() throws Exception {
+        return client.request(HttpMethod.GET, PROXY_PORT, "127.0.0.1", "/hello")
+                .compose(req -> req.send().compose(HttpClientResponse::body))
+                .toCompletionStage().toCompletableFuture().get();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ReverseHttpProxyClusterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
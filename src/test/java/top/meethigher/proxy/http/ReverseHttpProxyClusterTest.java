@@ -0,0 +1,92 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReverseHttpProxyClusterTest {
+
+    private static final int INSTANCES = 3;
+
+    private final Vertx vertx = Vertx.vertx();
+
+    /**
+     * 上游看到的来自代理的连接，每个实例各自的HttpClient对应不同的连接
+     */
+    private final Set<String> upstreamConnections = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger closedConnections = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    private ProxyRoute route(String name, String sourceUrl) {
+        return new ProxyRoute()
+                .setName(name)
+                .setSourceUrl(sourceUrl)
+                .setTargetUrl("http://127.0.0.1:18902");
+    }
+
+    private HttpClientResponse get(HttpClient client, String uri) throws Exception {
+        return client.request(HttpMethod.GET, 18903, "127.0.0.1", uri)
+                .compose(req -> req.send())
+                .compose(resp -> resp.body().map(body -> resp))
+                .toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void cluster() throws Exception {
+        vertx.createHttpServer()
+                .connectionHandler(conn -> {
+                    upstreamConnections.add(conn.remoteAddress().toString());
+                    conn.closeHandler(v -> closedConnections.incrementAndGet());
+                })
+                .requestHandler(req -> req.response().end(req.path()))
+                .listen(18902)
+                .toCompletionStage().toCompletableFuture().get();
+        ReverseHttpProxyCluster cluster = ReverseHttpProxyCluster.create(vertx)
+                .instances(INSTANCES)
+                .port(18903)
+                .addRoute(route("a", "/a/*"));
+        cluster.start().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        // 每个请求新建连接，新连接轮流分配给各实例，各实例经自己的连接池访问上游
+        HttpClient client = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(false));
+        for (int i = 0; i < INSTANCES * 2; i++) {
+            Assert.assertEquals(200, get(client, "/a/" + i).statusCode());
+        }
+        Assert.assertEquals(INSTANCES, upstreamConnections.size());
+
+        // 启动后添加与删除的路由对所有实例可见
+        cluster.addRoute(route("b", "/b/*"));
+        for (int i = 0; i < INSTANCES; i++) {
+            Assert.assertEquals(200, get(client, "/b/" + i).statusCode());
+        }
+        cluster.removeRoute("a");
+        for (int i = 0; i < INSTANCES; i++) {
+            Assert.assertEquals(404, get(client, "/a/" + i).statusCode());
+        }
+
+        // 停止后不再监听端口，各实例到上游的连接全部关闭
+        cluster.stop().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        Thread.sleep(200);
+        Assert.assertEquals(INSTANCES, closedConnections.get());
+        try {
+            get(client, "/b/0");
+            Assert.fail("cluster is still listening");
+        } catch (Exception ignore) {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Vertx;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RouteConfigTest {
+
+    @Test
+    public void parse() {
+        List<ProxyRoute> routes = RouteConfig.parse("{\"routes\": [" +
+                "{\"name\": \"api\", \"sourceUrl\": \"/api/*\", \"targetUrl\": \"http://127.0.0.1:888\", \"cache\": {\"enable\": true}}," +
+                "{\"sourceUrl\": \"/*\", \"host\": \"www.meethigher.top\", \"loadBalance\": \"WEIGHTED_ROUND_ROBIN\"," +
+                " \"upstreams\": [{\"targetUrl\": \"http://127.0.0.1:889\", \"weight\": 2}, {\"targetUrl\": \"http://127.0.0.1:890\"}]}" +
+                "]}");
+        Assert.assertEquals(2, routes.size());
+        ProxyRoute api = routes.get(0);
+        Assert.assertEquals("api", api.getName());
+        Assert.assertTrue(api.getCache().isEnable());
+        Assert.assertEquals(new ProxyRoute.Cache().getMaxBytes(), api.getCache().getMaxBytes());
+        ProxyRoute web = routes.get(1);
+        Assert.assertEquals("/*", web.getName());
+        Assert.assertEquals("www.meethigher.top", web.getHost());
+        Assert.assertEquals(ProxyRoute.LoadBalance.WEIGHTED_ROUND_ROBIN, web.getLoadBalance());
+        Assert.assertEquals(2, web.getUpstreams().size());
+        Assert.assertEquals(1, web.getUpstreams().get(1).getWeight());
+
+        Assert.assertEquals(1, RouteConfig.parse("[{\"sourceUrl\": \"/*\", \"targetUrl\": \"http://127.0.0.1:888\"}]").size());
+    }
+
+    @Test
+    public void replaceRoutesReusesUnchanged() {
+        Vertx vertx = Vertx.vertx();
+        try {
+            ReverseHttpProxy proxy = ReverseHttpProxy.create(vertx).enableRouteTable();
+            List<ProxyRoute> routes = new ArrayList<>();
+            for (int i = 0; i < 10000; i++) {
+                routes.add(new ProxyRoute().setName("r" + i).setSourceUrl("/r" + i + "/*").setTargetUrl("http://127.0.0.1:888"));
+            }
+            proxy.replaceRoutes(routes);
+            RouteTable<ReverseHttpProxy.RouteBinding> before = proxy.getRouteTable();
+            Assert.assertEquals(10000, before.size());
+
+            routes.set(0, new ProxyRoute().setName("r0").setSourceUrl("/r0/*").setTargetUrl("http://127.0.0.1:999"));
+            routes.remove(1);
+            long start = System.currentTimeMillis();
+            proxy.replaceRoutes(routes);
+            long elapsed = System.currentTimeMillis() - start;
+            RouteTable<ReverseHttpProxy.RouteBinding> after = proxy.getRouteTable();
+            Assert.assertEquals(9999, after.size());
+            Assert.assertNotSame(before.getEntries().get(0).getValue(), after.getEntries().get(0).getValue());
+            Assert.assertSame(before.getEntries().get(2).getValue(), after.getEntries().get(1).getValue());
+            Assert.assertNull(after.match(null, "/r1/x"));
+            Assert.assertEquals("http://127.0.0.1:999",
+                    after.match(null, "/r0/x").getValue().getRoute().getTargetUrl());
+            Assert.assertTrue("reload took " + elapsed + " ms", elapsed < 2000);
+        } finally {
+            vertx.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package top.meethigher.proxy.http;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比基数树路由表与按顺序逐条匹配在不同路由数量下的查找耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteTableBenchmark {
+
+    @Param({"10", "1000", "50000"})
+    public int routes;
+
+    private RouteTable<String> table;
+
+    /**
+     * 与Vertx Router相同，按顺序逐条判断前缀
+     */
+    private String[] prefixes;
+
+    private String[] paths;
+
+    private int index;
+
+    @Setup
+    public void setup() {
+        List<RouteTable.Entry<String>> entries = new ArrayList<>(routes);
+        prefixes = new String[routes];
+        for (int i = 0; i < routes; i++) {
+            String prefix = "/service-" + i + "/api";
+            prefixes[i] = prefix;
+            entries.add(new RouteTable.Entry<>("r" + i, null, prefix + "/*", 0, "r" + i));
+        }
+        table = RouteTable.of(entries);
+        Random random = new Random(7);
+        paths = new String[1024];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "/service-" + random.nextInt(routes) + "/api/user/" + i;
+        }
+    }
+
+    private String nextPath() {
+        return paths[index++ & (paths.length - 1)];
+    }
+
+    @Benchmark
+    public void linear(Blackhole bh) {
+        String path = nextPath();
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/')) {
+                bh.consume(prefix);
+                return;
+            }
+        }
+    }
+
+    @Benchmark
+    public void trie(Blackhole bh) {
+        bh.consume(table.match(null, nextPath()));
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(RouteTableBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,99 @@
+package top.meethigher.proxy.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RouteTableTest {
+
+    private static String match(RouteTable<String> table, String host, String path) {
+        RouteTable.Entry<String> entry = table.match(host, path);
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Test
+    public void longestMatch() {
+        RouteTable<String> table = RouteTable.<String>empty()
+                .add(new RouteTable.Entry<>("root", null, "/*", 0, "root"))
+                .add(new RouteTable.Entry<>("api", null, "/api/*", 0, "api"))
+                .add(new RouteTable.Entry<>("user", null, "/api/user/*", 0, "user"))
+                .add(new RouteTable.Entry<>("exact", null, "/api/user/info", 0, "exact"))
+                .add(new RouteTable.Entry<>("raw", null, "/app*", 0, "raw"));
+
+        Assert.assertEquals("root", match(table, null, "/"));
+        Assert.assertEquals("root", match(table, null, "/other"));
+        Assert.assertEquals("api", match(table, null, "/api"));
+        Assert.assertEquals("api", match(table, null, "/api/"));
+        Assert.assertEquals("api", match(table, null, "/api/order/1"));
+        // /api/*只在路径段边界匹配
+        Assert.assertEquals("root", match(table, null, "/apix"));
+        Assert.assertEquals("user", match(table, null, "/api/user"));
+        Assert.assertEquals("user", match(table, null, "/api/user/list"));
+        Assert.assertEquals("exact", match(table, null, "/api/user/info"));
+        Assert.assertEquals("exact", match(table, null, "/api/user/info/"));
+        Assert.assertEquals("user", match(table, null, "/api/user/infos"));
+        Assert.assertEquals("raw", match(table, null, "/application"));
+        Assert.assertEquals("raw", match(table, null, "/app"));
+    }
+
+    @Test
+    public void noFallback() {
+        RouteTable<String> table = RouteTable.<String>empty()
+                .add(new RouteTable.Entry<>("a", null, "/a/b", 0, "a"));
+        Assert.assertNull(match(table, null, "/a"));
+        Assert.assertNull(match(table, null, "/a/bc"));
+        Assert.assertEquals("a", match(table, null, "/a/b"));
+    }
+
+    @Test
+    public void orderAndDuplicates() {
+        RouteTable<String> table = RouteTable.<String>empty()
+                .add(new RouteTable.Entry<>("first", null, "/same/*", 0, "first"))
+                .add(new RouteTable.Entry<>("second", null, "/same/*", 0, "second"))
+                .add(new RouteTable.Entry<>("priority", null, "/same/*", -1, "priority"));
+        Assert.assertEquals("priority", match(table, null, "/same/x"));
+        table = table.remove("priority");
+        Assert.assertEquals("first", match(table, null, "/same/x"));
+        table = table.remove("first");
+        Assert.assertEquals("second", match(table, null, "/same/x"));
+        Assert.assertSame(table, table.remove("missing"));
+    }
+
+    @Test
+    public void hostDispatch() {
+        RouteTable<String> table = RouteTable.<String>empty()
+                .add(new RouteTable.Entry<>("any", null, "/*", 0, "any"))
+                .add(new RouteTable.Entry<>("api", "API.meethigher.top", "/*", 0, "api"))
+                .add(new RouteTable.Entry<>("v6", "[::1]", "/v6/*", 0, "v6"));
+        Assert.assertEquals("api", match(table, "api.meethigher.top:8080", "/x"));
+        Assert.assertEquals("any", match(table, "www.meethigher.top", "/x"));
+        Assert.assertEquals("any", match(table, null, "/x"));
+        Assert.assertEquals("v6", match(table, "[::1]:8080", "/v6/a"));
+        // host专属的树未命中时，回退到不限host的树
+        Assert.assertEquals("any", match(table, "[::1]:8080", "/x"));
+    }
+
+    @Test
+    public void supported() {
+        Assert.assertTrue(RouteTable.isSupported("/*"));
+        Assert.assertTrue(RouteTable.isSupported("/api/v1"));
+        Assert.assertFalse(RouteTable.isSupported("/user/:id"));
+        Assert.assertFalse(RouteTable.isSupported("/a/*/b"));
+        Assert.assertFalse(RouteTable.isSupported("api"));
+    }
+
+    @Test
+    public void largeTable() {
+        List<RouteTable.Entry<String>> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            entries.add(new RouteTable.Entry<>("r" + i, null, "/service" + i + "/*", 0, "r" + i));
+        }
+        RouteTable<String> table = RouteTable.of(entries);
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertEquals("r" + i, match(table, null, "/service" + i + "/api/x"));
+        }
+        Assert.assertNull(match(table, null, "/service/api"));
+    }
+}
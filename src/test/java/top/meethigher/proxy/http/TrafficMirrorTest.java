@@ -0,0 +1,107 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TrafficMirrorTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    private ReverseHttpProxy proxy(ProxyRoute.Mirror mirror) throws Exception {
+        vertx.createHttpServer()
+                .requestHandler(req -> req.body().onSuccess(body -> req.response().end("primary:" + body.length())))
+                .listen(18897)
+                .toCompletionStage().toCompletableFuture().get();
+        ProxyRoute route = new ProxyRoute()
+                .setName("mirror")
+                .setSourceUrl("/api/*")
+                .setTargetUrl("http://127.0.0.1:18897")
+                .setMirror(mirror);
+        ReverseHttpProxy proxy = ReverseHttpProxy.create(vertx).port(18899).addRoute(route);
+        proxy.start();
+        Thread.sleep(500);
+        return proxy;
+    }
+
+    private TrafficMirror trafficMirror(ReverseHttpProxy proxy) {
+        return ((CompiledRoute) proxy.getRoutes().get(0).getMetadata(ReverseHttpProxy.INTERNAL_ROUTE)).getRuntime().getTrafficMirror();
+    }
+
+    private String post(HttpClient client, String uri, Buffer body) throws Exception {
+        return client.request(HttpMethod.POST, 18899, "127.0.0.1", uri)
+                .compose(req -> req.send(body))
+                .compose(HttpClientResponse::body)
+                .toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS).toString();
+    }
+
+    @Test
+    public void mirrorBody() throws Exception {
+        Promise<String> shadow = Promise.promise();
+        vertx.createHttpServer()
+                .requestHandler(req -> req.body().onSuccess(body -> {
+                    shadow.tryComplete(req.uri() + " " + body);
+                    req.response().end("shadow");
+                }))
+                .listen(18898)
+                .toCompletionStage().toCompletableFuture().get();
+        ReverseHttpProxy proxy = proxy(new ProxyRoute.Mirror().setEnable(true).setTargetUrl("http://127.0.0.1:18898/v2"));
+
+        HttpClient client = vertx.createHttpClient();
+        Assert.assertEquals("primary:5", post(client, "/api/users?id=1", Buffer.buffer("hello")));
+        Assert.assertEquals("/v2/users?id=1 hello", shadow.future().toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        TrafficMirror mirror = trafficMirror(proxy);
+        Assert.assertEquals(1, mirror.getMirrored());
+        Assert.assertEquals(0, mirror.getFailed());
+        Assert.assertEquals(0, mirror.getActive());
+        proxy.stop();
+    }
+
+    @Test
+    public void slowShadow() throws Exception {
+        // 影子上游只读取请求，从不响应
+        vertx.createHttpServer()
+                .requestHandler(req -> req.body())
+                .listen(18898)
+                .toCompletionStage().toCompletableFuture().get();
+        ReverseHttpProxy proxy = proxy(new ProxyRoute.Mirror().setEnable(true).setTargetUrl("http://127.0.0.1:18898")
+                .setMaxConcurrency(1).setTimeout(60000));
+
+        HttpClient client = vertx.createHttpClient();
+        for (int i = 0; i < 5; i++) {
+            long start = System.currentTimeMillis();
+            Assert.assertEquals("primary:1024", post(client, "/api/upload", Buffer.buffer(new byte[1024])));
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+        TrafficMirror mirror = trafficMirror(proxy);
+        Assert.assertEquals(1, mirror.getMirrored());
+        Assert.assertEquals(4, mirror.getSkipped());
+        Assert.assertEquals(1, mirror.getActive());
+        proxy.stop();
+    }
+
+    @Test
+    public void percentage() throws Exception {
+        ReverseHttpProxy proxy = proxy(new ProxyRoute.Mirror().setEnable(true).setTargetUrl("http://127.0.0.1:18898")
+                .setPercentage(0));
+
+        HttpClient client = vertx.createHttpClient();
+        Assert.assertEquals("primary:2", post(client, "/api/a", Buffer.buffer("ab")));
+        Assert.assertEquals(0, trafficMirror(proxy).getMirrored());
+        proxy.stop();
+    }
+}
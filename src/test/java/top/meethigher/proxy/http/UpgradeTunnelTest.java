@@ -0,0 +1,63 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.WebSocket;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class UpgradeTunnelTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void containsToken() {
+        Assert.assertTrue(UpgradeTunnel.containsToken("keep-alive, Upgrade", "upgrade"));
+        Assert.assertTrue(UpgradeTunnel.containsToken("upgrade", "upgrade"));
+        Assert.assertFalse(UpgradeTunnel.containsToken("keep-alive", "upgrade"));
+        Assert.assertFalse(UpgradeTunnel.containsToken(null, "upgrade"));
+    }
+
+    @Test
+    public void webSocketEcho() throws Exception {
+        vertx.createHttpServer()
+                .webSocketHandler(ws -> ws.handler(ws::write))
+                .listen(18890)
+                .toCompletionStage().toCompletableFuture().get();
+        ProxyRoute route = new ProxyRoute()
+                .setName("ws")
+                .setSourceUrl("/*")
+                .setTargetUrl("http://127.0.0.1:18890")
+                .setUpgrade(new ProxyRoute.Upgrade().setEnable(true));
+        ReverseHttpProxy proxy = ReverseHttpProxy.create(vertx).port(18891).addRoute(route);
+        proxy.start();
+        Thread.sleep(500);
+
+        HttpClient client = vertx.createHttpClient();
+        WebSocket ws = client.webSocket(18891, "127.0.0.1", "/echo").toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS);
+        Promise<String> echo = Promise.promise();
+        ws.textMessageHandler(echo::tryComplete);
+        ws.writeTextMessage("hello");
+        Assert.assertEquals("hello", echo.future().toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS));
+
+        UpgradeTunnel tunnel = ((CompiledRoute) proxy.getRoutes().get(0).getMetadata(ReverseHttpProxy.INTERNAL_ROUTE)).getUpgradeTunnel();
+        Assert.assertEquals(1, tunnel.getActive());
+        Assert.assertTrue(tunnel.getUpstreamBytes() > 0);
+        Assert.assertTrue(tunnel.getDownstreamBytes() > 0);
+
+        ws.close().toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS);
+        Thread.sleep(200);
+        Assert.assertEquals(0, tunnel.getActive());
+        Assert.assertEquals(1, tunnel.getTotal());
+        proxy.stop();
+    }
+}
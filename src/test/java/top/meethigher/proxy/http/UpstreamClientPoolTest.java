@@ -0,0 +1,123 @@
+package top.meethigher.proxy.http;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UpstreamClientPoolTest {
+
+    private static final Vertx vertx = Vertx.vertx();
+
+    @Test
+    public void getOrCreate() {
+        UpstreamClientPool pool = new UpstreamClientPool(vertx);
+        ProxyRoute.ConnectionPool options = new ProxyRoute.ConnectionPool()
+                .setEnable(true)
+                .setMaxConnections(8);
+        HttpClient a = pool.getOrCreate("http://127.0.0.1:888/api", options);
+        HttpClient b = pool.getOrCreate("http://127.0.0.1:888/service/", options);
+        HttpClient c = pool.getOrCreate("http://127.0.0.1:889", options);
+        // 同一源站共享连接池，不同源站互相隔离
+        Assert.assertSame(a, b);
+        Assert.assertNotSame(a, c);
+        // 同一源站的连接池配置不同时不共享
+        HttpClient d = pool.getOrCreate("http://127.0.0.1:888", new ProxyRoute.ConnectionPool()
+                .setEnable(true)
+                .setMaxConnections(2));
+        Assert.assertNotSame(a, d);
+        Assert.assertEquals(3, pool.size());
+        pool.close();
+        Assert.assertEquals(0, pool.size());
+    }
+
+    private Future<Integer> get(HttpClient client, int port) {
+        return client.request(HttpMethod.GET, port, "127.0.0.1", "/")
+                .compose(req -> req.send())
+                .compose(resp -> resp.end().map(v -> resp.statusCode()));
+    }
+
+    @Test
+    public void limitsAndKeepAlive() throws Exception {
+        AtomicInteger connections = new AtomicInteger();
+        Queue<HttpServerResponse> held = new ConcurrentLinkedQueue<>();
+        vertx.createHttpServer()
+                .connectionHandler(conn -> connections.incrementAndGet())
+                .requestHandler(req -> held.add(req.response()))
+                .listen(18904)
+                .toCompletionStage().toCompletableFuture().get();
+        UpstreamClientPool pool = new UpstreamClientPool(vertx);
+        HttpClient client = pool.getOrCreate("http://127.0.0.1:18904", new ProxyRoute.ConnectionPool()
+                .setEnable(true)
+                .setMaxConnections(2));
+
+        // 超出最大连接数的请求在等待队列中排队
+        List<Future<Integer>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            responses.add(get(client, 18904));
+        }
+        Thread.sleep(300);
+        Assert.assertEquals(2, connections.get());
+        Assert.assertEquals(2, held.size());
+        // 连接归还后，排队的请求复用已有的长连接
+        while (responses.stream().anyMatch(f -> !f.isComplete())) {
+            HttpServerResponse resp = held.poll();
+            if (resp != null) {
+                resp.end();
+            }
+            Thread.sleep(20);
+        }
+        for (Future<Integer> response : responses) {
+            Assert.assertEquals(200, (int) response.result());
+        }
+        Assert.assertEquals(2, connections.get());
+        pool.close();
+    }
+
+    @Test
+    public void releaseAndClose() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+        vertx.createHttpServer()
+                .connectionHandler(conn -> conn.closeHandler(v -> closed.incrementAndGet()))
+                .requestHandler(req -> req.response().end())
+                .listen(18905)
+                .toCompletionStage().toCompletableFuture().get();
+        UpstreamClientPool pool = new UpstreamClientPool(vertx).setCloseDelay(100);
+        ProxyRoute.ConnectionPool options = new ProxyRoute.ConnectionPool().setEnable(true);
+        HttpClient a = pool.getOrCreate("http://127.0.0.1:18905", options);
+        HttpClient b = pool.getOrCreate("http://127.0.0.1:18905", options);
+        Assert.assertSame(a, b);
+        Assert.assertEquals(200, (int) get(a, 18905).toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS));
+
+        // 仍有引用时不关闭
+        pool.release(a);
+        Thread.sleep(300);
+        Assert.assertEquals(1, pool.size());
+        Assert.assertEquals(0, closed.get());
+
+        // 最后一个引用释放后、关闭前重新引用，复用原有的连接池
+        pool.release(b);
+        HttpClient c = pool.getOrCreate("http://127.0.0.1:18905", options);
+        Assert.assertSame(a, c);
+        Thread.sleep(300);
+        Assert.assertEquals(1, pool.size());
+        Assert.assertEquals(0, closed.get());
+
+        // 延迟结束后关闭连接池及其连接
+        pool.release(c);
+        Assert.assertEquals(1, pool.size());
+        Thread.sleep(300);
+        Assert.assertEquals(0, pool.size());
+        Assert.assertEquals(1, closed.get());
+    }
+}
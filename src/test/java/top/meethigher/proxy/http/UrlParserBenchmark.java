@@ -0,0 +1,95 @@
+package top.meethigher.proxy.http;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比逐步替换、拼接与预先计算下标后一次性拼接代理URL、重写Location的性能
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UrlParserBenchmark {
+
+    @Param({"api", "static", "exact"})
+    public String requestSet;
+
+    private String targetBase;
+
+    private String stripPrefix;
+
+    private String path;
+
+    private String uri;
+
+    private String absoluteUri;
+
+    private String targetUrl;
+
+    private String location;
+
+    private String locationPrefix;
+
+    @Setup
+    public void setup() {
+        targetUrl = "http://10.0.0.12:8080/order-service/";
+        targetBase = "http://10.0.0.12:8080/order-service";
+        if ("api".equals(requestSet)) {
+            stripPrefix = "/api/order";
+            path = "/api/order/v2/orders/20250826000123/items";
+            uri = path + "?page=2&size=50&sort=createdAt%2Cdesc&status=PAID&traceId=5f2b8c1e9a7d4e21";
+        } else if ("static".equals(requestSet)) {
+            stripPrefix = "/api/order";
+            path = "/api/order/assets/js/chunk-vendors.8f2c1a.js";
+            uri = path;
+        } else {
+            stripPrefix = null;
+            path = "/api/order/login";
+            uri = path + "?redirect=%2Fapi%2Forder%2Fdashboard";
+        }
+        locationPrefix = "/api/order";
+        absoluteUri = "https://gateway.meethigher.top" + uri;
+        location = targetUrl + "login?expired=true";
+    }
+
+    @Benchmark
+    public void legacyProxyUrl(Blackhole bh) {
+        bh.consume(UrlParserTest.legacyProxyUrl(targetBase, stripPrefix, path, uri));
+    }
+
+    @Benchmark
+    public void proxyUrl(Blackhole bh) {
+        bh.consume(UrlParser.proxyUrl(targetBase, stripPrefix, path, uri));
+    }
+
+    @Benchmark
+    public void legacyRewriteLocation(Blackhole bh) {
+        bh.consume(UrlParser.parseUrl(absoluteUri).getFormatHostPort() + locationPrefix + location.replace(targetUrl, ""));
+    }
+
+    @Benchmark
+    public void rewriteLocation(Blackhole bh) {
+        StringBuilder sb = new StringBuilder(absoluteUri.length() + 6 + locationPrefix.length() + location.length() - targetUrl.length());
+        bh.consume(UrlParser.appendHostPort(sb, absoluteUri)
+                .append(locationPrefix)
+                .append(location, targetUrl.length(), location.length())
+                .toString());
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(UrlParserBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
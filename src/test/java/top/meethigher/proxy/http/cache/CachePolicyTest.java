@@ -0,0 +1,55 @@
+package top.meethigher.proxy.http.cache;
+
+import io.vertx.core.MultiMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachePolicyTest {
+
+    private MultiMap headers() {
+        return MultiMap.caseInsensitiveMultiMap();
+    }
+
+    @Test
+    public void freshnessLifetime() {
+        MultiMap req = headers();
+        Assert.assertEquals(60000, CachePolicy.freshnessLifetime(req, 200, headers().add("Cache-Control", "public, max-age=60"), 0));
+        Assert.assertEquals(10000, CachePolicy.freshnessLifetime(req, 200, headers().add("Cache-Control", "max-age=60, s-maxage=10"), 0));
+        Assert.assertEquals(-1, CachePolicy.freshnessLifetime(req, 200, headers().add("Cache-Control", "private, max-age=60"), 0));
+        Assert.assertEquals(-1, CachePolicy.freshnessLifetime(req, 200, headers().add("Cache-Control", "no-store"), 0));
+        Assert.assertEquals(-1, CachePolicy.freshnessLifetime(req, 500, headers().add("Cache-Control", "max-age=60"), 0));
+        Assert.assertEquals(-1, CachePolicy.freshnessLifetime(req, 200, headers().add("Cache-Control", "max-age=60").add("Vary", "*"), 0));
+        Assert.assertEquals(-1, CachePolicy.freshnessLifetime(req, 200, headers().add("Cache-Control", "max-age=60").add("Set-Cookie", "a=1"), 0));
+
+        Assert.assertEquals(3600000, CachePolicy.freshnessLifetime(req, 200, headers()
+                .add("Date", "Sun, 03 Aug 2025 02:00:00 GMT")
+                .add("Expires", "Sun, 03 Aug 2025 03:00:00 GMT"), 0));
+
+        // 仅有Last-Modified时使用启发式新鲜度，并受上限约束
+        Assert.assertEquals(300000, CachePolicy.freshnessLifetime(req, 200, headers()
+                .add("Date", "Sun, 03 Aug 2025 02:00:00 GMT")
+                .add("Last-Modified", "Sun, 03 Jan 2021 02:00:00 GMT"), 300000));
+
+        // 带认证信息的请求，需响应显式允许共享缓存
+        MultiMap authorized = headers().add("Authorization", "Bearer 1");
+        Assert.assertEquals(-1, CachePolicy.freshnessLifetime(authorized, 200, headers().add("Cache-Control", "max-age=60"), 0));
+        Assert.assertEquals(60000, CachePolicy.freshnessLifetime(authorized, 200, headers().add("Cache-Control", "public, max-age=60"), 0));
+    }
+
+    @Test
+    public void canServeFromCache() {
+        Assert.assertTrue(CachePolicy.canServeFromCache(headers()));
+        Assert.assertFalse(CachePolicy.canServeFromCache(headers().add("Cache-Control", "no-cache")));
+        Assert.assertFalse(CachePolicy.canServeFromCache(headers().add("Cache-Control", "max-age=0")));
+        Assert.assertFalse(CachePolicy.canServeFromCache(headers().add("Pragma", "no-cache")));
+    }
+
+    @Test
+    public void notModified() {
+        Assert.assertTrue(CachePolicy.notModified(headers().add("If-None-Match", "\"a\", W/\"b\""), "\"b\"", null));
+        Assert.assertFalse(CachePolicy.notModified(headers().add("If-None-Match", "\"a\""), "\"b\"", null));
+        Assert.assertTrue(CachePolicy.notModified(headers().add("If-Modified-Since", "Sun, 03 Aug 2025 02:00:00 GMT"),
+                null, "Sun, 03 Aug 2025 01:00:00 GMT"));
+        Assert.assertFalse(CachePolicy.notModified(headers(), "\"b\"", "Sun, 03 Aug 2025 01:00:00 GMT"));
+    }
+}
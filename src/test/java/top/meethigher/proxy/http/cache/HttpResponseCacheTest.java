@@ -0,0 +1,107 @@
+package top.meethigher.proxy.http.cache;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpResponseCacheTest {
+
+    private void store(HttpResponseCache cache, String key, MultiMap req, MultiMap resp, int size) {
+        HttpResponseCache.Capture capture = cache.capture(key, req, 200, resp);
+        Assert.assertNotNull(capture);
+        capture.append(Buffer.buffer(new byte[size]));
+        capture.complete();
+    }
+
+    private MultiMap cacheable() {
+        return MultiMap.caseInsensitiveMultiMap().add("Cache-Control", "max-age=60");
+    }
+
+    @Test
+    public void primaryKey() {
+        Assert.assertEquals(HttpResponseCache.primaryKey("GET", "Meethigher.TOP", "/a?y=2&x=1"),
+                HttpResponseCache.primaryKey("GET", "meethigher.top", "/a?x=1&y=2"));
+    }
+
+    @Test
+    public void lookupAndVary() {
+        HttpResponseCache cache = new HttpResponseCache(1024 * 1024, 64 * 1024, 0);
+        MultiMap gzip = MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", "gzip");
+        MultiMap br = MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", "br");
+        store(cache, "GET /a", gzip, cacheable().add("Vary", "Accept-Encoding"), 100);
+
+        CachedResponse hit = cache.lookup("GET /a", gzip);
+        Assert.assertNotNull(hit);
+        Assert.assertEquals(100, hit.getBodyLength());
+        Assert.assertTrue(hit.isFresh(System.currentTimeMillis()));
+        hit.release();
+        Assert.assertNull(cache.lookup("GET /a", br));
+        cache.clear();
+    }
+
+    @Test
+    public void evict() {
+        HttpResponseCache cache = new HttpResponseCache(10 * 1024, 4 * 1024, 0);
+        MultiMap req = MultiMap.caseInsensitiveMultiMap();
+        store(cache, "GET /hot", req, cacheable(), 3000);
+        // 再次命中，晋升到保护段
+        cache.lookup("GET /hot", req).release();
+        for (int i = 0; i < 10; i++) {
+            store(cache, "GET /cold" + i, req, cacheable(), 3000);
+        }
+        Assert.assertTrue(cache.getUsedBytes() <= 10 * 1024);
+        Assert.assertTrue(cache.getEvictions() > 0);
+        // 冷数据扫描不会淘汰热点数据
+        CachedResponse hot = cache.lookup("GET /hot", req);
+        Assert.assertNotNull(hot);
+        hot.release();
+
+        // 超出单条目上限的响应不缓存
+        HttpResponseCache.Capture capture = cache.capture("GET /big", req, 200, cacheable());
+        capture.append(Buffer.buffer(new byte[5 * 1024]));
+        capture.complete();
+        Assert.assertNull(cache.lookup("GET /big", req));
+        cache.clear();
+    }
+
+    @Test
+    public void refreshHeaders() {
+        HttpResponseCache cache = new HttpResponseCache(1024 * 1024, 64 * 1024, 0);
+        MultiMap req = MultiMap.caseInsensitiveMultiMap();
+        store(cache, "GET /r", req, MultiMap.caseInsensitiveMultiMap()
+                .add("Cache-Control", "max-age=60")
+                .add("Content-Type", "text/plain")
+                .add("ETag", "\"v1\"")
+                .add("Age", "3600"), 100);
+        CachedResponse stale = cache.lookup("GET /r", req);
+        Assert.assertFalse(stale.isFresh(System.currentTimeMillis()));
+        Assert.assertTrue(stale.hasValidators());
+
+        stale.refresh(MultiMap.caseInsensitiveMultiMap()
+                .add("Cache-Control", "max-age=120")
+                .add("ETag", "\"v2\"")
+                .add("X-Version", "2")
+                .add("Content-Length", "0")
+                .add("Connection", "keep-alive"), 0);
+        stale.release();
+
+        // 再次读取时，响应头与校验器均已按304更新，旧的Age不再计入年龄
+        CachedResponse refreshed = cache.lookup("GET /r", req);
+        Assert.assertTrue(refreshed.isFresh(System.currentTimeMillis()));
+        MultiMap headers = refreshed.getHeaders();
+        Assert.assertEquals("max-age=120", headers.get("Cache-Control"));
+        Assert.assertEquals("\"v2\"", headers.get("ETag"));
+        Assert.assertEquals("\"v2\"", refreshed.getEtag());
+        Assert.assertEquals("2", headers.get("X-Version"));
+        Assert.assertEquals("text/plain", headers.get("Content-Type"));
+        Assert.assertNotNull(headers.get("Date"));
+        Assert.assertNull(headers.get("Age"));
+        // 304的逐跳标头与描述响应体的字段不会写入缓存
+        Assert.assertNull(headers.get("Content-Length"));
+        Assert.assertNull(headers.get("Connection"));
+        Assert.assertEquals(100, refreshed.getBodyLength());
+        refreshed.release();
+        cache.clear();
+    }
+}
@@ -0,0 +1,82 @@
+package top.meethigher.proxy.http.compress;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比各压缩级别下流式压缩1MB响应体的CPU耗时。单线程下每次操作的平均耗时即为每MB的CPU耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    private static final int MB = 1024 * 1024;
+
+    @Param({"1", "3", "6", "9"})
+    public int level;
+
+    @Param({"json", "html"})
+    public String content;
+
+    /**
+     * 按上游常见的16KB分块输入
+     */
+    private Buffer[] chunks;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder(MB + 256);
+        Random random = new Random(7);
+        while (sb.length() < MB) {
+            if ("json".equals(content)) {
+                sb.append("{\"id\":").append(random.nextInt(1000000))
+                        .append(",\"name\":\"user-").append(random.nextInt(1000))
+                        .append("\",\"active\":").append(random.nextBoolean())
+                        .append(",\"score\":").append(random.nextDouble()).append("},");
+            } else {
+                sb.append("<tr class=\"row\"><td>").append(random.nextInt(1000000))
+                        .append("</td><td><a href=\"/users/").append(random.nextInt(1000))
+                        .append("\">detail</a></td></tr>\n");
+            }
+        }
+        Buffer body = Buffer.buffer(sb.substring(0, MB));
+        chunks = new Buffer[MB / 16384];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = body.getBuffer(i * 16384, (i + 1) * 16384);
+        }
+    }
+
+    @Benchmark
+    public int gzip() {
+        int length = 0;
+        try (GzipEncoder encoder = new GzipEncoder(level)) {
+            for (Buffer chunk : chunks) {
+                Buffer compressed = encoder.encode(chunk);
+                if (compressed != null) {
+                    length += compressed.length();
+                }
+            }
+            length += encoder.finish().length();
+        }
+        return length;
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(CompressionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
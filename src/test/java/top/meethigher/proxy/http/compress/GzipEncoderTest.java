@@ -0,0 +1,69 @@
+package top.meethigher.proxy.http.compress;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+public class GzipEncoderTest {
+
+    private byte[] gunzip(Buffer gzip) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getBytes()))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private byte[] json(int size) {
+        StringBuilder sb = new StringBuilder(size + 64);
+        Random random = new Random(7);
+        while (sb.length() < size) {
+            sb.append("{\"id\":").append(random.nextInt(100000)).append(",\"name\":\"meethigher\"},");
+        }
+        return sb.substring(0, size).getBytes();
+    }
+
+    @Test
+    public void streaming() throws IOException {
+        byte[] body = json(256 * 1024);
+        Buffer gzip = Buffer.buffer();
+        try (GzipEncoder encoder = new GzipEncoder(6)) {
+            // 分段输入，模拟上游逐块到达的响应体
+            for (int offset = 0; offset < body.length; offset += 1000) {
+                Buffer compressed = encoder.encode(Buffer.buffer(body).slice(offset, Math.min(body.length, offset + 1000)));
+                if (compressed != null) {
+                    gzip.appendBuffer(compressed);
+                }
+            }
+            gzip.appendBuffer(encoder.finish());
+        }
+        Assert.assertTrue(gzip.length() < body.length / 4);
+        Assert.assertArrayEquals(body, gunzip(gzip));
+    }
+
+    @Test
+    public void empty() throws IOException {
+        Buffer gzip;
+        try (GzipEncoder encoder = new GzipEncoder(1)) {
+            Assert.assertNull(encoder.encode(Buffer.buffer()));
+            gzip = encoder.finish();
+        }
+        Assert.assertEquals(0, gunzip(gzip).length);
+    }
+
+    @Test
+    public void oneShot() throws IOException {
+        byte[] body = json(10000);
+        Assert.assertArrayEquals(body, gunzip(GzipEncoder.compress(Buffer.buffer(body), 9)));
+    }
+}
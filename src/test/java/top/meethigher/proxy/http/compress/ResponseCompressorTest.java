@@ -0,0 +1,64 @@
+package top.meethigher.proxy.http.compress;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpMethod;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResponseCompressorTest {
+
+    private MultiMap json(int length) {
+        return MultiMap.caseInsensitiveMultiMap()
+                .add("Content-Type", "application/json; charset=utf-8")
+                .add("Content-Length", String.valueOf(length))
+                .add("ETag", "\"v1\"");
+    }
+
+    private MultiMap accept(String acceptEncoding) {
+        return MultiMap.caseInsensitiveMultiMap().add("Accept-Encoding", acceptEncoding);
+    }
+
+    @Test
+    public void acceptsGzip() {
+        Assert.assertTrue(ResponseCompressor.acceptsGzip("gzip, deflate, br"));
+        Assert.assertTrue(ResponseCompressor.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        Assert.assertTrue(ResponseCompressor.acceptsGzip("*"));
+        Assert.assertFalse(ResponseCompressor.acceptsGzip("gzip;q=0, *"));
+        Assert.assertFalse(ResponseCompressor.acceptsGzip("br, identity"));
+        Assert.assertFalse(ResponseCompressor.acceptsGzip(null));
+    }
+
+    @Test
+    public void compressible() {
+        ResponseCompressor compressor = new ResponseCompressor(6, 1024, null, null);
+        Assert.assertTrue(compressor.isCompressible(HttpMethod.GET, 200, json(4096)));
+        Assert.assertTrue(compressor.isCompressible(HttpMethod.GET, 200, json(4096).set("Content-Type", "application/problem+json")));
+        Assert.assertFalse(compressor.isCompressible(HttpMethod.GET, 200, json(100)));
+        Assert.assertFalse(compressor.isCompressible(HttpMethod.HEAD, 200, json(4096)));
+        Assert.assertFalse(compressor.isCompressible(HttpMethod.GET, 206, json(4096)));
+        Assert.assertFalse(compressor.isCompressible(HttpMethod.GET, 200, json(4096).add("Content-Encoding", "br")));
+        Assert.assertFalse(compressor.isCompressible(HttpMethod.GET, 200, json(4096).add("Cache-Control", "public, no-transform")));
+        Assert.assertFalse(compressor.isCompressible(HttpMethod.GET, 200, json(4096).set("Content-Type", "image/png")));
+        Assert.assertFalse(compressor.isCompressible(HttpMethod.GET, 200, json(4096).set("Content-Type", "text/event-stream")));
+        // 未知长度的流式响应同样压缩
+        Assert.assertTrue(compressor.isCompressible(HttpMethod.GET, 200, json(0).remove("Content-Length")));
+    }
+
+    @Test
+    public void negotiate() {
+        ResponseCompressor compressor = new ResponseCompressor(6, 1024, "text/*", null);
+        MultiMap headers = json(4096).set("Content-Type", "text/html").add("Vary", "Origin");
+        Assert.assertTrue(compressor.negotiate(HttpMethod.GET, accept("gzip"), 200, headers));
+        Assert.assertEquals("gzip", headers.get("Content-Encoding"));
+        Assert.assertNull(headers.get("Content-Length"));
+        Assert.assertEquals("W/\"v1\"", headers.get("ETag"));
+        Assert.assertEquals(2, headers.getAll("Vary").size());
+
+        // 客户端不支持时不压缩，但仍需声明Vary
+        headers = json(4096).set("Content-Type", "text/html");
+        Assert.assertFalse(compressor.negotiate(HttpMethod.GET, accept("identity"), 200, headers));
+        Assert.assertNull(headers.get("Content-Encoding"));
+        Assert.assertEquals("4096", headers.get("Content-Length"));
+        Assert.assertEquals("Accept-Encoding", headers.get("Vary"));
+    }
+}
@@ -0,0 +1,138 @@
+package top.meethigher.proxy.http.file;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import top.meethigher.proxy.http.ProxyRoute;
+import top.meethigher.proxy.http.ReverseHttpProxy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+public class StaticFileHandlerTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    private Path root;
+
+    private ReverseHttpProxy proxy;
+
+    private HttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("static");
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            html.append("<p>hello static file</p>\n");
+        }
+        Files.write(root.resolve("index.html"), html.toString().getBytes(StandardCharsets.UTF_8));
+        byte[] large = new byte[64 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        Files.write(root.resolve("large.bin"), large);
+        proxy = ReverseHttpProxy.create(vertx).port(18894)
+                .addRoute(new ProxyRoute()
+                        .setName("static")
+                        .setSourceUrl("/app/*")
+                        .setTargetUrl("static:" + root)
+                        .setStaticFiles(new ProxyRoute.StaticFiles()
+                                .setEnable(true)
+                                .setCacheMaxEntryBytes(16 * 1024)));
+        proxy.start();
+        Thread.sleep(500);
+        client = vertx.createHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        proxy.stop();
+        vertx.close();
+    }
+
+    private HttpClientResponse get(String uri, String... headers) throws Exception {
+        RequestOptions options = new RequestOptions().setMethod(HttpMethod.GET).setPort(18894).setHost("127.0.0.1").setURI(uri);
+        for (int i = 0; i < headers.length; i += 2) {
+            options.addHeader(headers[i], headers[i + 1]);
+        }
+        return client.request(options)
+                .compose(req -> req.send().compose(resp -> resp.body().map(resp)))
+                .toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS);
+    }
+
+    private Buffer body(HttpClientResponse resp) throws Exception {
+        return resp.body().toCompletionStage().toCompletableFuture().get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void parseRange() {
+        Assert.assertArrayEquals(new long[]{0, 99}, StaticFileHandler.parseRange("bytes=0-99", 1000));
+        Assert.assertArrayEquals(new long[]{900, 999}, StaticFileHandler.parseRange("bytes=900-", 1000));
+        Assert.assertArrayEquals(new long[]{990, 999}, StaticFileHandler.parseRange("bytes=-10", 1000));
+        Assert.assertArrayEquals(new long[]{500, 999}, StaticFileHandler.parseRange("bytes=500-5000", 1000));
+        Assert.assertEquals(0, StaticFileHandler.parseRange("bytes=1000-", 1000).length);
+        Assert.assertNull(StaticFileHandler.parseRange("bytes=0-1,5-6", 1000));
+        Assert.assertNull(StaticFileHandler.parseRange("bytes=9-1", 1000));
+        Assert.assertNull(StaticFileHandler.parseRange("items=0-1", 1000));
+    }
+
+    @Test
+    public void conditionalAndCompressed() throws Exception {
+        HttpClientResponse resp = get("/app/");
+        Assert.assertEquals(200, resp.statusCode());
+        Assert.assertTrue(resp.getHeader("Content-Type").startsWith("text/html"));
+        String etag = resp.getHeader("ETag");
+        Assert.assertNotNull(etag);
+        Assert.assertTrue(body(resp).toString().startsWith("<p>hello"));
+
+        Assert.assertEquals(304, get("/app/index.html", "If-None-Match", etag).statusCode());
+
+        HttpClientResponse gzip = get("/app/index.html", "Accept-Encoding", "gzip");
+        Assert.assertEquals("gzip", gzip.getHeader("Content-Encoding"));
+        Assert.assertTrue(body(gzip).length() < 2500);
+    }
+
+    @Test
+    public void rangeOnCachedAndLargeFiles() throws Exception {
+        HttpClientResponse small = get("/app/index.html", "Range", "bytes=3-7");
+        Assert.assertEquals(206, small.statusCode());
+        Assert.assertEquals("hello", body(small).toString());
+
+        HttpClientResponse large = get("/app/large.bin", "Range", "bytes=256-259");
+        Assert.assertEquals(206, large.statusCode());
+        Assert.assertEquals("bytes 256-259/65536", large.getHeader("Content-Range"));
+        Buffer bytes = body(large);
+        Assert.assertEquals(4, bytes.length());
+        Assert.assertEquals(0, bytes.getByte(0));
+        Assert.assertEquals(3, bytes.getByte(3));
+
+        Assert.assertEquals(416, get("/app/large.bin", "Range", "bytes=70000-").statusCode());
+        Assert.assertEquals(404, get("/app/missing.js").statusCode());
+    }
+
+    @Test
+    public void invalidatedOnChange() throws Exception {
+        Assert.assertTrue(body(get("/app/index.html")).toString().startsWith("<p>hello"));
+        Path tmp = root.resolve("index.html.tmp");
+        Files.write(tmp, "changed".getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, root.resolve("index.html"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        String latest = null;
+        // 不同平台的WatchService通知延迟不同
+        for (int i = 0; i < 50 && !"changed".equals(latest); i++) {
+            Thread.sleep(100);
+            latest = body(get("/app/index.html")).toString();
+        }
+        Assert.assertEquals("changed", latest);
+    }
+}
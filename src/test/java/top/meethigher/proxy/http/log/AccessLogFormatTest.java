@@ -0,0 +1,46 @@
+package top.meethigher.proxy.http.log;
+
+import org.junit.Assert;
+import org.junit.Test;
+import top.meethigher.proxy.http.ReverseHttpProxy;
+
+public class AccessLogFormatTest {
+
+    @Test
+    public void formatDefault() {
+        AccessLogFormat format = AccessLogFormat.compile(ReverseHttpProxy.LOG_FORMAT_DEFAULT);
+        Object[] values = new Object[AccessLogFormat.Field.VALUE_COUNT];
+        values[AccessLogFormat.Field.NAME.ordinal()] = "proxy";
+        values[AccessLogFormat.Field.METHOD.ordinal()] = "GET";
+        values[AccessLogFormat.Field.SERVER_HTTP_VERSION.ordinal()] = "http/1.1";
+        values[AccessLogFormat.Field.USER_AGENT.ordinal()] = "curl/8.0";
+        values[AccessLogFormat.Field.SOURCE_URI.ordinal()] = "/api/a?b=1";
+        values[AccessLogFormat.Field.PROXY_URL.ordinal()] = "http://127.0.0.1:888/a?b=1";
+        values[AccessLogFormat.Field.STATUS_CODE.ordinal()] = 200;
+
+        String expected = ReverseHttpProxy.LOG_FORMAT_DEFAULT
+                .replace("{name}", "proxy")
+                .replace("{method}", "GET")
+                .replace("{serverHttpVersion}", "http/1.1")
+                .replace("{clientHttpVersion}", "null")
+                .replace("{userAgent}", "curl/8.0")
+                .replace("{serverRemoteAddr}", "null")
+                .replace("{serverLocalAddr}", "null")
+                .replace("{clientLocalAddr}", "null")
+                .replace("{clientRemoteAddr}", "null")
+                .replace("{sourceUri}", "/api/a?b=1")
+                .replace("{proxyUrl}", "http://127.0.0.1:888/a?b=1")
+                .replace("{statusCode}", "200")
+                .replace("{consumedMills}", "15");
+        Assert.assertEquals(expected, format.format(values, 15));
+    }
+
+    @Test
+    public void unknownPlaceholderIsLiteral() {
+        AccessLogFormat format = AccessLogFormat.compile("{unknown} {method}{ {statusCode}}");
+        Object[] values = new Object[AccessLogFormat.Field.VALUE_COUNT];
+        values[AccessLogFormat.Field.METHOD.ordinal()] = "POST";
+        values[AccessLogFormat.Field.STATUS_CODE.ordinal()] = 502;
+        Assert.assertEquals("{unknown} POST{ 502}", format.format(values, 0));
+    }
+}
@@ -0,0 +1,72 @@
+package top.meethigher.proxy.http.log;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class AccessLogWriterTest {
+
+    private static void append(AccessLogWriter writer, AccessLogFormat format, String uri) {
+        long seq = writer.claim();
+        Assert.assertTrue(seq >= 0);
+        AccessLogWriter.Record record = writer.record(seq)
+                .format(format)
+                .timestamp(System.currentTimeMillis())
+                .consumed(3);
+        record.values()[AccessLogFormat.Field.SOURCE_URI.ordinal()] = uri;
+        writer.publish(seq);
+    }
+
+    @Test
+    public void writeAndClose() throws Exception {
+        Path dir = Files.createTempDirectory("access-log");
+        AccessLogWriter writer = AccessLogWriter.create(new AccessLogWriter.Options()
+                .setFile(new File(dir.toFile(), "access.log").getPath())
+                .setCapacity(16)
+                .setOverflowPolicy(AccessLogWriter.OverflowPolicy.BLOCK));
+        AccessLogFormat format = AccessLogFormat.compile("{sourceUri} consumed {consumedMills} ms");
+        for (int i = 0; i < 100; i++) {
+            append(writer, format, "/" + i);
+        }
+        writer.close();
+
+        List<String> lines = Files.readAllLines(writer.getPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(100, lines.size());
+        Assert.assertTrue(lines.get(0).endsWith(" /0 consumed 3 ms"));
+        Assert.assertTrue(lines.get(99).endsWith(" /99 consumed 3 ms"));
+        Assert.assertEquals(100, writer.getWritten());
+        Assert.assertEquals(0, writer.getDropped());
+    }
+
+    @Test
+    public void rotateBySize() throws Exception {
+        Path dir = Files.createTempDirectory("access-log");
+        AccessLogWriter writer = AccessLogWriter.create(new AccessLogWriter.Options()
+                .setFile(new File(dir.toFile(), "access.log").getPath())
+                .setMaxFileBytes(1024)
+                .setOverflowPolicy(AccessLogWriter.OverflowPolicy.BLOCK));
+        AccessLogFormat format = AccessLogFormat.compile("{sourceUri}");
+        for (int i = 0; i < 200; i++) {
+            append(writer, format, "/rotate/" + i);
+        }
+        writer.close();
+
+        long total = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> list = files.collect(Collectors.toList());
+            Assert.assertTrue(list.size() > 1);
+            for (Path file : list) {
+                Assert.assertTrue(Files.size(file) <= 1024);
+                total += Files.readAllLines(file, StandardCharsets.UTF_8).size();
+            }
+        }
+        Assert.assertEquals(200, total);
+    }
+}
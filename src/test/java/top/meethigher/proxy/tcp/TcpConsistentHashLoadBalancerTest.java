@@ -0,0 +1,87 @@
+package top.meethigher.proxy.tcp;
+
+import org.junit.Assert;
+import org.junit.Test;
+import top.meethigher.proxy.NetAddress;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TcpConsistentHashLoadBalancerTest {
+
+    private List<NetAddress> nodes(int count) {
+        List<NetAddress> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add(new NetAddress("10.0.0." + (i + 1), 22));
+        }
+        return nodes;
+    }
+
+    private Map<String, NetAddress> assign(TcpConsistentHashLoadBalancer lb, int keys) {
+        Map<String, NetAddress> map = new HashMap<>();
+        for (int i = 0; i < keys; i++) {
+            String key = "192.168." + (i / 256) + "." + (i % 256);
+            NetAddress node = lb.next(key);
+            lb.release(node);
+            map.put(key, node);
+        }
+        return map;
+    }
+
+    @Test
+    public void minimalRemapping() {
+        List<NetAddress> nodes = nodes(5);
+        TcpConsistentHashLoadBalancer lb = TcpConsistentHashLoadBalancer.create(nodes, 0);
+        Map<String, NetAddress> before = assign(lb, 10000);
+        // 分布均匀
+        Map<NetAddress, Integer> counts = new HashMap<>();
+        for (NetAddress node : before.values()) {
+            counts.merge(node, 1, Integer::sum);
+        }
+        for (NetAddress node : nodes) {
+            Assert.assertTrue(counts.get(node) > 1500 && counts.get(node) < 2500);
+        }
+
+        NetAddress removed = nodes.remove(2);
+        lb.refresh();
+        Map<String, NetAddress> after = assign(lb, 10000);
+        int moved = 0;
+        for (Map.Entry<String, NetAddress> entry : before.entrySet()) {
+            NetAddress now = after.get(entry.getKey());
+            Assert.assertNotEquals(removed, now);
+            if (!entry.getValue().equals(removed) && !entry.getValue().equals(now)) {
+                moved++;
+            }
+        }
+        // 原本不在被删除节点上的键几乎都不改变归属
+        Assert.assertTrue("moved " + moved, moved < 500);
+
+        nodes.add(2, removed);
+        lb.refresh();
+        Assert.assertEquals(before, assign(lb, 10000));
+    }
+
+    @Test
+    public void boundedLoad() {
+        List<NetAddress> nodes = nodes(4);
+        TcpConsistentHashLoadBalancer lb = TcpConsistentHashLoadBalancer.create(nodes, 0.25);
+        NetAddress sticky = lb.next("192.168.0.1");
+        lb.release(sticky);
+        // 同一个客户端的大量连接不会全部落在同一节点
+        Map<NetAddress, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            counts.merge(lb.next("192.168.0.1"), 1, Integer::sum);
+        }
+        Assert.assertEquals(4, counts.size());
+        Assert.assertTrue(counts.get(sticky) <= 32);
+        // 连接释放后回到原节点
+        for (Map.Entry<NetAddress, Integer> entry : counts.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                lb.release(entry.getKey());
+            }
+        }
+        Assert.assertEquals(sticky, lb.next("192.168.0.1"));
+    }
+}